@@ -23,6 +23,8 @@ public class Program extends AbstractCommand implements HasCommands {
 
     @Override
     public Object _execute(final LocalContext context) throws ExecutionException {
+        // a program costs at least one step, even if the optimizer folded it into a constant
+        context.step();
         Object value = null;
         for (Command command : commands) {
             value = command.execute(context);
@@ -19,7 +19,8 @@ import java.util.Set;
  * <p>
  * The ExpressionAnalyzer supports:
  * - The `async` keyword with an optional set of parameters defined in {@code ASYNC_OPTIONS}.
- * - The `await` keyword with an optional set of parameters defined in {@code AWAIT_OPTIONS}.
+ * - The `await` keyword with an optional set of parameters defined in {@code AWAIT_OPTIONS}, and the flags defined in
+ *   {@code AWAIT_FLAGS}.
  * - Delegation of non-async and non-await expressions to {@link BinaryExpressionAnalyzer}.
  */
 public class ExpressionAnalyzer extends AbstractAnalyzer {
@@ -28,15 +29,16 @@ public class ExpressionAnalyzer extends AbstractAnalyzer {
 
     private static final Set<String> ASYNC_OPTIONS = Set.of("in", "out", "steps", "time");
     private static final Set<String> AWAIT_OPTIONS = Set.of("time");
+    private static final Set<String> AWAIT_FLAGS = Set.of("all", "any");
 
     public Command _analyze(LexList lexes) throws BadSyntax {
         if (lexes.isKeyword()) {
             switch (lexes.peek().text()) {
                 case Keywords.ASYNC:
-                    final var asyncOptions = getOptions(lexes, "Async", ASYNC_OPTIONS);
+                    final var asyncOptions = getOptions(lexes, "Async", ASYNC_OPTIONS, Set.of());
                     return new AsyncEvaluation(analyze(lexes), asyncOptions);
                 case Keywords.AWAIT:
-                    final var awaitOptions = getOptions(lexes, "await", AWAIT_OPTIONS);
+                    final var awaitOptions = getOptions(lexes, "await", AWAIT_OPTIONS, AWAIT_FLAGS);
                     return new AwaitEvaluation(analyze(lexes), awaitOptions);
                 default:
                     break;
@@ -45,12 +47,12 @@ public class ExpressionAnalyzer extends AbstractAnalyzer {
         return BinaryExpressionAnalyzer.INSTANCE.analyze(lexes);
     }
 
-    private Map<String, Command> getOptions(LexList lexes, String forWhat, Set<String> OPTIONS) {
+    private Map<String, Command> getOptions(LexList lexes, String forWhat, Set<String> OPTIONS, Set<String> FLAGS) {
         lexes.next();
         final Map<String, Command> asyncOptions;
         if (lexes.peek().text().equals("[")) {
             lexes.next();
-            asyncOptions = OptionListAnalyzer.analyze(lexes, OPTIONS);
+            asyncOptions = OptionListAnalyzer.analyze(lexes, OPTIONS, FLAGS);
             BadSyntax.when(lexes, !lexes.peek().text().equals("]"), "%s options should be closed with ']'", forWhat);
             lexes.next();
         } else {
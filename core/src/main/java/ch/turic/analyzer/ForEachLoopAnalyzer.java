@@ -14,13 +14,24 @@ import java.util.ArrayList;
  * 'in' EXPRESSION ['list']( BLOCK | ':' COMMAND ) |
  * 'for each' '(' identifier ['with' identifier]
  * 'in' EXPRESSION ')' ['list'](  BLOCK | ':' COMMAND )
+ * // the iterations run on several threads when 'parallel' follows the 'for each', optionally with the number of threads
+ * 'for each' 'parallel' ['(' EXPRESSION ')'] ...
  * end snippet
  */
 public class ForEachLoopAnalyzer extends AbstractAnalyzer {
     public static final ForEachLoopAnalyzer INSTANCE = new ForEachLoopAnalyzer();
+    private static final String PARALLEL = "parallel";
 
     @Override
     public Command _analyze(LexList lexes) throws BadSyntax {
+        final boolean parallel = isParallel(lexes);
+        final Command threads;
+        if (parallel) {
+            lexes.next();
+            threads = getThreads(lexes);
+        } else {
+            threads = null;
+        }
         final boolean withParentheses = lexes.is("(");
         if (withParentheses) {
             lexes.next();
@@ -75,6 +86,33 @@ public class ForEachLoopAnalyzer extends AbstractAnalyzer {
 
         final Command body = LoopAnalyzerUtils.getLoopBody(lexes);
         final Command exitCondition = LoopAnalyzerUtils.getOptionalExistCondition(lexes);
-        return new ForEachLoop(identifiers, listLoopVar, with, expression, resultList, body, exitCondition);
+        return new ForEachLoop(identifiers, listLoopVar, with, expression, resultList, body, exitCondition, parallel, threads);
+    }
+
+    /**
+     * The word {@code parallel} is not a keyword. It starts a parallel loop only when it is followed by the loop
+     * variable, the list of the loop variables, or the number of threads between parentheses. Otherwise, it is the
+     * name of the loop variable, as in {@code for each parallel in list}.
+     */
+    private static boolean isParallel(LexList lexes) {
+        return lexes.isIdentifier(PARALLEL) && (lexes.isAt(1, Lex.Type.IDENTIFIER) || lexes.isAt(1, "(", "["));
+    }
+
+    /**
+     * Get the optional number of threads between parentheses following the {@code parallel}.
+     *
+     * @return the expression of the number of threads or {@code null} if there is none
+     */
+    private static Command getThreads(LexList lexes) throws BadSyntax {
+        if (lexes.isNot("(")) {
+            return null;
+        }
+        lexes.next();
+        final var threads = ExpressionAnalyzer.INSTANCE.analyze(lexes);
+        if (lexes.isNot(")")) {
+            throw lexes.syntaxError("')' expected following the number of threads in 'for each parallel'");
+        }
+        lexes.next();
+        return threads;
     }
 }
@@ -0,0 +1,453 @@
+package ch.turic.analyzer;
+
+import ch.turic.Command;
+import ch.turic.commands.AbstractCommand;
+import ch.turic.commands.Assignment;
+import ch.turic.commands.ClosureLike;
+import ch.turic.commands.ConstantExpression;
+import ch.turic.commands.FloatConstant;
+import ch.turic.commands.FunctionCallOrCurry;
+import ch.turic.commands.If;
+import ch.turic.commands.IntegerConstant;
+import ch.turic.commands.Operation;
+import ch.turic.commands.ReturnCommand;
+import ch.turic.commands.StringConstant;
+import ch.turic.commands.WhileLoop;
+import ch.turic.commands.operators.Cast;
+import ch.turic.commands.operators.NumericOperator;
+import ch.turic.commands.operators.Operator;
+import ch.turic.exceptions.ExecutionException;
+import ch.turic.memory.LeftValue;
+import ch.turic.memory.LocalContext;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The optimization pass running on the analyzed program before it is resolved and executed.
+ * <p>
+ * The optimizer walks the command tree bottom-up, and gives every command to the {@link Pass passes} of the pipeline
+ * in order, after the children of the command were optimized. A pass returns the command itself, or another command
+ * to be used in its place. The default pipeline is
+ *
+ * <ul>
+ *     <li>{@link DeadBranchRemoval}: an {@code if} with a literal condition is replaced by the branch that would be
+ *     executed,</li>
+ *     <li>{@link ConstantFolding}: numeric and boolean operations on literal operands, the concatenation of literal
+ *     strings, and string templates without embedded expressions are calculated,</li>
+ *     <li>{@link LiteralInterning}: the equal number literals of the program share the same value object.</li>
+ * </ul>
+ * <p>
+ * The walk follows the final, non-static fields of the commands, the same way the {@link Resolver} and the
+ * {@link ch.turic.utils.Marshaller} do, but it only reads them. A replaced child is put into the array holding it, or
+ * its parent is created again with the new child (see {@link #rebuild(Object)}). The tree is not shared with any other
+ * thread while the pass runs: it is called by the {@link ProgramAnalyzer} when the program was created, and by the
+ * {@link ch.turic.utils.Unmarshaller} when the program was loaded. Because the analyzer calls it, the
+ * {@code .turc} files contain the optimized program.
+ * <p>
+ * The condition of an {@code if} is optimized before its branches. When it is a literal, the branch that would not be
+ * executed is not walked, so nothing in it is calculated.
+ */
+public final class Optimizer {
+
+    /**
+     * One transformation of the optimization pipeline.
+     */
+    public interface Pass {
+        /**
+         * @param command a command; its children were already optimized
+         * @return the command to use instead of {@code command}, or {@code command} itself
+         */
+        Command optimize(Command command);
+    }
+
+    private static final Map<Class<?>, List<Field>> FIELDS = new HashMap<>();
+
+    private final Pass[] passes;
+    private final Map<Object, Object> optimized = new IdentityHashMap<>();
+
+    /**
+     * Create an optimizer with a custom pipeline.
+     *
+     * @param passes the passes in the order they are applied to each command
+     */
+    public Optimizer(Pass... passes) {
+        this.passes = passes;
+    }
+
+    /**
+     * Optimize the program with the default pipeline.
+     *
+     * @param program the analyzed program
+     * @param <T>     the type of the program command
+     * @return the same program, for chaining
+     */
+    public static <T extends Command> T optimize(final T program) {
+        return new Optimizer(new DeadBranchRemoval(), new ConstantFolding(), new LiteralInterning()).run(program);
+    }
+
+    /**
+     * Optimize the program. The top-level command itself is never replaced, only the commands in it.
+     *
+     * @param program the program
+     * @param <T>     the type of the program command
+     * @return the same program, for chaining
+     */
+    public <T extends Command> T run(final T program) {
+        children(program);
+        return program;
+    }
+
+    private Object visit(final Object node) {
+        if (node == null) {
+            return null;
+        }
+        if (optimized.containsKey(node)) {
+            return optimized.get(node);
+        }
+        // registered before the descent, so a cycle does not loop
+        optimized.put(node, node);
+        Object result = node;
+        switch (node) {
+            case Object[] array -> {
+                final var componentType = array.getClass().getComponentType();
+                for (int i = 0; i < array.length; i++) {
+                    final var element = visit(array[i]);
+                    if (element != array[i] && componentType.isInstance(element)) {
+                        array[i] = element;
+                    }
+                }
+            }
+            case Collection<?> collection -> {
+                for (final var element : collection) {
+                    visit(element);
+                }
+            }
+            default -> {
+                if (isTree(node)) {
+                    if (node instanceof If iff) {
+                        skipDeadBranch(iff);
+                    }
+                    children(node);
+                    result = rebuild(node);
+                    if (result instanceof Command command) {
+                        result = pipeline(command);
+                    }
+                }
+            }
+        }
+        optimized.put(node, result);
+        return result;
+    }
+
+    /**
+     * Optimize the condition of the {@code if} first, and when it is a literal, register the branch that would not be
+     * executed as already optimized, so the walk does not descend into it. {@link DeadBranchRemoval} drops it.
+     */
+    private void skipDeadBranch(final If iff) {
+        final var condition = visit(iff.condition());
+        if (condition instanceof Command c && isLiteral(c)) {
+            final var value = literalCondition(c);
+            if (value != null) {
+                final var dead = value ? iff.otherwise() : iff.then();
+                if (dead != null) {
+                    optimized.putIfAbsent(dead, dead);
+                }
+            }
+        }
+    }
+
+    private Command pipeline(Command command) {
+        for (final var pass : passes) {
+            command = pass.optimize(command);
+        }
+        return command;
+    }
+
+    /**
+     * Only the commands and the objects of the command and analyzer packages that hold commands are walked. The
+     * values in the tree (e.g., a closure created by the preprocessor) are left alone.
+     */
+    private static boolean isTree(final Object node) {
+        if (node instanceof ClosureLike || node.getClass().isEnum()) {
+            return false;
+        }
+        final var packageName = node.getClass().getPackageName();
+        return node instanceof Command || node instanceof LeftValue
+                || packageName.startsWith("ch.turic.commands") || packageName.equals("ch.turic.analyzer");
+    }
+
+    private void children(final Object node) {
+        for (final var field : fields(node.getClass())) {
+            try {
+                visit(field.get(node));
+            } catch (IllegalAccessException e) {
+                // the field cannot be read, the commands in it are not optimized
+            }
+        }
+    }
+
+    /**
+     * Create the node again when any of its command children was replaced. The nodes are rebuilt one by one for the
+     * types that hold a child command in a field directly. Other nodes are kept: the commands in their arrays were
+     * replaced in place, and the commands in their fields were optimized inside, but not replaced.
+     *
+     * @param node the node, its children are already optimized
+     * @return the node itself, or a new node with the optimized children
+     */
+    private Object rebuild(final Object node) {
+        return switch (node) {
+            case Operation op when changed(op.left(), op.right()) ->
+                    positioned(new Operation(op.operator(), replaced(op.left()), replaced(op.right())), op);
+            case If iff when changed(iff.condition(), iff.then(), iff.otherwise()) ->
+                    positioned(new If(replaced(iff.condition()), replaced(iff.then()), replaced(iff.otherwise())), iff);
+            case ReturnCommand ret when changed(ret.expression(), ret.condition()) ->
+                    positioned(new ReturnCommand(replaced(ret.expression()), replaced(ret.condition())), ret);
+            case Assignment a when changed(a.expression()) ->
+                    positioned(new Assignment(a.leftValue(), a.op(), replaced(a.expression())), a);
+            case WhileLoop w when changed(w.initBody, w.startCondition, w.exitCondition, w.body, w.doneBody,
+                    w.otherwiseBody, w.finallyBody) ->
+                    positioned(new WhileLoop(replaced(w.initBody), replaced(w.startCondition),
+                            replaced(w.exitCondition), w.resultIsList, replaced(w.body), replaced(w.doneBody),
+                            replaced(w.otherwiseBody), replaced(w.finallyBody)), w);
+            case AssignmentList.Assignment a when changed(a.expression()) ->
+                    new AssignmentList.Assignment(a.identifier(), a.types(), replaced(a.expression()));
+            case FunctionCallOrCurry.Argument a when changed(a.expression()) ->
+                    new FunctionCallOrCurry.Argument(a.id(), a.optional(), replaced(a.expression()));
+            default -> node;
+        };
+    }
+
+    private boolean changed(final Command... children) {
+        for (final var child : children) {
+            if (replaced(child) != child) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the command replacing the child, or the child itself
+     */
+    private Command replaced(final Command child) {
+        if (child != null && optimized.get(child) instanceof Command replacement) {
+            return replacement;
+        }
+        return child;
+    }
+
+    private static List<Field> fields(final Class<?> klass) {
+        synchronized (FIELDS) {
+            return FIELDS.computeIfAbsent(klass, k -> {
+                final var fields = new ArrayList<Field>();
+                for (var c = k; c != null && c != Object.class; c = c.getSuperclass()) {
+                    for (final var f : c.getDeclaredFields()) {
+                        final int modifiers = f.getModifiers();
+                        if (!f.isSynthetic() && (modifiers & Modifier.FINAL) != 0 && (modifiers & Modifier.STATIC) == 0
+                                && !f.getType().isPrimitive()) {
+                            f.setAccessible(true);
+                            fields.add(f);
+                        }
+                    }
+                }
+                return fields;
+            });
+        }
+    }
+
+    /**
+     * Copy the source position of the original command to the command replacing it, so that the error messages and
+     * the debugger point to the same place.
+     */
+    private static <T extends AbstractCommand> T positioned(final T replacement, final Command original) {
+        if (original instanceof AbstractCommand command) {
+            replacement.setStartPosition(command.startPosition());
+            replacement.setEndPosition(command.endPosition());
+        }
+        return replacement;
+    }
+
+    /**
+     * @return {@code true} if the command is a literal: a number, a string without embedded expressions, or a
+     * constant created by the analyzer or by folding
+     */
+    private static boolean isLiteral(final Command command) {
+        return command instanceof IntegerConstant || command instanceof FloatConstant
+                || command instanceof ConstantExpression
+                || command instanceof StringConstant s && s.value() != null;
+    }
+
+    private static Object literalValue(final Command command) {
+        return switch (command) {
+            case IntegerConstant c -> c._execute(null);
+            case FloatConstant c -> c._execute(null);
+            case ConstantExpression c -> c.value();
+            case StringConstant c -> c.value();
+            default -> throw new IllegalArgumentException("not a literal " + command);
+        };
+    }
+
+    /**
+     * @return the truth value of a literal condition, or {@code null} if the literal cannot be used as a condition
+     */
+    private static Boolean literalCondition(final Command condition) {
+        try {
+            return Cast.toBoolean(literalValue(condition));
+        } catch (ExecutionException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Calculate the numeric and boolean operations that have only literal operands, concatenate literal strings, and
+     * join the parts of a string template that has no embedded expressions.
+     * <p>
+     * The operation is executed at this point the same way it would be executed at run time. When it fails (e.g., a
+     * division by zero) the operation is kept, and the error is reported when the program runs.
+     * <p>
+     * Only operations whose result is not larger than their operands together are folded. The folding runs when the program is
+     * compiled, outside the step and memory limits of the run, and also for code that is never executed. An operation
+     * like {@code "x" * 1_000_000_000} is left to run time, where the limits apply.
+     */
+    public static final class ConstantFolding implements Pass {
+        private LocalContext context;
+
+        /**
+         * Create the pass. The context the operations are executed in is created when the first one is folded.
+         */
+        public ConstantFolding() {
+        }
+
+        @Override
+        public Command optimize(final Command command) {
+            return switch (command) {
+                case Operation op when (op.left() == null || isLiteral(op.left())) && isLiteral(op.right())
+                        && Operator.OPERATORS.get(op.operator()) instanceof NumericOperator -> fold(op);
+                case StringConstant s when s.value() == null && allLiteralStrings(s.commands()) -> {
+                    final var sb = new StringBuilder();
+                    for (final var part : s.commands()) {
+                        sb.append(((StringConstant) part).value());
+                    }
+                    yield positioned(new StringConstant(sb.toString(), false), s);
+                }
+                default -> command;
+            };
+        }
+
+        /**
+         * @param value         the value of a literal operand
+         * @param concatenation {@code true} if the operator is {@code +}, which also joins strings
+         * @return {@code true} if the operation can be calculated without the result growing beyond the operands
+         */
+        private static boolean isFoldable(final Object value, final boolean concatenation) {
+            return value instanceof Long || value instanceof Double || value instanceof Boolean
+                    || concatenation && value instanceof String;
+        }
+
+        private static boolean allLiteralStrings(final Command[] commands) {
+            if (commands == null) {
+                return false;
+            }
+            for (final var part : commands) {
+                if (!(part instanceof StringConstant s) || s.value() == null) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private Command fold(final Operation op) {
+            final boolean concatenation = op.operator().equals("+");
+            if (op.left() != null && !isFoldable(literalValue(op.left()), concatenation)
+                    || !isFoldable(literalValue(op.right()), concatenation)) {
+                return op;
+            }
+            if (context == null) {
+                context = new LocalContext();
+            }
+            final Object value;
+            try {
+                value = op.execute(context);
+            } catch (ExecutionException | ArithmeticException | ClassCastException e) {
+                return op;
+            }
+            return switch (value) {
+                case Long l -> positioned(new IntegerConstant(l), op);
+                case Double d -> positioned(new FloatConstant(d), op);
+                case String s when concatenation -> positioned(new StringConstant(s, false), op);
+                case Boolean b -> positioned(new ConstantExpression(b), op);
+                case null, default -> op;
+            };
+        }
+    }
+
+    /**
+     * Replace an {@code if} command having a literal condition with the branch that would be executed.
+     */
+    public static final class DeadBranchRemoval implements Pass {
+        /**
+         * Create the pass. It has no state, an instance can optimize any number of programs.
+         */
+        public DeadBranchRemoval() {
+        }
+
+        @Override
+        public Command optimize(final Command command) {
+            if (!(command instanceof If iff) || !isLiteral(iff.condition())) {
+                return command;
+            }
+            final var condition = literalCondition(iff.condition());
+            if (condition == null) {
+                return command;
+            }
+            if (condition) {
+                return iff.then();
+            }
+            if (iff.otherwise() != null) {
+                return iff.otherwise();
+            }
+            return positioned(new ConstantExpression(null), iff);
+        }
+    }
+
+    /**
+     * Share the value objects among the equal number literals of the program. The literals keep their value boxed, so
+     * they do not allocate when executed, and the equal literals use the same object.
+     * <p>
+     * String literals are not shared: {@code ===} compares strings by identity, and two string literals are never the
+     * same object.
+     */
+    public static final class LiteralInterning implements Pass {
+        private final Map<Object, Object> pool = new HashMap<>();
+
+        /**
+         * Create the pass. The literals are shared among the programs optimized by the same instance.
+         */
+        public LiteralInterning() {
+        }
+
+        @Override
+        public Command optimize(final Command command) {
+            return switch (command) {
+                case IntegerConstant c -> {
+                    final var value = c._execute(null);
+                    final var shared = (Long) pool.computeIfAbsent(value, v -> v);
+                    yield shared == value ? c : positioned(new IntegerConstant(shared), c);
+                }
+                case FloatConstant c -> {
+                    final var value = c._execute(null);
+                    final var shared = (Double) pool.computeIfAbsent(value, v -> v);
+                    yield shared == value ? c : positioned(new FloatConstant(shared), c);
+                }
+                default -> command;
+            };
+        }
+    }
+}
@@ -2,6 +2,7 @@ package ch.turic.analyzer;
 
 import ch.turic.exceptions.BadSyntax;
 import ch.turic.Command;
+import ch.turic.commands.ConstantExpression;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -21,6 +22,20 @@ import java.util.Set;
  */
 public class OptionListAnalyzer {
     public static Map<String, Command> analyze(LexList lexes, Set<String> acceptedParameters) throws BadSyntax {
+        return analyze(lexes, acceptedParameters, Set.of());
+    }
+
+    /**
+     * Analyze the options, where some of the options are flags. A flag stands alone without a value, as {@code all}
+     * in {@code await[all time=1] tasks}. The value of a flag in the returned map is the constant {@code true}.
+     *
+     * @param lexes              the lexical elements following the opening {@code [}
+     * @param acceptedParameters the options that need a value
+     * @param flags              the options that have no value
+     * @return the map of the options
+     * @throws BadSyntax if an option is not accepted, or it is defined more than once
+     */
+    public static Map<String, Command> analyze(LexList lexes, Set<String> acceptedParameters, Set<String> flags) throws BadSyntax {
         final var map = new HashMap<String, Command>();
         if( lexes.is("]")){
             return Map.of();
@@ -35,7 +50,10 @@ public class OptionListAnalyzer {
 
         while (lexes.isIdentifier() || lexes.isKeyword()) {// we allow words like 'in' without ` quoted to be used as options
             final var id = lexes.next().text();
-            if (acceptedParameters.contains(id)) {
+            if (flags.contains(id)) {
+                BadSyntax.when(lexes, map.containsKey(id), "The key '%s' is double defined", id);
+                map.put(id, new ConstantExpression(true));
+            } else if (acceptedParameters.contains(id)) {
                 BadSyntax.when(lexes, map.containsKey(id), "The key '%s' is double defined", id);
                 BadSyntax.when(lexes, lexes.isNot("="), "The '=' is missing after an async option");
                 lexes.next();
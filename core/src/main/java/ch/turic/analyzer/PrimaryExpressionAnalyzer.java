@@ -29,6 +29,7 @@ import java.util.ArrayList;
 public class PrimaryExpressionAnalyzer extends AbstractAnalyzer {
     public static final PrimaryExpressionAnalyzer INSTANCE = new PrimaryExpressionAnalyzer();
     public static final Command[] EMPTY_COMMAND_ARRAY = new Command[0];
+    private static final String PARALLEL = "parallel";
 
     /**
      * Analyzes a sequence of lexical tokens to parse and construct a primary expression.
@@ -117,7 +118,8 @@ public class PrimaryExpressionAnalyzer extends AbstractAnalyzer {
                 }
             }
             final var modifiers = getModifierChain(lexes);
-            final var left = new ListComposition(expressionList.toArray(Command[]::new), modifiers);
+            final var parallel = getParallel(lexes, modifiers);
+            final var left = new ListComposition(expressionList.toArray(Command[]::new), modifiers, parallel);
             BadSyntax.when(lexes, lexes.isNot("]"), "list literal has to be closed using ']'");
             lexes.next();
             return getAccessOrCall(lexes, left, false);
@@ -177,6 +179,33 @@ public class PrimaryExpressionAnalyzer extends AbstractAnalyzer {
         return modifiers.toArray(CompositionModifier[]::new);
     }
 
+    /**
+     * Get the optional {@code parallel} at the end of the modifier chain. It can be followed by an expression, the
+     * maximum number of threads to use:
+     * <pre>{@code
+     * let squares = [..rng(0, 1000, 1) -> it * it parallel 4]
+     * }</pre>
+     * <p>
+     * The word {@code parallel} is not a keyword. It can still be the name of a variable, and it is special only
+     * after a modifier.
+     *
+     * @param lexes     the lexical elements
+     * @param modifiers the modifiers already analyzed
+     * @return the parallel modifier, or {@code null} if the modifiers are applied on the current thread
+     * @throws BadSyntax if there are no filters or mappers before the {@code parallel}
+     */
+    private static CompositionModifier.Parallel getParallel(LexList lexes, CompositionModifier[] modifiers) throws BadSyntax {
+        if (!lexes.isIdentifier(PARALLEL)) {
+            return null;
+        }
+        BadSyntax.when(lexes, modifiers.length == 0, "'parallel' needs filters or mappers in the list literal");
+        lexes.next();
+        if (lexes.is("]")) {
+            return new CompositionModifier.Parallel(null);
+        }
+        return new CompositionModifier.Parallel(ExpressionAnalyzer.INSTANCE.analyze(lexes));
+    }
+
     /**
      * Handles access or function calls on a base expression, iterating over tokens like
      * parentheses, dots, optional chaining, or array indexing to chain accesses or calls
@@ -47,7 +47,7 @@ public class ProgramAnalyzer extends AbstractAnalyzer {
                 commands.add(cmd);
             }
         }
-        return new Program(commands.toArray(Command[]::new));
+        return Resolver.resolve(Optimizer.optimize(new Program(commands.toArray(Command[]::new))));
     }
 
     public LocalContext context() {
@@ -0,0 +1,172 @@
+package ch.turic.analyzer;
+
+import ch.turic.Command;
+import ch.turic.commands.Assignment;
+import ch.turic.commands.ClassDefinition;
+import ch.turic.commands.ForEachLoop;
+import ch.turic.commands.FunctionCallOrCurry;
+import ch.turic.commands.Identifier;
+import ch.turic.commands.IncrementDecrement;
+import ch.turic.commands.WithCommand;
+import ch.turic.memory.VariableSlot;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * The analysis pass resolving the identifiers of an analyzed program.
+ * <p>
+ * The pass runs after the {@link ProgramAnalyzer} created the program and sets the {@link VariableSlot.Kind kind} of
+ * the resolution cache of every {@link Identifier}, {@link Assignment} and {@link IncrementDecrement} in the tree:
+ *
+ * <ul>
+ *     <li>Identifiers inside the body of a {@code with} command or a class body are {@link VariableSlot.Kind#DYNAMIC
+ *     dynamic}. These code segments run in frames borrowed from objects and classes, which can get new fields any
+ *     time, so the names are resolved by the name every time.</li>
+ *     <li>Identifiers whose name is not bound anywhere in the program (no {@code let}, parameter, loop variable,
+ *     function, class, field, or implicit name like {@code this}) are {@link VariableSlot.Kind#GLOBAL global}.</li>
+ *     <li>Everything else is {@link VariableSlot.Kind#LOCAL local}; the frame depth and slot index are resolved on
+ *     the first execution and cached.</li>
+ * </ul>
+ * <p>
+ * The frame structure depends on the runtime call structure (closures wrap the context they were created in,
+ * methods wrap the object context), so the coordinates are not computed here. They are validated on every use; see
+ * {@link VariableSlot}.
+ * <p>
+ * The pass walks the command tree the same way the {@link ch.turic.utils.Marshaller} does: it follows the final,
+ * non-static fields of the objects. Skipping the pass is safe: an identifier not processed is local, which is always
+ * correct.
+ */
+public final class Resolver {
+    // names defined by the interpreter itself in the frames, which do not appear in the program as bindings
+    private static final Set<String> IMPLICIT_NAMES = Set.of("this", "cls", "it", "me", "that",
+            FunctionCallOrCurry.JOKER_METHOD_NAME);
+    private static final Map<Class<?>, List<Field>> FIELDS = new HashMap<>();
+
+    private final Set<String> bound = new HashSet<>(IMPLICIT_NAMES);
+
+    private Resolver() {
+    }
+
+    /**
+     * Resolve the identifiers of the program.
+     *
+     * @param program the analyzed program
+     * @param <T>     the type of the program command
+     * @return the same program, for chaining
+     */
+    public static <T extends Command> T resolve(final T program) {
+        final var resolver = new Resolver();
+        resolver.walk(program, false, resolver::collect);
+        resolver.walk(program, false, resolver::classify);
+        return program;
+    }
+
+    /**
+     * Collect the names bound in the program. It is a superset: every string held by the commands is taken, except
+     * the names of the identifiers, which are the uses of the names. The identifiers naming the loop variables of
+     * the {@code for each} loops are bindings.
+     */
+    private void collect(final Object node, final boolean dynamic) {
+        switch (node) {
+            case String s -> bound.add(s);
+            case ForEachLoop loop -> {
+                for (final var identifier : loop.identifiers()) {
+                    bound.add(identifier.name());
+                }
+                if (loop.with != null) {
+                    bound.add(loop.with.name());
+                }
+            }
+            default -> {
+            }
+        }
+    }
+
+    private void classify(final Object node, final boolean dynamic) {
+        switch (node) {
+            case Identifier identifier -> identifier.slot().kind(dynamic ? VariableSlot.Kind.DYNAMIC :
+                    bound.contains(identifier.name()) ? VariableSlot.Kind.LOCAL : VariableSlot.Kind.GLOBAL);
+            case Assignment assignment when dynamic && assignment.slot() != null ->
+                    assignment.slot().kind(VariableSlot.Kind.DYNAMIC);
+            case IncrementDecrement incDec when dynamic && incDec.slot() != null ->
+                    incDec.slot().kind(VariableSlot.Kind.DYNAMIC);
+            default -> {
+            }
+        }
+    }
+
+    private void walk(final Object root, final boolean dynamic, final BiConsumer<Object, Boolean> visitor) {
+        walk(root, dynamic, visitor, new IdentityHashMap<>());
+    }
+
+    private void walk(final Object node, final boolean dynamic, final BiConsumer<Object, Boolean> visitor, final Map<Object, Object> visited) {
+        if (node == null || visited.put(node, node) != null) {
+            return;
+        }
+        visitor.accept(node, dynamic);
+        switch (node) {
+            case Object[] array -> {
+                for (final var element : array) {
+                    walk(element, dynamic, visitor, visited);
+                }
+            }
+            case Collection<?> collection -> {
+                for (final var element : collection) {
+                    walk(element, dynamic, visitor, visited);
+                }
+            }
+            case Map<?, ?> map -> {
+                for (final var entry : map.entrySet()) {
+                    walk(entry.getKey(), dynamic, visitor, visited);
+                    walk(entry.getValue(), dynamic, visitor, visited);
+                }
+            }
+            default -> {
+                // the name of an identifier is a use of the name, not a binding
+                if (node instanceof Identifier || !node.getClass().getName().startsWith("ch.turic.") || node.getClass().isEnum()) {
+                    return;
+                }
+                for (final var field : fields(node.getClass())) {
+                    final Object value;
+                    try {
+                        value = field.get(node);
+                    } catch (IllegalAccessException e) {
+                        continue;
+                    }
+                    final var dynamicBody = (node instanceof WithCommand || node instanceof ClassDefinition)
+                            && field.getName().equals("body");
+                    walk(value, dynamic || dynamicBody, visitor, visited);
+                }
+            }
+        }
+    }
+
+    private static List<Field> fields(final Class<?> klass) {
+        synchronized (FIELDS) {
+            return FIELDS.computeIfAbsent(klass, k -> {
+                final var fields = new ArrayList<Field>();
+                for (var c = k; c != null && c != Object.class; c = c.getSuperclass()) {
+                    for (final var f : c.getDeclaredFields()) {
+                        final int modifiers = f.getModifiers();
+                        if (!f.isSynthetic() && (modifiers & Modifier.FINAL) != 0 && (modifiers & Modifier.STATIC) == 0
+                                && !f.getType().isPrimitive()) {
+                            f.setAccessible(true);
+                            fields.add(f);
+                        }
+                    }
+                }
+                return fields;
+            });
+        }
+    }
+}
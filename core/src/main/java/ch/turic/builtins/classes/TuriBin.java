@@ -5,6 +5,7 @@ import ch.turic.TuriClass;
 import ch.turic.commands.operators.Cast;
 import ch.turic.exceptions.ExecutionException;
 import ch.turic.memory.LngList;
+import ch.turic.memory.NumericList;
 import ch.turic.utils.BinUtils;
 
 import java.nio.charset.Charset;
@@ -57,11 +58,11 @@ public class TuriBin implements TuriClass {
             case "to_list" ->
                 // return a list that contains the byte values as integers in the range 0..255.
                     new TuriMethod<>((args) -> {
-                        final var list = new LngList();
-                        for (final byte b : bytes) {
-                            list.array.add(BinUtils.unsigned(b));
+                        final var values = new long[bytes.length];
+                        for (int i = 0; i < bytes.length; i++) {
+                            values[i] = bytes[i] & 0xFF;
                         }
-                        return list;
+                        return new LngList(null, NumericList.ofLongs(values));
                     });
             case "base64" ->
                 // encode the bytes with Base64 and return the string.
@@ -4,8 +4,11 @@ import ch.turic.exceptions.ExecutionException;
 import ch.turic.LngCallable;
 import ch.turic.TuriClass;
 import ch.turic.memory.Channel;
+import ch.turic.commands.operators.Cast;
 import ch.turic.memory.ChannelIterator;
+import ch.turic.memory.LngList;
 
+import java.util.ArrayList;
 import java.util.NoSuchElementException;
 
 public class TuriChannel implements TuriClass {
@@ -67,6 +70,30 @@ public class TuriChannel implements TuriClass {
                     throw new ExecutionException("Execution exception while sending message to queue %s", e.getMessage());
                 }
             });
+            case "send_all" -> new TuriMethod<>((sendArgs) -> {
+                ExecutionException.when(sendArgs.length != 1 || !(sendArgs[0] instanceof Iterable<?>),
+                        "send_all() needs one list argument");
+                final var values = new ArrayList<>();
+                for (final var value : (Iterable<?>) sendArgs[0]) {
+                    values.add(value);
+                }
+                try {
+                    channelIterator.sendAll(values);
+                    return true;
+                } catch (Exception e) {
+                    throw new ExecutionException("Execution exception while sending messages to queue %s", e.getMessage());
+                }
+            });
+            case "receive_batch" -> new TuriMethod<>((receiveArgs) -> {
+                ExecutionException.when(receiveArgs.length != 1, "receive_batch() needs the maximum number of messages");
+                final int max = Cast.toInteger(receiveArgs[0]);
+                ExecutionException.when(max < 1, "receive_batch() needs a positive number, got %d", max);
+                try {
+                    return LngList.of(channelIterator.receiveBatch(max));
+                } catch (Exception e) {
+                    throw new ExecutionException("Execution exception while reading from queue.", e);
+                }
+            });
             default -> throw new ExecutionException("Unknown method %s", identifier);
         };
     }
@@ -6,9 +6,8 @@ import ch.turic.RequiresCapability;
 import ch.turic.Context;
 import ch.turic.exceptions.ExecutionException;
 import ch.turic.TuriFunction;
-import ch.turic.utils.Reflection;
+import ch.turic.utils.JavaMethod;
 
-import java.lang.reflect.Method;
 import java.util.Arrays;
 import java.util.stream.Collectors;
 
@@ -111,7 +110,7 @@ public class JavaCall implements TuriFunction {
         final var methodName = args.at(1).as(String.class);
         final var ctx = FunUtils.ctx(context);
         final var params = args.tail(2);
-        final Method method;
+        final JavaMethod method;
         final Object object;
         final Class<?> klass;
         if (args.at(0).is_a(String.class)) { // static call
@@ -120,11 +119,11 @@ public class JavaCall implements TuriFunction {
             } catch (ClassNotFoundException e) {
                 throw new ExecutionException("Cannot find class '" + args.at(0).as(String.class) + "'.", e);
             }
-            method = Reflection.getStaticMethodForArgs(klass, methodName, params);
+            method = ctx.globalContext.classLoader.staticJavaMethod(klass, methodName, params);
             object = null;
         } else { // non-static call
             object = args.at(0).get();
-            method = Reflection.getMethodForArgs(object, methodName, params);
+            method = ctx.globalContext.classLoader.javaMethod(object, methodName, params);
             klass = object.getClass();
         }
         if (method == null) {
@@ -132,7 +131,7 @@ public class JavaCall implements TuriFunction {
                     Arrays.stream(params).map(obj -> obj.getClass().getName() + ":" + obj).collect(Collectors.joining(",")) + ")");
         }
         try {
-            return Reflection.invoke(method, object, params);
+            return method.invoke(object, params);
         } catch (Exception e) {
             throw new ExecutionException(e);
         }
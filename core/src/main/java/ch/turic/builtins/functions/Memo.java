@@ -0,0 +1,92 @@
+package ch.turic.builtins.functions;
+
+import ch.turic.Context;
+import ch.turic.LngCallable;
+import ch.turic.TuriFunction;
+import ch.turic.commands.ParameterList;
+import ch.turic.commands.operators.Cast;
+import ch.turic.exceptions.ExecutionException;
+import ch.turic.memory.LngMemo;
+import ch.turic.utils.parameter.Declare;
+
+import static ch.turic.utils.parameter.Declare.Parameter.param;
+/*snippet builtin0265
+
+=== `memo`
+
+Creates a memoized version of a function.
+
+   fn memo(fn, @max: int = 1024, @ttl: num|none = none) -> memo
+
+The returned value can be called the same way as the function.
+It calls the function only when the result for the same arguments is not cached yet.
+The arguments are compared by their values.
+Numbers of different types are different arguments: `f(1)` and `f(1.0)` are cached separately, because the function may return different values for them.
+
+[source]
+----
+fn slow_fib(n) { if n < 2 { n } else { fib(n - 1) + fib(n - 2) } }
+let fib = memo(slow_fib)
+die "" when fib(80) != 23416728348467685
+die "" when fib.misses() != 81
+----
+
+The recursive calls in the example go through the memoized `fib`, therefore each value is calculated only once.
+
+* `max` is the maximum number of cached results.
+When a new result does not fit, the least recently used one is removed.
+* `ttl` is the time in seconds a cached result can be used.
+After that, the function is called again.
+
+The memoized function has the methods `hits()`, `misses()`, `evictions()`, `size()` and `clear()`.
+
+Only the calls with values that cannot change are cached.
+Lists that are not pinned are copied into the cache.
+A list that is not pinned and contains itself is not cached.
+A call that has an object, which is not pinned, among its arguments always calls the function.
+A memoized function can be shared between threads.
+The function should not have side effects: two threads calling it with the same new arguments may both call the function.
+
+end snippet */
+
+/**
+ * Creates a {@link LngMemo}, a function caching the results of the function argument.
+ */
+public class Memo implements TuriFunction {
+
+    @Override
+    public Object call(Context context, Object[] arguments) throws ExecutionException {
+        final var args = new FunUtils.ArgumentsHolder(arguments, name());
+        final var function = args.at(0).get();
+        if (!(function instanceof LngCallable callable) || function instanceof LngCallable.LngCallableMacro) {
+            throw new ExecutionException("%s() needs a function or closure, got '%s'", name(), function);
+        }
+        final long max = Cast.toLong(args.at(1).get());
+        ExecutionException.when(max < 1 || max > Integer.MAX_VALUE, "%s() needs a positive 'max', got %d", name(), max);
+        final var ttl = args.at(2).get();
+        final long ttlNanos;
+        if (ttl == null) {
+            ttlNanos = 0;
+        } else {
+            final var seconds = Cast.toDouble(ttl);
+            ExecutionException.when(seconds <= 0, "%s() needs a positive 'ttl', got %s", name(), ttl);
+            ttlNanos = Math.max(1, (long) (seconds * 1_000_000_000L));
+        }
+        return new LngMemo(callable, (int) max, ttlNanos);
+    }
+
+    @Override
+    public ParameterList parameters() {
+        return params;
+    }
+
+    final ParameterList params;
+
+    public Memo() {
+        this.params = Declare.params(
+                param("fn").any().positional().mandatory(),
+                param("max").integer().named().defaultValue(1024),
+                param("ttl").num().or().none().named().defaultNone()
+        ).done();
+    }
+}
@@ -39,6 +39,8 @@ public class Pack implements TuriFunction {
     public Object call(Context context, Object[] arguments) throws ExecutionException {
         final var ctx = FunUtils.ctx(context);
         FunUtils.noArg(name(), arguments);
+        // the object is the context of the call, a loop must not reuse it
+        ctx.capture();
         return new LngObject(null, ctx);
     }
 }
@@ -3,7 +3,7 @@ package ch.turic.builtins.functions;
 import ch.turic.Context;
 import ch.turic.exceptions.ExecutionException;
 import ch.turic.TuriFunction;
-import ch.turic.memory.BlockingQueueChannel;
+import ch.turic.memory.LockFreeChannel;
 import ch.turic.memory.ChannelIterator;
 /*snippet builtin0310
 
@@ -19,6 +19,12 @@ These fragments will probably run in different threads.
 Here is a complex example using this function:
 
 {%S que%}
+
+The methods `send_all(list)` and `receive_batch(n)` send and receive many messages at once.
+`receive_batch(n)` waits for at least one message, and returns at most `n` messages that are already in the queue.
+It returns an empty list when the queue is closed and there are no more messages.
+
+{%S que_batch%}
 end snippet */
 
 /**
@@ -58,7 +64,7 @@ public class Que implements TuriFunction {
         } else {
             size = Integer.MAX_VALUE;
         }
-        return new ChannelIterator<>(new BlockingQueueChannel<>(size));
+        return new ChannelIterator<>(LockFreeChannel.<Object>of(size));
     }
 
 }
@@ -75,6 +75,10 @@ public class Reclose implements TuriFunction {
     public Object call(Context context, Object[] arguments) throws ExecutionException {
         ExecutionException.when(arguments.length != 1, "Built-in function reclose needs exactly one argument");
         final var arg = arguments[0];
+        if (arg instanceof Closure || arg instanceof Macro) {
+            // the new closure wraps the context of the call, a loop must not reuse it
+            ((LocalContext) context).capture();
+        }
         if (arg instanceof Closure closure) {
             return new Closure(closure.name(), closure.parameters(), (LocalContext) context, closure.returnType(), closure.command());
         }
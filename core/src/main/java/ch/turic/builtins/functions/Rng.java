@@ -5,6 +5,7 @@ import ch.turic.exceptions.ExecutionException;
 import ch.turic.TuriFunction;
 import ch.turic.commands.operators.Cast;
 import ch.turic.memory.LngList;
+import ch.turic.memory.LongSequence;
 import ch.turic.memory.Range;
 
 import java.util.Iterator;
@@ -98,7 +99,7 @@ end snippet */
  */
 public class Rng implements TuriFunction {
 
-    public static final class LongRange extends LngList {
+    public static final class LongRange extends LngList implements LongSequence {
         private final long start, end, step;
         private final long length;
 
@@ -117,6 +118,21 @@ public class Rng implements TuriFunction {
             return length;
         }
 
+        @Override
+        public long start() {
+            return start;
+        }
+
+        @Override
+        public long end() {
+            return end;
+        }
+
+        @Override
+        public long step() {
+            return step;
+        }
+
         @Override
         public Object getField(String name) throws ExecutionException {
             return switch (name) {
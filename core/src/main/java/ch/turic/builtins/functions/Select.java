@@ -0,0 +1,102 @@
+package ch.turic.builtins.functions;
+
+import ch.turic.Context;
+import ch.turic.TuriFunction;
+import ch.turic.commands.ParameterList;
+import ch.turic.commands.operators.Cast;
+import ch.turic.exceptions.ExecutionException;
+import ch.turic.memory.AsyncStreamHandler;
+import ch.turic.memory.Channel;
+import ch.turic.memory.ChannelSelect;
+import ch.turic.memory.LngList;
+import ch.turic.utils.parameter.Declare;
+
+import java.util.ArrayList;
+
+import static ch.turic.utils.parameter.Declare.Parameter.param;
+/*snippet builtin0350
+
+=== `select`
+
+Wait for the first of several queues to receive a message from, or to send a message to.
+
+   fn select(cases: lst, @timeout: num|none = none) -> lst|none
+
+Each element of the `cases` list is
+
+* a queue created with `que()`, to receive a message from it,
+* a task started with `async` as a stream, to receive a value the task yields, or
+* a two-element list `[queue, value]`, to send the `value` to the queue.
+
+The function waits until one of the cases can proceed, performs that one, and returns a two-element list.
+The first element is the index of the case in the list, the second is the message received or sent.
+The other cases are not performed.
+
+The function returns `none` when the `timeout` in seconds is over, or when all the cases receive from closed queues,
+which have no more messages.
+A closed queue is never selected for receiving, and sending to a closed queue is an error.
+
+{%S select%}
+
+The waiting thread does not poll the queues.
+It sleeps until one of the queues gets a message or free space.
+The cases are tried starting at a random position every time, so a queue that always has messages does not starve the
+others.
+
+end snippet */
+
+/**
+ * Wait for the first of several channels that a value can be received from or sent to, see {@link ChannelSelect}.
+ */
+public class Select implements TuriFunction {
+
+    @Override
+    public Object call(Context context, Object[] arguments) throws ExecutionException {
+        final var args = new FunUtils.ArgumentsHolder(arguments, name());
+        final var list = (LngList) args.at(0).get();
+        final var cases = new ArrayList<ChannelSelect.Case>();
+        for (final var item : list) {
+            cases.add(toCase(item));
+        }
+        final var timeout = args.at(1).get();
+        final long nanos;
+        if (timeout == null) {
+            nanos = -1;
+        } else {
+            nanos = Math.max(0, (long) (Cast.toDouble(timeout) * 1_000_000_000L));
+        }
+        final var selected = ChannelSelect.select(cases, nanos);
+        if (selected == null) {
+            return null;
+        }
+        return LngList.of((long) selected.index(), selected.value());
+    }
+
+    @SuppressWarnings("unchecked")
+    private ChannelSelect.Case toCase(final Object item) {
+        if (item instanceof AsyncStreamHandler handler) {
+            return new ChannelSelect.Case(handler.parentIterator(), false, null);
+        }
+        if (item instanceof Channel<?> channel) {
+            return new ChannelSelect.Case((Channel<Object>) channel, false, null);
+        }
+        if (item instanceof LngList send && send.size() == 2 && send.getIndex(0L) instanceof Channel<?> channel) {
+            return new ChannelSelect.Case((Channel<Object>) channel, true, send.getIndex(1L));
+        }
+        throw new ExecutionException("%s() needs queues, tasks or [queue, value] pairs, got '%s'", name(), item);
+    }
+
+    @Override
+    public ParameterList parameters() {
+        return params;
+    }
+
+    final ParameterList params;
+
+    public Select() {
+        this.params = Declare.params(
+                param("cases").lst().positional().mandatory(),
+                param("timeout").num().or().none().named().defaultNone()
+        ).done();
+    }
+}
@@ -81,7 +81,7 @@ public class TuriHttpServer implements TuriFunction {
         final var concurrency = Cast.toInteger(Objects.requireNonNullElse(conf.getField("concurrency"), 10));
         final var executor = new LimitedVirtualThreadExecutor(concurrency);
 
-        final ChannelIterator<?> channel = (ChannelIterator<?>) new BlockingQueueChannel<>(concurrency).iterator();
+        final ChannelIterator<?> channel = (ChannelIterator<?>) LockFreeChannel.of(concurrency).iterator();
 
         final var routes = conf.getField("routes");
         if (!(routes instanceof Iterable<?> r)) {
@@ -156,6 +156,41 @@ public abstract class AbstractCommand implements Command, HasFields {
 
     public Object execute(final LocalContext ctx) throws ExecutionException {
         final var tc = ctx.threadContext;
+        // fast path: nothing to check when the thread is not halting and there is no debugger
+        if (tc.isAborted() || tc.grace().isTriggered() || ctx.globalContext.debugMode()) {
+            return executeChecked(ctx);
+        }
+        tc.push(this);
+        final var result = _execute(ctx);
+        // is not popped in case of exception, stack will be used where the exception is caught
+        tc.pop();
+        return result;
+    }
+
+    private Object executeChecked(final LocalContext ctx) throws ExecutionException {
+        final var tc = ctx.threadContext;
+        checkHalt(tc);
+        final var dc = tc.getDebuggerContext();
+        boolean step = handleDebugActions(ctx, dc);
+
+        tc.push(this);
+        final var result = _execute(ctx);
+        // is not popped in case of exception, stack will be used where the exception is caught
+        tc.pop();
+        if (dc != null && step) {
+            dc.setState(DebuggerContext.State.STEPPING);
+        }
+        return result;
+    }
+
+    /**
+     * Throw the exception that stops the thread if it was aborted, or let it go on if it is still within the cleanup
+     * grace budget. The code generated by the {@link BytecodeTier} calls it at the loop back-edges, where the
+     * interpreter would execute the next command.
+     *
+     * @param tc the thread context of the executing thread
+     */
+    static void checkHalt(final ThreadContext tc) {
         final var grace = tc.grace();
         if (grace.isFinal()) {
             throw grace.finalCause();
@@ -174,18 +209,6 @@ public abstract class AbstractCommand implements Command, HasFields {
                 throw abortCause;
             }
         }
-        final var sf = new LngStackFrame(this);
-        final var dc = ctx.threadContext.getDebuggerContext();
-        boolean step = handleDebugActions(ctx, dc);
-
-        ctx.threadContext.push(sf);
-        final var result = _execute(ctx);
-        // is not popped in case of exception, stack will be used where the exception is caught
-        ctx.threadContext.pop();
-        if (dc != null && step) {
-            dc.setState(DebuggerContext.State.STEPPING);
-        }
-        return result;
     }
 
     /**
@@ -6,6 +6,8 @@ import ch.turic.exceptions.ExecutionException;
 import ch.turic.commands.operators.Operator;
 import ch.turic.memory.LocalContext;
 import ch.turic.memory.LeftValue;
+import ch.turic.memory.VariableLeftValue;
+import ch.turic.memory.VariableSlot;
 import ch.turic.utils.Unmarshaller;
 
 import java.util.Objects;
@@ -15,6 +17,9 @@ public class Assignment extends AbstractCommand {
     final LeftValue leftValue;
     final Command expression;
     final String op;
+    // the resolution cache when the left value is a simple variable, null otherwise; not final, it is not part of
+    // the command
+    private VariableSlot slot;
 
     /**
      * Returns the expression to be assigned in this assignment operation.
@@ -34,6 +39,15 @@ public class Assignment extends AbstractCommand {
         return leftValue;
     }
 
+    /**
+     * Returns the operator of the assignment.
+     *
+     * @return the assignment operator (e.g., "=", "+=", etc.)
+     */
+    public String op() {
+        return op;
+    }
+
     /****
      * Creates an `Assignment` instance from the provided unmarshaller arguments.
      * <p>
@@ -59,6 +73,15 @@ public class Assignment extends AbstractCommand {
         this.expression = expression;
         this.op = Objects.requireNonNull(op);
         this.leftValue = leftValue;
+        this.slot = leftValue instanceof VariableLeftValue v ? new VariableSlot(v.variable()) : null;
+    }
+
+    /**
+     * @return the resolution cache of the assigned variable, or {@code null} if the left value is not a simple
+     * variable
+     */
+    public VariableSlot slot() {
+        return slot;
     }
 
     /****
@@ -74,6 +97,9 @@ public class Assignment extends AbstractCommand {
     @Override
     public Object _execute(final LocalContext ctx) throws ExecutionException {
         ctx.step();
+        if (slot != null) {
+            return ((VariableLeftValue) leftValue).reassign(ctx, slot, getOperation(op, ctx));
+        }
         return leftValue.reassign(ctx, getOperation(op, ctx));
     }
 
@@ -6,9 +6,11 @@ import ch.turic.commands.operators.Cast;
 import ch.turic.memory.AsyncStreamHandler;
 import ch.turic.memory.LocalContext;
 import ch.turic.memory.LngList;
+import ch.turic.memory.TaskGroup;
 import ch.turic.utils.Unmarshaller;
 
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
@@ -34,13 +36,28 @@ public class AwaitEvaluation extends AbstractCommand {
     public Object _execute(LocalContext context) throws ExecutionException {
         context.step();
         long timeLimit = -1;
+        String group = null;
         for (final var key : options.keySet()) {
-            timeLimit = switch (key) {
-                case "time" -> parameter(key, context, options.get(key), 1000);
+            switch (key) {
+                case "time" -> timeLimit = parameter(key, context, options.get(key), 1000);
+                case "all", "any" -> {
+                    if (group != null) {
+                        throw new ExecutionException("await cannot have both 'all' and 'any'");
+                    }
+                    group = key;
+                }
                 default -> throw new ExecutionException("Unknown option: " + key);
-            };
+            }
         }
         final Object result = command.execute(context);
+        if (group != null) {
+            final var tasks = tasks(result);
+            final long nanos = timeLimit == -1 ? -1 : TimeUnit.MILLISECONDS.toNanos(timeLimit);
+            if (group.equals("all")) {
+                return LngList.of(TaskGroup.all(tasks, nanos));
+            }
+            return TaskGroup.any(tasks, nanos);
+        }
         final Object future;
         if (result instanceof LngList) {
             final var futures = new ArrayList<CompletableFuture<?>>();
@@ -85,6 +102,27 @@ public class AwaitEvaluation extends AbstractCommand {
 
     }
 
+    /**
+     * @return the tasks of a group, a single task is a group of one
+     */
+    private static List<AsyncStreamHandler> tasks(final Object result) throws ExecutionException {
+        if (result instanceof AsyncStreamHandler task) {
+            return List.of(task);
+        }
+        if (result instanceof LngList list) {
+            final var tasks = new ArrayList<AsyncStreamHandler>();
+            for (final var item : list) {
+                if (item instanceof AsyncStreamHandler task) {
+                    tasks.add(task);
+                } else {
+                    throw new ExecutionException("Cannot wait on %s ", item);
+                }
+            }
+            return tasks;
+        }
+        throw new ExecutionException("I cannot wait for %s", result);
+    }
+
     private static Long parameter(String key, LocalContext context, Command command, long multiplier) {
         final var arg = command.execute(context);
         if (Cast.isLong(arg)) {
@@ -10,6 +10,13 @@ import ch.turic.utils.Unmarshaller;
 public class BlockCommand extends AbstractCommand implements HasCommands {
     public static final BlockCommand EMPTY_BLOCK = new BlockCommand(new Command[0], true);
     final Command[] commands;
+    // the state of the bytecode tier when this block is the body of a closure; not final, it is not part of the
+    // command. See BytecodeTier.
+    int invocations;
+    BytecodeTier.CompiledBody compiled;
+    boolean interpretOnly;
+    // the result of the escape analysis of the block, 0 not analyzed yet, see FrameEscape#captures(BlockCommand)
+    byte frameEscape;
 
     /**
      * Returns the array of commands contained in this block.
@@ -0,0 +1,467 @@
+package ch.turic.commands;
+
+import ch.turic.Command;
+import ch.turic.commands.operators.NumericOperator;
+import ch.turic.commands.operators.Operator;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static ch.turic.commands.ClassFileWriter.*;
+
+/**
+ * Translates the body of a closure into the code of a {@link BytecodeTier.CompiledBody} class.
+ * <p>
+ * The compiled code works on the same {@link ch.turic.memory.LocalContext} objects as the interpreter does: the
+ * variables are read and written through the resolution caches of the commands, the loops and wrapping blocks create
+ * the same nested contexts. What the compiled code saves is the virtual dispatch of the commands, the per-command halt
+ * checks, and most of the {@link Conditional} objects the blocks and the loops create.
+ * <p>
+ * Only the commands listed in {@link #expression(Command, int)} are translated. Any other command is stored in the
+ * constant array of the compiled class and executed by the interpreter, so the compiled code calls
+ * {@link Command#execute(ch.turic.memory.LocalContext)} for it. It means that function calls, and everything that
+ * may need a sandbox or capability check, always run through the interpreter.
+ * <p>
+ * Every translated command counts a step where the interpreter would count one, so the steps used by a program do
+ * not depend on when its closures get compiled. The translated commands are also pushed to the execution trace of the
+ * thread and popped from it the same way as {@link AbstractCommand#execute(ch.turic.memory.LocalContext)} does, so
+ * the trace of an error shows the same commands. The abort state of the thread is checked when the body is entered
+ * (the interpreter does it when it executes the closure), on every loop back-edge, and in every command executed by
+ * the interpreter.
+ */
+final class BytecodeCompiler {
+
+    static final String CLASS_NAME = "ch/turic/commands/Compiled";
+    private static final String BODY = "ch/turic/commands/BytecodeTier$CompiledBody";
+    private static final String RUNTIME = "ch/turic/commands/BytecodeRuntime";
+    private static final String COMMAND = "ch/turic/Command";
+    private static final String CTX = "ch/turic/memory/LocalContext";
+    private static final String HIBERNATION = "ch/turic/memory/LocalContext$VariableHibernation";
+    private static final String SLOT = "ch/turic/memory/VariableSlot";
+    private static final String THREAD = "ch/turic/memory/ThreadContext";
+    private static final String ABSTRACT_COMMAND = "ch/turic/commands/AbstractCommand";
+    private static final String NUMERIC = "ch/turic/commands/operators/NumericOperator";
+    private static final String CAST = "ch/turic/commands/operators/Cast";
+    private static final String OBJECT = "Ljava/lang/Object;";
+    private static final String L_CTX = "L" + CTX + ";";
+    private static final String L_SLOT = "L" + SLOT + ";";
+
+    private static final int THIS = 0;
+    private static final int CONTEXT = 1;
+    private static final int CONSTANTS = 2;
+    private static final int TRACE = 3;
+
+    /**
+     * The result of a compilation: the class file and the array to pass to its constructor.
+     */
+    record Unit(byte[] bytes, Object[] constants) {
+    }
+
+    private final ClassFileWriter w = new ClassFileWriter(CLASS_NAME, BODY, "k", "[Ljava/lang/Object;");
+    private final List<Object> constants = new ArrayList<>();
+    private int locals = TRACE + 1;
+    private int translated = 0;
+
+    private BytecodeCompiler() {
+    }
+
+    /**
+     * Compile the body of a closure.
+     *
+     * @param body the body of the closure or macro
+     * @return the compiled unit, or {@code null} if the body should not be compiled. It is not compiled when it has
+     * a top-level {@code break}, which is an error the interpreter reports, or when there is nothing in it the
+     * compiler could translate.
+     * @throws ClassFileWriter.TooLarge if the body is too large to fit into one method
+     */
+    static Unit compile(final BlockCommand body) {
+        for (final var cmd : body.commands()) {
+            if (cmd instanceof BreakCommand) {
+                return null;
+            }
+        }
+        final var compiler = new BytecodeCompiler();
+        compiler.function(body);
+        if (compiler.translated == 0) {
+            return null;
+        }
+        final var bytes = compiler.w.toByteArray("run", "(" + L_CTX + ")" + OBJECT);
+        return new Unit(bytes, compiler.constants.toArray());
+    }
+
+    private int local() {
+        w.locals(++locals);
+        return locals - 1;
+    }
+
+    /**
+     * The body of the function the same way as {@link ClosureOrMacro} executes it. A done return result is returned
+     * as it is; the closure unwraps it.
+     */
+    private void function(final BlockCommand body) {
+        w.locals(locals);
+        w.load(THIS);
+        w.field(GETFIELD, CLASS_NAME, "k", "[Ljava/lang/Object;");
+        w.store(CONSTANTS);
+        w.load(CONTEXT);
+        w.field(GETFIELD, CTX, "threadContext", "L" + THREAD + ";");
+        w.store(TRACE);
+        final var result = local();
+        w.insn(ACONST_NULL);
+        w.store(result);
+        for (final var cmd : body.commands()) {
+            expression(cmd, CONTEXT);
+            w.store(result);
+            final var next = w.label();
+            w.load(result);
+            w.invoke(INVOKESTATIC, RUNTIME, "isReturn", "(" + OBJECT + ")Z");
+            w.jump(IFEQ, next);
+            w.load(result);
+            w.insn(ARETURN);
+            w.place(next);
+        }
+        w.load(result);
+        w.insn(ARETURN);
+    }
+
+    private void constant(final Object value, final String type) {
+        w.load(CONSTANTS);
+        w.pushInt(constants.size());
+        w.insn(AALOAD);
+        constants.add(value);
+        if (type != null) {
+            w.type(CHECKCAST, type);
+        }
+    }
+
+    /**
+     * Start the execution of a translated command the same way as {@link AbstractCommand#execute} and the
+     * {@code _execute} method of the command do: push the command to the execution trace, and count a step.
+     *
+     * @param cmd  the command
+     * @param step {@code true} if the command counts a step when the interpreter executes it
+     * @param ctx  the local variable holding the context
+     */
+    private void enter(final Command cmd, final boolean step, final int ctx) {
+        w.load(TRACE);
+        constant(cmd, ABSTRACT_COMMAND);
+        w.invoke(INVOKEVIRTUAL, THREAD, "push", "(L" + ABSTRACT_COMMAND + ";)V");
+        if (step) {
+            w.load(ctx);
+            w.invoke(INVOKEVIRTUAL, CTX, "step", "()V");
+        }
+    }
+
+    /**
+     * Pop the command from the execution trace when it finished normally. When it throws, the command stays in the
+     * trace, the same as in the interpreter.
+     */
+    private void leave() {
+        w.load(TRACE);
+        w.invoke(INVOKEVIRTUAL, THREAD, "pop", "()V");
+    }
+
+    private void toBoolean() {
+        w.invoke(INVOKESTATIC, CAST, "toBoolean", "(" + OBJECT + ")Z");
+    }
+
+    /**
+     * Emit the code that leaves the value of the command on the operand stack, the very same value the command would
+     * return when executed by the interpreter in the context stored in the local variable {@code ctx}.
+     */
+    private void expression(final Command cmd, final int ctx) {
+        switch (cmd) {
+            case IntegerConstant c -> {
+                constant(c._execute(null), null);
+                translated++;
+            }
+            case FloatConstant c -> {
+                constant(c._execute(null), null);
+                translated++;
+            }
+            case ConstantExpression c -> {
+                constant(c.value(), null);
+                translated++;
+            }
+            case Identifier id when id.slot() != null -> {
+                enter(id, false, ctx);
+                w.load(ctx);
+                constant(id.slot(), SLOT);
+                w.invoke(INVOKEVIRTUAL, CTX, "get", "(" + L_SLOT + ")" + OBJECT);
+                leave();
+                translated++;
+            }
+            case Operation op when op.left() != null && Operator.OPERATORS.get(op.operator()) instanceof NumericOperator numeric ->
+                    numeric(op, numeric, ctx);
+            case If iff -> conditional(iff, ctx);
+            case BlockCommand block -> block(block, ctx);
+            case ReturnCommand ret when ret.condition() != null -> doReturn(ret, ctx);
+            case Assignment a when a.slot() != null && a.op.isEmpty() -> assignment(a, ctx);
+            case WhileLoop loop when !loop.resultIsList && loop.doneBody == null && loop.otherwiseBody == null
+                    && loop.finallyBody == null -> whileLoop(loop, ctx);
+            default -> {
+                constant(cmd, COMMAND);
+                w.load(ctx);
+                w.invoke(INVOKEINTERFACE, COMMAND, "execute", "(" + L_CTX + ")" + OBJECT);
+            }
+        }
+    }
+
+    private void numeric(final Operation op, final NumericOperator numeric, final int ctx) {
+        translated++;
+        enter(op, true, ctx);
+        final var depth = w.stackDepth();
+        final var left = local();
+        expression(op.left(), ctx);
+        w.store(left);
+        final var generic = w.label();
+        final var end = w.label();
+        w.load(left);
+        w.invoke(INVOKESTATIC, RUNTIME, "isNumber", "(" + OBJECT + ")Z");
+        w.jump(IFEQ, generic);
+        constant(numeric, NUMERIC);
+        w.load(ctx);
+        w.load(left);
+        expression(op.right(), ctx);
+        w.invoke(INVOKESTATIC, RUNTIME, "numeric", "(L" + NUMERIC + ";" + L_CTX + OBJECT + OBJECT + ")" + OBJECT);
+        w.jump(GOTO, end);
+        w.stackDepth(depth);
+        w.place(generic);
+        constant(numeric, NUMERIC);
+        w.load(ctx);
+        w.load(left);
+        constant(op.right(), COMMAND);
+        w.invoke(INVOKEINTERFACE, NUMERIC, "executeEvaluatedLeft", "(" + L_CTX + OBJECT + "L" + COMMAND + ";)" + OBJECT);
+        w.place(end);
+        leave();
+    }
+
+    private void conditional(final If iff, final int ctx) {
+        translated++;
+        enter(iff, true, ctx);
+        final var depth = w.stackDepth();
+        final var otherwise = w.label();
+        final var end = w.label();
+        expression(iff.condition(), ctx);
+        toBoolean();
+        w.jump(IFEQ, otherwise);
+        expression(iff.then(), ctx);
+        w.jump(GOTO, end);
+        w.stackDepth(depth);
+        w.place(otherwise);
+        if (iff.otherwise() == null) {
+            w.insn(ACONST_NULL);
+        } else {
+            expression(iff.otherwise(), ctx);
+        }
+        w.place(end);
+        leave();
+    }
+
+    /**
+     * The same as {@link BlockCommand} does.
+     */
+    private void block(final BlockCommand block, final int outer) {
+        translated++;
+        enter(block, true, outer);
+        final var depth = w.stackDepth();
+        final int ctx;
+        if (block.wrap()) {
+            ctx = local();
+            w.load(outer);
+            w.invoke(INVOKEVIRTUAL, CTX, "wrap", "()" + L_CTX);
+            w.store(ctx);
+        } else {
+            ctx = outer;
+        }
+        final var result = local();
+        final var end = w.label();
+        w.insn(ACONST_NULL);
+        w.store(result);
+        for (final var cmd : block.commands()) {
+            expression(cmd, ctx);
+            w.store(result);
+            final var next = w.label();
+            w.load(result);
+            w.invoke(INVOKESTATIC, RUNTIME, "isDone", "(" + OBJECT + ")Z");
+            w.jump(IFEQ, next);
+            w.load(result);
+            w.invoke(INVOKESTATIC, RUNTIME, "blockExit", "(" + OBJECT + ")" + OBJECT);
+            w.jump(GOTO, end);
+            w.stackDepth(depth);
+            w.place(next);
+            w.load(result);
+            w.invoke(INVOKESTATIC, RUNTIME, "unwrap", "(" + OBJECT + ")" + OBJECT);
+            w.store(result);
+        }
+        w.load(result);
+        w.place(end);
+        leave();
+    }
+
+    private void doReturn(final ReturnCommand ret, final int ctx) {
+        translated++;
+        enter(ret, false, ctx);
+        final var depth = w.stackDepth();
+        final var skip = w.label();
+        final var end = w.label();
+        expression(ret.condition(), ctx);
+        toBoolean();
+        w.jump(IFEQ, skip);
+        if (ret.expression() == null) {
+            w.insn(ACONST_NULL);
+        } else {
+            expression(ret.expression(), ctx);
+        }
+        w.invoke(INVOKESTATIC, RUNTIME, "doReturn", "(" + OBJECT + ")" + OBJECT);
+        w.jump(GOTO, end);
+        w.stackDepth(depth);
+        w.place(skip);
+        w.insn(ACONST_NULL);
+        w.invoke(INVOKESTATIC, RUNTIME, "result", "(" + OBJECT + ")" + OBJECT);
+        w.place(end);
+        leave();
+    }
+
+    /**
+     * A simple assignment to a variable, the same as
+     * {@link ch.turic.memory.VariableLeftValue#reassign(ch.turic.memory.LocalContext, ch.turic.memory.VariableSlot, java.util.function.Function)}
+     * does: the variable has to exist, and it is hibernated while the right-hand side is calculated.
+     */
+    private void assignment(final Assignment a, final int ctx) {
+        translated++;
+        enter(a, true, ctx);
+        final var depth = w.stackDepth();
+        final var hibernation = local();
+        final var value = local();
+        final var start = w.label();
+        final var stop = w.label();
+        final var handler = w.label();
+        final var end = w.label();
+        w.load(ctx);
+        constant(a.slot(), SLOT);
+        w.invoke(INVOKEVIRTUAL, CTX, "get", "(" + L_SLOT + ")" + OBJECT);
+        w.insn(POP);
+        w.load(ctx);
+        constant(a.slot().name, "java/lang/String");
+        w.invoke(INVOKEVIRTUAL, CTX, "hibernate", "(Ljava/lang/String;)L" + HIBERNATION + ";");
+        w.store(hibernation);
+        w.place(start);
+        expression(a.expression(), ctx);
+        w.store(value);
+        w.place(stop);
+        w.load(hibernation);
+        w.invoke(INVOKEVIRTUAL, HIBERNATION, "close", "()V");
+        w.load(ctx);
+        constant(a.slot(), SLOT);
+        w.load(value);
+        w.invoke(INVOKEVIRTUAL, CTX, "update", "(" + L_SLOT + OBJECT + ")V");
+        w.load(value);
+        w.jump(GOTO, end);
+        // the stack is cleared when the exception is caught, only the exception is on it
+        w.stackDepth(1);
+        w.place(handler);
+        final var exception = local();
+        w.store(exception);
+        w.load(hibernation);
+        w.invoke(INVOKEVIRTUAL, HIBERNATION, "close", "()V");
+        w.load(exception);
+        w.insn(ATHROW);
+        w.tryCatchAll(start, stop, handler);
+        w.stackDepth(depth + 1);
+        w.place(end);
+        leave();
+    }
+
+    /**
+     * A loop without a list result and without {@code done}, {@code otherwise}, or {@code finally} blocks, the same
+     * as {@link WhileLoop} executes it.
+     */
+    private void whileLoop(final WhileLoop loop, final int ctx) {
+        translated++;
+        final var depth = w.stackDepth();
+        final var loopContext = local();
+        final var innerContext = local();
+        final var scalar = local();
+        final var top = w.label();
+        final var exit = w.label();
+        final var noBreak = w.label();
+        final var end = w.label();
+        enter(loop, true, ctx);
+        w.load(ctx);
+        w.invoke(INVOKEVIRTUAL, CTX, "wrap", "()" + L_CTX);
+        w.store(loopContext);
+        if (loop.initBody != null) {
+            expression(loop.initBody, loopContext);
+            w.insn(POP);
+        }
+        w.insn(ACONST_NULL);
+        w.store(scalar);
+        w.place(top);
+        expression(loop.startCondition, loopContext);
+        toBoolean();
+        w.jump(IFEQ, exit);
+        w.load(loopContext);
+        w.invoke(INVOKEVIRTUAL, CTX, "wrap", "()" + L_CTX);
+        w.store(innerContext);
+        loopBody(loop.body, innerContext);
+        w.store(scalar);
+        w.load(scalar);
+        w.invoke(INVOKESTATIC, RUNTIME, "breakLoop", "(" + OBJECT + ")Z");
+        w.jump(IFEQ, noBreak);
+        w.load(scalar);
+        w.invoke(INVOKESTATIC, RUNTIME, "normalize", "(" + OBJECT + ")" + OBJECT);
+        w.jump(GOTO, end);
+        w.stackDepth(depth);
+        w.place(noBreak);
+        w.load(scalar);
+        w.invoke(INVOKESTATIC, RUNTIME, "normalize", "(" + OBJECT + ")" + OBJECT);
+        w.store(scalar);
+        expression(loop.exitCondition, innerContext);
+        toBoolean();
+        w.jump(IFNE, exit);
+        w.load(ctx);
+        w.invoke(INVOKESTATIC, RUNTIME, "backEdge", "(" + L_CTX + ")V");
+        w.jump(GOTO, top);
+        w.place(exit);
+        w.load(loopContext);
+        w.load(scalar);
+        w.invoke(INVOKESTATIC, RUNTIME, "setScalarIT", "(" + L_CTX + OBJECT + ")V");
+        w.load(scalar);
+        w.place(end);
+        leave();
+    }
+
+    /**
+     * The body of a loop that does not produce a list, the same as {@link Loop#loopCoreForObject(Command, ch.turic.memory.LocalContext)}.
+     */
+    private void loopBody(final Command body, final int ctx) {
+        if (!(body instanceof BlockCommand block)) {
+            expression(body, ctx);
+            return;
+        }
+        final var depth = w.stackDepth();
+        final var result = local();
+        final var out = w.label();
+        final var end = w.label();
+        w.insn(ACONST_NULL);
+        w.store(result);
+        for (final var cmd : block.commands()) {
+            expression(cmd, ctx);
+            w.store(result);
+            w.load(result);
+            w.invoke(INVOKESTATIC, RUNTIME, "leavesLoopBody", "(" + OBJECT + ")Z");
+            w.jump(IFNE, out);
+            w.load(result);
+            w.invoke(INVOKESTATIC, RUNTIME, "unwrap", "(" + OBJECT + ")" + OBJECT);
+            w.store(result);
+        }
+        w.load(result);
+        w.invoke(INVOKESTATIC, RUNTIME, "result", "(" + OBJECT + ")" + OBJECT);
+        w.jump(GOTO, end);
+        w.stackDepth(depth);
+        w.place(out);
+        w.load(result);
+        w.place(end);
+    }
+}
@@ -0,0 +1,119 @@
+package ch.turic.commands;
+
+import ch.turic.commands.operators.NumericOperator;
+import ch.turic.exceptions.ExecutionException;
+import ch.turic.memory.LocalContext;
+import ch.turic.memory.Sentinel;
+
+/**
+ * Static helpers called from the code generated by the {@link BytecodeTier}.
+ * <p>
+ * Each method does the same as the corresponding piece of the interpreter, so that the compiled and the interpreted
+ * execution of a command give the same result. The class file version of the generated code does not allow calling
+ * static interface methods; this is why even the simple factory methods of {@link Conditional} are wrapped here.
+ */
+final class BytecodeRuntime {
+
+    private BytecodeRuntime() {
+    }
+
+    /**
+     * Called at the end of every iteration of a compiled loop, where the interpreter would check the abort state of
+     * the thread executing the next command. The steps are counted by the translated commands, the same as in the
+     * interpreter, which does not count a step for an iteration.
+     *
+     * @param ctx the context of the loop
+     */
+    public static void backEdge(final LocalContext ctx) {
+        final var tc = ctx.threadContext;
+        if (tc.isAborted() || tc.grace().isTriggered()) {
+            AbstractCommand.checkHalt(tc);
+        }
+    }
+
+    /**
+     * @param value the value of the left operand
+     * @return {@code true} if the numeric fast path of the operators can be used
+     */
+    public static boolean isNumber(final Object value) {
+        return value instanceof Long || value instanceof Double;
+    }
+
+    /**
+     * The same as {@link Operation} does after it has evaluated the operands, the first being a number.
+     */
+    public static Object numeric(final NumericOperator op, final LocalContext ctx, final Object op1, final Object op2) {
+        if (op1 instanceof Long a && op2 instanceof Long b) {
+            return op.longOp(a, b);
+        }
+        if (op2 instanceof Long || op2 instanceof Double) {
+            return op.doubleOp(((Number) op1).doubleValue(), ((Number) op2).doubleValue());
+        }
+        return op.evaluated(ctx, op1, op2);
+    }
+
+    /**
+     * @return {@code true} if the value is a return result that has to leave the function
+     */
+    public static boolean isReturn(final Object value) {
+        return value instanceof Conditional.ReturnResult r && r.isDone();
+    }
+
+    /**
+     * @return {@code true} if the value is a conditional that stops the execution of a block
+     */
+    public static boolean isDone(final Object value) {
+        return value instanceof Conditional c && c.isDone();
+    }
+
+    /**
+     * @return the value of the conditional, or the value itself if it is not a conditional
+     */
+    public static Object unwrap(final Object value) {
+        return value instanceof Conditional c ? c.result() : value;
+    }
+
+    /**
+     * The value of a block that was stopped by a conditional, see {@link BlockCommand}.
+     */
+    public static Object blockExit(final Object value) {
+        return value instanceof Conditional.BreakResult b ? b.result() : value;
+    }
+
+    /**
+     * Decide if the value of a command stops the execution of a loop body the same way as the interpreter does in
+     * {@link Loop} for loops that do not produce a list.
+     *
+     * @param value the value of the command in the loop body
+     * @return {@code true} if the rest of the body has to be skipped
+     */
+    public static boolean leavesLoopBody(final Object value) {
+        if (value instanceof Conditional.ContinueResult c) {
+            if (c.result() != Sentinel.NO_VALUE) {
+                throw new ExecutionException("You cannot 'continue' with a value in a non-list resulting loop.");
+            }
+            return true;
+        }
+        return value instanceof Conditional c && c.isDone();
+    }
+
+    public static Object result(final Object value) {
+        return Conditional.result(value);
+    }
+
+    public static Object doReturn(final Object value) {
+        return Conditional.doReturn(value);
+    }
+
+    public static boolean breakLoop(final Object value) {
+        return Loop.breakLoop(value);
+    }
+
+    public static Object normalize(final Object value) {
+        return Loop.normalize(value);
+    }
+
+    public static void setScalarIT(final LocalContext loopContext, final Object scalarResult) {
+        WhileLoop.setScalarIT(loopContext, scalarResult);
+    }
+}
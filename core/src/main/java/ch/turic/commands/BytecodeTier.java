@@ -0,0 +1,87 @@
+package ch.turic.commands;
+
+import ch.turic.memory.LocalContext;
+
+import java.lang.invoke.MethodHandles;
+
+/**
+ * The second execution tier of the interpreter.
+ * <p>
+ * Every closure and macro body counts its invocations. When a body was invoked {@link #threshold} times, it is
+ * compiled by the {@link BytecodeCompiler} into a hidden class, and from then on the closures with this body execute
+ * the compiled code instead of walking the commands. The hidden class is not strongly bound to its class loader;
+ * it is unloaded when the program holding the body is not used anymore.
+ * <p>
+ * The compiled code is not used while the interpreter is in debug mode, because the debugger needs the commands to
+ * stop at. A body that cannot be compiled is marked, and it is never tried again.
+ * <p>
+ * The threshold can be set with the {@code turicum.bytecode.threshold} system property. Zero or a negative value
+ * switches the tier off.
+ */
+public final class BytecodeTier {
+
+    static int threshold = Integer.getInteger("turicum.bytecode.threshold", 1_000);
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    private BytecodeTier() {
+    }
+
+    /**
+     * The interface the compiled classes implement.
+     */
+    interface CompiledBody {
+        /**
+         * @param ctx the context of the closure, with the arguments already defined in it
+         * @return the value of the last command of the body, or the done {@link Conditional.ReturnResult} of a
+         * {@code return} command
+         */
+        Object run(LocalContext ctx);
+    }
+
+    /**
+     * Count the invocation of the body and return the compiled code if there is one to use.
+     *
+     * @param ctx  the context of the closure
+     * @param body the body of the closure
+     * @return the compiled code, or {@code null} if the body has to be interpreted
+     */
+    static CompiledBody compiled(final LocalContext ctx, final BlockCommand body) {
+        final var code = body.compiled;
+        if (code != null) {
+            return ctx.globalContext.debugMode() ? null : code;
+        }
+        if (body.interpretOnly || threshold <= 0 || ctx.globalContext.debugMode()) {
+            return null;
+        }
+        // the counter is not synchronized, a few lost increments only delay the compilation
+        if (++body.invocations < threshold) {
+            return null;
+        }
+        return compile(body);
+    }
+
+    private static CompiledBody compile(final BlockCommand body) {
+        synchronized (body) {
+            if (body.compiled != null || body.interpretOnly) {
+                return body.compiled;
+            }
+            try {
+                final var unit = BytecodeCompiler.compile(body);
+                if (unit == null) {
+                    body.interpretOnly = true;
+                    return null;
+                }
+                final var klass = LOOKUP.defineHiddenClass(unit.bytes(), true).lookupClass();
+                final var code = (CompiledBody) klass.getConstructor(Object[].class).newInstance((Object) unit.constants());
+                body.compiled = code;
+                return code;
+            } catch (ReflectiveOperationException | LinkageError | IllegalArgumentException |
+                     ClassFileWriter.TooLarge e) {
+                // the interpreter can always execute the body
+                body.interpretOnly = true;
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,416 @@
+package ch.turic.commands;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Serial;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A minimal class file writer used by the {@link BytecodeTier}.
+ * <p>
+ * It writes exactly one shape of class: a public final class with one final instance field, a constructor
+ * initializing the field, and one public instance method. The class file version is 49 (Java 5), so that the JVM
+ * verifies the code with the type-inferring verifier and no {@code StackMapTable} has to be calculated.
+ * <p>
+ * The code is emitted through the instruction methods, which also keep track of the operand stack depth. Branches
+ * use {@link Label}s and 16-bit offsets; when the code gets too long to be addressed, {@link #toByteArray(String, String)} throws
+ * {@link TooLarge} and the caller gives up compiling.
+ */
+final class ClassFileWriter {
+
+    static final int ACONST_NULL = 0x01;
+    static final int ALOAD = 0x19;
+    static final int ASTORE = 0x3a;
+    static final int AALOAD = 0x32;
+    static final int POP = 0x57;
+    static final int DUP = 0x59;
+    static final int IFEQ = 0x99;
+    static final int IFNE = 0x9a;
+    static final int GOTO = 0xa7;
+    static final int ARETURN = 0xb0;
+    static final int RETURN = 0xb1;
+    static final int GETFIELD = 0xb4;
+    static final int PUTFIELD = 0xb5;
+    static final int INVOKEVIRTUAL = 0xb6;
+    static final int INVOKESPECIAL = 0xb7;
+    static final int INVOKESTATIC = 0xb8;
+    static final int INVOKEINTERFACE = 0xb9;
+    static final int ATHROW = 0xbf;
+    static final int CHECKCAST = 0xc0;
+    static final int INSTANCEOF = 0xc1;
+
+    /**
+     * Thrown when the generated code does not fit the limits of a method.
+     */
+    static final class TooLarge extends RuntimeException {
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        TooLarge(String message) {
+            super(message, null, false, false);
+        }
+    }
+
+    /**
+     * A position in the code. A label can be used in jumps before it is placed.
+     */
+    static final class Label {
+        private int position = -1;
+        private final List<Integer> references = new ArrayList<>();
+    }
+
+    private record ExceptionEntry(Label start, Label end, Label handler) {
+    }
+
+    private final ByteArrayOutputStream poolBytes = new ByteArrayOutputStream();
+    private final DataOutputStream pool = new DataOutputStream(poolBytes);
+    private final Map<String, Integer> poolIndex = new HashMap<>();
+    private int poolSize = 1;
+
+    private final ByteArrayOutputStream code = new ByteArrayOutputStream();
+    private final List<ExceptionEntry> exceptions = new ArrayList<>();
+    private final List<Label> labels = new ArrayList<>();
+    private int stack;
+    private int maxStack;
+    private int maxLocals;
+
+    private final String className;
+    private final String interfaceName;
+    private final String fieldName;
+    private final String fieldDescriptor;
+
+    /**
+     * @param className       the internal name of the class, e.g. {@code ch/turic/commands/Compiled}
+     * @param interfaceName   the internal name of the single interface the class implements
+     * @param fieldName       the name of the field set by the constructor
+     * @param fieldDescriptor the descriptor of the field and of the only constructor parameter
+     */
+    ClassFileWriter(String className, String interfaceName, String fieldName, String fieldDescriptor) {
+        this.className = className;
+        this.interfaceName = interfaceName;
+        this.fieldName = fieldName;
+        this.fieldDescriptor = fieldDescriptor;
+    }
+
+    // constant pool
+
+    private int entry(String key, int tag, byte[] body) {
+        final var index = poolIndex.get(key);
+        if (index != null) {
+            return index;
+        }
+        try {
+            pool.writeByte(tag);
+            pool.write(body);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        poolIndex.put(key, poolSize);
+        return poolSize++;
+    }
+
+    private static byte[] shorts(int... values) {
+        final var bytes = new byte[values.length * 2];
+        for (int i = 0; i < values.length; i++) {
+            bytes[2 * i] = (byte) (values[i] >> 8);
+            bytes[2 * i + 1] = (byte) values[i];
+        }
+        return bytes;
+    }
+
+    int utf8(String s) {
+        final var bytes = new ByteArrayOutputStream();
+        try {
+            new DataOutputStream(bytes).writeUTF(s);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return entry("U" + s, 1, bytes.toByteArray());
+    }
+
+    int classRef(String internalName) {
+        final var name = utf8(internalName);
+        return entry("C" + internalName, 7, shorts(name));
+    }
+
+    private int nameAndType(String name, String descriptor) {
+        final var n = utf8(name);
+        final var d = utf8(descriptor);
+        return entry("N" + name + ":" + descriptor, 12, shorts(n, d));
+    }
+
+    private int memberRef(int tag, String owner, String name, String descriptor) {
+        final var c = classRef(owner);
+        final var nt = nameAndType(name, descriptor);
+        return entry(tag + owner + "." + name + ":" + descriptor, tag, shorts(c, nt));
+    }
+
+    private int integer(int value) {
+        return entry("I" + value, 3, new byte[]{(byte) (value >> 24), (byte) (value >> 16), (byte) (value >> 8), (byte) value});
+    }
+
+    // code
+
+    private void u1(int b) {
+        code.write(b);
+    }
+
+    private void u2(int value) {
+        code.write(value >> 8);
+        code.write(value);
+    }
+
+    private void stack(int delta) {
+        stack += delta;
+        if (stack > maxStack) {
+            maxStack = stack;
+        }
+    }
+
+    /**
+     * @return the current depth of the operand stack
+     */
+    int stackDepth() {
+        return stack;
+    }
+
+    /**
+     * Set the stack depth after an unconditional jump, where the following code is reachable only from a label.
+     *
+     * @param depth the depth of the stack at the label
+     */
+    void stackDepth(int depth) {
+        stack = depth;
+    }
+
+    /**
+     * Reserve the local variable slots used by the method.
+     *
+     * @param locals the number of local variable slots, including {@code this} and the parameters
+     */
+    void locals(int locals) {
+        if (locals > 255) {
+            throw new TooLarge("too many local variables");
+        }
+        maxLocals = Math.max(maxLocals, locals);
+    }
+
+    void insn(int opcode) {
+        u1(opcode);
+        stack(switch (opcode) {
+            case ACONST_NULL, DUP -> 1;
+            case POP, ARETURN, ATHROW -> -1;
+            case AALOAD -> -1;
+            default -> 0;
+        });
+    }
+
+    void load(int local) {
+        u1(ALOAD);
+        u1(local);
+        stack(1);
+    }
+
+    void store(int local) {
+        u1(ASTORE);
+        u1(local);
+        stack(-1);
+    }
+
+    void pushInt(int value) {
+        if (value >= -1 && value <= 5) {
+            u1(0x03 + value); // iconst_<n>
+        } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            u1(0x10); // bipush
+            u1(value);
+        } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            u1(0x11); // sipush
+            u2(value);
+        } else {
+            final var index = integer(value);
+            u1(0x13); // ldc_w
+            u2(index);
+        }
+        stack(1);
+    }
+
+    void type(int opcode, String internalName) {
+        u1(opcode);
+        u2(classRef(internalName));
+    }
+
+    void field(int opcode, String owner, String name, String descriptor) {
+        u1(opcode);
+        u2(memberRef(9, owner, name, descriptor));
+        stack(opcode == GETFIELD ? 0 : -2);
+    }
+
+    /**
+     * Emit a method invocation and adjust the stack depth from the descriptor.
+     *
+     * @param opcode     one of the invoke opcodes
+     * @param owner      the internal name of the owner class or interface
+     * @param name       the name of the method
+     * @param descriptor the method descriptor
+     */
+    void invoke(int opcode, String owner, String name, String descriptor) {
+        final int args = argumentSlots(descriptor);
+        u1(opcode);
+        if (opcode == INVOKEINTERFACE) {
+            u2(memberRef(11, owner, name, descriptor));
+            u1(args + 1);
+            u1(0);
+        } else {
+            u2(memberRef(10, owner, name, descriptor));
+        }
+        stack(-args - (opcode == INVOKESTATIC ? 0 : 1) + (descriptor.endsWith(")V") ? 0 : 1));
+    }
+
+    private static int argumentSlots(String descriptor) {
+        int slots = 0;
+        for (int i = 1; descriptor.charAt(i) != ')'; i++) {
+            final var c = descriptor.charAt(i);
+            if (c == 'L') {
+                i = descriptor.indexOf(';', i);
+            } else if (c == '[') {
+                while (descriptor.charAt(i) == '[') {
+                    i++;
+                }
+                if (descriptor.charAt(i) == 'L') {
+                    i = descriptor.indexOf(';', i);
+                }
+            } else if (c == 'J' || c == 'D') {
+                slots++;
+            }
+            slots++;
+        }
+        return slots;
+    }
+
+    void jump(int opcode, Label label) {
+        final int at = code.size();
+        u1(opcode);
+        label.references.add(at);
+        u2(0);
+        if (opcode != GOTO) {
+            stack(-1);
+        }
+    }
+
+    void place(Label label) {
+        label.position = code.size();
+    }
+
+    /**
+     * Register an exception handler catching every throwable between the two labels.
+     *
+     * @param start   the start of the protected range, inclusive
+     * @param end     the end of the protected range, exclusive
+     * @param handler the start of the handler
+     */
+    void tryCatchAll(Label start, Label end, Label handler) {
+        exceptions.add(new ExceptionEntry(start, end, handler));
+    }
+
+    /**
+     * @param methodName       the name of the compiled method
+     * @param methodDescriptor the descriptor of the compiled method
+     * @return the class file
+     * @throws TooLarge if the code of the method does not fit the limits of the class file format
+     */
+    byte[] toByteArray(String methodName, String methodDescriptor) {
+        final var body = code.toByteArray();
+        if (body.length >= Short.MAX_VALUE) {
+            throw new TooLarge("the method is too long");
+        }
+        for (final var label : labels) {
+            for (final int at : label.references) {
+                final int offset = label.position - at;
+                body[at + 1] = (byte) (offset >> 8);
+                body[at + 2] = (byte) offset;
+            }
+        }
+        final var thisClass = classRef(className);
+        final var superClass = classRef("java/lang/Object");
+        final var iface = classRef(interfaceName);
+        final var fieldNameIndex = utf8(fieldName);
+        final var fieldDescIndex = utf8(fieldDescriptor);
+        final var codeName = utf8("Code");
+        final var initName = utf8("<init>");
+        final var initDesc = utf8("(" + fieldDescriptor + ")V");
+        final var objectInit = memberRef(10, "java/lang/Object", "<init>", "()V");
+        final var fieldRef = memberRef(9, className, fieldName, fieldDescriptor);
+        final var methodNameIndex = utf8(methodName);
+        final var methodDescIndex = utf8(methodDescriptor);
+        try {
+            final var bytes = new ByteArrayOutputStream();
+            final var out = new DataOutputStream(bytes);
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(49);
+            out.writeShort(poolSize);
+            out.write(poolBytes.toByteArray());
+            out.writeShort(0x0001 | 0x0010 | 0x0020 | 0x1000); // public final super synthetic
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(1);
+            out.writeShort(iface);
+            // the field
+            out.writeShort(1);
+            out.writeShort(0x0002 | 0x0010); // private final
+            out.writeShort(fieldNameIndex);
+            out.writeShort(fieldDescIndex);
+            out.writeShort(0);
+            // the methods
+            out.writeShort(2);
+            // constructor: aload_0, invokespecial Object.<init>, aload_0, aload_1, putfield, return
+            out.writeShort(0x0001);
+            out.writeShort(initName);
+            out.writeShort(initDesc);
+            out.writeShort(1);
+            out.writeShort(codeName);
+            out.writeInt(12 + 10);
+            out.writeShort(2);
+            out.writeShort(2);
+            out.writeInt(10);
+            out.write(new byte[]{0x2a, (byte) INVOKESPECIAL, (byte) (objectInit >> 8), (byte) objectInit,
+                    0x2a, 0x2b, (byte) PUTFIELD, (byte) (fieldRef >> 8), (byte) fieldRef, (byte) RETURN});
+            out.writeShort(0);
+            out.writeShort(0);
+            // the compiled method
+            out.writeShort(0x0001);
+            out.writeShort(methodNameIndex);
+            out.writeShort(methodDescIndex);
+            out.writeShort(1);
+            out.writeShort(codeName);
+            out.writeInt(12 + body.length + 8 * exceptions.size());
+            out.writeShort(maxStack);
+            out.writeShort(maxLocals);
+            out.writeInt(body.length);
+            out.write(body);
+            out.writeShort(exceptions.size());
+            for (final var e : exceptions) {
+                out.writeShort(e.start.position);
+                out.writeShort(e.end.position);
+                out.writeShort(e.handler.position);
+                out.writeShort(0);
+            }
+            out.writeShort(0);
+            // class attributes
+            out.writeShort(0);
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    Label label() {
+        final var label = new Label();
+        labels.add(label);
+        return label;
+    }
+}
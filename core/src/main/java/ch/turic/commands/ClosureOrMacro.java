@@ -1,6 +1,7 @@
 package ch.turic.commands;
 
 import ch.turic.exceptions.ExecutionException;
+import ch.turic.memory.DeclaredTypes;
 import ch.turic.memory.LocalContext;
 import ch.turic.memory.HasFields;
 import ch.turic.memory.Variable;
@@ -12,6 +13,8 @@ public sealed abstract class ClosureOrMacro extends ClosureLike permits Closure,
     final LocalContext wrapped;
     final String[] returnType;
     final BlockCommand command;
+    // the return types resolved on the first return, a runtime cache that is not part of the closure
+    private DeclaredTypes declaredReturnType;
     @Override
     public String name() {
         return name;
@@ -46,15 +49,12 @@ public sealed abstract class ClosureOrMacro extends ClosureLike permits Closure,
     @Override
     public Object _execute(final LocalContext ctx) throws ExecutionException {
         ctx.step();
-        Object result = null;
-        for (final var cmd : command.commands()) {
-            ExecutionException.when(cmd instanceof BreakCommand, "You cannot break from a function or closure. Use Return");
-            result = cmd.execute(ctx);
-            if (result instanceof Conditional.ReturnResult returnResult && returnResult.isDone()) {
-                return returnResult.result();
-            }
+        final var compiled = BytecodeTier.compiled(ctx, command);
+        final var result = compiled == null ? interpret(ctx) : compiled.run(ctx);
+        if (result instanceof Conditional.ReturnResult returnResult && returnResult.isDone()) {
+            return returnResult.result();
         }
-        if (isOfTypes(ctx, result, returnType)) {
+        if (isOfReturnType(ctx, result)) {
             return result;
         }
         throw new ExecutionException(
@@ -64,6 +64,52 @@ public sealed abstract class ClosureOrMacro extends ClosureLike permits Closure,
                 String.join(",", returnType));
     }
 
+    /**
+     * Execute the commands of the body.
+     *
+     * @param ctx the context of the closure
+     * @return the value of the last command, or the result of the {@code return} command that stopped the execution
+     */
+    private Object interpret(final LocalContext ctx) {
+        Object result = null;
+        for (final var cmd : command.commands()) {
+            ExecutionException.when(cmd instanceof BreakCommand, "You cannot break from a function or closure. Use Return");
+            result = cmd.execute(ctx);
+            if (result instanceof Conditional.ReturnResult returnResult && returnResult.isDone()) {
+                return returnResult;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Check the returned value against the return types. The types are resolved only once, and again only when a
+     * class name used as a return type is rebound. If some of the types cannot be resolved, then the types are
+     * checked one by one, and an unresolvable type is an error only when no type before it fits the value.
+     */
+    private boolean isOfReturnType(final LocalContext ctx, final Object value) {
+        if (returnType == null || returnType.length == 0) {
+            return true;
+        }
+        var declared = declaredReturnType;
+        if (declared == null) {
+            declared = new DeclaredTypes(returnType);
+            declaredReturnType = declared;
+        }
+        final Variable.Type[] types;
+        try {
+            types = declared.resolve(ctx);
+        } catch (ExecutionException e) {
+            return isOfTypes(ctx, value, returnType);
+        }
+        for (final var type : types) {
+            if (Variable.isFit(value, type.javaType(), type.lngClass())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private static boolean isOfTypes(final LocalContext ctx, final Object value, String[] types) {
         if (types == null || types.length == 0) {
             return true;
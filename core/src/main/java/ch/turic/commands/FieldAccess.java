@@ -18,6 +18,8 @@ public class FieldAccess extends AbstractCommand {
     final Command object;
     final String identifier;
     final boolean lenient;
+    // the field lookup cache of the access, a runtime cache that is not part of the command tree
+    private InlineCache fieldCache;
 
     public String identifier() {
         return identifier;
@@ -91,6 +93,12 @@ public class FieldAccess extends AbstractCommand {
         if( object instanceof JavaObject jo) {
             return jo.getField(identifier, context);
         }
-        return object.getField(identifier);
+        final var cached = InlineCache.lookup(fieldCache, object, identifier, false);
+        if (cached != null) {
+            return cached;
+        }
+        final var value = object.getField(identifier);
+        fieldCache = InlineCache.learn(fieldCache, object, identifier);
+        return value;
     }
 }
@@ -12,9 +12,13 @@ public class FloatConstant extends AbstractCommand {
     }
 
     final double value;
+    // the value boxed once, so that the execution does not allocate; not final, it is not part of the command. The
+    // Optimizer shares the same instance among the equal literals of a program.
+    private Double boxed;
 
-    public FloatConstant(double value) {
+    public FloatConstant(Double value) {
         this.value = value;
+        this.boxed = value;
     }
 
     public FloatConstant(String value) {
@@ -27,6 +31,6 @@ public class FloatConstant extends AbstractCommand {
 
     @Override
     public Double _execute(LocalContext ctx) throws ExecutionException {
-        return value;
+        return boxed;
     }
 }
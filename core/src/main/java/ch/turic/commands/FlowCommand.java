@@ -35,6 +35,13 @@ import java.util.stream.Collectors;
  * Cells are re-evaluated whenever their dependencies change. If a cell produces a different
  * value than before, all cells depending on it are rescheduled for execution.
  * <p>
+ * The cells are executed in waves. Each cell has a level, the length of the longest dependency path leading to it
+ * from the start cells, not counting the dependencies that close a cycle. A wave executes the changed cells level by
+ * level, the cells of the same level concurrently. A cell is executed at most once in a wave, even if several of its
+ * inputs changed, and only after all the cells of lower levels in the wave finished, so it never sees a mix of old
+ * and new input values. A cell whose input is changed by a cell of the same or a higher level, closing a cycle, is
+ * executed in the next wave.
+ * <p>
  * Once all tasks have completed and either the exit condition is met or a hard limit
  * (timeout or task cap) is triggered, the flow terminates. If a {@code yield} expression
  * is present, its result is returned; otherwise, {@code null} is returned.
@@ -83,6 +90,8 @@ public class FlowCommand extends AbstractCommand {
     private final Cell[] cells;
     private final Cell[] startCells;
     private final Map<String, Cell[]> dependentCells;
+    // the levels of the cells, calculated on the first execution, a runtime cache that is not part of the command tree
+    private Map<Cell, Integer> levels;
 
 
     private FlowCommand(
@@ -301,6 +310,63 @@ public class FlowCommand extends AbstractCommand {
         return List.of();
     }
 
+    /**
+     * @return the levels of the cells, calculated on the first use
+     */
+    private Map<Cell, Integer> levels() {
+        var cellLevels = levels;
+        if (cellLevels == null) {
+            cellLevels = calculateLevels();
+            levels = cellLevels;
+        }
+        return cellLevels;
+    }
+
+    /**
+     * Calculate the level of each cell, which is the length of the longest path leading from the start cells to the
+     * cell.
+     * <p>
+     * A depth-first traversal from the start cells drops the dependencies that lead back to a cell on the current
+     * path. These close the cycles, and without them the dependencies form a directed acyclic graph. The reverse
+     * post-order of the traversal is a topological order of this graph, and the levels are calculated in this order.
+     *
+     * @return the map of the cells to their levels
+     */
+    private Map<Cell, Integer> calculateLevels() {
+        final var forward = new HashMap<Cell, List<Cell>>();
+        final var onPath = new HashMap<Cell, Boolean>();
+        final var postOrder = new ArrayList<Cell>();
+        for (final var startCell : startCells) {
+            traverse(startCell, forward, onPath, postOrder);
+        }
+        final var cellLevels = new HashMap<Cell, Integer>();
+        for (int i = postOrder.size() - 1; i >= 0; i--) {
+            final var cell = postOrder.get(i);
+            final int level = cellLevels.computeIfAbsent(cell, k -> 0);
+            for (final var dependent : forward.getOrDefault(cell, List.of())) {
+                cellLevels.merge(dependent, level + 1, Math::max);
+            }
+        }
+        return cellLevels;
+    }
+
+    private void traverse(Cell cell, Map<Cell, List<Cell>> forward, Map<Cell, Boolean> onPath, List<Cell> postOrder) {
+        if (onPath.containsKey(cell)) {
+            return;
+        }
+        onPath.put(cell, true);
+        final var dependents = forward.computeIfAbsent(cell, k -> new ArrayList<>());
+        for (final var dependent : dependentCells.getOrDefault(cell.id, new Cell[0])) {
+            // a dependent still on the path closes a cycle
+            if (!onPath.getOrDefault(dependent, false)) {
+                dependents.add(dependent);
+                traverse(dependent, forward, onPath, postOrder);
+            }
+        }
+        onPath.put(cell, false);
+        postOrder.add(cell);
+    }
+
     private long nextCounter(String id, Map<String, Long> counters) {
         return counters.computeIfAbsent(id, k -> 0L);
     }
@@ -455,8 +521,8 @@ public class FlowCommand extends AbstractCommand {
     private static final ExitFlag CONTINUE = new ExitFlag(false, null);
 
     /**
-     * Executes the flow command using the given context. The execution starts with the first defined cell
-     * and proceeds by spawning tasks for dependent cells whenever a value changes.
+     * Executes the flow command using the given context. The execution starts with the start cells
+     * and proceeds in waves, executing the dependent cells level by level whenever a value changes.
      * <p>
      * The execution will stop under one of the following conditions:
      * <ul>
@@ -511,16 +577,41 @@ public class FlowCommand extends AbstractCommand {
                 final var startTask = startTask(ctx, startCell, exception, nextCounter(startCell.id, stateCounters), childContexts);
                 tasksRunning.add(startTask);
             }
-            exitFlag = updateAndScheduleStart(ctx, tasksRunning, stateCounters, exception, stoppedCells, childContexts, deadline, timeout);
-            if (exitFlag.doExit()) {
-                // the start-up phase timed out; the children are already aborted, do not wait for them
-                tasksRunning.clear();
+            // the cells to execute in the current wave, and in the next one; the value tells if the execution counts
+            // towards the limit, which is not the case for the cells scheduled by the start cells
+            final var wave = new LinkedHashMap<Cell, Boolean>();
+            final var nextWave = new LinkedHashMap<Cell, Boolean>();
+            exitFlag = updateAndScheduleStart(ctx, tasksRunning, stateCounters, exception, wave, childContexts, deadline, timeout);
+            if (!exitFlag.doExit()) {
+                exitFlag = isExitConditionMet(ctx);
             }
 
-            while (!tasksRunning.isEmpty()) {
-                // wait until at least one is done, but never past the timeout deadline
-                if (!waitForAnyTask(tasksRunning, deadline)) {
-                    // the deadline passed while all the remaining tasks were still running, possibly
+            while (!exitFlag.doExit() && !(wave.isEmpty() && nextWave.isEmpty())) {
+                if (wave.isEmpty()) {
+                    wave.putAll(nextWave);
+                    nextWave.clear();
+                }
+                final var tasks = new ArrayList<CompletableFuture<CellWithResult>>();
+                long counted = 0;
+                for (final var scheduled : lowestLevel(wave)) {
+                    if (!stoppedCells.contains(scheduled.getKey())) {
+                        tasks.add(startTask(ctx, scheduled.getKey(), exception, nextCounter(scheduled.getKey().id, stateCounters), childContexts));
+                        if (scheduled.getValue()) {
+                            counted++;
+                        }
+                    }
+                }
+                totalScheduled += counted;
+                if (limit >= 0 && counted > 0) {
+                    if (counted >= limit) {
+                        exitFlag = signalExit("Task limit has been reached in flow '%s' command after %d tasks.", flowId, totalScheduled);
+                    } else {
+                        limit -= counted;
+                    }
+                }
+                // wait until the cells of the level are done, but never past the timeout deadline
+                if (!waitForAllTasks(tasks, deadline)) {
+                    // the deadline passed while some of the tasks were still running, possibly
                     // blocked in IO; stop waiting for them and request their termination
                     childContexts.forEach(ThreadContext::abort);
                     exitFlag = signalExit("Flow '%s' timed out after %s ms", flowId, timeout / 1_000_000);
@@ -530,41 +621,23 @@ public class FlowCommand extends AbstractCommand {
                 if (timeout >= 0 && timeout <= currentTime - startTime) {
                     exitFlag = signalExit("Flow '%s' timed out after %s ms", flowId, timeout / 1_000_000);
                 }
-                while (true) {
+                for (final var task : tasks) {
                     throwIfExceptionPresent(exception);
-                    // get one task that is ready
-                    final var task = tasksRunning.stream().filter(CompletableFuture::isDone).findAny();
-                    if (task.isEmpty()) {
-                        break;
-                    }
-                    tasksRunning.remove(task.get());
-                    final var cnR = task.get().get();
-                    // unless we already started exit check if we should
-                    if (!exitFlag.doExit()) {
-                        exitFlag = isExitConditionMet(ctx);
-                    }
-                    // do not schedule new tasks if we started to exit
-                    if (!exitFlag.doExit()) {
-                        if (cnR != null) {
-                            if (cnR.result == Sentinel.FINI) {
-                                stoppedCells.add(cnR.cell);
-                                updateStateCounter(cnR, stateCounters);
-                            } else {
-                                if (cnR.result != Sentinel.NON_MUTAT) {
-                                    final var nr = updateAndScheduleNewTasks(ctx, cnR, tasksRunning, exception, stateCounters, stoppedCells, childContexts);
-                                    totalScheduled += nr;
-                                    if (limit >= 0) {
-                                        if (nr >= limit) {
-                                            exitFlag = signalExit("Task limit has been reached in flow '%s' command after %d tasks.", flowId, totalScheduled);
-                                        } else {
-                                            limit -= nr;
-                                        }
-                                    }
-                                }
-                            }
+                    final var cnR = task.get();
+                    // do not schedule new cells if we started to exit
+                    if (!exitFlag.doExit() && cnR != null) {
+                        if (cnR.result == Sentinel.FINI) {
+                            stoppedCells.add(cnR.cell);
+                            updateStateCounter(cnR, stateCounters);
+                        } else if (cnR.result != Sentinel.NON_MUTAT && updateCellVariable(ctx, cnR, stateCounters)) {
+                            scheduleDependents(cnR.cell, true, wave, nextWave);
                         }
                     }
                 }
+                // the results of the level are applied, check the exit condition before the next level starts
+                if (!exitFlag.doExit()) {
+                    exitFlag = isExitConditionMet(ctx);
+                }
             }
         } catch (ExecutionException e) {
             final var newException = new ExecutionException(e, "While in flow '%s': %s", flowId, e.getMessage());
@@ -595,23 +668,21 @@ public class FlowCommand extends AbstractCommand {
     }
 
     /**
-     * Updates the context with results from initial tasks and schedules dependent tasks.
+     * Updates the context with results from initial tasks and schedules the dependent cells for the first wave.
      * This method handles the startup phase of flow execution by:
      * <ol>
      *   <li>Waiting for all initial tasks to complete</li>
-     *   <li>Collecting update operations that need to be performed</li>
-     *   <li>Executing updates and scheduling dependent tasks in a controlled manner</li>
+     *   <li>Updating the cell state variables of the start cells</li>
+     *   <li>Scheduling the dependent cells</li>
      * </ol>
      * <p>
-     * The method uses a two-phase approach where updates are first collected into
-     * {@code newTasksSchedulers} and then executed.
-     * This ensures that all the initial cell state variables are updated when the first dependent task starts.
+     * All the initial cell state variables are updated when the first dependent task starts.
      *
      * @param ctx           the shared execution context
      * @param tasksRunning  set of currently executing tasks
      * @param stateCounters map tracking the version of each cell's state
      * @param exception     shared reference for propagating exceptions
-     * @param stoppedCells  set of cells that have completed execution
+     * @param wave          the cells of the first wave, filled by this method
      * @param childContexts the thread contexts of the tasks started by this flow execution
      * @param deadline      the absolute {@link System#nanoTime()} value when the flow times out, or -1 for no timeout
      * @param timeout       the flow timeout in nanoseconds, or -1; used only for the error message
@@ -624,7 +695,7 @@ public class FlowCommand extends AbstractCommand {
                                             HashSet<CompletableFuture<CellWithResult>> tasksRunning,
                                             HashMap<String, Long> stateCounters,
                                             AtomicReference<Exception> exception,
-                                            HashSet<Cell> stoppedCells,
+                                            Map<Cell, Boolean> wave,
                                             List<ThreadContext> childContexts,
                                             long deadline,
                                             long timeout
@@ -637,34 +708,63 @@ public class FlowCommand extends AbstractCommand {
             childContexts.forEach(ThreadContext::abort);
             return signalExit("Flow '%s' timed out after %s ms", flowId, timeout / 1_000_000);
         }
-        final var newTasksSchedulers = new ArrayList<Runnable>();
+        final var updatedCells = new ArrayList<Cell>();
         for (final var task : tasksRunning) {
             final var cnR = task.get();
-            if (exception.get() != null) {
-                return CONTINUE;
-            }
+            throwIfExceptionPresent(exception);
             final var updated = updateCellVariable(ctx, cnR, stateCounters);
             if (updated) {
-                newTasksSchedulers.add(() -> scheduleNewTasks(ctx, cnR, tasksRunning, exception, stateCounters, stoppedCells, childContexts));
+                updatedCells.add(cnR.cell);
             } else {
                 throw new ExecutionException("Updating initial value '%s' failed. Probably double defined in initial state in flow '%s'", cnR.cell.id, flowId);
             }
         }
-        for (final var schedule : newTasksSchedulers) {
-            schedule.run();
+        for (final var cell : updatedCells) {
+            scheduleDependents(cell, false, wave, wave);
         }
         return CONTINUE;
     }
 
     /**
-     * Waits until at least one of the given tasks completes, but never past the given deadline.
+     * Schedule the cells depending on the cell, which has got a new value. A dependent cell of a higher level is
+     * executed later in the same wave, a dependent cell of the same or a lower level closes a cycle, and it is
+     * executed in the next wave. A cell already scheduled is not scheduled again.
      *
-     * @param tasksRunning the currently running tasks, must not be empty
-     * @param deadline     the absolute {@link System#nanoTime()} value when the flow times out, or -1 for no deadline
-     * @return {@code true} if at least one task is done, {@code false} if the deadline passed first
+     * @param cell     the cell that has got a new value
+     * @param counted  {@code true} if the executions of the dependent cells count towards the limit
+     * @param wave     the cells scheduled for the current wave
+     * @param nextWave the cells scheduled for the next wave
      */
-    private static boolean waitForAnyTask(HashSet<CompletableFuture<CellWithResult>> tasksRunning, long deadline) {
-        return waitFor(CompletableFuture.anyOf(tasksRunning.toArray(CompletableFuture[]::new)), deadline);
+    private void scheduleDependents(Cell cell, boolean counted, Map<Cell, Boolean> wave, Map<Cell, Boolean> nextWave) {
+        final var cellLevels = levels();
+        final int level = cellLevels.get(cell);
+        for (final var dependent : dependentCells.getOrDefault(cell.id, new Cell[0])) {
+            final var target = cellLevels.get(dependent) > level ? wave : nextWave;
+            target.merge(dependent, counted, Boolean::logicalOr);
+        }
+    }
+
+    /**
+     * Remove the cells of the lowest level from the scheduled cells.
+     *
+     * @param wave the scheduled cells, must not be empty
+     * @return the removed cells with the flags telling whether they count towards the limit
+     */
+    private List<Map.Entry<Cell, Boolean>> lowestLevel(Map<Cell, Boolean> wave) {
+        final var cellLevels = levels();
+        int lowest = Integer.MAX_VALUE;
+        for (final var cell : wave.keySet()) {
+            lowest = Math.min(lowest, cellLevels.get(cell));
+        }
+        final var cells = new ArrayList<Map.Entry<Cell, Boolean>>();
+        for (final var iterator = wave.entrySet().iterator(); iterator.hasNext(); ) {
+            final var entry = iterator.next();
+            if (cellLevels.get(entry.getKey()) == lowest) {
+                cells.add(Map.entry(entry.getKey(), entry.getValue()));
+                iterator.remove();
+            }
+        }
+        return cells;
     }
 
     /**
@@ -674,7 +774,7 @@ public class FlowCommand extends AbstractCommand {
      * @param deadline     the absolute {@link System#nanoTime()} value when the flow times out, or -1 for no deadline
      * @return {@code true} if all tasks are done, {@code false} if the deadline passed first
      */
-    private static boolean waitForAllTasks(HashSet<CompletableFuture<CellWithResult>> tasksRunning, long deadline) {
+    private static boolean waitForAllTasks(Collection<CompletableFuture<CellWithResult>> tasksRunning, long deadline) {
         return waitFor(CompletableFuture.allOf(tasksRunning.toArray(CompletableFuture[]::new)), deadline);
     }
 
@@ -739,65 +839,6 @@ public class FlowCommand extends AbstractCommand {
         }
     }
 
-    /**
-     * Schedules new tasks for all dependent cells of the given cell if its result differs from
-     * the previously stored value in the context.
-     * <p>
-     * This method also updates the cell state variable.
-     * <p>
-     * Only dependent cells are scheduled, and the new value is updated in the local context.
-     * The method returns the number of new tasks that were started.
-     *
-     * @param ctx           the context for evaluation
-     * @param cnR           the cell with its evaluated result
-     * @param tasksRunning  the current set of running tasks to which new ones will be added
-     * @param exception     a shared reference to report any thrown exception from tasks
-     * @param stateCounters the state variable counters as they currently are
-     * @param stoppedCells  is the set of cells that have returned fini signaling that they are done.
-     * @return the number of new tasks scheduled
-     */
-    private int updateAndScheduleNewTasks(LocalContext ctx, CellWithResult cnR, HashSet<CompletableFuture<CellWithResult>> tasksRunning, AtomicReference<Exception> exception, Map<String, Long> stateCounters, HashSet<Cell> stoppedCells, List<ThreadContext> childContexts) {
-        final var updated = updateCellVariable(ctx, cnR, stateCounters);
-        if (updated) {
-            return scheduleNewTasks(ctx, cnR, tasksRunning, exception, stateCounters, stoppedCells, childContexts);
-        } else {
-            return 0;
-        }
-    }
-
-
-    /**
-     * Schedules new computation tasks for all cells that depend on the given cell's value.
-     * Only cells that have not stopped (not returned FINI) will be scheduled for execution.
-     *
-     * @param ctx           the context in which tasks will be executed
-     * @param cnR           the cell with its newly computed result that may trigger dependent cells
-     * @param tasksRunning  the set of currently running tasks to which new tasks will be added
-     * @param exception     shared reference for propagating exceptions from tasks
-     * @param stateCounters map tracking the version/counter of each cell's state
-     * @param stoppedCells  set of cells that have signaled completion and should not be rescheduled
-     * @return the number of new tasks that were scheduled
-     */
-    private int scheduleNewTasks(LocalContext ctx,
-                                 CellWithResult cnR,
-                                 HashSet<CompletableFuture<CellWithResult>> tasksRunning,
-                                 AtomicReference<Exception> exception,
-                                 Map<String, Long> stateCounters,
-                                 HashSet<Cell> stoppedCells,
-                                 List<ThreadContext> childContexts) {
-        int newTasksScheduled = 0;
-        final var dCells = this.dependentCells.get(cnR.cell.id);
-        if (dCells != null) {
-            for (final var cell : dCells) {
-                if (!stoppedCells.contains(cell)) {
-                    tasksRunning.add(startTask(ctx, cell, exception, nextCounter(cell.id, stateCounters), childContexts));
-                    newTasksScheduled++;
-                }
-            }
-        }
-        return newTasksScheduled;
-    }
-
     /**
      * Updates the cell variable in the context if the calculated value is new and not stale.
      * A value is considered new if it differs from the current value in the context.
@@ -1,13 +1,25 @@
 package ch.turic.commands;
 
 import ch.turic.Command;
+import ch.turic.commands.operators.Cast;
 import ch.turic.exceptions.ExecutionException;
+import ch.turic.memory.GlobalContext;
 import ch.turic.memory.LocalContext;
 import ch.turic.memory.LeftValue;
 import ch.turic.memory.LngList;
+import ch.turic.memory.LongSequence;
+import ch.turic.memory.NameGen;
+import ch.turic.memory.ThreadContext;
 import ch.turic.utils.Unmarshaller;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class ForEachLoop extends Loop {
     /**
@@ -23,8 +35,20 @@ public class ForEachLoop extends Loop {
     public final boolean resultList;
     public final Command body;
     public final Command exitCondition;
+    /**
+     * true if the iterations run on several threads
+     */
+    public final boolean parallel;
+    /**
+     * the maximum number of threads of a parallel loop, null to use as many as the number of the processors
+     */
+    public final Command threads;
 
     public ForEachLoop(Identifier[] identifiers, final boolean listLoopVar, Identifier with, Command expression, boolean resultList, Command body, Command exitCondition) {
+        this(identifiers, listLoopVar, with, expression, resultList, body, exitCondition, false, null);
+    }
+
+    public ForEachLoop(Identifier[] identifiers, final boolean listLoopVar, Identifier with, Command expression, boolean resultList, Command body, Command exitCondition, boolean parallel, Command threads) {
         if (identifiers == null || identifiers.length == 0) {
             throw new IllegalArgumentException("Loop needs at least one identifier. Got: " + Arrays.toString(identifiers));
         }
@@ -38,6 +62,8 @@ public class ForEachLoop extends Loop {
         this.resultList = resultList;
         this.body = body;
         this.exitCondition = exitCondition;
+        this.parallel = parallel;
+        this.threads = threads;
     }
 
     public Command body() {
@@ -52,7 +78,9 @@ public class ForEachLoop extends Loop {
                 args.command("expression"),
                 args.bool("resultList"),
                 args.command("body"),
-                args.command("exitCondition")
+                args.command("exitCondition"),
+                args.bool("parallel"),
+                args.command("threads")
         );
     }
 
@@ -68,50 +96,339 @@ public class ForEachLoop extends Loop {
     public Object _execute(final LocalContext context) throws ExecutionException {
         context.step();
         final var loopContext = context.wrap();
+        if (parallel && !context.globalContext.debugMode()) {
+            return new ParallelRun(loopContext).execute();
+        }
+        final var run = new Run(loopContext, resultList ? new LngList() : null);
+        if (expression instanceof ListComposition composition && !context.globalContext.debugMode()) {
+            // the elements are filtered and mapped one by one, the list of the composition is not created
+            final var elements = composition.elements(loopContext);
+            while (elements.hasNext()) {
+                if (run.next(elements.next())) {
+                    break;
+                }
+            }
+            return run.result();
+        }
         final var array = expression.execute(loopContext);
-        Object lp = null;
-        final var listResult = resultList ? new LngList() : null;
-        long loopCounter = 0;
-        for (final var item : LeftValue.toIterable(array)) {
-            final var innerContext = loopContext.wrap();
-            if (with != null) {
-                innerContext.let0(with.name, loopCounter);
-                innerContext.freeze(with.name);
-            }
-            if (listLoopVar) {
-                if (item instanceof Iterable<?> list) {
-                    int i = 0;
-                    for (var listItem : list) {
-                        if (i >= identifiers.length) {
-                            throw new ExecutionException("Loop with list-loop-var needs " + identifiers.length + " arguments, and got more: " + item);
-                        }
-                        innerContext.let0(identifiers[i].name, listItem);
-                        innerContext.freeze(identifiers[i].name);
-                        i++;
-                    }
-                    if (i < identifiers.length) {
-                        throw new ExecutionException("Loop with list-loop-var needs " + identifiers.length + " arguments, and got less: " + item);
-                    }
-                } else {
-                    throw new ExecutionException("Loop with list-loop-var needs to work on a list. Got: " + item.getClass().getName());
+        final var sequence = LongSequence.of(array);
+        if (sequence != null) {
+            // count with a primitive, the value is boxed only when it is bound to the loop variable
+            final long step = sequence.step();
+            for (long value = sequence.start(); sequence.includes(value); value += step) {
+                if (run.next(value)) {
+                    break;
                 }
-            } else {
-                innerContext.let0(identifiers[0].name, item);
-                innerContext.freeze(identifiers[0].name);
+            }
+        } else {
+            for (final var item : LeftValue.toIterable(array)) {
+                if (run.next(item)) {
+                    break;
+                }
+            }
+        }
+        return run.result();
+    }
+
+    /**
+     * The state of one execution of the loop, the same for the iteration over a list and the counting over a range.
+     */
+    private final class Run {
+        private final LocalContext loopContext;
+        private final LngList listResult;
+        private LocalContext innerContext = null;
+        private int mark = 0;
+        private long loopCounter = 0;
+        private Object lp = null;
+        private boolean broken = false;
+
+        private Run(final LocalContext loopContext, final LngList listResult) {
+            this.loopContext = loopContext;
+            this.listResult = listResult;
+        }
+
+        /**
+         * Execute the body for the next item.
+         *
+         * @param item the value of the loop variable, or the list of the values when there are more loop variables
+         * @return {@code true} if the loop has to stop
+         */
+        private boolean next(final Object item) {
+            final var previous = innerContext;
+            innerContext = iterationContext(loopContext, previous, mark);
+            final boolean reused = innerContext == previous;
+            bindLoopVariables(innerContext, item, loopCounter, reused);
+            if (!reused) {
+                mark = innerContext.frameMark();
             }
 
             lp = loopCore(body, innerContext, listResult);
             if (breakLoop(lp)) {
-                return normalize(lp);
+                lp = normalize(lp);
+                broken = true;
+                return true;
             } else {
                 lp = normalize(lp);
             }
             if (exitLoop(innerContext)) {
-                break;
+                return true;
             }
             loopCounter++;
+            return false;
+        }
+
+        private Object result() {
+            return resultList && !broken ? listResult : lp;
+        }
+    }
+
+    /**
+     * The state of one execution of a parallel loop.
+     * <p>
+     * The items are collected first, and then the iterations run on the executor of the interpreter, on at most as
+     * many threads as the loop may use. Each thread takes the next item until there are no more, or the loop stops.
+     * The threads run in new thread contexts, the same way as an {@code async} block: the variables are copied to
+     * the thread context and frozen, the iterations cannot change them. Every thread takes a thread permit (see
+     * {@link GlobalContext#acquireThreadPermit()}). When no thread can be started, the loop runs on the current thread
+     * in a thread context of its own.
+     * <p>
+     * When an iteration executes {@code break}, or the exit condition is true after it, no more iterations start. The
+     * result is the same as if the loop stopped at the first such iteration in the order of the items, although the
+     * iterations of later items already started are finished. The list result collects the values of the iterations
+     * in the order of the items.
+     * <p>
+     * When an iteration fails, the other threads are aborted, and the first exception is thrown after all the
+     * threads stopped.
+     */
+    private final class ParallelRun {
+        private final LocalContext loopContext;
+        private final List<Object> items = new ArrayList<>();
+        // the value of each iteration; the list of the values for a list loop
+        private Object[] values;
+        private boolean[] broken;
+        // the index of the first iteration that stopped the loop, Integer.MAX_VALUE if none did
+        private final AtomicInteger stop = new AtomicInteger(Integer.MAX_VALUE);
+        private final AtomicInteger next = new AtomicInteger();
+        private final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        // the thread contexts of the running threads, aborted when an iteration fails
+        private final List<ThreadContext> threadContexts = new CopyOnWriteArrayList<>();
+
+        private ParallelRun(final LocalContext loopContext) {
+            this.loopContext = loopContext;
+        }
+
+        private Object execute() throws ExecutionException {
+            collectItems();
+            values = new Object[items.size()];
+            broken = new boolean[items.size()];
+            final int n = (int) Math.min(threads(), items.size());
+            final var global = loopContext.globalContext;
+            final var futures = new ArrayList<CompletableFuture<Void>>(n);
+            for (int i = 0; i < n; i++) {
+                try {
+                    global.acquireThreadPermit();
+                } catch (ExecutionException e) {
+                    // no more threads, the started ones process all the items
+                    break;
+                }
+                final var threadContext = threadContext();
+                try {
+                    final var future = CompletableFuture.runAsync(() -> {
+                        Thread.currentThread().setName(NameGen.generateName());
+                        threadContext.threadContext.setThread(Thread.currentThread());
+                        try {
+                            iterate(threadContext);
+                        } finally {
+                            threadContexts.remove(threadContext.threadContext);
+                            threadContext.close();
+                            global.releaseThreadPermit();
+                        }
+                    }, global.executor());
+                    global.registerTask(future);
+                    futures.add(future);
+                } catch (RejectedExecutionException e) {
+                    global.releaseThreadPermit();
+                    threadContexts.remove(threadContext.threadContext);
+                    threadContext.close();
+                    fail(new ExecutionException(e, "Cannot start parallel loop, the interpreter is shut down"));
+                    break;
+                }
+            }
+            if (futures.isEmpty() && failure.get() == null) {
+                final var threadContext = threadContext();
+                try {
+                    iterate(threadContext);
+                } finally {
+                    threadContexts.remove(threadContext.threadContext);
+                    threadContext.close();
+                }
+            }
+            for (final var future : futures) {
+                try {
+                    future.get();
+                } catch (InterruptedException e) {
+                    fail(new ExecutionException(e, "Parallel loop was interrupted"));
+                    Thread.currentThread().interrupt();
+                    break;
+                } catch (java.util.concurrent.ExecutionException e) {
+                    fail(new ExecutionException(e.getCause(), "Parallel loop failed"));
+                }
+            }
+            if (failure.get() != null) {
+                throw failure.get();
+            }
+            return result();
+        }
+
+        private void collectItems() {
+            if (expression instanceof ListComposition composition) {
+                composition.elements(loopContext).forEachRemaining(items::add);
+                return;
+            }
+            final var array = expression.execute(loopContext);
+            final var sequence = LongSequence.of(array);
+            if (sequence != null) {
+                final long step = sequence.step();
+                for (long value = sequence.start(); sequence.includes(value); value += step) {
+                    items.add(value);
+                }
+            } else {
+                for (final var item : LeftValue.toIterable(array)) {
+                    items.add(item);
+                }
+            }
+        }
+
+        /**
+         * @return the number of threads the loop may use, at least one
+         */
+        private long threads() throws ExecutionException {
+            if (threads == null) {
+                return Runtime.getRuntime().availableProcessors();
+            }
+            final var value = threads.execute(loopContext);
+            if (!Cast.isLong(value) || Cast.toLong(value) < 1) {
+                throw new ExecutionException("parallel loop needs a positive number of threads, got '%s'", value);
+            }
+            return Cast.toLong(value);
+        }
+
+        /**
+         * @return a new thread context with the variables of the loop copied and frozen
+         */
+        private LocalContext threadContext() {
+            final var threadContext = loopContext.thread();
+            for (final var key : loopContext.allLocalKeys()) {
+                threadContext.let0(key, loopContext.get(key));
+                threadContext.freeze(key);
+            }
+            threadContexts.add(threadContext.threadContext);
+            return threadContext;
+        }
+
+        /**
+         * Execute the iterations of the items not taken yet.
+         */
+        private void iterate(final LocalContext threadContext) {
+            try {
+                for (int i = next.getAndIncrement(); i < items.size() && i < stop.get() && failure.get() == null;
+                     i = next.getAndIncrement()) {
+                    final var innerContext = threadContext.wrap();
+                    bindLoopVariables(innerContext, items.get(i), i, false);
+                    final var listResult = resultList ? new LngList() : null;
+                    final var lp = loopCore(body, innerContext, listResult);
+                    values[i] = normalize(lp);
+                    if (breakLoop(lp)) {
+                        broken[i] = true;
+                        stopAt(i);
+                    } else if (exitLoop(innerContext)) {
+                        stopAt(i);
+                    }
+                }
+            } catch (RuntimeException e) {
+                fail(e);
+            }
+        }
+
+        private void stopAt(final int index) {
+            stop.accumulateAndGet(index, Math::min);
+        }
+
+        /**
+         * Keep the first failure and abort the other threads.
+         */
+        private void fail(final RuntimeException e) {
+            if (failure.compareAndSet(null, e)) {
+                for (final var threadContext : threadContexts) {
+                    threadContext.abort();
+                }
+            }
+        }
+
+        private Object result() {
+            final int last = Math.min(stop.get(), items.size() - 1);
+            if (!resultList) {
+                return last < 0 ? null : values[last];
+            }
+            if (last >= 0 && broken[last] && !(values[last] instanceof LngList)) {
+                // a 'return' from the body
+                return values[last];
+            }
+            final var result = new LngList();
+            for (int i = 0; i <= last; i++) {
+                if (values[i] instanceof LngList list) {
+                    result.array.addAll(list.array);
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Define the loop variables in the context of the iteration.
+     *
+     * @param innerContext the context of the iteration
+     * @param item         the value of the loop variable, or the list of the values when there are more loop
+     *                     variables
+     * @param loopCounter  the value of the {@code with} variable
+     * @param reused       the context is reused, and the variables are already defined
+     */
+    private void bindLoopVariables(final LocalContext innerContext, final Object item, final long loopCounter, final boolean reused) {
+        if (with != null) {
+            bind(innerContext, with.name, loopCounter, reused);
+        }
+        if (listLoopVar) {
+            if (item instanceof Iterable<?> list) {
+                int i = 0;
+                for (var listItem : list) {
+                    if (i >= identifiers.length) {
+                        throw new ExecutionException("Loop with list-loop-var needs " + identifiers.length + " arguments, and got more: " + item);
+                    }
+                    bind(innerContext, identifiers[i].name, listItem, reused);
+                    i++;
+                }
+                if (i < identifiers.length) {
+                    throw new ExecutionException("Loop with list-loop-var needs " + identifiers.length + " arguments, and got less: " + item);
+                }
+            } else {
+                throw new ExecutionException("Loop with list-loop-var needs to work on a list. Got: " + item.getClass().getName());
+            }
+        } else {
+            bind(innerContext, identifiers[0].name, item, reused);
+        }
+    }
+
+    /**
+     * Define the loop variable in the context of the iteration, or set the value when the context is reused, and
+     * the variable is already defined.
+     */
+    private static void bind(final LocalContext innerContext, final String name, final Object value, final boolean reused) {
+        if (reused) {
+            innerContext.rebind(name, value);
+        } else {
+            innerContext.let0(name, value);
+            innerContext.freeze(name);
         }
-        return resultList ? listResult : lp;
     }
 
     @Override
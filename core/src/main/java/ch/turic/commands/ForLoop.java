@@ -69,8 +69,9 @@ public class ForLoop extends Loop {
         if (startCommand != null) {
             startCommand.execute(loopContext);
         }
+        LocalContext innerContext = null;
         while (Cast.toBoolean(loopCondition.execute(loopContext))) {
-            final var innerContext = loopContext.wrap();
+            innerContext = iterationContext(loopContext, innerContext, 0);
             try (final var x = loopContext.lock()) {
                 lp = loopCore(body, innerContext, listResult);
             }
@@ -0,0 +1,134 @@
+package ch.turic.commands;
+
+import ch.turic.Command;
+import ch.turic.memory.LocalContext;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The escape analysis of the loop bodies.
+ * <p>
+ * A loop executes the body in a new context for each iteration. The context can be reused for the next iteration if
+ * nothing holds a reference to it after the iteration. The commands creating values which keep the context they were
+ * created in are
+ *
+ * <ul>
+ *     <li>the closure and function definitions, the closures wrap the context,</li>
+ *     <li>the class definitions, the class context wraps the context,</li>
+ *     <li>the {@code async} commands and the {@code flow} commands, which execute code on other threads.</li>
+ * </ul>
+ * <p>
+ * A body containing any of these commands, at any depth, captures its frame. The built-in functions creating such
+ * values mark the context at run time, see {@link LocalContext#capture()}.
+ * <p>
+ * The analysis walks the command tree the same way the {@link ch.turic.utils.Marshaller} does: it follows the final,
+ * non-static fields of the objects.
+ */
+final class FrameEscape {
+    private static final Map<Class<?>, List<Field>> FIELDS = new ConcurrentHashMap<>();
+
+    private final Map<Object, Boolean> visited = new IdentityHashMap<>();
+
+    private FrameEscape() {
+    }
+
+    /**
+     * @param commands the commands executed in the context of an iteration, {@code null} elements are ignored
+     * @return {@code true} if any of the commands may create a value that keeps a reference to the context
+     */
+    static boolean captures(final Command... commands) {
+        final var analysis = new FrameEscape();
+        for (final var command : commands) {
+            if (analysis.visit(command)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The escape analysis of a closure body, done only once for each body.
+     *
+     * @param body the body of the closure
+     * @return {@code true} if any of the commands of the body may create a value that keeps a reference to the context
+     */
+    static boolean captures(final BlockCommand body) {
+        if (body.frameEscape == 0) {
+            body.frameEscape = captures(body.commands()) ? (byte) -1 : (byte) 1;
+        }
+        return body.frameEscape < 0;
+    }
+
+    private boolean visit(final Object node) {
+        if (node == null || visited.put(node, Boolean.TRUE) != null) {
+            return false;
+        }
+        return switch (node) {
+            case ClosureDefinition ignored -> true;
+            case FunctionDefinition ignored -> true;
+            case ClassDefinition ignored -> true;
+            case AsyncEvaluation ignored -> true;
+            case FlowCommand ignored -> true;
+            // values already created, e.g., a closure in a constant, do not capture the context of the loop
+            case ClosureLike ignored -> false;
+            case LocalContext ignored -> false;
+            case Object[] array -> any(Arrays.asList(array));
+            case Collection<?> collection -> any(collection);
+            case Map<?, ?> map -> any(map.keySet()) || any(map.values());
+            default -> fieldsCapture(node);
+        };
+    }
+
+    private boolean any(final Collection<?> elements) {
+        for (final var element : elements) {
+            if (visit(element)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean fieldsCapture(final Object node) {
+        if (!node.getClass().getName().startsWith("ch.turic.") || node.getClass().isEnum()) {
+            return false;
+        }
+        for (final var field : fields(node.getClass())) {
+            final Object value;
+            try {
+                value = field.get(node);
+            } catch (IllegalAccessException e) {
+                // a field we cannot read may hold anything
+                return true;
+            }
+            if (visit(value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static List<Field> fields(final Class<?> klass) {
+        return FIELDS.computeIfAbsent(klass, k -> {
+            final var fields = new ArrayList<Field>();
+            for (var c = k; c != null && c != Object.class; c = c.getSuperclass()) {
+                for (final var field : c.getDeclaredFields()) {
+                    final var modifiers = field.getModifiers();
+                    if (!field.isSynthetic() && Modifier.isFinal(modifiers) && !Modifier.isStatic(modifiers)
+                            && !field.getType().isPrimitive()) {
+                        field.setAccessible(true);
+                        fields.add(field);
+                    }
+                }
+            }
+            return fields;
+        });
+    }
+}
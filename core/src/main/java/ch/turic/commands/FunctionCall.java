@@ -5,7 +5,7 @@ import ch.turic.exceptions.ExecutionException;
 import ch.turic.LngCallable;
 import ch.turic.builtins.classes.TuriNone;
 import ch.turic.memory.*;
-import ch.turic.utils.Reflection;
+import ch.turic.utils.JavaMethod;
 import ch.turic.utils.Unmarshaller;
 
 import java.util.Arrays;
@@ -27,6 +27,11 @@ import static ch.turic.commands.Macro.evaluateMacroArguments;
  */
 public class FunctionCall extends FunctionCallOrCurry {
 
+    // the method lookup cache of the call site, a runtime cache that is not part of the command tree
+    private InlineCache methodCache;
+    // the Java method this site called the last time, a runtime cache that is not part of the command tree
+    private JavaMethod javaMethod;
+
     public FunctionCall(Command object, Argument[] arguments) {
         super(object, arguments);
     }
@@ -48,9 +53,13 @@ public class FunctionCall extends FunctionCallOrCurry {
                 // apply to reflective calls, not only to class lookups by name
                 context.globalContext.classLoader.checkScriptAccess(jc.klass());
                 final var args = bareValues(evaluateClosureArguments(context, this.arguments));
-                final var method = Reflection.getStaticMethodForArgs(jc.klass(), fieldAccess.identifier(), args);
+                final var method = javaMethod(context, jc.klass(), null, fieldAccess.identifier(), args);
+                if (method == null) {
+                    throw new ExecutionException("Cannot find static method '%s' in class '%s' with arguments %s", fieldAccess.identifier(), jc.klass().getName(),
+                            Arrays.stream(args).map(o -> o == null ? "null" : o.getClass() + ":" + o).collect(Collectors.joining(",")));
+                }
                 try {
-                    return Reflection.invoke(method, null, args);
+                    return method.invoke(null, args);
                 } catch (Exception e) {
                     throw new ExecutionException(e);
                 }
@@ -73,20 +82,27 @@ public class FunctionCall extends FunctionCallOrCurry {
                         // is checked against the same floor and allowlist as a load-by-name.
                         context.globalContext.classLoader.checkScriptAccess(jo.object().getClass());
                         final var args = bareValues(evaluateClosureArguments(context, this.arguments));
-                        final var method = Reflection.getMethodForArgs(jo.object(), fieldAccess.identifier(), args);
+                        final var method = javaMethod(context, jo.object().getClass(), jo.object(), fieldAccess.identifier(), args);
                         if (method == null) {
                             throw new ExecutionException("Cannot find method '%s' on object '%s' with arguments %s", fieldAccess.identifier(), jo.object(),
                                     Arrays.stream(args).map(o -> o.getClass() + ":" + o).collect(Collectors.joining(",")));
                         }
                         try {
-                            return Reflection.invoke(method, jo.object(), args);
+                            return method.invoke(jo.object(), args);
                         } catch (Exception e) {
                             throw new ExecutionException(e);
                         }
                     }
                 }
             } else {
-                function = getMethod(context, obj, fieldAccess.identifier(), fieldAccess instanceof FieldAccess.Internal);
+                final var internal = fieldAccess instanceof FieldAccess.Internal;
+                final var cached = InlineCache.lookup(methodCache, obj, fieldAccess.identifier(), internal);
+                if (cached != null) {
+                    function = cached;
+                } else {
+                    function = getMethod(context, obj, fieldAccess.identifier(), internal);
+                    methodCache = InlineCache.learn(methodCache, obj, fieldAccess.identifier());
+                }
             }
             if (function instanceof ClosureLike command) {
                 final var nullableOptionalResult = command.methodCall(context, obj, fieldAccess.identifier(), this.arguments());
@@ -151,6 +167,30 @@ public class FunctionCall extends FunctionCallOrCurry {
         }
     }
 
+    /**
+     * Find the Java method to call. The call site remembers the method it called the last time, and it is used again
+     * when the class and the argument classes are the same. Otherwise, the cache of the class loader is used.
+     * <p>
+     * The script access to the class has to be checked by the caller before invoking the method, also when it comes
+     * from the cache.
+     *
+     * @param klass  the class of the target object or the class of the static method
+     * @param target the target object or {@code null} for a static method
+     * @return the method or {@code null} if there is no method for the arguments
+     */
+    private JavaMethod javaMethod(final LocalContext context, final Class<?> klass, final Object target, final String name, final Object[] args) {
+        final var last = this.javaMethod;
+        if (last != null && last.matches(klass, name, args, target == null)) {
+            return last;
+        }
+        final var classLoader = context.globalContext.classLoader;
+        final var method = target == null ? classLoader.staticJavaMethod(klass, name, args) : classLoader.javaMethod(target, name, args);
+        if (method != null) {
+            this.javaMethod = method;
+        }
+        return method;
+    }
+
     private Object callBuiltin(final LocalContext context,
                                final LngCallable callable,
                                final ArgumentEvaluated[] argValues) {
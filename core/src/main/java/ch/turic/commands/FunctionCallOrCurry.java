@@ -134,13 +134,18 @@ public abstract class FunctionCallOrCurry extends AbstractCommand {
                                                 final ParameterList pList,
                                                 final ArgumentEvaluated[] argValues,
                                                 final boolean freeze) {
+        final var binding = pList.binding();
+        if (isPositionalCall(binding, argValues)) {
+            definePositionalArguments(ctx, callerContext, pList, binding, argValues, freeze);
+            return;
+        }
         final var filled = new boolean[pList.parameters().length];
-        final var rest = new LngList();
-        final var meta = LngObject.newEmpty(ctx);
+        final var rest = binding.hasRest() ? new LngList() : null;
+        final var meta = binding.hasMeta() ? LngObject.newEmpty(ctx) : null;
         Object closure = null;
         for (int i = 0; i < argValues.length; i++) {
             final var arg = argValues[i];
-            if (i == argValues.length - 1 && pList.closure() != null && arg.id() == null) {
+            if (i == argValues.length - 1 && binding.hasClosure() && arg.id() == null) {
                 boolean allMadatoryPositionalsDone = true;
                 for (int j = 0; j < pList.parameters().length; j++) {
                     if (pList.parameters()[j].type() != ParameterList.Parameter.Type.NAMED_ONLY) {
@@ -160,34 +165,102 @@ public abstract class FunctionCallOrCurry extends AbstractCommand {
         }
         for (int i = 0; i < pList.parameters().length; i++) {
             if (!filled[i]) {
-                final var parameter = pList.parameters()[i];
-                if (parameter.defaultExpression() == null) {
-                    throw new ExecutionException("Parameter '%s' is not defined", parameter.identifier());
-                } else {
-                    final var value = parameter.defaultExpression().execute(callerContext);
-                    ctx.defineTypeChecked(parameter.identifier(), value, calculateTypeNames(ctx, parameter.types()));
-                    if (freeze) {
-                        ctx.freeze(parameter.identifier());
-                    }
-                }
+                defineDefault(ctx, callerContext, pList, i, freeze);
             }
         }
-        if (pList.rest() != null) {
-            ctx.let0(pList.rest(), rest);
-            if (freeze) {
-                ctx.freeze(pList.rest());
+        defineSpecial(ctx, pList.rest(), rest, freeze);
+        defineSpecial(ctx, pList.meta(), meta, freeze);
+        if (binding.hasClosure()) {
+            defineSpecial(ctx, pList.closure(), closure, freeze);
+        }
+    }
+
+    /**
+     * @return {@code true} if the call passes only plain positional arguments, each going to the parameter at the
+     * same index, and there is no closure parameter that could take the last argument
+     */
+    private static boolean isPositionalCall(final ParameterList.Binding binding, final ArgumentEvaluated[] argValues) {
+        if (binding.hasClosure() || argValues.length > binding.positionals()) {
+            return false;
+        }
+        for (final var arg : argValues) {
+            if (arg.id != null || arg.value instanceof Spread) {
+                return false;
             }
         }
-        if (pList.meta() != null) {
-            ctx.let0(pList.meta(), meta);
+        return true;
+    }
+
+    /**
+     * The fast path of {@link #defineArgumentsInContext(LocalContext, LocalContext, ParameterList, ArgumentEvaluated[], boolean)}
+     * for the calls {@link #isPositionalCall(ParameterList.Binding, ArgumentEvaluated[]) passing only positional
+     * arguments}. It does the same, without tracking which parameters got a value.
+     */
+    private static void definePositionalArguments(final LocalContext ctx,
+                                                  final LocalContext callerContext,
+                                                  final ParameterList pList,
+                                                  final ParameterList.Binding binding,
+                                                  final ArgumentEvaluated[] argValues,
+                                                  final boolean freeze) {
+        final var parameters = pList.parameters();
+        for (int i = 0; i < argValues.length; i++) {
+            defineParameter(ctx, pList, i, argValues[i].value);
             if (freeze) {
-                ctx.freeze(pList.meta());
+                ctx.freeze(parameters[i].identifier());
             }
         }
-        if (pList.closure() != null) {
-            ctx.let0(pList.closure(), closure);
+        for (int i = argValues.length; i < parameters.length; i++) {
+            defineDefault(ctx, callerContext, pList, i, freeze);
+        }
+        if (binding.hasRest()) {
+            defineSpecial(ctx, pList.rest(), new LngList(), freeze);
+        }
+        if (binding.hasMeta()) {
+            defineSpecial(ctx, pList.meta(), LngObject.newEmpty(ctx), freeze);
+        }
+    }
+
+    /**
+     * Define the parameter with its declared types. The types are taken from the binding plan of the parameter list
+     * when they could be resolved in advance.
+     */
+    private static void defineParameter(final LocalContext ctx, final ParameterList pList, final int index, final Object value) {
+        final var binding = pList.binding();
+        final var parameter = pList.parameters()[index];
+        final var types = binding.types()[index];
+        if (types != null) {
+            ctx.defineTyped(parameter.identifier(), value, types.resolve(ctx));
+        } else {
+            ctx.defineTypeChecked(parameter.identifier(), value, calculateTypeNames(ctx, parameter.types()));
+        }
+    }
+
+    /**
+     * Define a parameter that did not get a value from the caller, using its default value.
+     *
+     * @throws ExecutionException if the parameter has no default value
+     */
+    private static void defineDefault(final LocalContext ctx, final LocalContext callerContext, final ParameterList pList,
+                                      final int index, final boolean freeze) {
+        final var parameter = pList.parameters()[index];
+        if (parameter.defaultExpression() == null) {
+            throw new ExecutionException("Parameter '%s' is not defined", parameter.identifier());
+        }
+        final var value = parameter.defaultExpression().execute(callerContext);
+        defineParameter(ctx, pList, index, value);
+        if (freeze) {
+            ctx.freeze(parameter.identifier());
+        }
+    }
+
+    /**
+     * Define the {@code [rest]}, {@code {meta}} or {@code |closure|} parameter, if it is declared.
+     */
+    private static void defineSpecial(final LocalContext ctx, final String name, final Object value, final boolean freeze) {
+        if (name != null) {
+            ctx.let0(name, value);
             if (freeze) {
-                ctx.freeze(pList.closure());
+                ctx.freeze(name);
             }
         }
     }
@@ -225,7 +298,7 @@ public abstract class FunctionCallOrCurry extends AbstractCommand {
                         throw new ExecutionException("Parameter '%s' is already defined", argValue.id.name());
                     }
                     filled[j] = true;
-                    ctx.defineTypeChecked(parameter.identifier(), argValue.value, calculateTypeNames(ctx, parameter.types()));
+                    defineParameter(ctx, pList, j, argValue.value);
                     return;
                 }
             }
@@ -286,7 +359,7 @@ public abstract class FunctionCallOrCurry extends AbstractCommand {
                 }
                 if (pList.parameters()[index].type() != ParameterList.Parameter.Type.NAMED_ONLY && !filled[index]) {
                     final var id = pList.parameters()[index].identifier();
-                    ctx.defineTypeChecked(id, argValue.value, calculateTypeNames(ctx, pList.parameters()[index].types()));
+                    defineParameter(ctx, pList, index, argValue.value);
                     if (freeze) {
                         ctx.freeze(id);
                     }
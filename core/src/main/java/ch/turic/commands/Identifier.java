@@ -2,6 +2,7 @@ package ch.turic.commands;
 
 import ch.turic.exceptions.ExecutionException;
 import ch.turic.memory.LocalContext;
+import ch.turic.memory.VariableSlot;
 import ch.turic.utils.Unmarshaller;
 
 /**
@@ -11,18 +12,29 @@ import ch.turic.utils.Unmarshaller;
  */
 public class Identifier extends AbstractCommand {
     final String name;
+    // not final: it is the runtime resolution cache, not part of the command; it is neither marshalled nor listed
+    // among the fields of the command object
+    private VariableSlot slot;
 
     @Override
     public Object _execute(final LocalContext context) throws ExecutionException {
-        return context.get(name);
+        return context.get(slot);
     }
 
     public String name() {
         return name;
     }
 
+    /**
+     * @return the resolution cache of the identifier, see {@link ch.turic.analyzer.Resolver}
+     */
+    public VariableSlot slot() {
+        return slot;
+    }
+
     public Identifier(String name) {
         this.name = name;
+        this.slot = new VariableSlot(name);
     }
 
     public static Identifier factory(Unmarshaller.Args args) {
@@ -6,6 +6,8 @@ import ch.turic.commands.operators.Cast;
 import ch.turic.memory.LocalContext;
 import ch.turic.memory.LeftValue;
 import ch.turic.memory.LngObject;
+import ch.turic.memory.VariableLeftValue;
+import ch.turic.memory.VariableSlot;
 import ch.turic.utils.Unmarshaller;
 
 import java.util.concurrent.atomic.AtomicReference;
@@ -15,6 +17,9 @@ public class IncrementDecrement extends AbstractCommand {
     final LeftValue leftValue;
     final boolean increment;
     final boolean post;
+    // the resolution cache when the left value is a simple variable, null otherwise; not final, it is not part of
+    // the command
+    private VariableSlot slot;
 
     /****
      * Creates an `IncrementDecrement` instance from the provided arguments.
@@ -39,7 +44,15 @@ public class IncrementDecrement extends AbstractCommand {
         this.leftValue = leftValue;
         this.increment = increment;
         this.post = post;
+        this.slot = leftValue instanceof VariableLeftValue v ? new VariableSlot(v.variable()) : null;
+    }
 
+    /**
+     * @return the resolution cache of the modified variable, or {@code null} if the left value is not a simple
+     * variable
+     */
+    public VariableSlot slot() {
+        return slot;
     }
 
     /**
@@ -56,7 +69,9 @@ public class IncrementDecrement extends AbstractCommand {
         ctx.step();
         AtomicReference<Object> result = new AtomicReference<>();
         final Function<Object, Object> converter = increment ? (x) -> applyDelta(ctx, x, result, 1) : (x) -> applyDelta(ctx, x, result, -1);
-        final var newValue = leftValue.reassign(ctx, converter);
+        final var newValue = slot != null
+                ? ((VariableLeftValue) leftValue).reassign(ctx, slot, converter)
+                : leftValue.reassign(ctx, converter);
         final var oldValue = result.get();
         return post ? oldValue : newValue;
     }
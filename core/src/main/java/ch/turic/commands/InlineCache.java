@@ -0,0 +1,161 @@
+package ch.turic.commands;
+
+import ch.turic.memory.HasFields;
+import ch.turic.memory.LngClass;
+import ch.turic.memory.LngObject;
+import ch.turic.memory.Shape;
+import ch.turic.memory.Variable;
+
+import java.util.Arrays;
+
+/**
+ * A polymorphic inline cache of a call site or field access looking up a name on {@link LngObject}s.
+ * <p>
+ * The lookup of a method on an object checks the fields of the object, then the class of the object and the parent
+ * classes recursively. The cache remembers for the last few classes of the objects seen at the site the variable
+ * where the name was found in the class hierarchy. The next lookup on an object of one of these classes only checks
+ * the fields of the object itself, which may shadow the method, and then reads the cached variable.
+ * <p>
+ * The entry of a class is valid as long as the frames of the class and of its parents do not change structurally, see
+ * {@link LngClass#epoch()}. Defining or changing other classes leaves the entry valid. Changing the
+ * value of a variable in a class does not invalidate the cache, because the cache holds the variable and not the
+ * value. A variable holding {@code null} is not used, the lookup in that case goes on to the parent classes, so the
+ * caller falls back to the full lookup. The cache also remembers the classes that do not define the name at all,
+ * e.g., when the site reads a field of the objects; the lookup then checks the object fields only. The objects
+ * without a class are cached the same way, as if they had the class {@code null} defining nothing.
+ * <p>
+ * For each class the cache also remembers the {@link Shape} of the first object seen, and the slot of the name in
+ * it. An object having the same shape has its own field in the same slot, or has no such field when the slot is
+ * {@code -1}, so checking the fields of the object is an indexed load instead of a search by the name.
+ * <p>
+ * The cache is immutable. The command holding it replaces it with an extended copy, so threads executing the same
+ * command see either the old or the new cache, and at worst some entries are lost.
+ */
+final class InlineCache {
+    /**
+     * The number of classes a site can remember. A site that sees more classes is megamorphic, and it keeps the
+     * entries it already has.
+     */
+    static final int POLYMORPHIC_LIMIT = 4;
+
+    private final String name;
+    private final LngClass[] classes;
+    private final Variable[] variables;
+    private final Shape[] shapes;
+    private final int[] slots;
+    // the epochs of the classes when the entries were created
+    private final int[] epochs;
+
+    private InlineCache(String name, LngClass[] classes, Variable[] variables, Shape[] shapes, int[] slots,
+                        int[] epochs) {
+        this.name = name;
+        this.classes = classes;
+        this.variables = variables;
+        this.shapes = shapes;
+        this.slots = slots;
+        this.epochs = epochs;
+    }
+
+    /**
+     * Look up the name on the object using the cache.
+     *
+     * @param cache    the cache of the site, may be {@code null}
+     * @param obj      the object the name is looked up on
+     * @param name     the name of the method or field
+     * @param internal {@code true} when the veil check is skipped, see {@link FieldAccess.Internal}
+     * @return the value found, or {@code null} when the full lookup has to be performed
+     */
+    static Object lookup(final InlineCache cache, final HasFields obj, final String name, final boolean internal) {
+        if (cache == null || !(obj instanceof LngObject object) || object.getClass() != LngObject.class
+                || !name.equals(cache.name)) {
+            return null;
+        }
+        final var lngClass = object.lngClass();
+        final var classes = cache.classes;
+        for (int i = 0; i < classes.length; i++) {
+            if (classes[i] == lngClass) {
+                if (cache.epochs[i] != epoch(lngClass)) {
+                    return null;
+                }
+                // a veiled name fails in the full lookup with the proper error message
+                if (!internal && object.context().isVeiled(name)) {
+                    return null;
+                }
+                final var shape = cache.shapes[i];
+                final Variable own;
+                if (shape != null && shape == object.shape()) {
+                    final int slot = cache.slots[i];
+                    own = slot < 0 ? null : object.ownVariable(slot);
+                } else {
+                    own = object.ownVariable(name);
+                }
+                if (own != null) {
+                    return own.get();
+                }
+                final var inherited = cache.variables[i];
+                return inherited == null ? null : inherited.get();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Create the cache extended with the class of the object.
+     *
+     * @param cache the current cache of the site, may be {@code null}
+     * @param obj   the object the name was looked up on
+     * @param name  the name of the method or field
+     * @return the new cache to store in the site, or the old one if the object cannot be cached
+     */
+    static InlineCache learn(final InlineCache cache, final HasFields obj, final String name) {
+        // the subclasses of LngObject may implement the field lookup differently
+        if (!(obj instanceof LngObject object) || object.getClass() != LngObject.class) {
+            return cache;
+        }
+        final var lngClass = object.lngClass();
+        // read before the lookup, so a change during the lookup leaves the new entry already invalid
+        final int epoch = epoch(lngClass);
+        final boolean valid = cache != null && name.equals(cache.name);
+        final int known = valid ? indexOf(cache, lngClass) : -1;
+        if (valid && (known >= 0 ? cache.epochs[known] == epoch : cache.classes.length == POLYMORPHIC_LIMIT)) {
+            return cache;
+        }
+        final var variable = lngClass == null ? null : lngClass.lookupVariable(name);
+        final var shape = object.shape();
+        final int slot = shape == null ? -1 : object.ownSlot(name);
+        if (!valid) {
+            return new InlineCache(name, new LngClass[]{lngClass}, new Variable[]{variable},
+                    new Shape[]{shape}, new int[]{slot}, new int[]{epoch});
+        }
+        // a stale entry of the class is replaced, a new class is appended
+        final int n = known >= 0 ? known : cache.classes.length;
+        final int length = Math.max(cache.classes.length, n + 1);
+        final var classes = Arrays.copyOf(cache.classes, length);
+        final var variables = Arrays.copyOf(cache.variables, length);
+        final var shapes = Arrays.copyOf(cache.shapes, length);
+        final var slots = Arrays.copyOf(cache.slots, length);
+        final var epochs = Arrays.copyOf(cache.epochs, length);
+        classes[n] = lngClass;
+        variables[n] = variable;
+        shapes[n] = shape;
+        slots[n] = slot;
+        epochs[n] = epoch;
+        return new InlineCache(name, classes, variables, shapes, slots, epochs);
+    }
+
+    /**
+     * @return the epoch of the class, zero for the objects without a class, which never change
+     */
+    private static int epoch(final LngClass lngClass) {
+        return lngClass == null ? 0 : lngClass.epoch();
+    }
+
+    private static int indexOf(final InlineCache cache, final LngClass lngClass) {
+        for (int i = 0; i < cache.classes.length; i++) {
+            if (cache.classes[i] == lngClass) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -7,6 +7,9 @@ import ch.turic.utils.Unmarshaller;
 
 public class IntegerConstant extends AbstractCommand {
     final long value;
+    // the value boxed once, so that the execution does not allocate; not final, it is not part of the command. The
+    // Optimizer shares the same instance among the equal literals of a program.
+    private Long boxed;
 
     public long value() {
         return value;
@@ -14,6 +17,7 @@ public class IntegerConstant extends AbstractCommand {
 
     public IntegerConstant(Long value) {
         this.value = value;
+        this.boxed = value;
     }
 
     public IntegerConstant(String value) {
@@ -29,7 +33,7 @@ public class IntegerConstant extends AbstractCommand {
 
     @Override
     public Long _execute(LocalContext ctx) throws ExecutionException {
-        return value;
+        return boxed;
     }
 
     @Override
@@ -3,6 +3,7 @@ package ch.turic.commands;
 
 import ch.turic.exceptions.ExecutionException;
 import ch.turic.analyzer.AssignmentList;
+import ch.turic.memory.DeclaredTypes;
 import ch.turic.memory.LocalContext;
 import ch.turic.utils.Unmarshaller;
 
@@ -13,6 +14,9 @@ import java.util.stream.Collectors;
 public class LetAssignment extends AbstractCommand {
     final AssignmentList.Assignment[] assignments;
     final boolean mut;
+    // the declared types of the assignments resolved on the first execution, a runtime cache that is not part of
+    // the command tree; an element is null when a type is an expression
+    private DeclaredTypes[] declaredTypes;
 
     public AssignmentList.Assignment[] assignments() {
         return assignments;
@@ -32,10 +36,13 @@ public class LetAssignment extends AbstractCommand {
     @Override
     public Object _execute(final LocalContext ctx) throws ExecutionException {
         Object value = null;
-        for (var assignment : assignments) {
+        final var declared = declaredTypes();
+        for (int j = 0; j < assignments.length; j++) {
+            final var assignment = assignments[j];
             ctx.step();
+            final var types = declared[j];
             final String[] typeNames;
-            if (assignment.types() == null) {
+            if (types != null || assignment.types() == null) {
                 typeNames = null;
             } else {
                 typeNames = new String[assignment.types().length];
@@ -44,15 +51,17 @@ public class LetAssignment extends AbstractCommand {
                     typeNames[i] = type.calculateTypeName(ctx);
                 }
             }
+            final Object assigned;
             if (assignment.expression() == null) {
-                ctx.defineTypeChecked(assignment.identifier(),
-                        null,
-                        typeNames);
+                assigned = null;
             } else {
                 value = assignment.expression().execute(ctx);
-                ctx.defineTypeChecked(assignment.identifier(),
-                        value,
-                        typeNames);
+                assigned = value;
+            }
+            if (types != null) {
+                ctx.defineTyped(assignment.identifier(), assigned, types.resolve(ctx));
+            } else {
+                ctx.defineTypeChecked(assignment.identifier(), assigned, typeNames);
             }
             if (!mut) {
                 ctx.freeze(assignment.identifier());
@@ -61,6 +70,18 @@ public class LetAssignment extends AbstractCommand {
         return value;
     }
 
+    private DeclaredTypes[] declaredTypes() {
+        var declared = declaredTypes;
+        if (declared == null) {
+            declared = new DeclaredTypes[assignments.length];
+            for (int i = 0; i < assignments.length; i++) {
+                declared[i] = TypeDeclaration.declaredTypes(assignments[i].types());
+            }
+            declaredTypes = declared;
+        }
+        return declared;
+    }
+
     @Override
     public String toString() {
         return (mut ? "mut " : "let ") + Arrays.stream(assignments).map(Objects::toString).collect(Collectors.joining(", "));
@@ -1,17 +1,49 @@
 package ch.turic.commands;
 
 import ch.turic.Command;
+import ch.turic.analyzer.Pos;
 import ch.turic.exceptions.ExecutionException;
 import ch.turic.commands.operators.Cast;
 import ch.turic.memory.*;
 import ch.turic.utils.Unmarshaller;
 
-import java.util.Objects;
-import java.util.function.Function;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class ListComposition extends AbstractCommand implements HasCommands{
     final Command[] array;
     final CompositionModifier[] modifiers;
+    final CompositionModifier.Parallel parallel;
+
+    // returns the iterator of the elements instead of the list, executed through execute() to have the halting checks
+    // and the trace frame with the position of the composition; not final, it is not part of the command
+    private AbstractCommand streaming = new AbstractCommand() {
+        @Override
+        public Object _execute(final LocalContext context) throws ExecutionException {
+            final var elements = new Elements(context);
+            if (isParallel(context)) {
+                return parallel(context, elements).iterator();
+            }
+            return elements;
+        }
+
+        @Override
+        public Pos startPosition() {
+            return ListComposition.this.startPosition();
+        }
+
+        @Override
+        public Pos endPosition() {
+            return ListComposition.this.endPosition();
+        }
+    };
 
     public Command[] array() {
         return array;
@@ -23,116 +55,480 @@ public class ListComposition extends AbstractCommand implements HasCommands{
     public static ListComposition factory(final Unmarshaller.Args args) {
         return new ListComposition(
                 args.commands("array"),
-                args.get("modifiers", CompositionModifier[].class));
+                args.get("modifiers", CompositionModifier[].class),
+                args.get("parallel", CompositionModifier.Parallel.class));
     }
 
     public ListComposition(Command[] array, CompositionModifier[] modifiers) {
+        this(array, modifiers, null);
+    }
+
+    /**
+     * @param array     the commands resulting the elements, spreads, and ranges
+     * @param modifiers the filters and mappers, and the field provider
+     * @param parallel  the parallel execution of the modifiers, or {@code null} to apply the modifiers on the
+     *                  current thread
+     */
+    public ListComposition(Command[] array, CompositionModifier[] modifiers, CompositionModifier.Parallel parallel) {
         this.array = array;
         this.modifiers = modifiers;
+        this.parallel = parallel;
     }
 
     public CompositionModifier[] modifiers() {
         return modifiers;
     }
 
+    public CompositionModifier.Parallel parallel() {
+        return parallel;
+    }
+
     @Override
     public Object _execute(final LocalContext context) throws ExecutionException {
-        LngList list = new LngList();
-        for (final var command : array) {
-            final var item = command.execute(context);
-            if (item instanceof Spread(Object spread)) {
-                for (final var subitem : LeftValue.toIterable(spread)) {
-                    list.array.add(subitem);
+        final var elements = new Elements(context);
+        final var storage = new NumericList();
+        final var list = new LngList(elements.fieldProvider, storage);
+        if (isParallel(context)) {
+            storage.addAll(parallel(context, elements));
+            return list;
+        }
+        elements.drainTo(storage);
+        return list;
+    }
+
+    /**
+     * Get the elements of the composition without creating the list.
+     * <p>
+     * The commands listing the elements and the field provider are executed when this method is called. The spread
+     * lists and ranges are iterated, and the modifiers are applied to the elements only when the elements are
+     * consumed, one element at a time. The {@code for each} loop uses this method to iterate over a composition, so
+     * <pre>{@code
+     * mut sum = 0
+     * for each i in [0..1000000 ? it % 7 == 0 -> it * it] {
+     *     sum = sum + i
+     * }
+     * }</pre>
+     * <p>
+     * does not create any list. Because the modifiers are applied while the loop runs, a modifier using a variable
+     * sees the value the loop body assigned to it in the earlier iterations. A parallel composition creates the list
+     * of the elements before the first one is returned.
+     *
+     * @param context the context to execute the commands and the modifiers in
+     * @return the iterator of the elements, filtered and mapped
+     * @throws ExecutionException when an element is a non-finite range, or the field provider is not a
+     *                            {@link HasFields}
+     */
+    @SuppressWarnings("unchecked")
+    public Iterator<Object> elements(final LocalContext context) throws ExecutionException {
+        return (Iterator<Object>) streaming.execute(context);
+    }
+
+    private boolean isParallel(final LocalContext context) {
+        return parallel != null && modifiers != null && modifiers.length > 0 && !context.globalContext.debugMode();
+    }
+
+    /**
+     * Apply the modifiers to the elements on several threads.
+     * <p>
+     * The source elements are collected and split into as many consecutive chunks as many threads the composition
+     * may use. The current thread processes the first chunk, and the others are processed on the executor of the
+     * interpreter, each in a new thread context, the same way as an {@code async} block. The variables are copied to
+     * the thread context and frozen, the modifiers cannot change them.
+     * <p>
+     * A chunk that cannot get a thread permit (see {@link GlobalContext#acquireThreadPermit()}) is processed on the
+     * current thread. The chunks processed on the current thread also see only frozen copies of the variables, in a
+     * new frame that does not wrap the context of the composition, so a modifier behaves the same way whichever
+     * thread processes its element. When a modifier fails, the other chunks stop at the next element, and the first
+     * exception is thrown after all the chunks stopped.
+     *
+     * @param context  the context of the composition
+     * @param elements the source elements, the modifiers are not applied by this iterator
+     * @return the modified elements in the order of the source elements
+     */
+    private List<Object> parallel(final LocalContext context, final Elements elements) throws ExecutionException {
+        final var source = new ArrayList<Object>();
+        for (var item = elements.take(); item != Elements.END; item = elements.take()) {
+            source.add(item);
+        }
+        final int chunks = (int) Math.min(threads(context), source.size());
+        final int chunkSize = chunks == 0 ? 0 : (source.size() + chunks - 1) / chunks;
+        final var failure = new AtomicReference<RuntimeException>();
+        final var results = new ArrayList<List<Object>>(chunks);
+        final var futures = new ArrayList<CompletableFuture<List<Object>>>(chunks);
+        final var global = context.globalContext;
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            results.add(null);
+            futures.add(null);
+            if (chunk == 0) {
+                continue;
+            }
+            final int from = chunk * chunkSize;
+            final int to = Math.min(from + chunkSize, source.size());
+            try {
+                global.acquireThreadPermit();
+            } catch (ExecutionException e) {
+                // no more threads, this chunk will be processed on the current thread
+                continue;
+            }
+            final var chunkContext = context.thread();
+            try {
+                copyVariables(context, chunkContext);
+                final var future = CompletableFuture.supplyAsync(() -> {
+                    Thread.currentThread().setName(NameGen.generateName());
+                    chunkContext.threadContext.setThread(Thread.currentThread());
+                    try {
+                        // the variables are frozen in the chunk context, 'it' is local in a wrapped one
+                        return modify(new Modifiers(chunkContext.wrap()), source, from, to, failure);
+                    } catch (RuntimeException e) {
+                        failure.compareAndSet(null, e);
+                        return null;
+                    } finally {
+                        chunkContext.close();
+                        global.releaseThreadPermit();
+                    }
+                }, global.executor());
+                global.registerTask(future);
+                futures.set(chunk, future);
+            } catch (RejectedExecutionException e) {
+                global.releaseThreadPermit();
+                chunkContext.close();
+                failure.compareAndSet(null, new ExecutionException(e, "Cannot start parallel list composition, the interpreter is shut down"));
+                break;
+            }
+        }
+        // the chunks without a thread of their own run on this thread, in a new frame with the variables frozen
+        Modifiers modifiers = null;
+        for (int chunk = 0; chunk < chunks && failure.get() == null; chunk++) {
+            if (futures.get(chunk) == null) {
+                if (modifiers == null) {
+                    final var local = context.open();
+                    copyVariables(context, local);
+                    modifiers = new Modifiers(local.wrap());
+                }
+                final int from = chunk * chunkSize;
+                try {
+                    results.set(chunk, modify(modifiers, source, from, Math.min(from + chunkSize, source.size()), failure));
+                } catch (RuntimeException e) {
+                    failure.compareAndSet(null, e);
+                }
+            }
+        }
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            final var future = futures.get(chunk);
+            if (future != null) {
+                try {
+                    results.set(chunk, future.join());
+                } catch (CompletionException | CancellationException e) {
+                    final var cause = e.getCause() == null ? e : e.getCause();
+                    failure.compareAndSet(null, new ExecutionException(cause, "Parallel list composition failed: %s", cause));
                 }
-            } else if (item instanceof Range(Object rangeStart, Object rangeEnd)) {
-                if (Cast.isLong(rangeStart) && Cast.isLong(rangeEnd)) {
-                    final var start = Cast.toLong(rangeStart);
-                    final var end = Cast.toLong(rangeEnd);
-                    for (long longItem = start; !Objects.equals(longItem, end); longItem += longItem <= end ? 1 : -1) {
-                        list.array.add(longItem);
+            }
+        }
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+        final var list = new ArrayList<>(source.size());
+        for (final var result : results) {
+            list.addAll(result);
+        }
+        return list;
+    }
+
+    /**
+     * @return the number of threads the parallel composition may use, at least one
+     */
+    private long threads(final LocalContext context) throws ExecutionException {
+        if (parallel.threads == null) {
+            return Runtime.getRuntime().availableProcessors();
+        }
+        final var threads = parallel.threads.execute(context);
+        if (!Cast.isLong(threads) || Cast.toLong(threads) < 1) {
+            throw new ExecutionException("parallel list composition needs a positive number of threads, got '%s'", threads);
+        }
+        return Cast.toLong(threads);
+    }
+
+    /**
+     * Apply the modifiers to the elements of a chunk.
+     *
+     * @return the elements not filtered out
+     */
+    private static List<Object> modify(final Modifiers modifiers,
+                                       final List<Object> source,
+                                       final int from,
+                                       final int to,
+                                       final AtomicReference<RuntimeException> failure) {
+        final var result = new ArrayList<>(to - from);
+        for (int i = from; i < to && failure.get() == null; i++) {
+            if (modifiers.modify(source.get(i))) {
+                result.add(modifiers.next);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Copy the variables from the source context to the target context and freeze them in the target context.
+     */
+    private static void copyVariables(LocalContext source, LocalContext target) {
+        for (final var key : source.allLocalKeys()) {
+            target.let0(key, source.get(key));
+            target.freeze(key);
+        }
+    }
+
+    /**
+     * The elements of one execution of the composition. The source lists are consumed once, and all the modifiers are
+     * applied to an element before the next element is taken.
+     */
+    private final class Elements implements Iterator<Object> {
+        // returned by take() when there are no more source elements
+        private static final Object END = new Object();
+        private final LocalContext context;
+        private final Object[] items;
+        private final HasFields fieldProvider;
+        private final Modifiers modifying;
+        private int index = 0;
+        private LongSequence sequence = null;
+        private long value;
+        private List<Object> list = null;
+        private int at;
+        private Iterator<?> iterator = null;
+        private Object next;
+        private boolean ready = false;
+
+        private Elements(final LocalContext context) {
+            this.context = context;
+            this.items = new Object[array.length];
+            for (int i = 0; i < array.length; i++) {
+                final var item = array[i].execute(context);
+                if (item instanceof Range) {
+                    final var range = LongSequence.of(item);
+                    if (range == null) {
+                        throw new ExecutionException("cannot use non finit range or range with non numeric ends in a list literal");
                     }
+                    items[i] = new Spread(range);
                 } else {
-                    throw new ExecutionException("cannot use non finit range or range with non numeric ends in a list literal");
+                    items[i] = item;
+                }
+            }
+            if (modifiers == null || modifiers.length == 0) {
+                fieldProvider = null;
+                modifying = null;
+                return;
+            }
+            if (modifiers[modifiers.length - 1] instanceof CompositionModifier.Attacher attacher) {
+                final var provider = attacher.expression.execute(context);
+                if (provider instanceof HasFields hasFields) {
+                    fieldProvider = hasFields;
+                } else {
+                    throw new ExecutionException("cannot use '%s' as field provider", provider);
                 }
             } else {
-                list.array.add(item);
+                fieldProvider = null;
+            }
+            modifying = new Modifiers(context);
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (!ready) {
+                ready = advance();
+            }
+            return ready;
+        }
+
+        @Override
+        public Object next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            ready = false;
+            final var element = next;
+            next = null;
+            return element;
+        }
+
+        /**
+         * Add all the remaining elements to the storage. Without modifiers, the values of the number sequences are
+         * added without boxing them.
+         *
+         * @param storage where the elements are added
+         */
+        private void drainTo(final NumericList storage) {
+            if (modifying != null) {
+                while (hasNext()) {
+                    storage.add(next());
+                }
+                return;
+            }
+            for (var item = take(); item != END; item = take()) {
+                storage.add(item);
+                if (sequence != null) {
+                    for (; sequence.includes(value); value += sequence.step()) {
+                        storage.addLong(value);
+                    }
+                    sequence = null;
+                }
+            }
+        }
+
+        /**
+         * Take the source elements until one passes all the filters.
+         *
+         * @return {@code true} if there is a next element, stored in {@link #next}
+         */
+        private boolean advance() {
+            for (var item = take(); item != END; item = take()) {
+                if (modifying == null) {
+                    next = item;
+                    return true;
+                }
+                if (modifying.modify(item)) {
+                    next = modifying.next;
+                    modifying.next = null;
+                    return true;
+                }
             }
+            return false;
         }
-        final HasFields fieldProvider;
-        if( modifiers != null && modifiers.length > 0 && modifiers[modifiers.length - 1] instanceof CompositionModifier.Attacher attacher) {
-            final var provider = attacher.expression.execute(context);
-            if( provider instanceof HasFields hasFields) {
-                fieldProvider = hasFields;
-            }else{
-                throw new ExecutionException("cannot use '%s' as field provider",provider);
+
+        /**
+         * @return the next source element without applying the modifiers, or {@link #END}
+         */
+        private Object take() {
+            while (true) {
+                if (sequence != null) {
+                    if (sequence.includes(value)) {
+                        final long item = value;
+                        value += sequence.step();
+                        return item;
+                    }
+                    sequence = null;
+                } else if (list != null) {
+                    // by index, a modifier may modify the list spread
+                    if (at < list.size()) {
+                        return list.get(at++);
+                    }
+                    list = null;
+                } else if (iterator != null) {
+                    if (iterator.hasNext()) {
+                        return iterator.next();
+                    }
+                    iterator = null;
+                } else if (index < items.length) {
+                    final var current = items[index];
+                    items[index++] = null;
+                    if (!(current instanceof Spread(Object spread))) {
+                        return current;
+                    }
+                    open(spread);
+                } else {
+                    return END;
+                }
+            }
+        }
+
+        private void open(final Object spread) {
+            sequence = LongSequence.of(spread);
+            if (sequence != null) {
+                // count with a primitive, the value is boxed only when it is an element
+                value = sequence.start();
+            } else if (spread instanceof LngList lngList) {
+                list = lngList.array;
+                at = 0;
+            } else {
+                iterator = LeftValue.toIterable(spread).iterator();
             }
-        }else{
-            fieldProvider = null;
         }
-        final var filtered = new LngList(fieldProvider);
-        filterElements( list.array.size(), modifiers, context, filtered, x -> list.array.get(x.intValue()));
-        return filtered;
     }
 
     /**
-     * Filter the elements of an array or composition.
-     *
-     * @param end       the end index exclusive
-     * @param modifiers the array of the modifiers that can filter out elements or modify them on the fly
-     * @param context   the context to wrap into a closure context when we execute the modifiers
-     * @param list      is the target to which the non-filter and possibly modified string will be added to
-     * @param fetch     is used to fetch the element for the given index to be filtered out and modified
-     * @throws ExecutionException when some modifiers are not closures
+     * The modifiers of the composition applied in a context. Each thread applying the modifiers has its own instance.
      */
-    private static void filterElements(final long end,
-                                       final CompositionModifier[] modifiers,
-                                       final LocalContext context,
-                                       final LngList list,
-                                       final Function<Long, Object> fetch) throws ExecutionException {
-        for (long i = 0; !Objects.equals(i, end); i += (i <= end ? 1 : -1)) {
-            boolean filtered = false;
-            Object item = fetch.apply(i);
-            if (modifiers != null) {
-                for (final var modifier : modifiers) {
-                    switch (modifier) {
-                        case CompositionModifier.Filter f -> {
-                            context.local("it", item);
-                            final var expression = f.expression.execute(context);
-                            if (expression instanceof Closure closure) {
-                                ExecutionException.when(!closure.parameters().fitModifier(), "Filter closure or function must have exactly one parameter");
-                                final var ctx = context.wrap(context);
-                                setParameter(ctx, closure, item);
-                                filtered = !Cast.toBoolean(closure.execute(ctx));
-                            } else {
-                                filtered = !Cast.toBoolean(expression);
-                            }
-                        }
-                        case CompositionModifier.Attacher ignored -> filtered = false;
-                        case CompositionModifier.Mapper m -> {
-                            context.local("it", item);
-                            final var expression = m.expression.execute(context);
-                            if (expression instanceof Closure closure) {
-                                ExecutionException.when(!closure.parameters().fitModifier(), "Modifier closure or function must have exactly one parameter");
-                                final var ctx = context.wrap(context);
-                                setParameter(ctx, closure, item);
-                                item = closure.execute(ctx);
-                            } else {
-                                item = expression;
-                            }
+    private final class Modifiers {
+        private final LocalContext context;
+        // the closures defined in the modifiers, evaluated only once for the composition
+        private final Object[] hoisted;
+        // the contexts the modifier closures were last executed in, reused when the closure does not capture them
+        private final LocalContext[] frames;
+        private Object next;
+
+        private Modifiers(final LocalContext context) {
+            this.context = context;
+            this.hoisted = new Object[modifiers.length];
+            this.frames = new LocalContext[modifiers.length];
+        }
+
+        /**
+         * Apply the modifiers to the element.
+         *
+         * @param item the element from the source
+         * @return {@code true} if the element was not filtered out, the modified element is stored in {@link #next}
+         * @throws ExecutionException when some modifiers are closures not having exactly one parameter
+         */
+        private boolean modify(Object item) throws ExecutionException {
+            for (int i = 0; i < modifiers.length; i++) {
+                switch (modifiers[i]) {
+                    case CompositionModifier.Filter f -> {
+                        if (!Cast.toBoolean(evaluate(i, f.expression, item, "Filter closure or function must have exactly one parameter"))) {
+                            return false;
                         }
-                        default ->
-                                throw new RuntimeException("unknown modifier types, this is an internal error " + modifier.getClass());
                     }
-                    if (filtered) {
-                        break;
+                    case CompositionModifier.Attacher ignored -> {
                     }
+                    case CompositionModifier.Mapper m ->
+                            item = evaluate(i, m.expression, item, "Modifier closure or function must have exactly one parameter");
+                    default ->
+                            throw new RuntimeException("unknown modifier types, this is an internal error " + modifiers[i].getClass());
                 }
-                if (!filtered) {
-                    list.array.add(item);
+            }
+            next = item;
+            return true;
+        }
+        /**
+         * Evaluate a modifier for the element. The element is the value of {@code it} while the expression is
+         * evaluated. If the expression results a closure, then the closure is called with the element as argument.
+         * <p>
+         * A closure defined in the modifier is created only for the first element. The closure has the context of the
+         * composition, which has the actual value of {@code it}, so it is the same as a closure created for each
+         * element.
+         */
+        private Object evaluate(final int i, final Command expression, final Object item, final String message) {
+            context.local("it", item);
+            Object result = hoisted[i];
+            if (result == null) {
+                result = expression.execute(context);
+                if (expression instanceof ClosureDefinition) {
+                    hoisted[i] = result;
                 }
+            }
+            if (result instanceof Closure closure) {
+                ExecutionException.when(!closure.parameters().fitModifier(), message);
+                return closure.execute(frame(i, closure, item));
+            }
+            return result;
+        }
+
+        /**
+         * Get the context to call the closure of a modifier in. The context of the previous element is reused for a
+         * closure defined in the modifier when nothing could keep a reference to it, the same way as the loops reuse
+         * the contexts of the iterations.
+         */
+        private LocalContext frame(final int i, final Closure closure, final Object item) {
+            final var previous = frames[i];
+            final LocalContext ctx;
+            if (previous != null && !previous.isCaptured() && !context.globalContext.debugMode()) {
+                ctx = previous;
+                ctx.rewind(0);
             } else {
-                list.array.add(item);
+                ctx = context.wrap(context);
+                if (hoisted[i] == closure && !FrameEscape.captures(closure.command())) {
+                    frames[i] = ctx;
+                }
             }
+            setParameter(ctx, closure, item);
+            return ctx;
         }
     }
 
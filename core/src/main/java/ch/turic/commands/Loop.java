@@ -9,8 +9,43 @@ import ch.turic.memory.Sentinel;
 
 public abstract class Loop extends AbstractCommand {
 
+    // whether the loop reuses the context of an iteration for the next one, decided on the first use; a runtime cache
+    // that is not part of the command tree: 0 not decided yet, 1 reused, -1 a new context for each iteration
+    private byte frameReuse;
+
     public abstract Command exitCondition();
 
+    public abstract Command body();
+
+    /**
+     * Get the context for the next iteration of the loop.
+     * <p>
+     * When the body and the exit condition of the loop cannot create anything that keeps a reference to the context
+     * of the iteration (see {@link FrameEscape}), then the context of the previous iteration is reset and reused.
+     * Otherwise, or when the context was captured anyway, or the interpreter is debugged, a new context is created.
+     *
+     * @param loopContext the context of the loop, the iteration contexts wrap it
+     * @param previous    the context of the previous iteration, {@code null} for the first iteration
+     * @param mark        the {@link LocalContext#frameMark() mark} of the previous iteration context, taken after
+     *                    the loop variables were defined in it
+     * @return the context for the iteration. The caller can tell from the identity whether it is the reused one,
+     * which already has the loop variables defined and frozen.
+     */
+    LocalContext iterationContext(final LocalContext loopContext, final LocalContext previous, final int mark) {
+        if (previous != null && reusesFrame() && !previous.isCaptured() && !loopContext.globalContext.debugMode()) {
+            previous.rewind(mark);
+            return previous;
+        }
+        return loopContext.wrap();
+    }
+
+    private boolean reusesFrame() {
+        if (frameReuse == 0) {
+            frameReuse = FrameEscape.captures(body(), exitCondition()) ? (byte) -1 : (byte) 1;
+        }
+        return frameReuse > 0;
+    }
+
     /**
      * Evaluates the exit condition of a loop to determine whether the loop should terminate.
      * This method leverages the {@code exitCondition()} method of the class to execute
@@ -3,6 +3,7 @@ package ch.turic.commands;
 
 import ch.turic.Command;
 import ch.turic.exceptions.ExecutionException;
+import ch.turic.commands.operators.NumericOperator;
 import ch.turic.commands.operators.Operator;
 import ch.turic.memory.LocalContext;
 import ch.turic.utils.Unmarshaller;
@@ -13,6 +14,11 @@ public class Operation extends AbstractCommand {
     final String operator;
     final Command left;
     final Command right;
+    // Runtime caches, not final, so they are neither marshalled nor listed as fields. The operator is looked up on
+    // the first execution, and 'generic' is set when the node sees an operand that is not a Long or Double;
+    // see NumericOperator.
+    private Operator op;
+    private boolean generic = false;
 
     public Command left() {
         return left;
@@ -46,12 +52,40 @@ public class Operation extends AbstractCommand {
     @Override
     public Object _execute(final LocalContext ctx) throws ExecutionException {
         ctx.step();
-
-        if (Operator.OPERATORS.containsKey(operator)) {
-            Operator op = Operator.OPERATORS.get(operator);
+        var op = this.op;
+        if (op == null) {
+            op = Operator.OPERATORS.get(operator);
+            if (op == null) {
+                throw new ExecutionException("Unknown operator " + operator);
+            }
+            this.op = op;
+        }
+        if (left == null || generic || !(op instanceof NumericOperator numeric)) {
             return op.execute(ctx, left, right);
         }
-        throw new ExecutionException("Unknown operator " + operator);
+        return executeNumeric(ctx, numeric);
+    }
+
+    /**
+     * Execute the operation on the fast path as long as the operands are {@link Long} and {@link Double} values.
+     * When any other value shows up, the node switches to the generic path for good, passing the values already
+     * evaluated.
+     */
+    private Object executeNumeric(final LocalContext ctx, final NumericOperator numeric) {
+        final var op1 = left.execute(ctx);
+        if (!(op1 instanceof Long || op1 instanceof Double)) {
+            generic = true;
+            return numeric.executeEvaluatedLeft(ctx, op1, right);
+        }
+        final var op2 = right.execute(ctx);
+        if (op1 instanceof Long a && op2 instanceof Long b) {
+            return numeric.longOp(a, b);
+        }
+        if (op2 instanceof Long || op2 instanceof Double) {
+            return numeric.doubleOp(((Number) op1).doubleValue(), ((Number) op2).doubleValue());
+        }
+        generic = true;
+        return numeric.evaluated(ctx, op1, op2);
     }
 
 }
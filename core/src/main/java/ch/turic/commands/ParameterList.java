@@ -3,6 +3,7 @@ package ch.turic.commands;
 import ch.turic.exceptions.BadSyntax;
 import ch.turic.Command;
 import ch.turic.analyzer.Pos;
+import ch.turic.memory.DeclaredTypes;
 import ch.turic.utils.Unmarshaller;
 
 import java.util.Arrays;
@@ -43,9 +44,17 @@ import java.util.HashSet;
  * If present, their names must be unique and not conflict with any regular parameter identifiers.</p>
  */
 
-public record ParameterList(Parameter[] parameters, String rest, String meta, String closure, Pos position) {
+public final class ParameterList {
     public static final ParameterList EMPTY = new ParameterList(new ParameterList.Parameter[0], null, null, null, new Pos("", null));
 
+    private final Parameter[] parameters;
+    private final String rest;
+    private final String meta;
+    private final String closure;
+    private final Pos position;
+    // the binding plan created on the first call, a runtime cache that is not part of the command tree
+    private Binding binding;
+
     public static ParameterList factory(final Unmarshaller.Args args) {
         return new ParameterList(
                 args.get("parameters", Parameter[].class),
@@ -88,15 +97,82 @@ public record ParameterList(Parameter[] parameters, String rest, String meta, St
      * @param rest       the 'rest' parameter name or null
      * @param meta       the 'meta' parameter name or null
      * @param closure    the 'closure' parameter name or null
+     * @param position   the position of the declaration in the source, used in the error messages
      */
-    public ParameterList {
+    public ParameterList(Parameter[] parameters, String rest, String meta, String closure, Pos position) {
         final var others = Arrays.stream(parameters).map(Parameter::identifier).toArray(String[]::new);
         BadSyntax.when(position, violatesUniqueName(rest, meta, closure, others) ||
                 violatesUniqueName(closure, rest, meta, others) ||
                 violatesUniqueName(meta, closure, rest, others) ||
                 violatesUniqueName(others), "The parameter names have to be unique in a single declaration");
+        this.parameters = parameters;
+        this.rest = rest;
+        this.meta = meta;
+        this.closure = closure;
+        this.position = position;
+    }
+
+    public Parameter[] parameters() {
+        return parameters;
+    }
+
+    public String rest() {
+        return rest;
+    }
+
+    public String meta() {
+        return meta;
+    }
+
+    public String closure() {
+        return closure;
+    }
+
+    public Pos position() {
+        return position;
+    }
+
+    /**
+     * The plan binding the arguments of a call to the parameters. The parts of the binding that do not depend on the
+     * actual arguments are calculated only once for the parameter list.
+     *
+     * @param positionals the number of the leading parameters that can get a positional argument; a call passing
+     *                    at most this many positional arguments and nothing else binds the arguments to the parameters
+     *                    one by one
+     * @param hasRest     there is a {@code [rest]} parameter
+     * @param hasMeta     there is a {@code {meta}} parameter
+     * @param hasClosure  there is a {@code |closure|} parameter
+     * @param types       the declared types of the parameters, resolved in the context of the call only when a class
+     *                    name was rebound; an element is {@code null} when a type is an expression, which has to be
+     *                    evaluated for each call
+     */
+    public record Binding(int positionals, boolean hasRest, boolean hasMeta, boolean hasClosure,
+                          DeclaredTypes[] types) {
+    }
+
+    /**
+     * @return the binding plan of the parameter list, created on the first use
+     */
+    public Binding binding() {
+        var plan = binding;
+        if (plan == null) {
+            plan = createBinding();
+            binding = plan;
+        }
+        return plan;
     }
 
+    private Binding createBinding() {
+        int positionals = 0;
+        while (positionals < parameters.length && parameters[positionals].type() != Parameter.Type.NAMED_ONLY) {
+            positionals++;
+        }
+        final var types = new DeclaredTypes[parameters.length];
+        for (int i = 0; i < parameters.length; i++) {
+            types[i] = TypeDeclaration.declaredTypes(parameters[i].types());
+        }
+        return new Binding(positionals, rest != null, meta != null, closure != null, types);
+    }
 
     /**
      * Checks that the identifiers do not violate the rule that each identifier has to be unique.
@@ -1,6 +1,7 @@
 package ch.turic.commands;
 
 import ch.turic.Command;
+import ch.turic.memory.DeclaredTypes;
 import ch.turic.memory.LocalContext;
 import ch.turic.utils.Unmarshaller;
 
@@ -38,6 +39,27 @@ public record TypeDeclaration(String identifier, Command expression) {
         }
     }
 
+    /**
+     * Create the cache of the resolved types for the declarations, see {@link DeclaredTypes}.
+     *
+     * @param declarations the type declarations, may be {@code null} when there are no declared types
+     * @return the types to be resolved and cached, or {@code null} if any of the types is an expression, which has to
+     * be evaluated each time the declaration is executed
+     */
+    public static DeclaredTypes declaredTypes(final TypeDeclaration[] declarations) {
+        if (declarations == null) {
+            return new DeclaredTypes(FunctionCallOrCurry.EMPTY_STRING_ARRAY);
+        }
+        final var names = new String[declarations.length];
+        for (int i = 0; i < declarations.length; i++) {
+            if (declarations[i].expression() != null) {
+                return null;
+            }
+            names[i] = declarations[i].identifier();
+        }
+        return new DeclaredTypes(names);
+    }
+
     @Override
     public String toString() {
         return expression == null ? identifier : "(" + expression + ")";
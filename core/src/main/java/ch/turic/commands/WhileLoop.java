@@ -63,10 +63,11 @@ public class WhileLoop extends Loop {
             initBody.execute(loopContext);
         }
         var wasExecuted = false;
+        LocalContext innerContext = null;
         try {
             while (Cast.toBoolean(startCondition.execute(loopContext))) {
                 wasExecuted = true;
-                final var innerContext = loopContext.wrap();
+                innerContext = iterationContext(loopContext, innerContext, 0);
                 scalarResult = loopCore(body, innerContext, listResult);
                 if (breakLoop(scalarResult)) {
                     if (finallyBody != null) {
@@ -159,19 +160,31 @@ public class WhileLoop extends Loop {
         if (resultIsList) {
             loopContext.define("it", listResult);
             listResult.pinned.set(true);
+            loopContext.freeze("it");
         } else {
-            final Object realResult;
-            if (scalarResult instanceof Conditional.Result result) {
-                realResult = result.result();
-            } else {
-                realResult = scalarResult;
-            }
-            loopContext.define("it", realResult);
-            switch (realResult) {
-                case LngList list -> list.pinned.set(true);
-                case LngObject obj -> obj.pinned.set(true);
-                case null, default -> {
-                }
+            setScalarIT(loopContext, scalarResult);
+        }
+    }
+
+    /**
+     * Sets the variable "it" in the loop context to the result of a loop that does not produce a list.
+     * It is also used by the code the {@link BytecodeTier} generates for a loop.
+     *
+     * @param loopContext  the local context of the loop where the variable is to be set
+     * @param scalarResult the result of the last execution of the loop body
+     */
+    static void setScalarIT(LocalContext loopContext, Object scalarResult) {
+        final Object realResult;
+        if (scalarResult instanceof Conditional.Result result) {
+            realResult = result.result();
+        } else {
+            realResult = scalarResult;
+        }
+        loopContext.define("it", realResult);
+        switch (realResult) {
+            case LngList list -> list.pinned.set(true);
+            case LngObject obj -> obj.pinned.set(true);
+            case null, default -> {
             }
         }
         loopContext.freeze("it");
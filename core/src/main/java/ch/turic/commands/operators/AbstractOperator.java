@@ -64,7 +64,21 @@ public abstract class AbstractOperator implements Operator {
         } catch (ExecutionException e) {
             return exceptionHandler(context, e, right);
         }
+        return executeEvaluatedLeft(context, op1, right);
+    }
 
+    /**
+     * Executes the binary operator when the left operand was already evaluated. This is the second half of
+     * {@link #execute(LocalContext, Command, Command)}: it dispatches to the operator method of the left operand if it
+     * is an object and has one, otherwise it delegates to {@code binaryOp}.
+     *
+     * @param context the execution context
+     * @param op1     the value of the left operand
+     * @param right   the right operand command
+     * @return the result of the operator execution
+     * @throws ExecutionException if execution fails or operator dispatch is invalid
+     */
+    public final Object executeEvaluatedLeft(LocalContext context, Object op1, Command right) throws ExecutionException {
         if (!(op1 instanceof LngObject lngObject)) {
             return binaryOp(context, op1, right);
         }
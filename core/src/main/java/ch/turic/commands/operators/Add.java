@@ -10,9 +10,10 @@ import ch.turic.memory.HasCommands;
 import ch.turic.memory.LngList;
 import ch.turic.memory.LngObject;
 import ch.turic.memory.LocalContext;
+import ch.turic.memory.PersistentList;
 
 @Operator.Symbol("+")
-public class Add extends AbstractOperator {
+public class Add extends AbstractOperator implements NumericOperator {
 
     /**
      * you can write '+' in front of anything, like +"string" or even an object, that is just the same
@@ -34,7 +35,21 @@ public class Add extends AbstractOperator {
      */
     @Override
     public Object binaryOp(LocalContext ctx, Object op1, Command right) throws ExecutionException {
-        final var op2 = right.execute(ctx);
+        return evaluated(ctx, op1, right.execute(ctx));
+    }
+
+    @Override
+    public Object longOp(long a, long b) {
+        return a + b;
+    }
+
+    @Override
+    public Object doubleOp(double a, double b) {
+        return a + b;
+    }
+
+    @Override
+    public Object evaluated(LocalContext ctx, Object op1, Object op2) throws ExecutionException {
 
         // if the left side is a string, then convert it to a string
         if (op1 instanceof CharSequence s) {
@@ -77,7 +92,7 @@ public class Add extends AbstractOperator {
                 final var commandArray = new Command[lc.commands().length + other.commands().length];
                 System.arraycopy(lc.commands(), 0, commandArray, 0, lc.commands().length);
                 System.arraycopy(other.commands(), 0, commandArray, lc.commands().length, other.commands().length);
-                return new ListComposition(commandArray, lc.modifiers());
+                return new ListComposition(commandArray, lc.modifiers(), lc.parallel());
             } else {
                 throw new ExecutionException("Cannot add a %s to a list.", op2.getClass().getSimpleName());
             }
@@ -87,8 +102,8 @@ public class Add extends AbstractOperator {
 
         // if the left side is a list, then merge the lists or append the right side to the list
         if (op1 instanceof LngList list1) {
-            final var joinedList = new LngList(list1.getFieldProvider());
-            joinedList.array.addAll(list1.array);
+            // the joined list shares the structure with the operands, see PersistentList
+            final var joinedList = new LngList(list1.getFieldProvider(), PersistentList.of(list1.array));
             if (op2 instanceof LngList list2) {
                 joinedList.array.addAll(list2.array);
             } else {
@@ -98,35 +98,91 @@ public abstract class Compare implements Operator {
         }
     }
 
-    @Operator.Symbol("<")
-    public static class LessThan extends Compare {
+    /**
+     * The comparing operators that evaluate both operands first and have a fast path for numbers.
+     */
+    abstract static class NumericCompare extends Compare implements NumericOperator {
         @Override
         public Object execute(LocalContext ctx, Command left, Command right) throws ExecutionException {
-            return compare(ctx, left, right, "<", LONG_LESS_THAN_PREDICATE, DOUBLE_LESS_THAN_PREDICATE, LESS_THAN_COMPARATOR_PREDICATE);
+            final var op1 = left.execute(ctx);
+            return evaluated(ctx, op1, right.execute(ctx));
+        }
+
+        @Override
+        public Object executeEvaluatedLeft(LocalContext ctx, Object op1, Command right) throws ExecutionException {
+            return evaluated(ctx, op1, right.execute(ctx));
+        }
+    }
+
+    @Operator.Symbol("<")
+    public static class LessThan extends NumericCompare {
+        @Override
+        public Object evaluated(LocalContext ctx, Object op1, Object op2) throws ExecutionException {
+            return compareEvaluated(ctx, op1, op2, "<", LONG_LESS_THAN_PREDICATE, DOUBLE_LESS_THAN_PREDICATE, LESS_THAN_COMPARATOR_PREDICATE);
+        }
+
+        @Override
+        public Object longOp(long a, long b) {
+            return a < b;
+        }
+
+        @Override
+        public Object doubleOp(double a, double b) {
+            return a < b;
         }
     }
 
     @Operator.Symbol("<=")
-    public static class LessOrEqual extends Compare {
+    public static class LessOrEqual extends NumericCompare {
         @Override
-        public Object execute(LocalContext ctx, Command left, Command right) throws ExecutionException {
-            return compare(ctx, left, right, "<=", LONG_LESS_EQUAL_PREDICATE, DOUBLE_LESS_EQUAL_PREDICATE, LESS_EQUAL_COMPARATOR_PREDICATE);
+        public Object evaluated(LocalContext ctx, Object op1, Object op2) throws ExecutionException {
+            return compareEvaluated(ctx, op1, op2, "<=", LONG_LESS_EQUAL_PREDICATE, DOUBLE_LESS_EQUAL_PREDICATE, LESS_EQUAL_COMPARATOR_PREDICATE);
+        }
+
+        @Override
+        public Object longOp(long a, long b) {
+            return a <= b;
+        }
+
+        @Override
+        public Object doubleOp(double a, double b) {
+            return a <= b;
         }
     }
 
     @Operator.Symbol(">")
-    public static class GreaterThan extends Compare {
+    public static class GreaterThan extends NumericCompare {
         @Override
-        public Object execute(LocalContext ctx, Command left, Command right) throws ExecutionException {
-            return compare(ctx, left, right, ">", LONG_GREATER_THAN_PREDICATE, DOUBLE_GREATER_THAN_PREDICATE, GREATER_THAN_COMPARATOR_PREDICATE);
+        public Object evaluated(LocalContext ctx, Object op1, Object op2) throws ExecutionException {
+            return compareEvaluated(ctx, op1, op2, ">", LONG_GREATER_THAN_PREDICATE, DOUBLE_GREATER_THAN_PREDICATE, GREATER_THAN_COMPARATOR_PREDICATE);
+        }
+
+        @Override
+        public Object longOp(long a, long b) {
+            return a > b;
+        }
+
+        @Override
+        public Object doubleOp(double a, double b) {
+            return a > b;
         }
     }
 
     @Operator.Symbol(">=")
-    public static class GreaterOrEqual extends Compare {
+    public static class GreaterOrEqual extends NumericCompare {
         @Override
-        public Object execute(LocalContext ctx, Command left, Command right) throws ExecutionException {
-            return compare(ctx, left, right, ">=", LONG_GREATER_EQUAL_PREDICATE, DOUBLE_GREATER_EQUAL_PREDICATE, GREATER_EQUAL_COMPARATOR_PREDICATE);
+        public Object evaluated(LocalContext ctx, Object op1, Object op2) throws ExecutionException {
+            return compareEvaluated(ctx, op1, op2, ">=", LONG_GREATER_EQUAL_PREDICATE, DOUBLE_GREATER_EQUAL_PREDICATE, GREATER_EQUAL_COMPARATOR_PREDICATE);
+        }
+
+        @Override
+        public Object longOp(long a, long b) {
+            return a >= b;
+        }
+
+        @Override
+        public Object doubleOp(double a, double b) {
+            return a >= b;
         }
     }
 
@@ -153,11 +209,19 @@ public abstract class Compare implements Operator {
     }
 
     @Operator.Symbol("==")
-    public static class Equal extends Compare {
+    public static class Equal extends NumericCompare {
         @Override
-        public Object execute(LocalContext ctx, Command left, Command right) throws ExecutionException {
-            final var op1 = left.execute(ctx);
-            final var op2 = right.execute(ctx);
+        public Object longOp(long a, long b) {
+            return a == b;
+        }
+
+        @Override
+        public Object doubleOp(double a, double b) {
+            return a == b;
+        }
+
+        @Override
+        public Object evaluated(LocalContext ctx, Object op1, Object op2) {
             if (op1 == null && op2 == null) {
                 return true;
             } else if (op1 == null || op2 == null) {
@@ -209,11 +273,19 @@ public abstract class Compare implements Operator {
     }
 
     @Operator.Symbol("!=")
-    public static class NotEqual extends Compare {
+    public static class NotEqual extends NumericCompare {
         @Override
-        public Object execute(LocalContext ctx, Command left, Command right) throws ExecutionException {
-            final var op1 = left.execute(ctx);
-            final var op2 = right.execute(ctx);
+        public Object longOp(long a, long b) {
+            return a != b;
+        }
+
+        @Override
+        public Object doubleOp(double a, double b) {
+            return a != b;
+        }
+
+        @Override
+        public Object evaluated(LocalContext ctx, Object op1, Object op2) {
             if (op1 == null && op2 == null) {
                 return false;
             } else if (op1 == null || op2 == null) {
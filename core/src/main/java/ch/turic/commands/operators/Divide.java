@@ -5,11 +5,30 @@ import ch.turic.exceptions.ExecutionException;
 import ch.turic.memory.LocalContext;
 
 @Operator.Symbol("/")
-public class Divide extends AbstractOperator {
+public class Divide extends AbstractOperator implements NumericOperator {
 
     @Override
     public Object binaryOp(LocalContext ctx, Object op1, Command right) throws ExecutionException {
-        final var op2 = right.execute(ctx);
+        return evaluated(ctx, op1, right.execute(ctx));
+    }
+
+    @Override
+    public Object longOp(long a, long b) {
+        ExecutionException.when(b == 0, "Cannot divide by zero");
+        if (a % b == 0) {
+            return a / b;
+        }
+        return (double) a / (double) b;
+    }
+
+    @Override
+    public Object doubleOp(double a, double b) {
+        ExecutionException.when(b == 0, "Cannot divide by zero");
+        return a / b;
+    }
+
+    @Override
+    public Object evaluated(LocalContext ctx, Object op1, Object op2) throws ExecutionException {
 
         if (Cast.isLong(op1) && Cast.isLong(op2)) {
             final var lop1 = Cast.toLong(op1);
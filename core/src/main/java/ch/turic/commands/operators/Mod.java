@@ -9,11 +9,25 @@ import java.util.ArrayList;
 import java.util.HashSet;
 
 @Operator.Symbol("%")
-public class Mod extends AbstractOperator {
+public class Mod extends AbstractOperator implements NumericOperator {
 
     @Override
     public Object binaryOp(LocalContext ctx, Object op1, Command right) throws ExecutionException {
-        final var op2 = right.execute(ctx);
+        return evaluated(ctx, op1, right.execute(ctx));
+    }
+
+    @Override
+    public Object longOp(long a, long b) {
+        return a % b;
+    }
+
+    @Override
+    public Object doubleOp(double a, double b) {
+        return a % b;
+    }
+
+    @Override
+    public Object evaluated(LocalContext ctx, Object op1, Object op2) throws ExecutionException {
         if( op1 instanceof String s){
             final var parameters = new ArrayList<>();
             if( op2 instanceof Iterable<?> it){
@@ -6,11 +6,25 @@ import ch.turic.memory.LocalContext;
 import ch.turic.memory.LngList;
 
 @Operator.Symbol("*")
-public class Multiply extends AbstractOperator {
+public class Multiply extends AbstractOperator implements NumericOperator {
 
     @Override
     public Object binaryOp(LocalContext ctx, Object op1, Command right) throws ExecutionException {
-        final var op2 = right.execute(ctx);
+        return evaluated(ctx, op1, right.execute(ctx));
+    }
+
+    @Override
+    public Object longOp(long a, long b) {
+        return a * b;
+    }
+
+    @Override
+    public Object doubleOp(double a, double b) {
+        return a * b;
+    }
+
+    @Override
+    public Object evaluated(LocalContext ctx, Object op1, Object op2) throws ExecutionException {
 
         // if the left side is a string, then convert it to a string
         if (op1 instanceof CharSequence s) {
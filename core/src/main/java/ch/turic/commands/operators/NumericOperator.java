@@ -0,0 +1,61 @@
+package ch.turic.commands.operators;
+
+import ch.turic.Command;
+import ch.turic.exceptions.ExecutionException;
+import ch.turic.memory.LocalContext;
+
+/**
+ * A binary operator that has a fast path for numeric operands.
+ * <p>
+ * The {@link ch.turic.commands.Operation} node records the types of the operands it has seen. As long as a node sees
+ * only {@link Long} and {@link Double} operands, it evaluates the operands itself and calls {@link #longOp(long, long)}
+ * or {@link #doubleOp(double, double)} directly, bypassing the operator method lookup of the objects and the generic
+ * type checks. When the node meets any other type, it calls one of the generic methods with the already evaluated
+ * values, and does not try the fast path anymore.
+ * <p>
+ * The fast path methods must return the same result as the generic path returns for the same operands:
+ * two {@link Long} operands are handled by {@link #longOp(long, long)}, a mix of {@link Long} and {@link Double}
+ * operands by {@link #doubleOp(double, double)}.
+ */
+public interface NumericOperator extends Operator {
+
+    /**
+     * @param a the left operand
+     * @param b the right operand
+     * @return the result of the operation on two long values
+     * @throws ExecutionException if the operation is not possible, e.g., division by zero
+     */
+    Object longOp(long a, long b) throws ExecutionException;
+
+    /**
+     * @param a the left operand
+     * @param b the right operand
+     * @return the result of the operation when at least one of the operands is a double
+     * @throws ExecutionException if the operation is not possible, e.g., division by zero
+     */
+    Object doubleOp(double a, double b) throws ExecutionException;
+
+    /**
+     * Execute the generic operation when the left operand was already evaluated.
+     *
+     * @param ctx   the execution context
+     * @param op1   the value of the left operand
+     * @param right the right operand command, not evaluated yet
+     * @return the result of the operation
+     * @throws ExecutionException if the execution fails
+     */
+    Object executeEvaluatedLeft(LocalContext ctx, Object op1, Command right) throws ExecutionException;
+
+    /**
+     * Execute the generic operation when both operands were already evaluated. It is only called when the left
+     * operand is a number; objects with operator methods go through
+     * {@link #executeEvaluatedLeft(LocalContext, Object, Command)}.
+     *
+     * @param ctx the execution context
+     * @param op1 the value of the left operand
+     * @param op2 the value of the right operand
+     * @return the result of the operation
+     * @throws ExecutionException if the execution fails
+     */
+    Object evaluated(LocalContext ctx, Object op1, Object op2) throws ExecutionException;
+}
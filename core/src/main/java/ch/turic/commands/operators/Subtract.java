@@ -9,7 +9,7 @@ import ch.turic.memory.LngList;
 import java.util.regex.Pattern;
 
 @Operator.Symbol("-")
-public class Subtract extends AbstractOperator {
+public class Subtract extends AbstractOperator implements NumericOperator {
 
     @Override
     public Object unaryOp(LocalContext ctx, Object op) throws ExecutionException {
@@ -30,7 +30,21 @@ public class Subtract extends AbstractOperator {
 
     @Override
     public Object binaryOp(LocalContext ctx, Object op1, Command right) throws ExecutionException {
-        final var op2 = right.execute(ctx);
+        return evaluated(ctx, op1, right.execute(ctx));
+    }
+
+    @Override
+    public Object longOp(long a, long b) {
+        return a - b;
+    }
+
+    @Override
+    public Object doubleOp(double a, double b) {
+        return a - b;
+    }
+
+    @Override
+    public Object evaluated(LocalContext ctx, Object op1, Object op2) throws ExecutionException {
 
         // if the left side is a string, then convert it to a string
         if (op1 instanceof CharSequence s) {
@@ -154,7 +154,7 @@ public final class TuriSession implements AutoCloseable {
      * {@link SandboxPolicy.Builder#stepLimit(int)}
      */
     public long stepsUsed() {
-        return globalContext.steps.get();
+        return globalContext.stepsUsed();
     }
 
     /**
@@ -169,7 +169,7 @@ public final class TuriSession implements AutoCloseable {
      */
     public long resetSteps() {
         ensureUsable();
-        return globalContext.steps.getAndSet(0);
+        return globalContext.resetSteps();
     }
 
     /**
@@ -13,9 +13,9 @@ public class AsyncStreamHandler
         extends CompletableFuture<Object>
         implements Yielder, AutoCloseable, Iterable<Object>, Future<Object>, HasFields {
 
-    private final BlockingQueueChannel<Object> toChildQueue;
-    private final BlockingQueueChannel<Object> toParentQueue;
-    private final Iterator<Object> parentIterator;
+    private final LockFreeChannel<Object> toChildQueue;
+    private final LockFreeChannel<Object> toParentQueue;
+    private final ChannelIterator<Object> parentIterator;
     private String name;
 
     public CompletableFuture<Channel.Message<?>> future() {
@@ -27,9 +27,9 @@ public class AsyncStreamHandler
     private LocalContext context;
 
     public AsyncStreamHandler(int outQueueSize, int inQueueSize) {
-        this.toChildQueue = new BlockingQueueChannel<>(outQueueSize);
-        this.toParentQueue = new BlockingQueueChannel<>(inQueueSize);
-        this.parentIterator = toParentQueue.iterator();
+        this.toChildQueue = LockFreeChannel.of(outQueueSize);
+        this.toParentQueue = LockFreeChannel.of(inQueueSize);
+        this.parentIterator = new ChannelIterator<>(toParentQueue);
         this.name = NameGen.generateName();
     }
 
@@ -38,6 +38,14 @@ public class AsyncStreamHandler
         return toParent().iterator();
     }
 
+    /**
+     * @return the iterator reading the values sent by the task, used by the {@code has_next()} and {@code next()}
+     * methods
+     */
+    public ChannelIterator<Object> parentIterator() {
+        return parentIterator;
+    }
+
     @Override
     public Channel<Object> toChild() {
         return toChildQueue;
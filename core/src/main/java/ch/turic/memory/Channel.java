@@ -2,6 +2,9 @@ package ch.turic.memory;
 
 import ch.turic.exceptions.ExecutionException;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.concurrent.TimeUnit;
 
@@ -239,6 +242,49 @@ public interface Channel<T> extends AutoCloseable, Iterable<T> {
      */
     Message<T> tryReceive(long time, TimeUnit unit) throws ExecutionException;
 
+    /**
+     * Send all the values in the collection, in the order of the collection, waiting while the channel is full.
+     * <p>
+     * The default implementation sends the values one by one. The implementations can store many values with one
+     * synchronization.
+     *
+     * @param values the values to send
+     * @throws ExecutionException if the channel is closed before all the values were sent
+     */
+    default void sendAll(Collection<? extends T> values) throws ExecutionException {
+        for (final var value : values) {
+            send(Message.of(value));
+        }
+    }
+
+    /**
+     * Receive at least one and at most {@code max} values. Wait until there is a value in the channel or the channel
+     * is closed, and then take the values that are already in the channel without waiting for more.
+     * <p>
+     * The default implementation receives the values one by one. The implementations can take many values with one
+     * synchronization.
+     *
+     * @param max the maximum number of the values to receive, positive
+     * @return the values received, an empty list if the channel is closed and there are no more values
+     * @throws ExecutionException if the first message is an exception message
+     */
+    default List<T> receiveBatch(int max) throws ExecutionException {
+        final var first = receive();
+        if (first.isCloseMessage()) {
+            return List.of();
+        }
+        final var result = new ArrayList<T>();
+        result.add(first.get());
+        while (result.size() < max) {
+            final var message = tryReceive();
+            if (message.isEmpty() || message.isCloseMessage()) {
+                break;
+            }
+            result.add(message.get());
+        }
+        return result;
+    }
+
     /**
      * Returns true of the channel is closed and cannot deliver more messages.
      * <p>
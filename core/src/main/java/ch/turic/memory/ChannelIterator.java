@@ -2,7 +2,9 @@ package ch.turic.memory;
 
 import ch.turic.exceptions.ExecutionException;
 
+import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.concurrent.TimeUnit;
 
@@ -60,6 +62,16 @@ public class ChannelIterator<T> implements Channel<T>, Iterator<T> {
         return channel.tryReceive(time, unit);
     }
 
+    @Override
+    public void sendAll(Collection<? extends T> values) throws ExecutionException {
+        channel.sendAll(values);
+    }
+
+    @Override
+    public List<T> receiveBatch(int max) throws ExecutionException {
+        return channel.receiveBatch(max);
+    }
+
     @Override
     public void close() {
         channel.close();
@@ -71,6 +83,13 @@ public class ChannelIterator<T> implements Channel<T>, Iterator<T> {
     }
     //</editor-fold id="delegated methods>
 
+    /**
+     * @return the underlying channel
+     */
+    Channel<T> channel() {
+        return channel;
+    }
+
     private Message<T> nextItem;
     private boolean hasNextMessage = true;
     private boolean nextCached = false;
@@ -120,4 +139,18 @@ public class ChannelIterator<T> implements Channel<T>, Iterator<T> {
         nextCached = false;
         return nextItem.get();
     }
+
+    /**
+     * Take the message that {@link #hasNext()} has already read from the channel, see {@link ChannelSelect}.
+     * A close message is not taken, it stays to be seen by the iteration.
+     *
+     * @return the message read ahead, or {@code null} if there is no message read ahead, or it is a close message
+     */
+    Message<T> takeReadAhead() {
+        if (!nextCached || !hasNextMessage) {
+            return null;
+        }
+        nextCached = false;
+        return nextItem;
+    }
 }
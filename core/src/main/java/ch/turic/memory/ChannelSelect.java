@@ -0,0 +1,216 @@
+package ch.turic.memory;
+
+import ch.turic.exceptions.ExecutionException;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Wait for the first of several channels that a value can be received from or sent to.
+ * <p>
+ * The selecting thread does not poll the channels. It registers itself as a waiting receiver or sender in each
+ * channel, then tries all the cases, and parks if none of them can proceed. Any channel getting a value, or getting
+ * free capacity, wakes the thread up the same way as it wakes up a thread waiting in {@link LockFreeChannel#receive()}
+ * or {@link LockFreeChannel#send(Channel.Message)}, and the thread tries the cases again.
+ * <p>
+ * The cases are tried starting at a random position each time, so a channel that always has values does not starve
+ * the others.
+ * <p>
+ * The channels have to be {@link LockFreeChannel}s, or {@link ChannelIterator}s over them. A value that a
+ * {@link ChannelIterator} has already read ahead is received before anything else.
+ */
+public final class ChannelSelect {
+    private ChannelSelect() {
+    }
+
+    /**
+     * A case of the selection.
+     *
+     * @param channel the channel
+     * @param send    {@code true} when the value is to be sent to the channel, {@code false} when a value is to be
+     *                received from it
+     * @param value   the value to send, ignored when receiving
+     */
+    public record Case(Channel<Object> channel, boolean send, Object value) {
+    }
+
+    /**
+     * The case that proceeded.
+     *
+     * @param index the index of the case
+     * @param value the value received, or the value sent
+     */
+    public record Selected(int index, Object value) {
+    }
+
+    /**
+     * Wait until one of the cases can proceed and perform it. The other cases are not performed.
+     * <p>
+     * A receiving case on a channel that is closed and has no more values is never selected. A sending case on a
+     * closed channel is an error, the same way as sending to a closed channel is.
+     *
+     * @param cases the cases to select from
+     * @param nanos the maximum time to wait in nanoseconds, negative to wait without time limit
+     * @return the selected case, or {@code null} if the time is over, or all the cases are receiving from closed
+     * channels
+     * @throws ExecutionException if a sending case channel is closed, or the value received is an exception
+     */
+    public static Selected select(final List<Case> cases, final long nanos) throws ExecutionException {
+        if (cases.isEmpty()) {
+            return null;
+        }
+        final int start = ThreadLocalRandom.current().nextInt(cases.size());
+        final var readAhead = readAhead(cases, start);
+        if (readAhead != null) {
+            return readAhead;
+        }
+        final var channels = channels(cases);
+        final long deadline = System.nanoTime() + nanos;
+        final var me = Thread.currentThread();
+        final var closed = new boolean[cases.size()];
+        var selected = attempt(cases, channels, start, closed);
+        while (selected == null && !allClosed(cases, closed)) {
+            if (nanos == 0) {
+                return null;
+            }
+            final var waiter = new LockFreeChannel.Waiter(me);
+            register(cases, channels, waiter);
+            boolean again = false;
+            try {
+                selected = attempt(cases, channels, start, closed);
+                if (selected != null) {
+                    return selected;
+                }
+                if (allClosed(cases, closed)) {
+                    return null;
+                }
+                if (nanos < 0) {
+                    LockSupport.park(ChannelSelect.class);
+                } else {
+                    final long left = deadline - System.nanoTime();
+                    if (left <= 0) {
+                        return null;
+                    }
+                    LockSupport.parkNanos(ChannelSelect.class, left);
+                }
+                if (Thread.interrupted()) {
+                    me.interrupt();
+                    throw new ExecutionException(new InterruptedException());
+                }
+                again = true;
+            } finally {
+                unregister(cases, channels, waiter, !again);
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Receive the value that a {@link ChannelIterator} of a receiving case has already read from its channel.
+     *
+     * @return the case having the value, or {@code null} if there is none
+     */
+    private static Selected readAhead(final List<Case> cases, final int start) {
+        final int n = cases.size();
+        for (int k = 0; k < n; k++) {
+            final int i = (start + k) % n;
+            final var c = cases.get(i);
+            if (!c.send() && c.channel() instanceof ChannelIterator<Object> iterator) {
+                final var message = iterator.takeReadAhead();
+                if (message != null) {
+                    return new Selected(i, message.get());
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the lock-free channels of the cases
+     * @throws ExecutionException if a channel is not lock-free
+     */
+    private static LockFreeChannel<Object>[] channels(final List<Case> cases) {
+        @SuppressWarnings("unchecked") final var channels = (LockFreeChannel<Object>[]) new LockFreeChannel<?>[cases.size()];
+        for (int i = 0; i < channels.length; i++) {
+            var channel = cases.get(i).channel();
+            if (channel instanceof ChannelIterator<Object> iterator) {
+                channel = iterator.channel();
+            }
+            if (!(channel instanceof LockFreeChannel<Object> lockFree)) {
+                throw new ExecutionException("Cannot select on the channel '%s'", channel);
+            }
+            channels[i] = lockFree;
+        }
+        return channels;
+    }
+
+    /**
+     * Try each case once, starting at the given position.
+     *
+     * @param closed the cases receiving from a channel found closed and drained, updated
+     * @return the case that proceeded, or {@code null} if none of them could
+     */
+    private static Selected attempt(final List<Case> cases, final LockFreeChannel<Object>[] channels, final int start,
+                                    final boolean[] closed) {
+        final int n = cases.size();
+        for (int k = 0; k < n; k++) {
+            final int i = (start + k) % n;
+            if (closed[i]) {
+                continue;
+            }
+            final var c = cases.get(i);
+            if (c.send()) {
+                if (channels[i].trySend(Channel.Message.of(c.value()))) {
+                    return new Selected(i, c.value());
+                }
+            } else {
+                final var message = channels[i].tryReceive();
+                if (message.isCloseMessage()) {
+                    closed[i] = true;
+                } else if (message.isPresent()) {
+                    return new Selected(i, message.get());
+                }
+            }
+        }
+        return null;
+    }
+
+    private static boolean allClosed(final List<Case> cases, final boolean[] closed) {
+        for (int i = 0; i < closed.length; i++) {
+            if (!closed[i] || cases.get(i).send()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Register the same waiter in all the channels. The first channel waking the thread up claims it, the others
+     * skip it.
+     */
+    private static void register(final List<Case> cases, final LockFreeChannel<Object>[] channels,
+                                 final LockFreeChannel.Waiter waiter) {
+        for (int i = 0; i < channels.length; i++) {
+            if (cases.get(i).send()) {
+                channels[i].waitToSend(waiter);
+            } else {
+                channels[i].waitToReceive(waiter);
+            }
+        }
+    }
+
+    /**
+     * Remove the registrations of the waiter.
+     *
+     * @param leaving {@code true} if the thread stops selecting; a wakeup it got from a channel is then passed on to
+     *                another waiting thread, also when the thread used that channel, because the value it was woken
+     *                up for may be the one another thread is waiting for
+     */
+    private static void unregister(final List<Case> cases, final LockFreeChannel<Object>[] channels,
+                                   final LockFreeChannel.Waiter waiter, final boolean leaving) {
+        for (int i = 0; i < channels.length; i++) {
+            channels[i].stopWaiting(waiter, cases.get(i).send(), leaving);
+        }
+    }
+}
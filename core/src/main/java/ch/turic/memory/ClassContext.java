@@ -2,15 +2,40 @@ package ch.turic.memory;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class ClassContext extends LocalContext {
+    /**
+     * Counts the structural changes of the frame of this class: a variable added, removed or replaced. The method
+     * lookup caches of the call sites are valid for the class only as long as {@link #epoch()} does not change.
+     */
+    private final AtomicInteger reshapes = new AtomicInteger();
+
     private final LngClass[] parents;
 
     public ClassContext(LocalContext context, LngClass[] parents) {
         super(context.globalContext, context.threadContext);
+        this.frame = new SlotTable(reshapes::incrementAndGet);
         this.parents = parents;
     }
 
+    /**
+     * The structural changes of the frames of this class and of the parent classes. The counters only grow, so the
+     * sum changes whenever any of the frames a lookup on this class may read changes. Defining or changing another
+     * class does not change it.
+     *
+     * @return the number of structural changes of the frames of this class and its parents
+     */
+    public int epoch() {
+        int epoch = reshapes.get();
+        if (parents != null) {
+            for (final var parent : parents) {
+                epoch += parent.context.epoch();
+            }
+        }
+        return epoch;
+    }
+
     @Override
     public Object get(String key) {
         final var value = super.getLocal(key);
@@ -29,6 +54,14 @@ public class ClassContext extends LocalContext {
         }
     }
 
+    /**
+     * Class contexts also search the parent classes; the lookup is name-based.
+     */
+    @Override
+    public Object get(VariableSlot slot) {
+        return get(slot.name);
+    }
+
     /**
      * Retrieves a list of wrapping contexts, including those from the current context 
      * and recursively from the contexts of the parent classes.
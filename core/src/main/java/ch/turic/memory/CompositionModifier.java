@@ -40,4 +40,20 @@ public class CompositionModifier {
         }
     }
 
+    /**
+     * The modifiers are applied on several threads. It is not part of the modifier array, because it does not modify
+     * the elements.
+     */
+    public static class Parallel extends CompositionModifier {
+        // the maximum number of threads, null to use as many as the number of the processors
+        public final Command threads;
+
+        public Parallel(Command threads) {
+            this.threads = threads;
+        }
+
+        public static Parallel factory(final Unmarshaller.Args args) {
+            return new Parallel(args.command("threads"));
+        }
+    }
 }
@@ -0,0 +1,92 @@
+package ch.turic.memory;
+
+import ch.turic.exceptions.ExecutionException;
+
+/**
+ * The type names of a declaration together with the types they were last resolved to.
+ * <p>
+ * A declaration, e.g., {@code let x: int|Point = ...}, is executed many times, and resolving the names to
+ * {@link Variable.Type} objects each time means looking up the classes in the context again and again. The
+ * declaration keeps an instance of this class and calls {@link #resolve(LocalContext)} instead of
+ * {@link Variable#getTypes(LocalContext, String[])}.
+ * <p>
+ * The built-in types do not depend on the context, they are resolved only once. A class name is resolved again only
+ * when the name is bound to a different value in the context where the declaration is executed. Checking that is a
+ * lookup of the name and a reference comparison with the class the name was resolved to before.
+ * <p>
+ * The resolved types are kept in a volatile field. Threads executing the same declaration may resolve the types
+ * concurrently, and the last one wins, which is fine, because the result is the same.
+ */
+public final class DeclaredTypes {
+    private final String[] names;
+    // all the names are built-in types, the resolved types do not depend on the context
+    private final boolean contextFree;
+    private volatile Variable.Type[] types;
+
+    /**
+     * @param names the names of the declared types, not {@code null}
+     */
+    public DeclaredTypes(final String[] names) {
+        this.names = names;
+        boolean builtin = true;
+        for (final var name : names) {
+            builtin = builtin && Variable.isBuiltinType(name);
+        }
+        this.contextFree = builtin;
+        this.types = builtin ? Variable.getTypes(null, names) : null;
+    }
+
+    /**
+     * @return the names of the declared types
+     */
+    public String[] names() {
+        return names;
+    }
+
+    /**
+     * Get the types the names mean in the context.
+     *
+     * @param ctx the context where the declaration is executed
+     * @return the resolved types, the array is shared, it must not be modified
+     * @throws ExecutionException the same way as {@link Variable#getTypes(LocalContext, String[])} when a name
+     *                            cannot be resolved
+     */
+    public Variable.Type[] resolve(final LocalContext ctx) {
+        final var cached = types;
+        if (cached != null && (contextFree || isValid(ctx, cached))) {
+            return cached;
+        }
+        final var resolved = Variable.getTypes(ctx, names);
+        types = resolved;
+        return resolved;
+    }
+
+    /**
+     * Check that the class names still mean the same classes in the context.
+     */
+    private boolean isValid(final LocalContext ctx, final Variable.Type[] cached) {
+        for (int i = 0; i < cached.length; i++) {
+            final var type = cached[i];
+            if (type.lngClass() != null) {
+                final Object current;
+                try {
+                    current = ctx.get(names[i]);
+                } catch (ExecutionException e) {
+                    // resolving again reports the error
+                    return false;
+                }
+                if (current != type.lngClass()) {
+                    return false;
+                }
+            } else if (type.javaType() != null && names[i].startsWith("java.")) {
+                // the class is the same, but the context may run with a different access filter
+                try {
+                    ctx.globalContext.classLoader.checkScriptAccess(type.javaType());
+                } catch (ExecutionException e) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+}
@@ -35,9 +35,12 @@ public class GlobalContext {
     // stores the values in volatile variables; see VolatileVariable
     public VarTable heap = new VarTable(true);
     public final int stepLimit;
+    // the largest number of steps a thread claims from the global step counter at once
+    private static final int STEP_BATCH = 1024;
     /** Extra steps granted to a finally/exit block after a halt, per thread; 0 disables it. See {@link ThreadContext}. */
     public final int graceSteps;
-    public final AtomicInteger steps = new AtomicInteger();
+    // steps claimed by the threads in batches, see step(ThreadContext)
+    private final AtomicLong claimedSteps = new AtomicLong();
     private final Map<Class<?>, TuriClass> turiClasses = new HashMap<>();
     Path sourcePath;
     private boolean debugMode = false; // true when the interpreter is in debug mode
@@ -165,22 +168,81 @@ public class GlobalContext {
      * Executes a single computational step based on the defined step limit.
      * This method ensures that the number of executed steps does not exceed the configured step limit.
      * <p>
-     * - If the step limit is negative, the method returns immediately without performing any action.
-     * - If the current number of steps has reached or exceeded the step limit, a {@code StepLimitReached} is thrown.
-     * - Otherwise, the step counter is incremented by one.
+     * The threads do not increment a shared counter for each step. A thread claims a batch of steps from the global
+     * counter and counts them down in its {@link ThreadContext}, touching the shared counter only when the batch is
+     * used up. When the step limit is negative (unlimited), the batches are {@link #STEP_BATCH} steps. With a step
+     * limit, the batches get smaller as the limit gets closer, so the steps held unused by the other threads make a
+     * thread stop only slightly before the limit.
+     * <p>
+     * - If the step limit is negative, the steps are counted but never refused.
+     * - If the number of steps reaches the step limit, a {@code StepLimitReached} is thrown.
+     * The refused steps are also counted.
      *
+     * @param threadContext the thread context of the thread executing the step
      * @throws StepLimitReached if the step limit is reached or exceeded; it is not an
      *                          {@link ExecutionException}, so Turicum-level {@code try}/{@code catch}
      *                          cannot swallow it
      */
-    public void step() throws ExecutionException {
-        final var currentStep = steps.incrementAndGet();
+    public void step(final ThreadContext threadContext) throws ExecutionException {
+        if (threadContext.stepQuota > 0) {
+            threadContext.stepQuota--;
+            return;
+        }
+        claimSteps(threadContext);
+    }
+
+    private void claimSteps(final ThreadContext threadContext) {
         if (stepLimit < 0) {
+            claimedSteps.addAndGet(STEP_BATCH);
+            threadContext.stepQuota = STEP_BATCH - 1;
             return;
         }
-        if (stepLimit <= currentStep) {
-            throw new StepLimitReached(stepLimit);
+        while (true) {
+            final long claimed = claimedSteps.get();
+            // the step that reaches the limit is refused
+            final long remaining = stepLimit - 1 - claimed;
+            if (remaining <= 0) {
+                claimedSteps.incrementAndGet();
+                throw new StepLimitReached(stepLimit);
+            }
+            final int batch = Math.clamp(remaining / 16, 1, STEP_BATCH);
+            if (claimedSteps.compareAndSet(claimed, claimed + batch)) {
+                threadContext.stepQuota = batch - 1;
+                return;
+            }
+        }
+    }
+
+    /**
+     * The number of steps executed by the interpreter. The steps claimed by the threads, but not executed yet, are
+     * not counted.
+     * <p>
+     * The value is exact when it is called between evaluations, when no interpreter thread runs. Called while the
+     * interpreter runs, it is an estimate.
+     *
+     * @return the number of steps executed since the start or the last {@link #resetSteps()}
+     */
+    public long stepsUsed() {
+        long unused = 0;
+        for (final var threadContext : contexts.keySet()) {
+            unused += threadContext.stepQuota;
+        }
+        return claimedSteps.get() - unused;
+    }
+
+    /**
+     * Reset the step counter to zero, giving the full step limit to the next evaluation. The unused steps claimed
+     * by the threads are dropped. This method must be called between evaluations, when no interpreter thread runs.
+     *
+     * @return the number of steps executed since the start or the last reset
+     */
+    public long resetSteps() {
+        long unused = 0;
+        for (final var threadContext : contexts.keySet()) {
+            unused += threadContext.stepQuota;
+            threadContext.stepQuota = 0;
         }
+        return claimedSteps.getAndSet(0) - unused;
     }
 
     /**
@@ -215,6 +277,9 @@ public class GlobalContext {
             final var count = contexts.get(context).decrementAndGet();
             if (count == 0) {
                 contexts.remove(context);
+                // give back the steps the thread claimed but did not use
+                claimedSteps.addAndGet(-context.stepQuota);
+                context.stepQuota = 0;
             }
         }
     }
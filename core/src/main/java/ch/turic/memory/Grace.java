@@ -82,6 +82,15 @@ public final class Grace {
         remaining = steps;
     }
 
+    /**
+     * @return {@code true} if a halt was observed on this thread. As long as it is {@code false}, neither
+     * {@link #isFinal()} nor {@link #isActive()} can be {@code true}, and the command execution can skip the other
+     * checks.
+     */
+    public boolean isTriggered() {
+        return triggered;
+    }
+
     /**
      * @return {@code true} if this thread is currently inside a granted, not-yet-exhausted
      * cleanup window
@@ -35,6 +35,14 @@ public class LngClass implements HasFields, HasIndex, HasContext, LngCallable.Ln
         return name;
     }
 
+    /**
+     * @return the number of structural changes of the frames of this class and its parents, see
+     * {@link ClassContext#epoch()}
+     */
+    public int epoch() {
+        return context.epoch();
+    }
+
 
     /**
      * Creates a new instance of the class represented by this object.
@@ -127,6 +135,31 @@ public class LngClass implements HasFields, HasIndex, HasContext, LngCallable.Ln
         return null;
     }
 
+    /**
+     * Find the variable holding the field in this class or in the parent classes. The search order is the same as
+     * the one of {@link #getFieldUnveiled(String)}, but the first variable found is returned, even if its value is
+     * {@code null}. The variable is the same until the frames of this class or of the parent classes change
+     * structurally; see {@link #epoch()}.
+     *
+     * @param name the name of the field
+     * @return the variable or {@code null} if neither this class nor its parents define the field
+     */
+    public Variable lookupVariable(String name) {
+        final var variable = context.frame.get(name);
+        if (variable != null) {
+            return variable;
+        }
+        if (context.parents() != null) {
+            for (var parent : context.parents()) {
+                final var inParent = parent.lookupVariable(name);
+                if (inParent != null) {
+                    return inParent;
+                }
+            }
+        }
+        return null;
+    }
+
     @Override
     public Set<String> fields() {
         return context.keys();
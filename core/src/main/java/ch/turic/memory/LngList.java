@@ -8,16 +8,35 @@ import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 
 public class LngList implements HasIndex, HasFields {
-    public final ArrayList<Object> array = new ArrayList<>();
+    public final List<Object> array;
     public final AtomicBoolean pinned = new AtomicBoolean(false);
     private final HasFields fieldProvider;
+    // the hash code of the list when it is frozen, not part of the value, see isFrozen()
+    private volatile int frozenHash;
+    private volatile boolean frozen;
+    // the pinned list can never be frozen, it contains a mutable element or itself
+    private volatile boolean unfreezable;
+    // the nested list that was not pinned when freezing this list was last tried
+    private volatile LngList unpinned;
 
     public LngList() {
         this(null);
     }
 
     public LngList(HasFields fieldProvider) {
+        this(fieldProvider, new ArrayList<>());
+    }
+
+    /**
+     * Create a list on an existing storage, e.g., a {@link PersistentList} sharing its structure with other lists, or a
+     * {@link NumericList} storing the numbers in a primitive array.
+     *
+     * @param fieldProvider the field provider of the list, or {@code null}
+     * @param array         the storage of the elements, owned by the new list
+     */
+    public LngList(HasFields fieldProvider, List<Object> array) {
         this.fieldProvider = fieldProvider;
+        this.array = array;
     }
 
     public long size() {
@@ -73,7 +92,11 @@ public class LngList implements HasIndex, HasFields {
                 array.set(array.size() + indexValue, value);
                 return;
             }
-            array.ensureCapacity(indexValue + 1);
+            if (array instanceof ArrayList<Object> arrayList) {
+                arrayList.ensureCapacity(indexValue + 1);
+            } else if (array instanceof NumericList numeric) {
+                numeric.ensureCapacity(indexValue + 1);
+            }
             while (indexValue >= array.size()) {
                 array.add(null);
             }
@@ -126,6 +149,12 @@ public class LngList implements HasIndex, HasFields {
         if (index instanceof Range range) {
             final var start = range.getStart(array.size());
             final var end = range.getEnd(array.size());
+            if (array instanceof PersistentList persistent && start <= end) {
+                return new LngList(fieldProvider, persistent.slice(start, end));
+            }
+            if (array instanceof NumericList numeric && start <= end) {
+                return new LngList(fieldProvider, numeric.slice(start, end));
+            }
             final var result = new LngList(fieldProvider);
             for (int i = start; i < end; i++) {
                 result.array.add(this.array.get(i));
@@ -182,18 +211,32 @@ public class LngList implements HasIndex, HasFields {
         if (this == o) return true;
         if (!(o instanceof LngList other)) return false;
         if (array.size() != other.array.size()) return false;
-        return CycleGuard.equals(this, other, () -> {
-            for (int i = 0; i < array.size(); i++) {
-                if (!Objects.equals(array.get(i), other.array.get(i))) {
-                    return false;
-                }
+        final boolean thisFrozen = isFrozen();
+        final boolean otherFrozen = other.isFrozen();
+        if (thisFrozen && otherFrozen && frozenHash != other.frozenHash) {
+            return false;
+        }
+        // the comparison goes down on both lists at the same pace, it stops if one of them has no cycles
+        if (thisFrozen || otherFrozen) {
+            return elementsEqual(other);
+        }
+        return CycleGuard.equals(this, other, () -> elementsEqual(other));
+    }
+
+    private boolean elementsEqual(final LngList other) {
+        for (int i = 0; i < array.size(); i++) {
+            if (!Objects.equals(array.get(i), other.array.get(i))) {
+                return false;
             }
-            return true;
-        });
+        }
+        return true;
     }
 
     @Override
     public int hashCode() {
+        if (isFrozen()) {
+            return frozenHash;
+        }
         return CycleGuard.hashCode(this, () -> {
             int result = 1;
             for (var item : array) {
@@ -203,4 +246,83 @@ public class LngList implements HasIndex, HasFields {
         });
     }
 
+    /**
+     * A pinned list is frozen if nothing reachable from it can change: the elements are strings, numbers, booleans,
+     * {@code none}, or frozen lists. The hash code of a frozen list is calculated only once, and a frozen list cannot
+     * contain itself, so it needs no cycle guard.
+     * <p>
+     * Pinned objects are never elements of a frozen list, because the methods of an object and the {@code with}
+     * command can still change the fields of a pinned object.
+     *
+     * The result of a failed check is remembered. A list that can never be frozen is not checked again, and a list
+     * with a nested list not pinned yet is checked again only after that nested list got pinned.
+     *
+     * @return {@code true} if the list is frozen
+     */
+    public boolean isFrozen() {
+        if (frozen) {
+            return true;
+        }
+        if (unfreezable || !pinned.get()) {
+            return false;
+        }
+        final var waitingFor = unpinned;
+        if (waitingFor != null && !waitingFor.pinned.get()) {
+            return false;
+        }
+        return freeze(Collections.newSetFromMap(new IdentityHashMap<>()));
+    }
+
+    /**
+     * Check that the list is frozen, and if it is, then calculate and store the hash code.
+     *
+     * @param visited the lists checked, a list visited the second time is a cycle, unless it was found frozen
+     * @return {@code true} if the list is frozen
+     */
+    private boolean freeze(final Set<LngList> visited) {
+        if (frozen) {
+            return true;
+        }
+        if (unfreezable || !pinned.get()) {
+            return false;
+        }
+        if (!visited.add(this)) {
+            // a cycle of pinned lists, which cannot change any more
+            unfreezable = true;
+            return false;
+        }
+        int result = 1;
+        for (final var item : array) {
+            final boolean immutable = switch (item) {
+                case null -> true;
+                case String ignored -> true;
+                case Long ignored -> true;
+                case Double ignored -> true;
+                case Boolean ignored -> true;
+                case LngList list -> {
+                    if (list.freeze(visited)) {
+                        yield true;
+                    }
+                    if (list.unfreezable) {
+                        unfreezable = true;
+                    } else {
+                        unpinned = list.pinned.get() ? list.unpinned : list;
+                    }
+                    yield false;
+                }
+                default -> {
+                    unfreezable = true;
+                    yield false;
+                }
+            };
+            if (!immutable) {
+                return false;
+            }
+            result = 31 * result + Objects.hashCode(item);
+        }
+        frozenHash = result;
+        frozen = true;
+        return true;
+    }
+
 }
@@ -0,0 +1,246 @@
+package ch.turic.memory;
+
+import ch.turic.Context;
+import ch.turic.LngCallable;
+import ch.turic.builtins.classes.TuriMethod;
+import ch.turic.exceptions.ExecutionException;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A memoized function, created by the {@code memo()} built-in function. Calling it calls the wrapped function only
+ * when the result for the same arguments is not in the cache.
+ *
+ * <pre>{@code
+ * fn slow_fib(n) { if n < 2 { n } else { fib(n - 1) + fib(n - 2) } }
+ * let fib = memo(slow_fib, max=100)
+ * let f = fib(50)
+ * let hits = fib.hits()
+ * }</pre>
+ * <p>
+ * The key of the cache is the list of the argument values, compared using {@link Object#equals(Object)}. Unlike
+ * {@code ==}, it does not convert numbers: an integer and a float argument are different keys, even when their values
+ * are equal. The arguments are used in the key the following way:
+ * <ul>
+ *     <li>pinned lists and objects, and the values that cannot change are used as they are,</li>
+ *     <li>a list that is not pinned is copied into a pinned list, so changing the list later does not change the
+ *     key,</li>
+ *     <li>the call with a list that is not pinned and contains itself is not cached,</li>
+ *     <li>the call with an object that is not pinned, at any depth in the arguments, is not cached, the function is
+ *     called every time.</li>
+ * </ul>
+ * <p>
+ * The cache holds at most {@code max} results, the least recently used one is evicted when a new result does not
+ * fit. A result older than {@code ttl} seconds is not used, the function is called again. The cache is protected by
+ * a lock, so a memoized function can be shared between {@code async} tasks. The lock is not held while the wrapped
+ * function runs: two threads calling the function with the same new arguments may both call the wrapped function.
+ * <p>
+ * Methods:
+ * <ul>
+ *     <li>{@code hits()}, {@code misses()}, {@code evictions()} — the statistics of the cache</li>
+ *     <li>{@code size()} — the number of the cached results</li>
+ *     <li>{@code clear()} — remove all the cached results, the statistics are kept</li>
+ * </ul>
+ */
+public class LngMemo implements LngCallable.LngCallableClosure, HasFields {
+    private final LngCallable function;
+    private final int max;
+    private final long ttlNanos;
+    private final ReentrantLock lock = new ReentrantLock();
+    // access ordered, the first entry is the least recently used
+    private final LinkedHashMap<Key, Result> cache = new LinkedHashMap<>(16, 0.75f, true);
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param function the function to memoize
+     * @param max      the maximum number of the cached results, positive
+     * @param ttlNanos the time in nanoseconds a result can be used, or zero if the results do not expire
+     */
+    public LngMemo(LngCallable function, int max, long ttlNanos) {
+        this.function = function;
+        this.max = max;
+        this.ttlNanos = ttlNanos;
+    }
+
+    private record Result(Object value, long created) {
+    }
+
+    /**
+     * The arguments of a call. The hash code is calculated once, when the key is created.
+     */
+    private static final class Key {
+        private final Object[] values;
+        private final int hash;
+
+        private Key(Object[] values) {
+            this.values = values;
+            this.hash = Arrays.hashCode(values);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key key && hash == key.hash && Arrays.equals(values, key.values);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    @Override
+    public Object call(Context context, Object[] arguments) throws ExecutionException {
+        final var key = key(arguments);
+        if (key == null) {
+            misses.increment();
+            return function.call(context, arguments);
+        }
+        lock.lock();
+        try {
+            final var result = cache.get(key);
+            if (result != null) {
+                if (ttlNanos == 0 || System.nanoTime() - result.created < ttlNanos) {
+                    hits.increment();
+                    return result.value;
+                }
+                cache.remove(key);
+            }
+        } finally {
+            lock.unlock();
+        }
+        misses.increment();
+        final var value = function.call(context, arguments);
+        lock.lock();
+        try {
+            cache.put(key, new Result(value, System.nanoTime()));
+            if (cache.size() > max) {
+                final var eldest = cache.keySet().iterator();
+                eldest.next();
+                eldest.remove();
+                evictions.increment();
+            }
+        } finally {
+            lock.unlock();
+        }
+        return value;
+    }
+
+    /**
+     * @param arguments the arguments of the call
+     * @return the key of the cache, or {@code null} if the call cannot be cached
+     */
+    private static Key key(final Object[] arguments) {
+        final var values = new Object[arguments.length];
+        final var copying = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (int i = 0; i < arguments.length; i++) {
+            values[i] = keyValue(arguments[i], copying);
+            if (values[i] == NOT_CACHED) {
+                return null;
+            }
+        }
+        return new Key(values);
+    }
+
+    private static final Object NOT_CACHED = new Object();
+
+    /**
+     * @param value   the argument value or an element of a list argument
+     * @param copying the lists being copied, the ones containing the {@code value} at some depth
+     * @return the value to store in the key, or {@link #NOT_CACHED} if the value may change, or it is a list
+     * containing itself
+     */
+    private static Object keyValue(final Object value, final Set<Object> copying) {
+        return switch (value) {
+            case LngList list when list.pinned.get() -> list;
+            case LngList list when !copying.add(list) -> NOT_CACHED;
+            case LngList list -> {
+                final var copy = new LngList();
+                for (final var item : list.array) {
+                    final var itemValue = keyValue(item, copying);
+                    if (itemValue == NOT_CACHED) {
+                        yield NOT_CACHED;
+                    }
+                    copy.array.add(itemValue);
+                }
+                copying.remove(list);
+                copy.pinned.set(true);
+                yield copy;
+            }
+            case LngObject object when !object.pinned.get() -> NOT_CACHED;
+            case null, default -> value;
+        };
+    }
+
+    private void clear() {
+        lock.lock();
+        try {
+            cache.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private int size() {
+        lock.lock();
+        try {
+            return cache.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private volatile Map<String, Object> fieldMap = null;
+
+    private Map<String, Object> getFieldMap() {
+        if (fieldMap == null) {
+            synchronized (this) {
+                if (fieldMap == null) {
+                    fieldMap = Map.of(
+                            "hits", new TuriMethod<>(hits::sum),
+                            "misses", new TuriMethod<>(misses::sum),
+                            "evictions", new TuriMethod<>(evictions::sum),
+                            "size", new TuriMethod<>(() -> (long) size()),
+                            "clear", new TuriMethod<>(() -> {
+                                clear();
+                                return null;
+                            })
+                    );
+                }
+            }
+        }
+        return fieldMap;
+    }
+
+    @Override
+    public void setField(String name, Object value) throws ExecutionException {
+        throw new ExecutionException("You cannot set a field on a memoized function");
+    }
+
+    @Override
+    public Object getField(String name) throws ExecutionException {
+        final var field = getFieldMap().get(name);
+        if (field == null) {
+            throw new ExecutionException("Unknown memo field: " + name);
+        }
+        return field;
+    }
+
+    @Override
+    public Set<String> fields() {
+        return getFieldMap().keySet();
+    }
+
+    @Override
+    public String toString() {
+        return "memo[" + function + "]";
+    }
+}
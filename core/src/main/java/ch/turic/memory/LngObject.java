@@ -77,6 +77,46 @@ public class LngObject implements HasFields, HasIndex, HasContext {
         return null;
     }
 
+    /**
+     * The variable holding a field stored in the object itself, not in its class. It is used by the method lookup
+     * caches, which cache the lookup in the class, but still have to see the fields of the object shadowing the
+     * methods.
+     *
+     * @param name the name of the field
+     * @return the variable or {@code null} if the object has no such field of its own
+     */
+    public Variable ownVariable(String name) {
+        return context.frame.get(name);
+    }
+
+    /**
+     * The layout of the fields stored in the object itself. The objects of a class initializing their fields the same
+     * way and the objects created by the same literal share the layout.
+     *
+     * @return the shape of the fields, or {@code null} if the object has a layout of its own
+     */
+    public Shape shape() {
+        return context.frame instanceof SlotTable slots ? slots.shape() : null;
+    }
+
+    /**
+     * @param name the name of the field
+     * @return the slot of the field stored in the object itself, or {@code -1}. The objects having the same
+     * {@link #shape()} have the field in the same slot.
+     */
+    public int ownSlot(String name) {
+        return context.frame instanceof SlotTable slots ? slots.slotOf(name) : -1;
+    }
+
+    /**
+     * @param slot a slot of a field returned by {@link #ownSlot(String)} for an object having the same non-null
+     *             {@link #shape()} as this one
+     * @return the variable holding the field
+     */
+    public Variable ownVariable(int slot) {
+        return ((SlotTable) context.frame).slot(slot);
+    }
+
     @Override
     public Set<String> fields() {
         return context.keys();
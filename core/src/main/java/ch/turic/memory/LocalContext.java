@@ -19,18 +19,21 @@ import java.util.Set;
  */
 public class LocalContext implements Context, AutoCloseable {
     VarTable frame;
-    private final Set<String> globals = new HashSet<>();
-    private final Set<String> nonlocal = new HashSet<>();
-    private final Set<String> local = new HashSet<>();
-    private final Set<String> veiled = new HashSet<>();
-    private final Set<String> frozen;
+    // The name sets are allocated on the first use, most of the frames never need them. A null set is empty.
+    private Set<String> globals;
+    private Set<String> nonlocal;
+    private Set<String> local;
+    private Set<String> veiled;
+    private Set<String> frozen;
     private final LocalContext wrapped;
     public final GlobalContext globalContext;
     public final ThreadContext threadContext;
     private LocalContext caller = null;
-    private final List<String> exporting = new ArrayList<>();
+    private List<String> exporting;
     private final boolean with;
     private boolean pinned = false;
+    // a value outliving the execution of the code holds a reference to this context, see capture()
+    private boolean captured = false;
 
     public Set<String> keys() {
         return frame.keySet();
@@ -77,7 +80,9 @@ public class LocalContext implements Context, AutoCloseable {
                 }
             }
             // after we added all relevant keys of this context extend the hidden set with the key from this context
-            hidden.addAll(ctx.local);
+            if (ctx.local != null) {
+                hidden.addAll(ctx.local);
+            }
             ctx = ctx.wrapped;
         }
         return keySet;
@@ -127,7 +132,6 @@ public class LocalContext implements Context, AutoCloseable {
         this.wrapped = null;
         this.frame = globalContext.heap;
         this.with = false;
-        this.frozen = new HashSet<>();
     }
 
     /**
@@ -147,12 +151,11 @@ public class LocalContext implements Context, AutoCloseable {
         this.wrapped = null;
         this.frame = globalContext.heap;
         this.with = false;
-        this.frozen = new HashSet<>();
     }
 
     public LocalContext(final GlobalContext globalContext, final ThreadContext threadContext) {
         this.wrapped = null;
-        this.frame = new VarTable();
+        this.frame = new SlotTable();
         this.globalContext = globalContext;
         this.threadContext = threadContext;
         if (threadContext != null) {
@@ -163,7 +166,6 @@ public class LocalContext implements Context, AutoCloseable {
             threadContext.grace().setSteps(globalContext.graceSteps);
         }
         this.with = false;
-        this.frozen = new HashSet<>();
     }
 
     /**
@@ -181,16 +183,19 @@ public class LocalContext implements Context, AutoCloseable {
     private LocalContext(final LocalContext clone, final LocalContext wrapped) {
         this.globalContext = clone.globalContext;
         this.threadContext = clone.threadContext;
-        this.frame = new VarTable();
+        this.frame = new SlotTable();
         this.wrapped = wrapped;
         this.with = false;
-        this.frozen = new HashSet<>();
     }
 
     private LocalContext(final LocalContext thisContext, final LocalContext wrappedContext, final LocalContext withContext) {
         this.globalContext = thisContext.globalContext;
         this.threadContext = thisContext.threadContext;
         this.frame = withContext.frame;
+        // the frozen names are shared with the borrowed context, so they have to exist here
+        if (withContext.frozen == null) {
+            withContext.frozen = new HashSet<>();
+        }
         this.frozen = withContext.frozen;
         this.wrapped = wrappedContext;
         this.with = true;
@@ -241,10 +246,10 @@ public class LocalContext implements Context, AutoCloseable {
         }
 
         public VariableHibernation(String variable) {
-            if (frozen.contains(variable)) {
+            if (has(frozen, variable)) {
                 this.variable = null;
             } else {
-                frozen.add(variable);
+                frozen = added(frozen, variable);
                 this.variable = variable;
             }
         }
@@ -252,7 +257,7 @@ public class LocalContext implements Context, AutoCloseable {
         @Override
         public void close() {
             if (variable != null) {
-                frozen.remove(variable);
+                removed(frozen, variable);
             }
         }
 
@@ -275,13 +280,13 @@ public class LocalContext implements Context, AutoCloseable {
      * @param identifier the identifier to freeze
      */
     public void freeze(String identifier) {
-        ExecutionException.when(frozen.contains(identifier), "variable is already pinned '" + identifier + "'");
+        ExecutionException.when(has(frozen, identifier), "variable is already pinned '" + identifier + "'");
         if (!contains(identifier)) {
             throw new ExecutionException("variable '" + identifier + "' is not defined, cannot be pinned");
         }
         if (with) {// we can freeze in the wrapped context if we are in a 'with' command
             if (containsFrame(identifier)) {
-                frozen.add(identifier);
+                frozen = added(frozen, identifier);
             } else {
                 if (wrapped != null) {
                     wrapped.freeze(identifier);
@@ -290,7 +295,7 @@ public class LocalContext implements Context, AutoCloseable {
                 }
             }
         } else {
-            frozen.add(identifier);
+            frozen = added(frozen, identifier);
         }
     }
 
@@ -317,6 +322,20 @@ public class LocalContext implements Context, AutoCloseable {
         v.set(value);
     }
 
+    /**
+     * Same as {@link #defineTypeChecked(String, Object, String[]) defineTypeChecked()}, but with the types already
+     * resolved. It is used when the resolved types are cached.
+     *
+     * @param key   the name of the variable
+     * @param value the value of the new variable
+     * @param types the accepted types, the array is shared, it must not be modified
+     */
+    public void defineTyped(String key, Object value, Variable.Type[] types) {
+        final var v = createVariable(key);
+        v.types = types;
+        v.set(value);
+    }
+
     /**
      * Create a new variable. Also, check that the name is neither global nor non-local, and not frozen.
      * <p>
@@ -331,18 +350,22 @@ public class LocalContext implements Context, AutoCloseable {
      * @return the newly created variable object
      */
     private Variable createVariable(String key, String[] typeNames) {
-        ExecutionException.when(globals.contains(key), "Local variable is already defined as global '" + key + "'");
-        ExecutionException.when(nonlocal.contains(key), "Variable cannot be local, it is already used as non-local '" + key + "'");
-        ExecutionException.when(frozen.contains(key), "final variable cannot be altered '" + key + "'");
+        final var v = createVariable(key);
+        v.types = Variable.getTypes(this, typeNames);
+        return v;
+    }
+
+    private Variable createVariable(String key) {
+        ExecutionException.when(has(globals, key), "Local variable is already defined as global '" + key + "'");
+        ExecutionException.when(has(nonlocal, key), "Variable cannot be local, it is already used as non-local '" + key + "'");
+        ExecutionException.when(has(frozen, key), "final variable cannot be altered '" + key + "'");
         // we are lenient when we have a "let" inside a loop, as it will be executed multiple times
         if (frame.containsKey(key)) {
             throw new ExecutionException("Variable '%s' is already defined.", key);
         }
         // the frame creates the variable, so the root context (whose frame is the global heap)
         // gets a volatile variable while local frames get plain ones
-        final var v = frame.define(key);
-        v.types = Variable.getTypes(this, typeNames);
-        return v;
+        return frame.define(key);
     }
 
     /**
@@ -354,13 +377,13 @@ public class LocalContext implements Context, AutoCloseable {
     public void unlet(String key) throws ExecutionException {
         ExecutionException.when(!frame.containsKey(key), "Variable '%s' is not defined in the local context, you cannot unlet it.", key);
         frame.remove(key);
-        frozen.remove(key);
-        globals.remove(key);
-        nonlocal.remove(key);
+        removed(frozen, key);
+        removed(globals, key);
+        removed(nonlocal, key);
     }
 
     public boolean isGlobal(final String name) {
-        return globals.contains(name);
+        return has(globals, name);
     }
 
     public void mergeVariablesFrom(LocalContext ctx, Set<String> exceptions) throws ExecutionException {
@@ -400,9 +423,9 @@ public class LocalContext implements Context, AutoCloseable {
     }
 
     public void local(String key, Object value) throws ExecutionException {
-        ExecutionException.when(globals.contains(key), "Local variable is already defined as global '" + key + "'");
-        ExecutionException.when(nonlocal.contains(key), "Variable cannot be local, it is already used as non-local '" + key + "'");
-        ExecutionException.when(frozen.contains(key), "pinned variable cannot be altered '" + key + "'");
+        ExecutionException.when(has(globals, key), "Local variable is already defined as global '" + key + "'");
+        ExecutionException.when(has(nonlocal, key), "Variable cannot be local, it is already used as non-local '" + key + "'");
+        ExecutionException.when(has(frozen, key), "pinned variable cannot be altered '" + key + "'");
         frame.set(key, value);
     }
 
@@ -415,7 +438,7 @@ public class LocalContext implements Context, AutoCloseable {
      */
     public void global(String name) throws ExecutionException {
         ExecutionException.when(frame != globalContext.heap && frame.containsKey(name), "Global variable '%s' is already defined as local.", name);
-        globals.add(name);
+        globals = added(globals, name);
     }
 
     /**
@@ -525,34 +548,88 @@ public class LocalContext implements Context, AutoCloseable {
      * @param value the value of the local whatnot
      */
     public void update(final String key, final Object value) {
-        for (final var ctx : wrappingContexts()) {
-            if (ctx.frozen.contains(key)) {
+        final var wrappingContexts = wrappingContexts();
+        for (final var ctx : wrappingContexts) {
+            if (has(ctx.frozen, key)) {
                 throw new ExecutionException("Variable '%s' is pinned.", key);
             }
         }
-        if (globals.contains(key)) {
+        if (has(globals, key)) {
             //When we set a global value, it does not matter if it is already defined
             // because it is either declared or was already declared as 'global'
             globalContext.heap.set(key, value);
             return;
         }
 
-        for (final var ctx : wrappingContexts()) {
-            if (ctx.frame.containsKey(key)) {
+        for (final var ctx : wrappingContexts) {
+            final var variable = ctx.frame.get(key);
+            if (variable != null) {
                 if (ctx.pinned) {
                     throw new ExecutionException("Variable '%s' is in a pinned context.", key);
                 }
                 if (ctx != this) {
-                    nonlocal.add(key);
+                    nonlocal = added(nonlocal, key);
                 }
-                ctx.frame.set(key, value);
+                variable.set(value);
                 return;
             }
         }
-        ExecutionException.when(nonlocal.contains(key), "Variable '%s' was used as global, but is not declared, cannot be changed.", key);
+        ExecutionException.when(has(nonlocal, key), "Variable '%s' was used as global, but is not declared, cannot be changed.", key);
         throw new ExecutionException("Variable '%s' is not defined.", key);
     }
 
+    /**
+     * Same as {@link #update(String, Object)} for an identifier resolved by the analysis pass. The variable is
+     * looked up using the slot coordinate cached in the {@code slot}.
+     * <p>
+     * When there is a class context in the chain, the name-based update is used, because class contexts also
+     * search the contexts of the parent classes.
+     *
+     * @param slot  the resolution cache of the identifier
+     * @param value the new value of the variable
+     */
+    public void update(final VariableSlot slot, final Object value) {
+        final var key = slot.name;
+        if (slot.kind() == VariableSlot.Kind.DYNAMIC || has(globals, key) || !checkNotPinned(key)) {
+            update(key, value);
+            return;
+        }
+        int depth = 0;
+        for (var ctx = this; ctx != null; ctx = ctx.wrapped, depth++) {
+            final var variable = ctx.frame.lookup(slot, depth);
+            if (variable != null) {
+                if (ctx.pinned) {
+                    throw new ExecutionException("Variable '%s' is in a pinned context.", key);
+                }
+                if (ctx != this) {
+                    nonlocal = added(nonlocal, key);
+                }
+                variable.set(value);
+                return;
+            }
+        }
+        ExecutionException.when(has(nonlocal, key), "Variable '%s' was used as global, but is not declared, cannot be changed.", key);
+        throw new ExecutionException("Variable '%s' is not defined.", key);
+    }
+
+    /**
+     * Throws if the variable is pinned in this or any of the wrapped contexts.
+     *
+     * @param key the name of the variable
+     * @return {@code false} if there is a class context in the chain, and the check could not be completed
+     */
+    private boolean checkNotPinned(final String key) {
+        for (var ctx = this; ctx != null; ctx = ctx.wrapped) {
+            if (ctx instanceof ClassContext) {
+                return false;
+            }
+            if (has(ctx.frozen, key)) {
+                throw new ExecutionException("Variable '%s' is pinned.", key);
+            }
+        }
+        return true;
+    }
+
 
     /**
      * Updates the value of a variable identified by the given key.
@@ -567,7 +644,7 @@ public class LocalContext implements Context, AutoCloseable {
      * @param value The new value to be assigned to the variable.
      */
     public void updateForce(final String key, final Object value) {
-        if (globals.contains(key)) {
+        if (has(globals, key)) {
             globalContext.heap.set(key, value);
             return;
         }
@@ -575,13 +652,13 @@ public class LocalContext implements Context, AutoCloseable {
         for (final var ctx : wrappingContexts()) {
             if (ctx.frame.containsKey(key)) {
                 if (ctx != this) {
-                    nonlocal.add(key);
+                    nonlocal = added(nonlocal, key);
                 }
                 ctx.frame.set(key, value);
                 return;
             }
         }
-        ExecutionException.when(nonlocal.contains(key), "Variable '%s' was used as global, but is not declared, cannot be changed.", key);
+        ExecutionException.when(has(nonlocal, key), "Variable '%s' was used as global, but is not declared, cannot be changed.", key);
         throw new ExecutionException("Variable '%s' is not defined.", key);
     }
 
@@ -645,6 +722,73 @@ public class LocalContext implements Context, AutoCloseable {
         frame.set(key, value);
     }
 
+    /**
+     * Set the value of a loop variable in a context reused for the next iteration of the loop. It is the same as
+     * {@link #let0(String, Object) let0()} followed by {@link #freeze(String) freeze()}, except that the variable
+     * is usually already defined and frozen in the frame from the previous iteration.
+     *
+     * @param key   the loop identifier
+     * @param value the value in the loop
+     */
+    public void rebind(final String key, final Object value) {
+        frame.set(key, value);
+        frozen = added(frozen, key);
+    }
+
+    /**
+     * @return the mark to {@link #rewind(int) rewind} the frame of this context to, removing the variables defined
+     * after this call
+     */
+    public int frameMark() {
+        return ((SlotTable) frame).size();
+    }
+
+    /**
+     * Reset the context of a loop iteration, so that the loop can reuse it for the next iteration instead of wrapping
+     * a new one. The variables defined after the {@link #frameMark() mark}, typically by the loop body, are removed,
+     * and the declarations made in the frame ({@code global}, non-local uses, veils, freezes of the removed variables,
+     * exports) are forgotten. The context is the same as a new one with the loop variables defined in it.
+     * <p>
+     * The loops reuse the context only if nothing can hold a reference to it after the iteration, see
+     * {@link #isCaptured()}.
+     *
+     * @param mark the value {@link #frameMark()} returned after the loop variables were defined
+     */
+    public void rewind(final int mark) {
+        final var slots = (SlotTable) frame;
+        slots.truncate(mark);
+        if (frozen != null && !frozen.isEmpty()) {
+            frozen.removeIf(name -> slots.slotOf(name) < 0);
+        }
+        cleared(globals);
+        cleared(nonlocal);
+        cleared(local);
+        cleared(veiled);
+        caller = null;
+        exporting = null;
+        pinned = false;
+    }
+
+    /**
+     * Mark this context and the contexts it wraps as captured. A value created in the context that keeps a
+     * reference to it, e.g., a closure created by a built-in function, calls it, so the loops executing in these
+     * contexts do not reuse the iteration context, see {@link #rewind(int)}. The commands creating such values are
+     * recognized by the loops analyzing their body, this marking is needed only when the code creating the value
+     * cannot be seen in the loop body.
+     */
+    public void capture() {
+        for (var ctx = this; ctx != null && !ctx.captured; ctx = ctx.wrapped) {
+            ctx.captured = true;
+        }
+    }
+
+    /**
+     * @return {@code true} if the context was {@link #capture() captured}, or it was made available to other threads
+     */
+    public boolean isCaptured() {
+        return captured || frame.isMultiThreading.get();
+    }
+
     /**
      * Register a variable as local. It does not define the variable. At the moment this method is called the variable
      * is usually not defined, but whenever it is used, it has to be treated as local.
@@ -662,10 +806,10 @@ public class LocalContext implements Context, AutoCloseable {
      * @param key the name of the variable declared as local
      */
     public void registerLocal(String key) {
-        if( globals.contains(key)){
+        if( has(globals, key)){
             throw new ExecutionException("Variable '%s' is already defined as global.", key);
         }
-        local.add(key);
+        local = added(local, key);
     }
 
     /**
@@ -684,7 +828,7 @@ public class LocalContext implements Context, AutoCloseable {
     public void veil(String name) throws ExecutionException {
         for (var ctx = this; ctx != null; ctx = ctx.wrapped) {
             if (ctx.frame.containsKey(name)) {
-                ctx.veiled.add(name);
+                ctx.veiled = added(ctx.veiled, name);
                 return;
             }
         }
@@ -701,7 +845,7 @@ public class LocalContext implements Context, AutoCloseable {
      */
     public boolean isVeiled(String name) {
         for (var ctx = this; ctx != null; ctx = ctx.wrapped) {
-            if (ctx.veiled.contains(name)) {
+            if (has(ctx.veiled, name)) {
                 return true;
             }
         }
@@ -715,7 +859,7 @@ public class LocalContext implements Context, AutoCloseable {
      * @return the visible keys of the frame
      */
     public Set<String> visibleKeys() {
-        if (veiled.isEmpty()) {
+        if (veiled == null || veiled.isEmpty()) {
             return frame.keySet();
         }
         final var keys = new HashSet<>(frame.keySet());
@@ -732,7 +876,7 @@ public class LocalContext implements Context, AutoCloseable {
      */
     public Object get(String key) {
         // if this identifier was declared or used already as global in this context
-        if (globals.contains(key)) {
+        if (has(globals, key)) {
             final var variable = globalContext.heap.get(key);
             if (variable == null) {
                 return null;
@@ -740,20 +884,65 @@ public class LocalContext implements Context, AutoCloseable {
             return variable.get();
         }
         for (var ctx = this; ctx != null; ctx = ctx.wrapped) {
-            if (ctx.frame.containsKey(key)) {
+            final var variable = ctx.frame.get(key);
+            if (variable != null) {
                 if (ctx != this) {
-                    nonlocal.add(key);
+                    nonlocal = added(nonlocal, key);
                 }
-                return ctx.frame.get(key).get();
+                return variable.get();
             }
-            if (ctx.local.contains(key)) {
+            if (has(ctx.local, key)) {
                 throw new UndefinedVariable(key);
             }
         }
         // if not found local, then use the global if it exists
-        if (globalContext.heap.containsKey(key)) {
-            nonlocal.add(key);// register the use of the global variable
-            return globalContext.heap.get(key).get();
+        final var variable = globalContext.heap.get(key);
+        if (variable != null) {
+            nonlocal = added(nonlocal, key);// register the use of the global variable
+            return variable.get();
+        }
+        throw new UndefinedVariable(key);
+    }
+
+    /**
+     * Same as {@link #get(String)} for an identifier resolved by the analysis pass.
+     * <p>
+     * The search walks the same chain of contexts in the same order as the name-based lookup, but the frames are
+     * asked using the {@code slot}: frames that never had the name defined are skipped by a mask check, and the
+     * frame where the variable was found the last time is accessed by the cached slot index.
+     * <p>
+     * Identifiers classified as {@link VariableSlot.Kind#GLOBAL global} are not registered as non-local. They are
+     * not bound anywhere in the program, so no later local definition can conflict with them.
+     *
+     * @param slot the resolution cache of the identifier
+     * @return the value of the variable
+     * @throws ExecutionException if the variable is not defined
+     */
+    public Object get(final VariableSlot slot) {
+        final var key = slot.name;
+        final var kind = slot.kind();
+        if (kind == VariableSlot.Kind.DYNAMIC || has(globals, key)) {
+            return get(key);
+        }
+        int depth = 0;
+        for (var ctx = this; ctx != null; ctx = ctx.wrapped, depth++) {
+            final var variable = ctx.frame.lookup(slot, depth);
+            if (variable != null) {
+                if (ctx != this && kind != VariableSlot.Kind.GLOBAL) {
+                    nonlocal = added(nonlocal, key);
+                }
+                return variable.get();
+            }
+            if (has(ctx.local, key)) {
+                throw new UndefinedVariable(key);
+            }
+        }
+        final var variable = globalContext.heap.get(key);
+        if (variable != null) {
+            if (kind != VariableSlot.Kind.GLOBAL) {
+                nonlocal = added(nonlocal, key);// register the use of the global variable
+            }
+            return variable.get();
         }
         throw new UndefinedVariable(key);
     }
@@ -803,8 +992,9 @@ public class LocalContext implements Context, AutoCloseable {
      */
     public Object getLocal(String key) {
         for (var ctx = this; ctx != null; ctx = ctx.wrapped) {
-            if (ctx.frame.containsKey(key)) {
-                return ctx.frame.get(key).get();
+            final var variable = ctx.frame.get(key);
+            if (variable != null) {
+                return variable.get();
             }
         }
         return null;
@@ -827,7 +1017,7 @@ public class LocalContext implements Context, AutoCloseable {
             throw grace.finalCause();
         }
         try {
-            globalContext.step();
+            globalContext.step(threadContext);
             threadContext.step();
         } catch (StepLimitReached e) {
             grace.noteHalt(e);
@@ -848,13 +1038,43 @@ public class LocalContext implements Context, AutoCloseable {
     }
 
     public List<String> exporting() {
-        return exporting;
+        return exporting == null ? List.of() : exporting;
     }
 
     public void addExport(String exporting) {
+        if (this.exporting == null) {
+            this.exporting = new ArrayList<>();
+        }
         this.exporting.add(exporting);
     }
 
+    private static boolean has(final Set<String> names, final String name) {
+        return names != null && names.contains(name);
+    }
+
+    /**
+     * Add the name to the set, allocating the set if it was not used before.
+     *
+     * @return the set to be stored in the field
+     */
+    private static Set<String> added(final Set<String> names, final String name) {
+        final var set = names == null ? new HashSet<String>() : names;
+        set.add(name);
+        return set;
+    }
+
+    private static void cleared(final Set<String> names) {
+        if (names != null) {
+            names.clear();
+        }
+    }
+
+    private static void removed(final Set<String> names, final String name) {
+        if (names != null) {
+            names.remove(name);
+        }
+    }
+
     /**
      * Retrieves the current interpreted source or compiled file path.
      *
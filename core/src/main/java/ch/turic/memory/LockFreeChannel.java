@@ -0,0 +1,746 @@
+package ch.turic.memory;
+
+import ch.turic.exceptions.ExecutionException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+
+/**
+ * A channel whose sending and receiving do not lock. The messages are stored in a lock-free queue, and only the
+ * threads that have to wait, because the channel is full or empty, are parked.
+ * <p>
+ * The queue stores the values, not the messages. A {@code null} value is stored as a marker, and only the exception
+ * messages are stored wrapped. The messages returned by the receiving methods are created when the value is taken.
+ * <p>
+ * There are two implementations:
+ *
+ * <ul>
+ *     <li>{@link RingBuffer} stores the values in an array of the size of the capacity. It is used for the channels
+ *     with a capacity from two up to {@link #RING_LIMIT}.</li>
+ *     <li>{@link Linked} stores the values in a linked list. It is used for the unbounded channels, the channels
+ *     with a capacity too large to allocate the array in advance, and the channels holding a single value.</li>
+ * </ul>
+ * <p>
+ * Both implementations take a batch of values with a single compare-and-set operation, and a batch never takes an
+ * exception message that is not the first value. The exception message stays in the channel, and it is received
+ * next, in order, by any receiver.
+ * <p>
+ * A waiting thread registers a {@link Waiter} in the queue of the waiting senders or receivers, then tries again,
+ * and parks only if the second try also fails. A thread sending or receiving values claims the waiters on the other
+ * side and unparks their threads. The registration happening before the second try, a value sent at any time is seen
+ * either by the try, or the sender finds the registered waiter, so no wakeup is lost. A claimed waiter is not in the
+ * queue anymore, so the thread registers a new one only after it was woken up. A thread that stops waiting after its
+ * waiter was claimed passes the wakeup on to the next waiting thread, even when it succeeded, because the value it
+ * was woken up for may be the one another thread is waiting for.
+ * <p>
+ * The closing works the same way as in {@link BlockingQueueChannel}:
+ * <ul>
+ *     <li>senders waiting on a full channel wake up and get an {@link ExecutionException},</li>
+ *     <li>values already in the channel can still be received,</li>
+ *     <li>once the channel is drained, every receiver gets a close message.</li>
+ * </ul>
+ *
+ * @param <T> the type of the values transmitted through the channel
+ */
+public abstract sealed class LockFreeChannel<T> implements Channel<T> permits LockFreeChannel.RingBuffer, LockFreeChannel.Linked {
+    /**
+     * The largest capacity for which the channel allocates the ring buffer.
+     */
+    static final int RING_LIMIT = 1 << 16;
+    // the most values a batch takes from the queue at once
+    private static final int BATCH = 1024;
+    private static final long FOREVER = -1;
+    // returned by the queues when there is nothing to take
+    static final Object EMPTY = new Object();
+    // stored in the queues in place of null
+    private static final Object NIL = new Object();
+
+    /**
+     * An exception message stored in the queue.
+     */
+    private record Failure(Message<?> message) {
+    }
+
+    /**
+     * The registration of a waiting thread. It is claimed once, either by a thread waking it up, or by the waiting
+     * thread itself when it stops waiting.
+     */
+    static final class Waiter {
+        private static final Object CANCELLED = new Object();
+        private final Thread thread;
+        // null while waiting, the queue of the thread that woke it up, or CANCELLED
+        private final AtomicReference<Object> claimedBy = new AtomicReference<>();
+
+        Waiter(final Thread thread) {
+            this.thread = thread;
+        }
+
+        /**
+         * @return {@code true} if a thread has woken up the waiting thread
+         */
+        boolean isWoken() {
+            final var claim = claimedBy.get();
+            return claim != null && claim != CANCELLED;
+        }
+    }
+
+    private final ConcurrentLinkedQueue<Waiter> waitingSenders = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<Waiter> waitingReceivers = new ConcurrentLinkedQueue<>();
+    private volatile boolean closed = false;
+
+    /**
+     * Only the implementations nested in this class extend it, use {@link #of(int)} to create a channel.
+     */
+    private LockFreeChannel() {
+    }
+
+    /**
+     * Create a channel.
+     *
+     * @param capacity the number of the values the channel can hold, {@link Integer#MAX_VALUE} for an unbounded
+     *                 channel
+     * @param <T>      the type of the values
+     * @return the new channel
+     */
+    public static <T> LockFreeChannel<T> of(final int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Channel capacity must be at least 1");
+        }
+        return capacity >= 2 && capacity <= RING_LIMIT ? new RingBuffer<>(capacity) : new Linked<>(capacity);
+    }
+
+    /**
+     * @param item the encoded value
+     * @return {@code true} if the value was stored, {@code false} if the channel is full
+     */
+    abstract boolean offer(Object item);
+
+    /**
+     * @param items the encoded values
+     * @param from  the index of the first value to store
+     * @return the number of the values stored from the index, zero if the channel is full
+     */
+    abstract int offerAll(Object[] items, int from);
+
+    /**
+     * @return the oldest encoded value, or {@link #EMPTY}
+     */
+    abstract Object poll();
+
+    /**
+     * Take the values up to the first exception message, which is left in the channel.
+     *
+     * @param into the array to store the encoded values
+     * @param max  the maximum number of the values to take, not more than the length of the array
+     * @return the number of the values taken, zero if the channel is empty, or the oldest value is an exception
+     * message
+     */
+    abstract int pollAll(Object[] into, int max);
+
+    @Override
+    public void send(Message<T> message) throws ExecutionException {
+        if (message.isCloseMessage()) {
+            close();
+            return;
+        }
+        final var item = encode(message);
+        failIfClosed();
+        if (offer(item)) {
+            wakeUp(waitingReceivers, 1);
+            return;
+        }
+        if (!await(waitingSenders, () -> offer(item), FOREVER)) {
+            failIfClosed();
+        }
+        wakeUp(waitingReceivers, 1);
+    }
+
+    @Override
+    public boolean trySend(Message<T> message) throws ExecutionException {
+        if (message.isCloseMessage()) {
+            close();
+            return true;
+        }
+        failIfClosed();
+        if (offer(encode(message))) {
+            wakeUp(waitingReceivers, 1);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean trySend(Message<T> message, long time, TimeUnit unit) throws ExecutionException {
+        if (message.isCloseMessage()) {
+            close();
+            return true;
+        }
+        final var item = encode(message);
+        failIfClosed();
+        if (offer(item) || await(waitingSenders, () -> offer(item), Math.max(0, unit.toNanos(time)))) {
+            wakeUp(waitingReceivers, 1);
+            return true;
+        }
+        failIfClosed();
+        return false;
+    }
+
+    /**
+     * Send the values storing as many of them at once as the free capacity allows, and waking up as many receivers
+     * as many values were stored.
+     *
+     * @param values the values to send
+     * @throws ExecutionException if the channel is or gets closed before all the values were sent
+     */
+    @Override
+    public void sendAll(final Collection<? extends T> values) throws ExecutionException {
+        final var items = values.toArray();
+        for (int i = 0; i < items.length; i++) {
+            items[i] = items[i] == null ? NIL : items[i];
+        }
+        int sent = 0;
+        while (sent < items.length) {
+            failIfClosed();
+            int n = offerAll(items, sent);
+            if (n == 0) {
+                final int from = sent;
+                final int[] stored = {0};
+                if (!await(waitingSenders, () -> (stored[0] = offerAll(items, from)) > 0, FOREVER)) {
+                    failIfClosed();
+                }
+                n = stored[0];
+            }
+            sent += n;
+            wakeUp(waitingReceivers, n);
+        }
+    }
+
+    @Override
+    public Message<T> receive() throws ExecutionException {
+        return receive(FOREVER);
+    }
+
+    @Override
+    public Message<T> tryReceive() throws ExecutionException {
+        return receive(0);
+    }
+
+    @Override
+    public Message<T> tryReceive(long time, TimeUnit unit) throws ExecutionException {
+        return receive(Math.max(0, unit.toNanos(time)));
+    }
+
+    private Message<T> receive(final long nanos) {
+        final Object[] taken = {take()};
+        if (taken[0] == EMPTY && nanos != 0) {
+            await(waitingReceivers, () -> (taken[0] = take()) != EMPTY, nanos);
+        }
+        if (taken[0] == EMPTY) {
+            if (!closed) {
+                return Message.empty();
+            }
+            // a value sent before the closing has to be received before the close message
+            taken[0] = take();
+            if (taken[0] == EMPTY) {
+                return Message.closed();
+            }
+        }
+        wakeUp(waitingSenders, 1);
+        return decode(taken[0]);
+    }
+
+    /**
+     * Receive the values available in the channel taking as many of them at once as possible. The method waits
+     * until there is at least one value or the channel is closed.
+     * <p>
+     * An exception message ends the batch. If it is the first message, the exception is thrown, otherwise it stays
+     * in the channel, and it is received next.
+     *
+     * @param max the maximum number of the values to receive
+     * @return the values, an empty list if the channel is closed and there are no more values
+     * @throws ExecutionException if the first message is an exception message
+     */
+    @Override
+    public List<T> receiveBatch(final int max) throws ExecutionException {
+        final var first = receive();
+        if (first.isCloseMessage()) {
+            return List.of();
+        }
+        final var result = new ArrayList<T>(Math.min(max, BATCH));
+        result.add(first.get());
+        final var buffer = new Object[Math.min(max - 1, BATCH)];
+        while (result.size() < max) {
+            final int n = pollAll(buffer, Math.min(buffer.length, max - result.size()));
+            if (n == 0) {
+                break;
+            }
+            wakeUp(waitingSenders, n);
+            for (int i = 0; i < n; i++) {
+                result.add(decode(buffer[i])._get());
+                buffer[i] = null;
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        wakeUp(waitingSenders, Integer.MAX_VALUE);
+        wakeUp(waitingReceivers, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Register the waiter to be woken up when a value may be received from the channel, see {@link ChannelSelect}.
+     * The thread has to try receiving after the registration, and before parking. The same waiter can be registered
+     * in several channels, the first channel waking it up claims it.
+     *
+     * @param waiter the waiter of the waiting thread
+     */
+    void waitToReceive(final Waiter waiter) {
+        waitingReceivers.add(waiter);
+    }
+
+    /**
+     * Register the waiter to be woken up when a value may be sent to the channel, see {@link #waitToReceive(Waiter)}.
+     *
+     * @param waiter the waiter of the waiting thread
+     */
+    void waitToSend(final Waiter waiter) {
+        waitingSenders.add(waiter);
+    }
+
+    /**
+     * Remove the registration of the thread waiting to receive or to send.
+     *
+     * @param waiter the waiter of the waiting thread
+     * @param send   {@code true} if the thread was waiting to send
+     * @param pass   {@code true} if the thread stops waiting, and a wakeup it got from the channel has to be passed on
+     *               to another waiting thread
+     */
+    void stopWaiting(final Waiter waiter, final boolean send, final boolean pass) {
+        final var waiters = send ? waitingSenders : waitingReceivers;
+        if (pass) {
+            leave(waiters, waiter);
+        } else {
+            waiter.claimedBy.compareAndSet(null, Waiter.CANCELLED);
+            waiters.remove(waiter);
+        }
+    }
+
+    private void failIfClosed() {
+        if (closed) {
+            throw new ExecutionException("Channel is closed");
+        }
+    }
+
+    private Object take() {
+        return poll();
+    }
+
+    /**
+     * Wait until the attempt succeeds, the channel is closed, or the time is over.
+     *
+     * @param waiters the queue of the threads waiting for the same condition as this one
+     * @param attempt tries to send or receive, it is called after the thread registered itself in the waiters
+     * @param nanos   the maximum time to wait, {@link #FOREVER} to wait until the attempt succeeds or the channel is
+     *                closed
+     * @return {@code true} if the attempt succeeded
+     */
+    private boolean await(final ConcurrentLinkedQueue<Waiter> waiters, final BooleanSupplier attempt, final long nanos) {
+        final long deadline = System.nanoTime() + nanos;
+        final var me = Thread.currentThread();
+        Waiter waiter = null;
+        while (true) {
+            // a waiter is registered again only after it was claimed, a spurious wakeup keeps the registration
+            if (waiter == null) {
+                waiter = new Waiter(me);
+                waiters.add(waiter);
+            }
+            if (attempt.getAsBoolean()) {
+                leave(waiters, waiter);
+                return true;
+            }
+            if (closed) {
+                leave(waiters, waiter);
+                return false;
+            }
+            if (nanos == FOREVER) {
+                LockSupport.park(this);
+            } else {
+                final long left = deadline - System.nanoTime();
+                if (left <= 0) {
+                    leave(waiters, waiter);
+                    return false;
+                }
+                LockSupport.parkNanos(this, left);
+            }
+            if (Thread.interrupted()) {
+                leave(waiters, waiter);
+                me.interrupt();
+                throw new ExecutionException(new InterruptedException());
+            }
+            if (waiter.isWoken()) {
+                waiter = null;
+            }
+        }
+    }
+
+    /**
+     * Cancel the waiter of the thread giving up the waiting. If this queue has already claimed it, the wakeup is
+     * passed on to the next waiting thread.
+     */
+    private static void leave(final ConcurrentLinkedQueue<Waiter> waiters, final Waiter waiter) {
+        if (waiter.claimedBy.compareAndSet(null, Waiter.CANCELLED)) {
+            waiters.remove(waiter);
+        } else if (waiter.claimedBy.get() == waiters) {
+            wakeUp(waiters, 1);
+        } else {
+            // claimed by another channel, see ChannelSelect
+            waiters.remove(waiter);
+        }
+    }
+
+    /**
+     * Wake up at most {@code n} waiting threads. The cancelled waiters, and the ones already claimed by another
+     * channel, are dropped from the queue without counting them.
+     */
+    private static void wakeUp(final ConcurrentLinkedQueue<Waiter> waiters, final int n) {
+        for (int i = 0; i < n && !waiters.isEmpty(); ) {
+            final var waiter = waiters.poll();
+            if (waiter == null) {
+                return;
+            }
+            if (waiter.claimedBy.compareAndSet(null, waiters)) {
+                LockSupport.unpark(waiter.thread);
+                i++;
+            }
+        }
+    }
+
+    private static Object encode(final Message<?> message) {
+        if (message.isException()) {
+            return new Failure(message);
+        }
+        final var value = message._get();
+        return value == null ? NIL : value;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Message<T> decode(final Object item) {
+        if (item == NIL) {
+            return Message.of(null);
+        }
+        if (item instanceof Failure failure) {
+            return (Message<T>) failure.message();
+        }
+        return Message.of((T) item);
+    }
+
+    /**
+     * The bounded channel storing the values in a ring buffer.
+     * <p>
+     * Each cell of the ring has a sequence number telling which turn of the ring it is ready for. A sender claims the
+     * cell at the tail when its sequence is the tail position, and after storing the value, it sets the sequence to
+     * the next position, making the value visible to the receivers. A receiver claims the cell at the head when its
+     * sequence is the head position plus one, and after taking the value, it sets the sequence to the position of the
+     * cell in the next turn. The claims are compare-and-set operations on the positions, and a batch claims all the
+     * consecutive ready cells with a single one.
+     * <p>
+     * The capacity has to be at least two, a single cell could not tell a full ring from an empty one.
+     */
+    static final class RingBuffer<T> extends LockFreeChannel<T> {
+        private final int capacity;
+        private final Object[] cells;
+        private final AtomicLongArray sequences;
+        private final AtomicLong head = new AtomicLong();
+        private final AtomicLong tail = new AtomicLong();
+
+        RingBuffer(final int capacity) {
+            if (capacity < 2) {
+                throw new IllegalArgumentException("Ring buffer capacity must be at least 2");
+            }
+            this.capacity = capacity;
+            this.cells = new Object[capacity];
+            this.sequences = new AtomicLongArray(capacity);
+            for (int i = 0; i < capacity; i++) {
+                sequences.set(i, i);
+            }
+        }
+
+        @Override
+        boolean offer(final Object item) {
+            long position = tail.get();
+            while (true) {
+                final int cell = (int) (position % capacity);
+                final long difference = sequences.get(cell) - position;
+                if (difference == 0) {
+                    if (tail.compareAndSet(position, position + 1)) {
+                        cells[cell] = item;
+                        sequences.set(cell, position + 1);
+                        return true;
+                    }
+                    position = tail.get();
+                } else if (difference < 0) {
+                    return false;
+                } else {
+                    position = tail.get();
+                }
+            }
+        }
+
+        @Override
+        int offerAll(final Object[] items, final int from) {
+            if (from >= items.length) {
+                return 0;
+            }
+            while (true) {
+                final long position = tail.get();
+                int n = 0;
+                while (from + n < items.length && n < capacity
+                        && sequences.get((int) ((position + n) % capacity)) == position + n) {
+                    n++;
+                }
+                if (n == 0) {
+                    if (sequences.get((int) (position % capacity)) < position) {
+                        return 0;
+                    }
+                    // another sender moved the tail
+                    continue;
+                }
+                if (tail.compareAndSet(position, position + n)) {
+                    for (int i = 0; i < n; i++) {
+                        final int cell = (int) ((position + i) % capacity);
+                        cells[cell] = items[from + i];
+                        sequences.set(cell, position + i + 1);
+                    }
+                    return n;
+                }
+            }
+        }
+
+        @Override
+        Object poll() {
+            long position = head.get();
+            while (true) {
+                final int cell = (int) (position % capacity);
+                final long difference = sequences.get(cell) - (position + 1);
+                if (difference == 0) {
+                    if (head.compareAndSet(position, position + 1)) {
+                        final var item = cells[cell];
+                        cells[cell] = null;
+                        sequences.set(cell, position + capacity);
+                        return item;
+                    }
+                    position = head.get();
+                } else if (difference < 0) {
+                    return EMPTY;
+                } else {
+                    position = head.get();
+                }
+            }
+        }
+
+        @Override
+        int pollAll(final Object[] into, final int max) {
+            if (max <= 0) {
+                return 0;
+            }
+            while (true) {
+                final long position = head.get();
+                int n = 0;
+                while (n < max && n < capacity
+                        && sequences.get((int) ((position + n) % capacity)) == position + n + 1
+                        && !(cells[(int) ((position + n) % capacity)] instanceof Failure)) {
+                    n++;
+                }
+                if (n == 0) {
+                    // the head cell is empty, or it holds an exception message
+                    if (sequences.get((int) (position % capacity)) <= position + 1) {
+                        return 0;
+                    }
+                    // another receiver moved the head
+                    continue;
+                }
+                if (head.compareAndSet(position, position + n)) {
+                    for (int i = 0; i < n; i++) {
+                        final int cell = (int) ((position + i) % capacity);
+                        into[i] = cells[cell];
+                        cells[cell] = null;
+                        sequences.set(cell, position + i + capacity);
+                    }
+                    return n;
+                }
+            }
+        }
+    }
+
+    /**
+     * The channel storing the values in a linked list. The batch of values sent is linked to the list with a single
+     * compare-and-set operation, and a batch of values is taken from the list the same way.
+     * <p>
+     * The first node of the list is a dummy, its value was already taken. Taking values moves the head to the node of
+     * the last value taken, which becomes the new dummy. The tail may lag behind, the senders move it forward to the
+     * last node before linking new nodes.
+     * <p>
+     * When the channel is bounded, the number of the values is counted, and a sender reserves the place for the
+     * values before storing them.
+     */
+    static final class Linked<T> extends LockFreeChannel<T> {
+        private final AtomicReference<Node> head;
+        private final AtomicReference<Node> tail;
+        private final int capacity;
+        private final AtomicInteger size = new AtomicInteger();
+
+        private static final class Node {
+            // written before the node is linked, and cleared by the receiver taking it
+            private Object item;
+            private final AtomicReference<Node> next = new AtomicReference<>();
+
+            private Node(final Object item) {
+                this.item = item;
+            }
+        }
+
+        Linked(final int capacity) {
+            this.capacity = capacity;
+            final var dummy = new Node(null);
+            this.head = new AtomicReference<>(dummy);
+            this.tail = new AtomicReference<>(dummy);
+        }
+
+        private boolean unbounded() {
+            return capacity == Integer.MAX_VALUE;
+        }
+
+        /**
+         * Reserve the place for at most {@code n} values.
+         *
+         * @return the number of the values that can be stored
+         */
+        private int reserve(final int n) {
+            if (unbounded()) {
+                return n;
+            }
+            while (true) {
+                final int current = size.get();
+                final int reserved = Math.min(n, capacity - current);
+                if (reserved <= 0) {
+                    return 0;
+                }
+                if (size.compareAndSet(current, current + reserved)) {
+                    return reserved;
+                }
+            }
+        }
+
+        private void release(final int n) {
+            if (!unbounded()) {
+                size.addAndGet(-n);
+            }
+        }
+
+        /**
+         * Link the nodes from {@code first} to {@code last}, already linked to each other, to the end of the list.
+         */
+        private void link(final Node first, final Node last) {
+            while (true) {
+                final var end = tail.get();
+                final var next = end.next.get();
+                if (next != null) {
+                    // the tail lags behind
+                    tail.compareAndSet(end, next);
+                } else if (end.next.compareAndSet(null, first)) {
+                    tail.compareAndSet(end, last);
+                    return;
+                }
+            }
+        }
+
+        @Override
+        boolean offer(final Object item) {
+            if (reserve(1) == 0) {
+                return false;
+            }
+            final var node = new Node(item);
+            link(node, node);
+            return true;
+        }
+
+        @Override
+        int offerAll(final Object[] items, final int from) {
+            final int n = from < items.length ? reserve(items.length - from) : 0;
+            if (n > 0) {
+                final var first = new Node(items[from]);
+                var last = first;
+                for (int i = 1; i < n; i++) {
+                    final var node = new Node(items[from + i]);
+                    last.next.set(node);
+                    last = node;
+                }
+                link(first, last);
+            }
+            return n;
+        }
+
+        @Override
+        Object poll() {
+            while (true) {
+                final var dummy = head.get();
+                final var first = dummy.next.get();
+                if (first == null) {
+                    return EMPTY;
+                }
+                final var item = first.item;
+                if (head.compareAndSet(dummy, first)) {
+                    first.item = null;
+                    release(1);
+                    return item;
+                }
+            }
+        }
+
+        @Override
+        int pollAll(final Object[] into, final int max) {
+            while (true) {
+                final var dummy = head.get();
+                var last = dummy;
+                int n = 0;
+                while (n < max) {
+                    final var node = last.next.get();
+                    // a value read here belongs to this receiver only if moving the head succeeds
+                    if (node == null || node.item instanceof Failure) {
+                        break;
+                    }
+                    into[n++] = node.item;
+                    last = node;
+                }
+                if (n == 0) {
+                    return 0;
+                }
+                if (head.compareAndSet(dummy, last)) {
+                    for (var node = dummy.next.get(); node != last; node = node.next.get()) {
+                        node.item = null;
+                    }
+                    last.item = null;
+                    release(n);
+                    return n;
+                }
+            }
+        }
+    }
+}
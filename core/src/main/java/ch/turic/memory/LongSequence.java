@@ -0,0 +1,69 @@
+package ch.turic.memory;
+
+import ch.turic.commands.operators.Cast;
+
+/**
+ * A finite sequence of long values from {@link #start()} stepping by {@link #step()} up to, but not including,
+ * {@link #end()}.
+ * <p>
+ * The loops and the list literals iterate these sequences counting with a primitive {@code long}, without an
+ * iterator, and without creating the list of the values. A value is boxed only when it is stored, e.g., bound to the
+ * loop variable or added to a list. The sequences are
+ *
+ * <ul>
+ *     <li>the ranges {@code start..end} with integer ends, counting up or down, see {@link Range}, and</li>
+ *     <li>the number ranges created by the {@code rng()} built-in function.</li>
+ * </ul>
+ */
+public interface LongSequence {
+    /**
+     * @return the first value of the sequence, if the sequence is not empty
+     */
+    long start();
+
+    /**
+     * @return the end of the sequence, exclusive
+     */
+    long end();
+
+    /**
+     * @return the step, positive for an ascending and negative for a descending sequence, never zero
+     */
+    long step();
+
+    /**
+     * Check that the sequence goes on with the value. Counting from {@link #start()} by {@link #step()} the first
+     * value this method returns {@code false} for is the end of the sequence.
+     *
+     * @param value the next value counted
+     * @return {@code true} if the value is still in the sequence
+     */
+    default boolean includes(final long value) {
+        return step() < 0 ? value > end() : value < end();
+    }
+
+    /**
+     * Get the sequence of the values of an object.
+     *
+     * @param value the object to iterate
+     * @return the sequence, or {@code null} if the object is not a sequence of long values, e.g., a range with
+     * infinite or non-integer ends
+     */
+    static LongSequence of(final Object value) {
+        return switch (value) {
+            case LongSequence sequence -> sequence;
+            case Range(Object start, Object end) when Cast.isLong(start) && Cast.isLong(end) -> {
+                final long first = Cast.toLong(start);
+                final long last = Cast.toLong(end);
+                yield new Counting(first, last, first <= last ? 1 : -1);
+            }
+            case null, default -> null;
+        };
+    }
+
+    /**
+     * The sequence of a range.
+     */
+    record Counting(long start, long end, long step) implements LongSequence {
+    }
+}
@@ -0,0 +1,285 @@
+package ch.turic.memory;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/**
+ * A list storage keeping integer and float elements in primitive arrays.
+ * <p>
+ * The storage decides the representation when the first element is added:
+ *
+ * <ul>
+ *     <li>the elements of a list holding only integers are stored in a {@code long[]},</li>
+ *     <li>the elements of a list holding only floats are stored in a {@code double[]}, and</li>
+ *     <li>any other list is stored in an {@code Object[]}, the same way as in an {@link java.util.ArrayList}.</li>
+ * </ul>
+ * <p>
+ * When a value not matching the primitive array is stored, e.g., a string is added to a list of integers, or an
+ * element is set to {@code none}, the storage widens the array to an {@code Object[]} boxing the elements. After that
+ * the storage remains an {@code Object[]} until it is cleared. An integer and a float are never converted to each
+ * other; a list containing both is stored in an {@code Object[]}.
+ * <p>
+ * The list compositions, the spread of the number ranges among them, and the {@code to_list()} method of the bin
+ * values create lists with this storage, so
+ * <pre>{@code
+ * let numbers = [..rng(0, 100_000)]
+ * }</pre>
+ * <p>
+ * does not allocate a {@code Long} object for the elements. The elements are boxed when they are read.
+ * <p>
+ * The class implements {@link java.util.List}, so the code using the {@link LngList#array} field works the same way as
+ * with an {@link java.util.ArrayList}. It is not thread safe.
+ */
+public final class NumericList extends AbstractList<Object> implements RandomAccess {
+    private static final int INITIAL_CAPACITY = 10;
+
+    // at most one of the arrays is not null, none of them before the first element is added
+    private long[] longs;
+    private double[] doubles;
+    private Object[] objects;
+    private int size;
+
+    public NumericList() {
+    }
+
+    /**
+     * Create a storage of integers.
+     *
+     * @param values the elements, the storage uses the array without copying
+     * @return the new storage
+     */
+    public static NumericList ofLongs(final long[] values) {
+        final var list = new NumericList();
+        list.longs = values;
+        list.size = values.length;
+        return list;
+    }
+
+    /**
+     * @return {@code true} if the elements are stored in a {@code long[]} or in a {@code double[]}
+     */
+    public boolean isPrimitive() {
+        return longs != null || doubles != null;
+    }
+
+    /**
+     * Append an integer without boxing it, unless the storage is not a {@code long[]}.
+     *
+     * @param value the new element
+     */
+    public void addLong(final long value) {
+        if (objects != null || doubles != null) {
+            add(value);
+            return;
+        }
+        if (longs == null) {
+            longs = new long[INITIAL_CAPACITY];
+        } else if (size == longs.length) {
+            longs = Arrays.copyOf(longs, newCapacity(size + 1));
+        }
+        longs[size++] = value;
+        modCount++;
+    }
+
+    /**
+     * @param from the first index of the slice, inclusive
+     * @param to   the end index of the slice, exclusive
+     * @return a new storage with the elements between the indices, in the same representation as this one
+     */
+    public NumericList slice(final int from, final int to) {
+        Objects.checkFromToIndex(from, to, size);
+        final var slice = new NumericList();
+        if (longs != null) {
+            slice.longs = Arrays.copyOfRange(longs, from, to);
+        } else if (doubles != null) {
+            slice.doubles = Arrays.copyOfRange(doubles, from, to);
+        } else if (objects != null) {
+            slice.objects = Arrays.copyOfRange(objects, from, to);
+        }
+        slice.size = to - from;
+        return slice;
+    }
+
+    @Override
+    public Object get(final int index) {
+        Objects.checkIndex(index, size);
+        if (longs != null) {
+            return longs[index];
+        }
+        if (doubles != null) {
+            return doubles[index];
+        }
+        return objects[index];
+    }
+
+    @Override
+    public Object set(final int index, final Object element) {
+        final var old = get(index);
+        prepare(element);
+        store(index, element);
+        return old;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean add(final Object element) {
+        prepare(element);
+        ensureCapacity(size + 1);
+        store(size++, element);
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public void add(final int index, final Object element) {
+        Objects.checkIndex(index, size + 1);
+        prepare(element);
+        ensureCapacity(size + 1);
+        final var array = array();
+        System.arraycopy(array, index, array, index + 1, size - index);
+        store(index, element);
+        size++;
+        modCount++;
+    }
+
+    @Override
+    public Object remove(final int index) {
+        final var old = get(index);
+        removeRange(index, index + 1);
+        return old;
+    }
+
+    @Override
+    public boolean addAll(final Collection<?> elements) {
+        if (elements.isEmpty()) {
+            return false;
+        }
+        if (elements instanceof NumericList other && other.longs != null && objects == null && doubles == null) {
+            ensureCapacity(size + other.size);
+            if (longs == null) {
+                longs = new long[Math.max(INITIAL_CAPACITY, other.size)];
+            }
+            System.arraycopy(other.longs, 0, longs, size, other.size);
+            size += other.size;
+            modCount++;
+            return true;
+        }
+        ensureCapacity(size + elements.size());
+        for (final var element : elements) {
+            add(element);
+        }
+        return true;
+    }
+
+    @Override
+    public void clear() {
+        longs = null;
+        doubles = null;
+        objects = null;
+        size = 0;
+        modCount++;
+    }
+
+    @Override
+    protected void removeRange(final int fromIndex, final int toIndex) {
+        Objects.checkFromToIndex(fromIndex, toIndex, size);
+        if (fromIndex == toIndex) {
+            return;
+        }
+        final var array = array();
+        System.arraycopy(array, toIndex, array, fromIndex, size - toIndex);
+        final int newSize = size - (toIndex - fromIndex);
+        if (objects != null) {
+            // let the removed elements be collected
+            Arrays.fill(objects, newSize, size, null);
+        }
+        size = newSize;
+        modCount++;
+    }
+
+    @Override
+    public Object[] toArray() {
+        if (objects != null) {
+            return Arrays.copyOf(objects, size);
+        }
+        return super.toArray();
+    }
+
+    /**
+     * Make sure the storage can hold the given number of elements without growing.
+     *
+     * @param capacity the number of elements
+     */
+    public void ensureCapacity(final int capacity) {
+        if (longs != null && capacity > longs.length) {
+            longs = Arrays.copyOf(longs, newCapacity(capacity));
+        } else if (doubles != null && capacity > doubles.length) {
+            doubles = Arrays.copyOf(doubles, newCapacity(capacity));
+        } else if (objects != null && capacity > objects.length) {
+            objects = Arrays.copyOf(objects, newCapacity(capacity));
+        }
+    }
+
+    private int newCapacity(final int capacity) {
+        final int current = longs != null ? longs.length : doubles != null ? doubles.length : objects.length;
+        return Math.max(capacity, current + (current >> 1) + 1);
+    }
+
+    /**
+     * Choose the representation for the first element, or widen the storage to an {@code Object[]} if the element does
+     * not fit into the primitive array.
+     */
+    private void prepare(final Object element) {
+        if (objects != null) {
+            return;
+        }
+        if (longs != null) {
+            if (!(element instanceof Long)) {
+                widen(longs.length);
+            }
+            return;
+        }
+        if (doubles != null) {
+            if (!(element instanceof Double)) {
+                widen(doubles.length);
+            }
+            return;
+        }
+        switch (element) {
+            case Long ignored -> longs = new long[INITIAL_CAPACITY];
+            case Double ignored -> doubles = new double[INITIAL_CAPACITY];
+            case null, default -> objects = new Object[INITIAL_CAPACITY];
+        }
+    }
+
+    private void widen(final int capacity) {
+        final var boxed = new Object[Math.max(capacity, INITIAL_CAPACITY)];
+        for (int i = 0; i < size; i++) {
+            boxed[i] = get(i);
+        }
+        longs = null;
+        doubles = null;
+        objects = boxed;
+    }
+
+    private void store(final int index, final Object element) {
+        if (longs != null) {
+            longs[index] = (Long) element;
+        } else if (doubles != null) {
+            doubles[index] = (Double) element;
+        } else {
+            objects[index] = element;
+        }
+    }
+
+    private Object array() {
+        return longs != null ? longs : doubles != null ? doubles : objects;
+    }
+}
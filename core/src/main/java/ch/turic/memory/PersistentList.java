@@ -0,0 +1,367 @@
+package ch.turic.memory;
+
+import java.util.AbstractList;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/**
+ * A list storage sharing its structure with the lists it was created from.
+ * <p>
+ * The elements are stored in an immutable, balanced binary tree. The leaves hold at most {@value #CHUNK} elements, and
+ * the depth of the two subtrees of a branch differ at most by one, the same way as in an AVL tree. The nodes are never
+ * modified, a modification creates the new nodes along the path to the changed leaf and shares all the other nodes.
+ * Therefore
+ *
+ * <ul>
+ *     <li>a copy of the list costs nothing, see {@link #copy()},</li>
+ *     <li>appending an element, concatenating two lists, and slicing a list cost {@code O(log n)},</li>
+ *     <li>getting and setting an element cost {@code O(log n)}, and</li>
+ *     <li>the iteration walks the leaves, it costs {@code O(1)} for an element.</li>
+ * </ul>
+ * <p>
+ * The {@code +} operator and the range indexing of lists create lists with this storage, so a loop collecting the
+ * values like
+ * <pre>{@code
+ * mut acc = []
+ * for each x in 0..1000 {
+ *     acc = acc + [x]
+ * }
+ * }</pre>
+ * <p>
+ * does not copy the collected elements in each iteration. The class implements {@link List}, so the code using the
+ * {@link LngList#array} field works the same way as with an {@link java.util.ArrayList}.
+ * <p>
+ * A {@code PersistentList} object is mutable, like any list storage, and it is not thread safe. Only the nodes are
+ * shared, changing one list never changes another one.
+ */
+public final class PersistentList extends AbstractList<Object> implements RandomAccess {
+    private static final int CHUNK = 32;
+    private static final Leaf EMPTY = new Leaf(new Object[0]);
+
+    private Node root;
+
+    public PersistentList() {
+        this(EMPTY);
+    }
+
+    private PersistentList(final Node root) {
+        this.root = root;
+    }
+
+    /**
+     * Get a storage with the elements of a list. The storage shares the structure with the argument if it is also a
+     * {@code PersistentList}, otherwise the elements are copied.
+     *
+     * @param elements the elements of the new storage
+     * @return the new storage, which can be modified without changing the argument
+     */
+    public static PersistentList of(final List<Object> elements) {
+        if (elements instanceof PersistentList persistent) {
+            return persistent.copy();
+        }
+        return new PersistentList(build(elements));
+    }
+
+    /**
+     * @return a new storage with the same elements, sharing all the nodes with this one
+     */
+    public PersistentList copy() {
+        return new PersistentList(root);
+    }
+
+    /**
+     * @param from the first index of the slice, inclusive
+     * @param to   the end index of the slice, exclusive
+     * @return a new storage with the elements between the indices, sharing the nodes with this one
+     */
+    public PersistentList slice(final int from, final int to) {
+        Objects.checkFromToIndex(from, to, size());
+        return new PersistentList(slice(root, from, to));
+    }
+
+    @Override
+    public Object get(final int index) {
+        Objects.checkIndex(index, root.size());
+        var node = root;
+        int i = index;
+        while (node instanceof Branch branch) {
+            final int leftSize = branch.left.size();
+            if (i < leftSize) {
+                node = branch.left;
+            } else {
+                node = branch.right;
+                i -= leftSize;
+            }
+        }
+        return ((Leaf) node).items[i];
+    }
+
+    @Override
+    public Object set(final int index, final Object element) {
+        final var old = get(index);
+        root = set(root, index, element);
+        return old;
+    }
+
+    @Override
+    public int size() {
+        return root.size();
+    }
+
+    @Override
+    public boolean add(final Object element) {
+        root = join(root, new Leaf(new Object[]{element}));
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public void add(final int index, final Object element) {
+        Objects.checkIndex(index, size() + 1);
+        final var leaf = new Leaf(new Object[]{element});
+        if (index == size()) {
+            root = join(root, leaf);
+        } else {
+            root = join(join(slice(root, 0, index), leaf), slice(root, index, size()));
+        }
+        modCount++;
+    }
+
+    @Override
+    public Object remove(final int index) {
+        final var old = get(index);
+        root = join(slice(root, 0, index), slice(root, index + 1, size()));
+        modCount++;
+        return old;
+    }
+
+    @Override
+    public boolean addAll(final Collection<?> elements) {
+        if (elements.isEmpty()) {
+            return false;
+        }
+        final Node added = elements instanceof PersistentList persistent ? persistent.root : build(elements);
+        root = join(root, added);
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public void clear() {
+        root = EMPTY;
+        modCount++;
+    }
+
+    @Override
+    protected void removeRange(final int fromIndex, final int toIndex) {
+        root = join(slice(root, 0, fromIndex), slice(root, toIndex, size()));
+        modCount++;
+    }
+
+    @Override
+    public Iterator<Object> iterator() {
+        return new Iterator<>() {
+            // the branches whose right subtree is not visited yet
+            private final ArrayDeque<Branch> path = new ArrayDeque<>();
+            private Object[] items = descend(root);
+            private int i = 0;
+            private int remaining = size();
+
+            private Object[] descend(Node node) {
+                while (node instanceof Branch branch) {
+                    path.push(branch);
+                    node = branch.left;
+                }
+                return ((Leaf) node).items;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return remaining > 0;
+            }
+
+            @Override
+            public Object next() {
+                if (remaining == 0) {
+                    throw new NoSuchElementException();
+                }
+                while (i == items.length) {
+                    items = descend(path.pop().right);
+                    i = 0;
+                }
+                remaining--;
+                return items[i++];
+            }
+        };
+    }
+
+    private static abstract sealed class Node permits Leaf, Branch {
+        abstract int size();
+
+        abstract int depth();
+    }
+
+    private static final class Leaf extends Node {
+        private final Object[] items;
+
+        private Leaf(final Object[] items) {
+            this.items = items;
+        }
+
+        @Override
+        int size() {
+            return items.length;
+        }
+
+        @Override
+        int depth() {
+            return 0;
+        }
+    }
+
+    private static final class Branch extends Node {
+        private final Node left;
+        private final Node right;
+        private final int size;
+        private final int depth;
+
+        private Branch(final Node left, final Node right) {
+            this.left = left;
+            this.right = right;
+            this.size = left.size() + right.size();
+            this.depth = Math.max(left.depth(), right.depth()) + 1;
+        }
+
+        @Override
+        int size() {
+            return size;
+        }
+
+        @Override
+        int depth() {
+            return depth;
+        }
+    }
+
+    /**
+     * Build a balanced tree from the elements.
+     */
+    private static Node build(final Collection<?> elements) {
+        final var array = elements.toArray();
+        return build(array, 0, array.length);
+    }
+
+    private static Node build(final Object[] array, final int from, final int to) {
+        if (to - from <= CHUNK) {
+            return from == to ? EMPTY : new Leaf(Arrays.copyOfRange(array, from, to));
+        }
+        // split at a chunk boundary, so all leaves but the last are full
+        final int chunks = (to - from + CHUNK - 1) / CHUNK;
+        final int middle = from + (chunks / 2) * CHUNK;
+        return new Branch(build(array, from, middle), build(array, middle, to));
+    }
+
+    /**
+     * Concatenate two trees. The taller tree is descended along its edge facing the other tree until the depths are
+     * close enough to create a branch. Small leaves meeting at the joint are merged into one leaf, so appending the
+     * elements one by one fills the leaves.
+     */
+    private static Node join(final Node a, final Node b) {
+        if (a.size() == 0) {
+            return b;
+        }
+        if (b.size() == 0) {
+            return a;
+        }
+        if (a instanceof Leaf la && b instanceof Leaf lb && la.items.length + lb.items.length <= CHUNK) {
+            final var items = Arrays.copyOf(la.items, la.items.length + lb.items.length);
+            System.arraycopy(lb.items, 0, items, la.items.length, lb.items.length);
+            return new Leaf(items);
+        }
+        if (a instanceof Branch ba && (a.depth() > b.depth() + 1 || b instanceof Leaf lb && lastLeafSize(a) + lb.items.length <= CHUNK)) {
+            return balance(ba.left, join(ba.right, b));
+        }
+        if (b instanceof Branch bb && (b.depth() > a.depth() + 1 || a instanceof Leaf la && firstLeafSize(b) + la.items.length <= CHUNK)) {
+            return balance(join(a, bb.left), bb.right);
+        }
+        return new Branch(a, b);
+    }
+
+    private static int lastLeafSize(Node node) {
+        while (node instanceof Branch branch) {
+            node = branch.right;
+        }
+        return node.size();
+    }
+
+    private static int firstLeafSize(Node node) {
+        while (node instanceof Branch branch) {
+            node = branch.left;
+        }
+        return node.size();
+    }
+
+    /**
+     * Create a branch from the two subtrees rotating the nodes when their depths differ by two.
+     */
+    private static Node balance(final Node left, final Node right) {
+        if (left.depth() > right.depth() + 1) {
+            final var l = (Branch) left;
+            if (l.left.depth() >= l.right.depth()) {
+                return new Branch(l.left, new Branch(l.right, right));
+            }
+            final var lr = (Branch) l.right;
+            return new Branch(new Branch(l.left, lr.left), new Branch(lr.right, right));
+        }
+        if (right.depth() > left.depth() + 1) {
+            final var r = (Branch) right;
+            if (r.right.depth() >= r.left.depth()) {
+                return new Branch(new Branch(left, r.left), r.right);
+            }
+            final var rl = (Branch) r.left;
+            return new Branch(new Branch(left, rl.left), new Branch(rl.right, r.right));
+        }
+        return new Branch(left, right);
+    }
+
+    private static Node slice(final Node node, final int from, final int to) {
+        if (from == 0 && to == node.size()) {
+            return node;
+        }
+        if (from >= to) {
+            return EMPTY;
+        }
+        if (node instanceof Leaf leaf) {
+            return new Leaf(Arrays.copyOfRange(leaf.items, from, to));
+        }
+        final var branch = (Branch) node;
+        final int leftSize = branch.left.size();
+        if (to <= leftSize) {
+            return slice(branch.left, from, to);
+        }
+        if (from >= leftSize) {
+            return slice(branch.right, from - leftSize, to - leftSize);
+        }
+        return join(slice(branch.left, from, leftSize), slice(branch.right, 0, to - leftSize));
+    }
+
+    private static Node set(final Node node, final int index, final Object element) {
+        if (node instanceof Leaf leaf) {
+            final var items = leaf.items.clone();
+            items[index] = element;
+            return new Leaf(items);
+        }
+        final var branch = (Branch) node;
+        final int leftSize = branch.left.size();
+        if (index < leftSize) {
+            return new Branch(set(branch.left, index, element), branch.right);
+        }
+        return new Branch(branch.left, set(branch.right, index - leftSize, element));
+    }
+}
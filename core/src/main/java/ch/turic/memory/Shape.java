@@ -0,0 +1,182 @@
+package ch.turic.memory;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The layout of a {@link SlotTable}: the names of the variables in slot order, shared by the tables that got the same
+ * names defined in the same order.
+ * <p>
+ * The shapes form a tree. The root is the layout of the empty table, and defining a new name in a table moves the
+ * table from its shape to the child shape having the name as the last one. The objects of a class, which get their
+ * fields in the constructor, the objects created by the same literal, and the frames of a function all end up
+ * sharing the same shape, so the names, the name mask and the name to slot index map are stored only once, and the
+ * tables store only the variables.
+ * <p>
+ * A shape never changes. A table having the same shape as it had before has the same names in the same slots, so a
+ * cache can remember the slot of a name for a shape, see {@code InlineCache}.
+ * <p>
+ * The tables used as dictionaries, with many or data driven names, would grow the tree without bounds. A table does
+ * not get a shared shape
+ *
+ * <ul>
+ *     <li>when it has more than {@link #MAX_SIZE} names,</li>
+ *     <li>when the shape already has {@link #MAX_TRANSITIONS} children, or</li>
+ *     <li>when there are already {@link #MAX_SHAPES} shapes in the tree.</li>
+ * </ul>
+ * <p>
+ * Such a table, and a table from which a variable was removed, keeps its own layout, the same way as it did before
+ * the shapes were introduced.
+ * <p>
+ * The tree is shared by all the interpreters running in the JVM, but it does not keep the shapes alive. A shape
+ * refers to its parent, and the parent refers to the children only weakly. A shape no table, object or cache uses
+ * any more is garbage collected, and it is no longer counted in the limit, so an interpreter that has finished does
+ * not leave its shapes behind, and does not use up the room of the others.
+ * <p>
+ * The shapes are shared between threads, the tree is thread safe.
+ */
+public final class Shape {
+    static final int MAX_SIZE = 32;
+    static final int MAX_TRANSITIONS = 1024;
+    static final int MAX_SHAPES = 1 << 14;
+    private static final AtomicInteger count = new AtomicInteger();
+    // the transitions to the shapes collected, to be removed from the tree
+    private static final ReferenceQueue<Shape> collected = new ReferenceQueue<>();
+
+    /**
+     * The shape of the empty tables.
+     */
+    static final Shape EMPTY = new Shape(null, new String[0], new boolean[0], 0L, null);
+
+    private final Shape parent;
+    // the names, in slot order, interned, and the flags of the SlotTable.replay(), never changed
+    final String[] keys;
+    final boolean[] prepended;
+    final long mask;
+    final Map<String, Integer> index;
+    private final Map<String, Transition> transitions = new ConcurrentHashMap<>();
+    private final Map<String, Transition> prependedTransitions = new ConcurrentHashMap<>();
+
+    /**
+     * The weak reference from a shape to a child shape. It remembers where it is in the tree, so that it can be
+     * removed when the child is collected.
+     */
+    private static final class Transition extends WeakReference<Shape> {
+        private final Map<String, Transition> children;
+        private final String key;
+
+        private Transition(final Shape child, final Map<String, Transition> children, final String key) {
+            super(child, collected);
+            this.children = children;
+            this.key = key;
+        }
+    }
+
+    private Shape(final Shape parent, final String[] keys, final boolean[] prepended, final long mask, final Map<String, Integer> index) {
+        this.parent = parent;
+        this.keys = keys;
+        this.prepended = prepended;
+        this.mask = mask;
+        this.index = index;
+    }
+
+    /**
+     * Create the child shape.
+     *
+     * @param parent    the shape of the table before the name was defined
+     * @param key       the new name, interned
+     * @param prepended the flag of the new name, see {@link SlotTable}
+     */
+    private static Shape extend(final Shape parent, final String key, final boolean prepended) {
+        final int size = parent.keys.length;
+        final var keys = Arrays.copyOf(parent.keys, size + 1);
+        final var flags = Arrays.copyOf(parent.prepended, size + 1);
+        keys[size] = key;
+        flags[size] = prepended;
+        Map<String, Integer> index = null;
+        if (parent.index != null) {
+            index = new HashMap<>(parent.index);
+            index.put(key, size);
+        } else if (size >= SlotTable.INDEX_THRESHOLD) {
+            index = new HashMap<>();
+            for (int i = 0; i <= size; i++) {
+                index.put(keys[i], i);
+            }
+        }
+        return new Shape(parent, keys, flags, parent.mask | VariableSlot.bitOf(key), index);
+    }
+
+    /**
+     * @return the number of the names in the shape
+     */
+    public int size() {
+        return keys.length;
+    }
+
+    /**
+     * Get the shape with one more name.
+     *
+     * @param name      the name defined in the table, not in the shape yet
+     * @param prepended the flag of the new name, see {@link SlotTable}
+     * @return the child shape, or {@code null} if the table has to keep its own layout
+     */
+    Shape next(final String name, final boolean prepended) {
+        if (keys.length >= MAX_SIZE) {
+            return null;
+        }
+        final var children = prepended ? prependedTransitions : transitions;
+        final var transition = children.get(name);
+        final var child = transition == null ? null : transition.get();
+        if (child != null) {
+            return child;
+        }
+        removeCollected();
+        if (children.size() >= MAX_TRANSITIONS || count.get() >= MAX_SHAPES) {
+            return null;
+        }
+        final var created = new Shape[1];
+        children.compute(name.intern(), (key, old) -> {
+            final var existing = old == null ? null : old.get();
+            if (existing != null) {
+                created[0] = existing;
+                return old;
+            }
+            // a collected child still in the tree is replaced, the entry was counted when it was added
+            if (old == null) {
+                count.incrementAndGet();
+            }
+            created[0] = extend(this, key, prepended);
+            return new Transition(created[0], children, key);
+        });
+        return created[0];
+    }
+
+    /**
+     * Remove the transitions to the collected shapes from the tree, and stop counting the collected shapes.
+     */
+    private static void removeCollected() {
+        for (var reference = collected.poll(); reference != null; reference = collected.poll()) {
+            final var transition = (Transition) reference;
+            if (transition.children.remove(transition.key, transition)) {
+                count.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * @param size the number of the names kept
+     * @return the shape the tables had when they had the first {@code size} names of this shape
+     */
+    Shape ancestor(final int size) {
+        var shape = this;
+        while (shape.keys.length > size) {
+            shape = shape.parent;
+        }
+        return shape;
+    }
+}
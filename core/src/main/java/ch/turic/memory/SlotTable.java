@@ -0,0 +1,374 @@
+package ch.turic.memory;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The variable table of a local frame, storing the variables in an array indexed by slot numbers.
+ * <p>
+ * A variable gets the next free slot when it is defined in the frame, and keeps it until it is removed. Removed
+ * variables leave an empty slot behind, and slots are never reused, so a {@link VariableSlot} coordinate pointing to a
+ * slot can only ever find the same name there. The only exception is {@link #truncate(int)}, which a loop calls on the
+ * frame it reuses for the next iteration; the coordinates are checked against the name stored in the slot, so a
+ * coordinate pointing to a slot reused by another name is resolved again.
+ * <p>
+ * Most frames hold only a few variables, and most lookups are misses, walking through the {@code wrapped} chain of
+ * the contexts. To make a miss cheap, the table keeps a 64-bit mask with one bit set for each name ever defined in it.
+ * A lookup whose bit is not set in the mask returns without looking at the names. Names are interned when stored,
+ * and the identifiers resolved by the analysis pass use interned names, so the comparison is usually an identity
+ * check.
+ * <p>
+ * Frames with many variables (object and class contexts, module level code) get a name to slot index map in
+ * addition when they grow above {@link #INDEX_THRESHOLD} variables.
+ * <p>
+ * The names, the flags, the mask and the index are not stored in the table while it has a {@link Shape}. The tables
+ * getting the same names in the same order, like the objects of a class, share these arrays through the shape, and
+ * only the variables are stored in the table. A table gets its own copy of the layout when a variable is removed, or
+ * when it grows out of the shapes.
+ * <p>
+ * The table is not thread safe. Local frames are thread confined; the global heap, which is shared between threads,
+ * uses the map-based {@link VarTable}.
+ */
+public final class SlotTable extends VarTable {
+    static final int INDEX_THRESHOLD = 8;
+    private static final Variable[] NO_VARIABLES = new Variable[0];
+
+    // the shared layout of the table, or null when the arrays and the index are owned by the table
+    private Shape shape = Shape.EMPTY;
+    // the arrays of the shape while there is one, read only in that case
+    private String[] keys = Shape.EMPTY.keys;
+    private Variable[] variables = NO_VARIABLES;
+    private boolean[] prepended = Shape.EMPTY.prepended;
+    // number of the used slots, including the emptied ones
+    private int size = 0;
+    // the highest number of variables that were in the table at the same time, see keySet()
+    private int highWater = 0;
+    private int count = 0;
+    private long mask = 0L;
+    private Map<String, Integer> index = null;
+    // called when a variable is added, removed or replaced, null for most of the tables
+    private final Runnable onReshape;
+
+    public SlotTable() {
+        this(null);
+    }
+
+    /**
+     * @param onReshape called after a variable was added to, removed from or replaced in the table, but not when the
+     *                  value of a variable changes. The {@link ClassContext} uses it to invalidate the method lookup
+     *                  caches.
+     */
+    SlotTable(final Runnable onReshape) {
+        super((Map<String, Variable>) null);
+        this.onReshape = onReshape;
+    }
+
+    private void reshaped() {
+        if (onReshape != null) {
+            onReshape.run();
+        }
+    }
+
+    /**
+     * Find the slot of a variable.
+     *
+     * @param name the name of the variable
+     * @return the slot index or {@code -1} if the variable is not defined in this table
+     */
+    public int slotOf(final String name) {
+        if ((mask & VariableSlot.bitOf(name)) == 0) {
+            return -1;
+        }
+        return indexOf(name);
+    }
+
+    private int indexOf(final String name) {
+        if (index != null) {
+            final var i = index.get(name);
+            return i == null ? -1 : i;
+        }
+        final var keys = this.keys;
+        for (int i = 0; i < size; i++) {
+            if (name.equals(keys[i])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param slot the slot index
+     * @return the variable stored in the slot, or {@code null} if the slot is empty or out of range
+     */
+    public Variable slot(final int slot) {
+        return slot >= 0 && slot < size ? variables[slot] : null;
+    }
+
+    /**
+     * @return the shared layout of the table, or {@code null} if the table has its own layout. The slots of the names
+     * are the same in all the tables having the same shape.
+     */
+    public Shape shape() {
+        return shape;
+    }
+
+    @Override
+    Variable lookup(final VariableSlot slot, final int depth) {
+        if ((mask & slot.bit) == 0) {
+            return null;
+        }
+        final int cached = slot.indexAt(depth);
+        if (cached >= 0 && cached < size && keys[cached] == slot.name) {
+            return variables[cached];
+        }
+        final int i = indexOf(slot.name);
+        if (i < 0) {
+            return null;
+        }
+        slot.resolved(depth, i);
+        return variables[i];
+    }
+
+    /**
+     * @return the number of the used slots, including the emptied ones; the next variable defined gets this slot
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Remove the variables from the slot {@code mark} on, as if they were never defined. The loops use it to reset
+     * the frame of an iteration, keeping the loop variables, which are defined first in the frame.
+     *
+     * @param mark the number of slots to keep, the value {@link #size()} returned when the kept variables were
+     *             defined
+     */
+    public void truncate(final int mark) {
+        if (size <= mark) {
+            return;
+        }
+        if (shape != null) {
+            Arrays.fill(variables, mark, size, null);
+            adopt(shape.ancestor(mark));
+            size = mark;
+            count = mark;
+            highWater = count;
+            reshaped();
+            return;
+        }
+        for (int i = mark; i < size; i++) {
+            if (keys[i] != null) {
+                count--;
+                if (index != null) {
+                    index.remove(keys[i]);
+                }
+            }
+            keys[i] = null;
+            variables[i] = null;
+        }
+        size = mark;
+        mask = 0L;
+        for (int i = 0; i < size; i++) {
+            if (keys[i] != null) {
+                mask |= VariableSlot.bitOf(keys[i]);
+            }
+        }
+        // a new table with the kept variables would not have seen more
+        highWater = count;
+        reshaped();
+    }
+
+    @Override
+    public Variable get(final String name) {
+        final int i = slotOf(name);
+        return i < 0 ? null : variables[i];
+    }
+
+    @Override
+    public void set(final String name, final Object value) {
+        final int i = slotOf(name);
+        final Variable variable;
+        if (i < 0) {
+            variable = newVariable(name);
+            append(name, variable, true);
+        } else {
+            variable = variables[i];
+        }
+        variable.set(value);
+    }
+
+    @Override
+    public Variable define(final String name) {
+        final var v = newVariable(name);
+        put(name, v);
+        return v;
+    }
+
+    /**
+     * Returns a snapshot of the variables defined in the table, iterating in the same order as {@link #keySet()}.
+     *
+     * @return a new set containing the entries
+     */
+    @Override
+    public Set<Map.Entry<String, Variable>> entrySet() {
+        return replay().entrySet();
+    }
+
+    @Override
+    public boolean containsKey(final String name) {
+        return slotOf(name) >= 0;
+    }
+
+    @Override
+    public Variable remove(final String name) {
+        final int i = slotOf(name);
+        if (i < 0) {
+            return null;
+        }
+        final var old = variables[i];
+        if (shape != null) {
+            detach();
+        }
+        keys[i] = null;
+        variables[i] = null;
+        count--;
+        if (index != null) {
+            index.remove(name);
+        }
+        reshaped();
+        return old;
+    }
+
+    /**
+     * Returns a snapshot of the names defined in the table.
+     * <p>
+     * The iteration order of the returned set is the same as the iteration order of the keys of the map-based
+     * {@link VarTable} after the same operations. Object printouts, {@code keys()} and the JSON output depend on this
+     * order.
+     *
+     * @return a new set containing the names
+     */
+    @Override
+    public Set<String> keySet() {
+        return replay().keySet();
+    }
+
+    /**
+     * Build a hash map replaying the definitions of the live variables in slot order.
+     * <p>
+     * The order of the names colliding in a bucket depends on how they were inserted: {@link HashMap#put} appends to
+     * the bucket and {@link HashMap#computeIfAbsent} prepends. Removed names do not change the relative order of the
+     * others, and the map is sized for the most variables the table ever had (12 fit into the default 16 buckets, and
+     * a hash map never shrinks), so the iteration order is the same as the one of the map, which got the same
+     * operations one by one.
+     */
+    private HashMap<String, Variable> replay() {
+        final var map = HashMap.<String, Variable>newHashMap(Math.max(highWater, 12));
+        for (int i = 0; i < size; i++) {
+            if (keys[i] != null) {
+                final var variable = variables[i];
+                if (prepended[i]) {
+                    map.computeIfAbsent(keys[i], k -> variable);
+                } else {
+                    map.put(keys[i], variable);
+                }
+            }
+        }
+        return map;
+    }
+
+    @Override
+    public Variable put(final String name, final Variable value) {
+        final int i = slotOf(name);
+        if (i < 0) {
+            append(name, value, false);
+            return null;
+        }
+        final var old = variables[i];
+        variables[i] = value;
+        reshaped();
+        return old;
+    }
+
+    /**
+     * Local frames are never shared between threads, there is nothing to switch.
+     */
+    @Override
+    public void parallel() {
+        isMultiThreading.set(true);
+    }
+
+    /**
+     * @param prepended {@code true} when the map-based table would insert the variable calling
+     *                  {@code computeIfAbsent()}, see {@link #replay()}
+     */
+    private void append(final String name, final Variable variable, final boolean prepended) {
+        if (size == variables.length) {
+            variables = Arrays.copyOf(variables, size == 0 ? 4 : size * 2);
+        }
+        if (shape != null) {
+            final var next = shape.next(name, prepended);
+            if (next != null) {
+                adopt(next);
+                variables[size] = variable;
+                size++;
+                count++;
+                if (count > highWater) {
+                    highWater = count;
+                }
+                reshaped();
+                return;
+            }
+            detach();
+        }
+        if (size == keys.length) {
+            final int capacity = size == 0 ? 4 : size * 2;
+            keys = Arrays.copyOf(keys, capacity);
+            this.prepended = Arrays.copyOf(this.prepended, capacity);
+        }
+        final var key = name.intern();
+        keys[size] = key;
+        variables[size] = variable;
+        this.prepended[size] = prepended;
+        mask |= VariableSlot.bitOf(key);
+        if (index != null) {
+            index.put(key, size);
+        } else if (size >= INDEX_THRESHOLD) {
+            index = new HashMap<>();
+            for (int i = 0; i <= size; i++) {
+                if (keys[i] != null) {
+                    index.put(keys[i], i);
+                }
+            }
+        }
+        size++;
+        count++;
+        if (count > highWater) {
+            highWater = count;
+        }
+        reshaped();
+    }
+
+    private void adopt(final Shape shape) {
+        this.shape = shape;
+        this.keys = shape.keys;
+        this.prepended = shape.prepended;
+        this.mask = shape.mask;
+        this.index = shape.index;
+    }
+
+    /**
+     * Copy the layout of the shape into the table, so that it can be changed.
+     */
+    private void detach() {
+        final int capacity = Math.max(4, size * 2);
+        keys = Arrays.copyOf(keys, capacity);
+        prepended = Arrays.copyOf(prepended, capacity);
+        if (index != null) {
+            index = new HashMap<>(index);
+        }
+        shape = null;
+    }
+}
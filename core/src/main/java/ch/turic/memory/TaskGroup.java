@@ -0,0 +1,130 @@
+package ch.turic.memory;
+
+import ch.turic.exceptions.ExecutionException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Wait for a group of tasks started with {@code async} as a whole, the way {@code await[all]} and
+ * {@code await[any]} do.
+ * <p>
+ * Every task reports its completion to one queue, and the waiting thread sleeps on that queue. It wakes up once for
+ * each finished task and never polls or joins the tasks one after the other, so waiting for many tasks costs one
+ * wakeup per task.
+ * <p>
+ * When the outcome of the group is decided, the tasks still running are cancelled: their thread contexts are aborted.
+ * The deadline covers the whole group. When it passes, all the unfinished tasks are cancelled, and the waiting fails.
+ */
+public final class TaskGroup {
+
+    private TaskGroup() {
+    }
+
+    /**
+     * Wait for all the tasks to finish successfully. The first failing task cancels the others.
+     *
+     * @param tasks the tasks of the group
+     * @param nanos the time to wait for the whole group, negative to wait without a deadline
+     * @return the results of the tasks in the order of the tasks
+     * @throws ExecutionException the failure of the first failing task, or when the deadline passed
+     */
+    public static List<Object> all(final List<AsyncStreamHandler> tasks, final long nanos) throws ExecutionException {
+        final var results = new ArrayList<>(tasks.size());
+        for (int i = 0; i < tasks.size(); i++) {
+            results.add(null);
+        }
+        final var completions = completions(tasks);
+        final long deadline = System.nanoTime() + nanos;
+        for (int remaining = tasks.size(); remaining > 0; remaining--) {
+            final int index = next(tasks, completions, nanos, deadline);
+            try {
+                results.set(index, tasks.get(index).get().get());
+            } catch (ExecutionException e) {
+                cancel(tasks);
+                throw e;
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Wait for the first task to finish successfully, and cancel the others.
+     *
+     * @param tasks the tasks of the group
+     * @param nanos the time to wait for the whole group, negative to wait without a deadline
+     * @return the result of the first successful task
+     * @throws ExecutionException the failure of the first failing task when all the tasks failed, or when the
+     *                            deadline passed
+     */
+    public static Object any(final List<AsyncStreamHandler> tasks, final long nanos) throws ExecutionException {
+        if (tasks.isEmpty()) {
+            return null;
+        }
+        final var completions = completions(tasks);
+        final long deadline = System.nanoTime() + nanos;
+        ExecutionException failure = null;
+        for (int remaining = tasks.size(); remaining > 0; remaining--) {
+            final int index = next(tasks, completions, nanos, deadline);
+            try {
+                final var result = tasks.get(index).get().get();
+                cancel(tasks);
+                return result;
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+        throw failure;
+    }
+
+    /**
+     * @return the queue the indices of the tasks are put into when the tasks finish
+     */
+    private static LinkedBlockingQueue<Integer> completions(final List<AsyncStreamHandler> tasks) {
+        final var completions = new LinkedBlockingQueue<Integer>();
+        for (int i = 0; i < tasks.size(); i++) {
+            final int index = i;
+            tasks.get(i).future().whenComplete((result, throwable) -> completions.add(index));
+        }
+        return completions;
+    }
+
+    /**
+     * Wait for the next task to finish. When the deadline passes, or the waiting thread is interrupted, the tasks
+     * are cancelled.
+     *
+     * @return the index of the finished task
+     */
+    private static int next(final List<AsyncStreamHandler> tasks,
+                            final LinkedBlockingQueue<Integer> completions,
+                            final long nanos,
+                            final long deadline) throws ExecutionException {
+        try {
+            if (nanos < 0) {
+                return completions.take();
+            }
+            final var index = completions.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            if (index == null) {
+                cancel(tasks);
+                throw new ExecutionException("The tasks did not finish in time");
+            }
+            return index;
+        } catch (InterruptedException e) {
+            cancel(tasks);
+            Thread.currentThread().interrupt();
+            throw new ExecutionException(e, "Waiting for the tasks was interrupted");
+        }
+    }
+
+    private static void cancel(final List<AsyncStreamHandler> tasks) {
+        for (final var task : tasks) {
+            if (!task.isDone()) {
+                task.cancel(true);
+            }
+        }
+    }
+}
@@ -1,12 +1,13 @@
 package ch.turic.memory;
 
+import ch.turic.commands.AbstractCommand;
 import ch.turic.exceptions.ExecutionException;
 import ch.turic.exceptions.StepLimitReached;
 import ch.turic.memory.debugger.DebuggerContext;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Holds all per-thread execution state for a single interpreter thread.
@@ -18,7 +19,7 @@ import java.util.concurrent.atomic.AtomicInteger;
  * <p>
  * The thread context owns:
  * <ul>
- *   <li>The Turicum call-stack trace ({@link LngStackFrame} list), used for error reporting.</li>
+ *   <li>The Turicum call-stack trace (an array of the executing commands), used for error reporting.</li>
  *   <li>The thread-level step counter and step limit, which can independently cap execution
  *       in addition to the global step limit maintained by {@link GlobalContext}.</li>
  *   <li>An optional {@link Yielder} that connects the thread to an asynchronous parent
@@ -119,7 +120,9 @@ public class ThreadContext {
         this.debuggerContext = debuggerContext;
     }
 
-    private final List<LngStackFrame> trace = new ArrayList<>();
+    // the commands being executed; the array is only ever grown, entries above traceSize are stale
+    private AbstractCommand[] trace = new AbstractCommand[64];
+    private int traceSize = 0;
 
     /**
      * Creates a thread context that is not yet associated with any Java thread.
@@ -154,7 +157,7 @@ public class ThreadContext {
      * @return number of frames currently on the trace stack
      */
     public int traceSize() {
-        return trace.size();
+        return traceSize;
     }
 
     /**
@@ -169,10 +172,8 @@ public class ThreadContext {
      * @param size the number of frames to keep; frames at index {@code >= size} are removed
      */
     public void resetTrace(int size) {
-        final var safe = getStackTrace();
-        trace.clear();
-        for (int i = 0; i < size; i++) {
-            trace.add(safe.get(i));
+        if (size < traceSize) {
+            traceSize = size;
         }
     }
 
@@ -180,34 +181,42 @@ public class ThreadContext {
      * Returns a snapshot of the current Turicum call-stack trace.
      * <p>
      * The returned list is a defensive copy; modifications to it do not affect the
-     * live trace.
+     * live trace. The {@link LngStackFrame} objects are created here, the live trace
+     * stores only the command references, so executing a command does not allocate.
      *
      * @return an ordered list of {@link LngStackFrame} objects, outermost frame first
      */
     public List<LngStackFrame> getStackTrace() {
-        return new ArrayList<>(trace);
+        final var snapshot = new ArrayList<LngStackFrame>(traceSize);
+        for (int i = 0; i < traceSize; i++) {
+            snapshot.add(new LngStackFrame(trace[i]));
+        }
+        return snapshot;
     }
 
     /**
-     * Pushes a new frame onto the call-stack trace.
+     * Pushes a command onto the call-stack trace.
      * <p>
      * Called by {@link ch.turic.commands.AbstractCommand#execute} immediately before delegating to
      * {@link ch.turic.commands.AbstractCommand#_execute}.
      *
-     * @param frame the stack frame representing the command about to be executed
+     * @param command the command about to be executed
      */
-    public void push(LngStackFrame frame) {
-        trace.add(frame);
+    public void push(AbstractCommand command) {
+        if (traceSize == trace.length) {
+            trace = Arrays.copyOf(trace, traceSize * 2);
+        }
+        trace[traceSize++] = command;
     }
 
     /**
      * Pops the most recent frame from the call-stack trace.
      * <p>
      * Called by {@link ch.turic.commands.AbstractCommand#execute} after {@link ch.turic.commands.AbstractCommand#_execute}
-     * returns normally.
+     * returns normally. The reference is not cleared, the commands are part of the program, which is alive anyway.
      */
     public void pop() {
-        trace.removeLast();
+        traceSize--;
     }
 
     /**
@@ -245,7 +254,10 @@ public class ThreadContext {
     }
 
     private int stepLimit = -1;
-    private final AtomicInteger steps = new AtomicInteger();
+    // the thread-level step counter; only the thread itself reads and writes it
+    private int steps = 0;
+    // steps claimed from the global step counter and not used yet, see GlobalContext.step(ThreadContext)
+    int stepQuota = 0;
 
     /**
      * Sets the maximum number of execution steps allowed for this thread.
@@ -275,9 +287,8 @@ public class ThreadContext {
      *                          cannot swallow it
      */
     public void step() throws ExecutionException {
-        final var currentStep = steps.incrementAndGet();
         if (stepLimit < 0) return;
-        if (stepLimit <= currentStep) {
+        if (stepLimit <= ++steps) {
             throw new StepLimitReached(stepLimit);
         }
     }
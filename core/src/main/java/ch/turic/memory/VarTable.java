@@ -7,7 +7,7 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 public class VarTable {
-    private Map<String, Variable> map = new HashMap<>();
+    private Map<String, Variable> map;
     public final AtomicBoolean isMultiThreading = new AtomicBoolean(false);
     private final boolean volatileVariables;
 
@@ -30,6 +30,18 @@ public class VarTable {
      */
     public VarTable(final boolean volatileVariables) {
         this.volatileVariables = volatileVariables;
+        this.map = new HashMap<>();
+    }
+
+    /**
+     * Constructor for {@link SlotTable}, which keeps the variables in its own arrays and does not
+     * use the map.
+     *
+     * @param map the map to use, {@code null} for subclasses not using the map
+     */
+    VarTable(final Map<String, Variable> map) {
+        this.volatileVariables = false;
+        this.map = map;
     }
 
     public Variable get(final String name) {
@@ -53,7 +65,20 @@ public class VarTable {
         return v;
     }
 
-    private Variable newVariable(final String name) {
+    /**
+     * Looks up the variable for a resolved identifier. The map-backed table has no slots, it
+     * is a simple lookup by the name. {@link SlotTable} overrides it to use and to update the
+     * slot coordinate cached in {@code slot}.
+     *
+     * @param slot  the resolution cache of the identifier
+     * @param depth the distance of this table's context from the context the lookup started in
+     * @return the variable or {@code null} if it is not defined in this table
+     */
+    Variable lookup(final VariableSlot slot, final int depth) {
+        return map.get(slot.name);
+    }
+
+    Variable newVariable(final String name) {
         return volatileVariables ? new VolatileVariable(name) : new Variable(name);
     }
 
@@ -11,6 +11,7 @@ import ch.turic.utils.JdkTypePredicate;
 
 import java.util.Arrays;
 import java.util.Objects;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 /**
@@ -232,13 +233,27 @@ public class Variable {
         };
     }
 
+    private static final Set<String> BUILTIN_TYPES = Set.of(Types.BOOL, Types.STR, Types.BIN, Types.NUM, Types.INT,
+            Types.FLOAT, Types.ANY, Types.OBJ, Types.LST, Types.QUE, Types.TASK, Types.MTX, Types.ATM, Types.ERR,
+            Types.CLS, Types.FN, Types.MACRO, Types.NONE, Types.SOME);
+
+    /**
+     * @param name the name of a type
+     * @return {@code true} if the name is a built-in type, which {@link #getTypeFromName(LocalContext, String)}
+     * resolves without looking at the context
+     */
+    public static boolean isBuiltinType(String name) {
+        return BUILTIN_TYPES.contains(name);
+    }
+
     public static boolean isFit(Object value, Class<?> javaType, LngClass lngClass) {
         if (javaType == null) {
             return true;
         }
         if (javaType == LngObject.class) {
             if (value instanceof LngObject lngObject) {
-                return lngObject.instanceOf(lngClass);
+                // the object is most often exactly of the declared class
+                return lngObject.lngClass() == lngClass || lngObject.instanceOf(lngClass);
             } else {
                 return false;
             }
@@ -247,7 +262,7 @@ public class Variable {
             if (javaType == SomeType.class) return value != null;
             if (javaType == Double.class) return Cast.isDouble(value);
             if (javaType == Long.class) return Cast.isLong(value);
-            return value != null && javaType.isAssignableFrom(value.getClass());
+            return value != null && (value.getClass() == javaType || javaType.isAssignableFrom(value.getClass()));
         }
     }
 
@@ -49,6 +49,7 @@ public record VariableLeftValue(String variable) implements LeftValue {
      * @throws ExecutionException if updating the variable in the context fails
      */
     @Override
+    @SuppressWarnings("try")
     public Object reassign(LocalContext ctx, Function<Object, Object> newValueCalculator) throws ExecutionException {
         final var value = ctx.get(variable);
         final Object newValue;
@@ -59,6 +60,27 @@ public record VariableLeftValue(String variable) implements LeftValue {
         return newValue;
     }
 
+    /**
+     * Same as {@link #reassign(LocalContext, Function)}, but the variable is read and written using the resolution
+     * cache of the command performing the assignment.
+     *
+     * @param ctx                the context containing the variable
+     * @param slot               the resolution cache of the variable, created for this left value
+     * @param newValueCalculator a function that computes the new value based on the current value
+     * @return the new value assigned to the variable
+     * @throws ExecutionException if updating the variable in the context fails
+     */
+    @SuppressWarnings("try")
+    public Object reassign(LocalContext ctx, VariableSlot slot, Function<Object, Object> newValueCalculator) throws ExecutionException {
+        final var value = ctx.get(slot);
+        final Object newValue;
+        try (final var ignore = ctx.hibernate(variable)) {
+            newValue = newValueCalculator.apply(value);
+        }
+        ctx.update(slot, newValue);
+        return newValue;
+    }
+
     /**
      * Returns the variable name represented by this left-value.
      *
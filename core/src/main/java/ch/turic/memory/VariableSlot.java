@@ -0,0 +1,102 @@
+package ch.turic.memory;
+
+/**
+ * The resolution cache of one identifier occurrence in the program.
+ * <p>
+ * Every command that reads or writes a variable by its name ({@code Identifier}, {@code Assignment},
+ * {@code IncrementDecrement}) owns one instance. The name is interned, so the frame tables can compare it by
+ * identity. The {@link Kind} is set by the {@code Resolver} analysis pass after the program was analyzed, and the
+ * slot coordinate is resolved on the first execution: it is the depth of the context in the {@code wrapped} chain
+ * where the variable was found, and the index of the variable in the {@link SlotTable} of that context.
+ * <p>
+ * The frame layout depends on the runtime call structure (closures wrap the context they were created in, methods
+ * wrap the object context, {@code with} borrows the frame of an object), therefore the coordinate is a hint: it is
+ * validated on each use, and the lookup falls back to the name-based search when it does not match. A stale or
+ * racy coordinate can only cost a search, never a wrong variable.
+ * <p>
+ * The coordinate is packed into a single {@code int} field, so that threads executing the same command concurrently
+ * cannot see a torn depth/index pair.
+ */
+public final class VariableSlot {
+
+    /**
+     * The classification of the identifier made by the analysis pass.
+     */
+    public enum Kind {
+        /**
+         * The name is bound somewhere in the program; it is looked up along the context chain using the cached slot
+         * coordinate. This is the default for commands that were not processed by the analysis pass.
+         */
+        LOCAL,
+        /**
+         * The name is not bound anywhere in the program, it is expected to be a global or a built-in. The lookup
+         * still walks the context chain (object fields can shadow globals), but it does not register the name as
+         * non-local.
+         */
+        GLOBAL,
+        /**
+         * The identifier is in a code segment where the frames are borrowed or altered dynamically (the body of
+         * {@code with} or a class body). The lookup is always name-based, nothing is cached.
+         */
+        DYNAMIC
+    }
+
+    private static final int DEPTH_SHIFT = 20;
+    private static final int INDEX_MASK = (1 << DEPTH_SHIFT) - 1;
+    private static final int MAX_DEPTH = (1 << (31 - DEPTH_SHIFT)) - 1;
+    private static final int UNRESOLVED = -1;
+
+    public final String name;
+    // one bit of the 64-bit name mask of the frames, see SlotTable
+    final long bit;
+    private Kind kind = Kind.LOCAL;
+    private int coordinate = UNRESOLVED;
+
+    public VariableSlot(final String name) {
+        this.name = name.intern();
+        this.bit = bitOf(this.name);
+    }
+
+    static long bitOf(final String name) {
+        return 1L << (name.hashCode() & 63);
+    }
+
+    public Kind kind() {
+        return kind;
+    }
+
+    public void kind(final Kind kind) {
+        this.kind = kind;
+    }
+
+    /**
+     * Return the cached slot index if the cached coordinate points to the given depth.
+     *
+     * @param depth the depth of the context in the {@code wrapped} chain being inspected
+     * @return the cached index or {@code -1} if there is no cached coordinate for this depth
+     */
+    int indexAt(final int depth) {
+        final int c = coordinate;
+        if (c == UNRESOLVED || c >>> DEPTH_SHIFT != depth) {
+            return -1;
+        }
+        return c & INDEX_MASK;
+    }
+
+    /**
+     * Record the coordinate where the variable was found.
+     *
+     * @param depth the depth of the context in the {@code wrapped} chain
+     * @param index the index of the variable in the slot table of the context
+     */
+    void resolved(final int depth, final int index) {
+        if (depth <= MAX_DEPTH && index <= INDEX_MASK && kind != Kind.DYNAMIC) {
+            coordinate = depth << DEPTH_SHIFT | index;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
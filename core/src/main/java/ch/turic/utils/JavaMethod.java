@@ -0,0 +1,183 @@
+package ch.turic.utils;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * A Java method resolved for a class, a method name and the classes of the actual arguments.
+ * <p>
+ * Finding the method that fits the arguments the best is expensive: {@link Reflection} lists the methods of the
+ * class and the interfaces and scores them. The resolved methods are cached in the {@link TuricumClassLoader} of the
+ * interpreter, and the call sites keep the last one they used, see {@link #matches(Class, String, Object[], boolean)}.
+ * <p>
+ * The method is invoked through a {@link MethodHandle} when the handle converts the arguments the same way as
+ * {@link Method#invoke(Object, Object...)} does, i.e., every argument is an instance of the parameter type, or the
+ * wrapper of a primitive type the parameter type can be widened to. Otherwise, e.g., for a {@code null} passed to
+ * a primitive parameter, the method is invoked reflectively, so the error is the same. Exceptions thrown by the
+ * method are wrapped into an {@link InvocationTargetException}, the same way as when it is invoked reflectively.
+ */
+public final class JavaMethod {
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    private final Signature signature;
+    private final Method method;
+    // (Object target, Object[] args)Object, or null when the method has to be invoked reflectively
+    private final MethodHandle handle;
+
+    /**
+     * The key of the method cache.
+     *
+     * @param klass    the class of the target object, or the class of the static method
+     * @param name     the name of the method
+     * @param args     the classes of the arguments, {@code null} for a {@code null} argument
+     * @param isStatic {@code true} for a static method
+     */
+    record Signature(Class<?> klass, String name, Class<?>[] args, boolean isStatic) {
+        static Signature of(final Class<?> klass, final String name, final Object[] args, final boolean isStatic) {
+            final var classes = new Class<?>[args.length];
+            for (int i = 0; i < args.length; i++) {
+                classes[i] = args[i] == null ? null : args[i].getClass();
+            }
+            return new Signature(klass, name, classes, isStatic);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Signature that && klass == that.klass && isStatic == that.isStatic
+                    && name.equals(that.name) && Arrays.equals(args, that.args);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(klass, name, Arrays.hashCode(args), isStatic);
+        }
+    }
+
+    private JavaMethod(final Signature signature, final Method method) {
+        this.signature = signature;
+        this.method = method;
+        this.handle = handleFor(method, signature.args());
+    }
+
+    static JavaMethod of(final Signature signature, final Method method) {
+        return method == null ? null : new JavaMethod(signature, method);
+    }
+
+    Signature signature() {
+        return signature;
+    }
+
+    /**
+     * @return the resolved method
+     */
+    public Method method() {
+        return method;
+    }
+
+    /**
+     * Check that this method was resolved for the same class, name and argument classes.
+     *
+     * @param klass    the class of the target object, or the class of the static method
+     * @param name     the name of the method
+     * @param args     the actual arguments
+     * @param isStatic {@code true} for a static method
+     * @return {@code true} if the method can be invoked with the arguments without resolving it again
+     */
+    public boolean matches(final Class<?> klass, final String name, final Object[] args, final boolean isStatic) {
+        final var types = signature.args();
+        if (signature.klass() != klass || signature.isStatic() != isStatic || types.length != args.length
+                || !signature.name().equals(name)) {
+            return false;
+        }
+        for (int i = 0; i < args.length; i++) {
+            if (types[i] != (args[i] == null ? null : args[i].getClass())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Invoke the method.
+     *
+     * @param target the target object, {@code null} for a static method
+     * @param args   the arguments, their classes are the ones the method was resolved for
+     * @return the result of the method, {@code null} for a {@code void} method
+     * @throws Exception the same exceptions {@link Reflection#invoke(Method, Object, Object[])} throws
+     */
+    public Object invoke(final Object target, final Object[] args) throws Exception {
+        if (handle == null) {
+            return Reflection.invoke(method, target, args);
+        }
+        try {
+            return (Object) handle.invokeExact(target, args);
+        } catch (Throwable t) {
+            throw new InvocationTargetException(t);
+        }
+    }
+
+    /**
+     * Create the handle invoking the method with the target and the arguments in an array, or {@code null} if the
+     * handle would convert the arguments differently from the reflective call.
+     */
+    private static MethodHandle handleFor(final Method method, final Class<?>[] args) {
+        final var parameters = method.getParameterTypes();
+        final int fixed = method.isVarArgs() ? parameters.length - 1 : parameters.length;
+        for (int i = 0; i < args.length; i++) {
+            final var parameter = i < fixed ? parameters[i] : parameters[fixed].getComponentType();
+            if (!converts(args[i], parameter)) {
+                return null;
+            }
+        }
+        try {
+            var handle = LOOKUP.unreflect(method);
+            if (method.isVarArgs()) {
+                handle = handle.asFixedArity().asCollector(parameters[fixed], args.length - fixed);
+            }
+            handle = handle.asType(MethodType.genericMethodType(handle.type().parameterCount()));
+            if (Modifier.isStatic(method.getModifiers())) {
+                handle = handle.asSpreader(Object[].class, args.length);
+                return MethodHandles.dropArguments(handle, 0, Object.class);
+            }
+            return handle.asSpreader(Object[].class, args.length);
+        } catch (IllegalAccessException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static boolean converts(final Class<?> arg, final Class<?> parameter) {
+        if (arg == null) {
+            return !parameter.isPrimitive();
+        }
+        if (!parameter.isPrimitive()) {
+            return parameter.isAssignableFrom(arg);
+        }
+        final var primitive = MethodType.methodType(arg).unwrap().returnType();
+        if (primitive == parameter) {
+            return true;
+        }
+        if (!primitive.isPrimitive() || primitive == boolean.class || parameter == boolean.class) {
+            return false;
+        }
+        return rank(primitive) < rank(parameter) && (primitive != char.class || rank(parameter) >= rank(int.class))
+                && parameter != char.class;
+    }
+
+    /**
+     * The order of the primitive widening conversions, {@code char} widens like {@code short}, but not to it.
+     */
+    private static int rank(final Class<?> primitive) {
+        if (primitive == byte.class) return 0;
+        if (primitive == short.class || primitive == char.class) return 1;
+        if (primitive == int.class) return 2;
+        if (primitive == long.class) return 3;
+        if (primitive == float.class) return 4;
+        return 5;
+    }
+}
@@ -10,6 +10,7 @@ import java.util.Arrays;
 import java.util.Enumeration;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Predicate;
 import java.util.stream.Stream;
@@ -27,6 +28,8 @@ public class TuricumClassLoader extends ClassLoader {
     // installing a filter cannot break registration of the interpreter's own built-in classes.
     private volatile Predicate<String> scriptClassFilter = null;
     private volatile String sandboxModeLabel = "sandbox";
+    // the Java methods resolved for the calls of the scripts, see JavaMethod
+    private final Map<JavaMethod.Signature, JavaMethod> javaMethods = new ConcurrentHashMap<>();
 
     public TuricumClassLoader(ClassLoader parent) {
         super(parent);
@@ -87,6 +90,53 @@ public class TuricumClassLoader extends ClassLoader {
         }
     }
 
+    /**
+     * Find the instance method of the object that fits the arguments the best. The result is cached for the class of
+     * the object, the name, and the classes of the arguments.
+     * <p>
+     * The method does not check the script access, the caller has to call {@link #checkScriptAccess(Class)} before
+     * invoking the method.
+     *
+     * @param object the target object, not {@code null}
+     * @param name   the name of the method
+     * @param args   the arguments
+     * @return the method or {@code null} if there is no fitting method
+     */
+    public JavaMethod javaMethod(Object object, String name, Object[] args) {
+        final var signature = JavaMethod.Signature.of(object.getClass(), name, args, false);
+        final var cached = javaMethods.get(signature);
+        if (cached != null) {
+            return cached;
+        }
+        return remember(JavaMethod.of(signature, Reflection.getMethodForArgs(object, name, args)));
+    }
+
+    /**
+     * Find the static method of the class that fits the arguments the best. The same as
+     * {@link #javaMethod(Object, String, Object[])} for static methods.
+     *
+     * @param klass the class of the method
+     * @param name  the name of the method
+     * @param args  the arguments
+     * @return the method or {@code null} if there is no fitting method
+     */
+    public JavaMethod staticJavaMethod(Class<?> klass, String name, Object[] args) {
+        final var signature = JavaMethod.Signature.of(klass, name, args, true);
+        final var cached = javaMethods.get(signature);
+        if (cached != null) {
+            return cached;
+        }
+        return remember(JavaMethod.of(signature, Reflection.getStaticMethodForArgs(klass, name, args)));
+    }
+
+    private JavaMethod remember(JavaMethod method) {
+        if (method == null) {
+            return null;
+        }
+        final var previous = javaMethods.putIfAbsent(method.signature(), method);
+        return previous == null ? method : previous;
+    }
+
     public void inherit(TuricumClassLoader followed) {
         for (final var url : followed.delegate.get().getURLs()) {
             try {
@@ -2,6 +2,8 @@ package ch.turic.utils;
 
 import ch.turic.Command;
 import ch.turic.Program;
+import ch.turic.analyzer.Optimizer;
+import ch.turic.analyzer.Resolver;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
@@ -47,7 +49,7 @@ public class Unmarshaller {
                 String cname = input.readUTF();
                 classRegistry.put((short) (i + Marshaller.OFFSET), Class.forName(cname));
             }
-            return (Program) unmarshall(input);
+            return Resolver.resolve(Optimizer.optimize((Program) unmarshall(input)));
         } catch (IOException | ReflectiveOperationException e) {
             throw new RuntimeException("Failed to deserialize", e);
         }
@@ -77,4 +77,54 @@ public class ParameterDefinitionTest {
         assertEquals("m", list.meta());
         assertEquals("c", list.closure());
     }
+
+    @Test
+    void bindingPlan() {
+        var binding = parseParams("a: int, b: str|none = none, @c: Point, d: (t), [r]").binding();
+        assertEquals(2, binding.positionals());
+        assertTrue(binding.hasRest());
+        assertFalse(binding.hasMeta());
+        assertFalse(binding.hasClosure());
+        assertArrayEquals(new String[]{"int"}, binding.types()[0].names());
+        // the built-in types do not need a context
+        assertEquals(Long.class, binding.types()[0].resolve(null)[0].javaType());
+        assertEquals(2, binding.types()[1].resolve(null).length);
+        // a class name is resolved in the context of the call, an expression is evaluated for each call
+        assertArrayEquals(new String[]{"Point"}, binding.types()[2].names());
+        assertNull(binding.types()[3]);
+    }
+
+    private static Object run(String code) throws Exception {
+        try (final var interpreter = new Interpreter(ch.turic.Input.fromString(code))) {
+            return interpreter.compileAndExecute();
+        }
+    }
+
+    @Test
+    void bindingOfTheArguments() throws Exception {
+        assertEquals("[3, 12, 6, [3, 4], {x: 1}, 7, 9]", run("""
+                fn f(a: int, b: int = 10) { a + b }
+                fn g(a, [r]) { r }
+                fn h(a, {m}) { m }
+                fn k(a, @b = 5) { a + b }
+                fn p(x, ^c) { c(x) }
+                [f(1, 2), f(2), f(b = 4, a = 2), g(1, 3, 4), h(1, x = 1), k(2), p(4){|it| it + 5}]
+                """).toString());
+    }
+
+    @Test
+    void typeErrorsOfTheArguments() {
+        assertThrows(Exception.class, () -> run("""
+                fn f(a: int) { a }
+                f("x")
+                """));
+        assertThrows(Exception.class, () -> run("""
+                fn f(a, b) { a }
+                f(1)
+                """));
+        assertThrows(Exception.class, () -> run("""
+                fn f(a) { a }
+                f(1, 2)
+                """));
+    }
 }
@@ -0,0 +1,78 @@
+package ch.turic;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The cells of a flow are executed in waves, level by level. A cell with several changed inputs is executed once in
+ * a wave, after all its inputs got their new values, and a cell closing a cycle is executed in the next wave.
+ */
+class TestFlowWaves {
+
+    private Object run(String source) {
+        try (final var interpreter = new Interpreter(source)) {
+            return interpreter.compileAndExecute();
+        }
+    }
+
+    @Test
+    void cellWithSeveralChangedInputsIsExecutedOnce() {
+        assertEquals("[5]", run("""
+                let seen = que()
+                flow {
+                    a <- 1;
+                    b <- a + 1;
+                    c <- a + 2;
+                    d <- { seen.send(b + c); b + c };
+                }
+                seen.close()
+                str([..seen])
+                """).toString());
+    }
+
+    @Test
+    void cellOfLongerPathWaitsForTheShorterOne() {
+        // 'c' depends on 'a' directly and through 'b', it sees the new value of 'b' only
+        assertEquals("[4]", run("""
+                let seen = que()
+                flow {
+                    a <- 1;
+                    b <- a * 2;
+                    c <- { seen.send(a + b + 1); a + b + 1 };
+                }
+                seen.close()
+                str([..seen])
+                """).toString());
+    }
+
+    @Test
+    void cycleContinuesInTheNextWave() {
+        // every value of 'a' is seen by 'e' exactly once, and 'e' is never calculated from a stale 'a'
+        assertEquals("[12, 8, 4, 0]", run("""
+                let seen = que()
+                flow until e == 0 {
+                    a <- 16;
+                    a <- a - 4;
+                    e <- { seen.send(a); a };
+                }
+                seen.close()
+                str([..seen])
+                """).toString());
+    }
+
+    @Test
+    void noWaveStartsAfterTheExitConditionIsMet() {
+        assertEquals("[1, 2, 3]", run("""
+                let seen = que()
+                let r = { flow until a == 3 {
+                    a <- 0;
+                    a <- { seen.send(a + 1); a + 1 };
+                    yield a
+                } }
+                seen.close()
+                die "wrong result" when r != 3
+                str([..seen])
+                """).toString());
+    }
+}
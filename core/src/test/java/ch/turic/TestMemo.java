@@ -0,0 +1,128 @@
+package ch.turic;
+
+import ch.turic.exceptions.ExecutionException;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The {@code memo()} built-in: results cached by argument values, bounded least recently used eviction, expiring
+ * results, statistics, and sharing between threads.
+ */
+class TestMemo {
+
+    private Object run(String source) {
+        try (final var interpreter = new Interpreter(source)) {
+            return interpreter.compileAndExecute();
+        }
+    }
+
+    @Test
+    void recursiveCallsGoThroughTheCache() {
+        assertEquals("[23416728348467685, 81, 78]", run("""
+                fn slow_fib(n) { if n < 2 { n } else { fib(n - 1) + fib(n - 2) } }
+                let fib = memo(slow_fib)
+                let r = [fib(80), fib.misses(), fib.hits()]
+                r
+                """).toString());
+    }
+
+    @Test
+    void listArgumentsAreComparedByValue() {
+        assertEquals("[2, 4, 2, 2]", run("""
+                let f = memo({|x| len(x)}, max=2)
+                mut l = [1, 2]
+                f(l)
+                f(l)
+                f([1, 2])
+                f([3])
+                f([4])
+                f([1, 2])
+                let r = [f.hits(), f.misses(), f.evictions(), f.size()]
+                r
+                """).toString());
+        // changing the list after the call does not change the cached key
+        assertEquals(5L, run("""
+                let f = memo({|x| x[0]})
+                mut l = [1, 2]
+                f(l)
+                l[0] = 5
+                f(l)
+                """));
+    }
+
+    @Test
+    void objectsNotPinnedAreNotCached() {
+        assertEquals("[3, 1, 1]", run("""
+                let f = memo({|o| o.a})
+                let o = {a: 1}
+                f(o)
+                f(o)
+                mut p = {a: 1}
+                pin {p}
+                f(p)
+                f(p)
+                let r = [f.misses(), f.hits(), f.size()]
+                r
+                """).toString());
+    }
+
+    @Test
+    void resultsExpire() {
+        assertEquals(2L, run("""
+                let f = memo({|x| x}, ttl=0.01)
+                f(1)
+                sleep(0.05)
+                f(1)
+                f.misses()
+                """));
+    }
+
+    @Test
+    void sharedBetweenThreads() {
+        assertEquals(200L, run("""
+                let f = memo({|x| x * 2}, max=100)
+                let tasks = [..rng(0, 10, 1) -> async { mut s = 0; for each i in 0..20 { s = s + f(i % 10) }; s }]
+                mut total = 0
+                for each t in tasks { let v = await t; total = total + v }
+                die "wrong total" when total != 1800
+                f.hits() + f.misses()
+                """));
+    }
+
+    @Test
+    void cyclicListsAreNotCached() {
+        assertEquals(2L, run("""
+                let f = memo({|x| len(x)})
+                mut a = [1]
+                a[1] = a
+                f(a)
+                f(a)
+                f.misses() + f.size()
+                """));
+        // a list shared at two places is not a cycle
+        assertEquals(1L, run("""
+                let f = memo({|x| 0})
+                let s = [1]
+                mut b = [s, s]
+                f(b)
+                f([[1], [1]])
+                f.hits()
+                """));
+    }
+
+    @Test
+    void numbersOfDifferentTypesAreDifferentKeys() {
+        assertEquals("[2, 2.0, 2]", run("""
+                let f = memo({|x| x * 2});
+                [f(1), f(1.0), f.misses()]
+                """).toString());
+    }
+
+    @Test
+    void badArguments() {
+        assertThrows(ExecutionException.class, () -> run("memo(1)"));
+        assertThrows(ExecutionException.class, () -> run("memo({|x| x}, max=0)"));
+        assertThrows(ExecutionException.class, () -> run("memo({|x| x}, ttl=-1)"));
+    }
+}
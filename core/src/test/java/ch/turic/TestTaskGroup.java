@@ -0,0 +1,64 @@
+package ch.turic;
+
+import ch.turic.exceptions.ExecutionException;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * {@code await[all]} and {@code await[any]} wait for a group of tasks, and cancel the tasks still running as soon as
+ * the result of the group is known.
+ */
+class TestTaskGroup {
+
+    private Object run(String source) {
+        try (final var interpreter = new Interpreter(source)) {
+            return interpreter.compileAndExecute();
+        }
+    }
+
+    @Test
+    void allReturnsTheResultsInOrder() {
+        assertEquals("[30, 10, 20]", run("""
+                fn work(x) { sleep(0.01 * x); x * 10 }
+                await[all] async[] [work(3), work(1), work(2)]
+                """).toString());
+        assertEquals("[5]", run("await[all] async 5").toString());
+    }
+
+    @Test
+    void firstFailureCancelsTheOthers() {
+        final long start = System.nanoTime();
+        final var e = assertThrows(ExecutionException.class, () -> run("""
+                await[all] async[] [{sleep(10); 1}, {sleep(0.01); die "failed"}, {sleep(10); 2}]
+                """));
+        assertTrue(e.getMessage().contains("failed"));
+        assertTrue(System.nanoTime() - start < 5_000_000_000L);
+    }
+
+    @Test
+    void anyReturnsTheFirstSuccess() {
+        assertEquals(7L, run("""
+                await[any] async[] [{die "a"}, {sleep(0.01); 7}, {sleep(10); 8}]
+                """));
+        final var e = assertThrows(ExecutionException.class, () -> run("""
+                await[any] async[] [{die "a"}, {die "b"}]
+                """));
+        assertTrue(e.getMessage().contains("a") || e.getMessage().contains("b"));
+    }
+
+    @Test
+    void deadlineCoversTheGroup() {
+        assertEquals(true, run("""
+                let tasks = async[] [{sleep(10); 1}, {sleep(0.01); 2}]
+                try {
+                    await[all time=0.1] tasks
+                    false
+                } catch e {
+                    sleep(0.05)
+                    tasks[0].is_done() && !tasks[1].is_err()
+                }
+                """));
+        assertThrows(ExecutionException.class, () -> run("await[all any] async 1"));
+    }
+}
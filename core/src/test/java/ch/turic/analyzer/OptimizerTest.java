@@ -0,0 +1,132 @@
+package ch.turic.analyzer;
+
+import ch.turic.Command;
+import ch.turic.Interpreter;
+import ch.turic.Program;
+import ch.turic.commands.Assignment;
+import ch.turic.commands.BlockCommand;
+import ch.turic.commands.ConstantExpression;
+import ch.turic.commands.FloatConstant;
+import ch.turic.commands.IntegerConstant;
+import ch.turic.commands.LetAssignment;
+import ch.turic.commands.Operation;
+import ch.turic.commands.StringConstant;
+import ch.turic.utils.Marshaller;
+import ch.turic.utils.Unmarshaller;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The optimizer has to simplify the tree without changing what the program does.
+ */
+class OptimizerTest {
+
+    private static Command[] analyze(String code) {
+        final var program = (Program) new ProgramAnalyzer().analyze(Lexer.analyze(ch.turic.Input.fromString(code)));
+        return program.commands();
+    }
+
+    private static Object run(String code) throws Exception {
+        try (final var interpreter = new Interpreter(new Input(new StringBuilder(code), "optimizer.turi"))) {
+            return interpreter.compileAndExecute();
+        }
+    }
+
+    @Test
+    void foldsConstantOperations() {
+        final var commands = analyze("""
+                1 + 2 * 3;
+                "a" + "b";
+                7 / 2;
+                -5;
+                1 < 2
+                """);
+        assertEquals(7L, ((IntegerConstant) commands[0]).value());
+        assertEquals("ab", ((StringConstant) commands[1]).value());
+        assertEquals(3.5, ((FloatConstant) commands[2]).value());
+        assertEquals(-5L, ((IntegerConstant) commands[3]).value());
+        assertEquals(true, ((ConstantExpression) commands[4]).value());
+    }
+
+    @Test
+    void replacesChildrenByRebuildingTheParent() {
+        final var commands = analyze("""
+                x + 2 * 3;
+                y = 4 - 1
+                """);
+        assertEquals(6L, ((IntegerConstant) ((Operation) commands[0]).right()).value());
+        assertEquals(3L, ((IntegerConstant) ((Assignment) commands[1]).expression()).value());
+    }
+
+    @Test
+    void keepsOperationsThatFailOrUseVariables() {
+        final var commands = analyze("""
+                1 / 0;
+                x + 1
+                """);
+        assertInstanceOf(Operation.class, commands[0]);
+        assertInstanceOf(Operation.class, commands[1]);
+    }
+
+    @Test
+    void doesNotFoldOperationsGrowingTheResult() {
+        final var commands = analyze("""
+                "x" * 1_500_000_000;
+                fn never() { "x" * 1_500_000_000 }
+                if 2 < 1 { 3 * 4 } else { 5 }
+                """);
+        assertInstanceOf(Operation.class, commands[0]);
+        assertEquals(5L, ((IntegerConstant) ((BlockCommand) commands[2]).commands()[0]).value());
+    }
+
+    @Test
+    void joinsTemplatesWithoutExpressions() {
+        final var commands = analyze("""
+                "plain text"
+                """);
+        assertEquals("plain text", ((StringConstant) commands[0]).value());
+    }
+
+    @Test
+    void removesDeadBranches() {
+        final var commands = analyze("""
+                if 1 < 2 { "yes" } else { "no" }
+                if 2 < 1 { "yes" }
+                """);
+        assertInstanceOf(BlockCommand.class, commands[0]);
+        assertEquals("yes", ((StringConstant) ((BlockCommand) commands[0]).commands()[0]).value());
+        assertNull(((ConstantExpression) commands[1]).value());
+    }
+
+    @Test
+    void internsLiterals() {
+        final var commands = analyze("""
+                let a = 1000
+                let b = 1000
+                """);
+        final var a = ((LetAssignment) commands[0]).assignments()[0].expression();
+        final var b = ((LetAssignment) commands[1]).assignments()[0].expression();
+        assertSame(((IntegerConstant) a)._execute(null), ((IntegerConstant) b)._execute(null));
+    }
+
+    @Test
+    void optimizedProgramSurvivesMarshalling() {
+        final var program = new Program(analyze("""
+                let x = if 2 > 1 { 4 * 2 + 3 } else { 0 }
+                x + 1
+                """));
+        final var restored = new Unmarshaller().deserialize(new Marshaller().serialize(program));
+        assertInstanceOf(IntegerConstant.class, ((BlockCommand) ((LetAssignment) restored.commands()[0])
+                .assignments()[0].expression()).commands()[0]);
+        assertEquals(12L, restored.execute(new ch.turic.memory.LocalContext()));
+    }
+
+    @Test
+    void resultsAreTheSame() throws Exception {
+        assertEquals("[7, ab, 3.5, -5, true, yes, none, a1]", run("""
+                [1 + 2 * 3, "a" + "b", 7 / 2, -5, 1 < 2, if 1 < 2 { "yes" } else { "no" },
+                 if 2 < 1 { "yes" }, "a" + 1]
+                """).toString());
+    }
+}
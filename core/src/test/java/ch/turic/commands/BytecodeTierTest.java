@@ -0,0 +1,248 @@
+package ch.turic.commands;
+
+import ch.turic.Interpreter;
+import ch.turic.analyzer.Input;
+import ch.turic.embed.TuriEngine;
+import ch.turic.exceptions.ExecutionException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The compiled closure bodies must give the same results as the interpreted ones.
+ */
+class BytecodeTierTest {
+
+    private static final int DEFAULT_THRESHOLD = BytecodeTier.threshold;
+
+    @AfterEach
+    void restoreThreshold() {
+        BytecodeTier.threshold = DEFAULT_THRESHOLD;
+    }
+
+    private static Object run(String code, int threshold) throws Exception {
+        BytecodeTier.threshold = threshold;
+        try (final var interpreter = new Interpreter(new Input(new StringBuilder(code), "tier.turi"))) {
+            return interpreter.compileAndExecute();
+        }
+    }
+
+    private static String outcome(String code, int threshold) {
+        try {
+            return String.valueOf(run(code, threshold));
+        } catch (Exception e) {
+            return "exception: " + e.getMessage();
+        }
+    }
+
+    private static void assertSameAsInterpreted(String code) {
+        assertEquals(outcome(code, 0), outcome(code, 1), code);
+    }
+
+    @Test
+    void theBodyGetsCompiledWhenHot() throws Exception {
+        final var closure = (Closure) run("""
+                fn sum(n) {
+                    mut s = 0
+                    mut i = 0
+                    while i < n { s = s + i; i = i + 1 }
+                    s
+                }
+                sum(1); sum(2); sum(3)
+                sum
+                """, 3);
+        assertNotNull(closure.command().compiled);
+    }
+
+    @Test
+    void theBodyIsNotCompiledWhenTheTierIsOff() throws Exception {
+        final var closure = (Closure) run("""
+                fn inc(n) { n + 1 }
+                inc(1); inc(2); inc(3)
+                inc
+                """, 0);
+        assertNull(closure.command().compiled);
+    }
+
+    @Test
+    void loopsAndConditionals() {
+        assertSameAsInterpreted("""
+                fn sum(n) {
+                    mut s = 0
+                    mut i = 0
+                    while i < n { s = s + i; i = i + 1 }
+                    s
+                }
+                [sum(10), sum(0), sum(1.5)]
+                """);
+        assertSameAsInterpreted("""
+                fn sign(x) { if x < 0 { -1 } else if x == 0 { 0 } else { 1 } }
+                [sign(-3), sign(0), sign(2.5)]
+                """);
+        assertSameAsInterpreted("""
+                fn last(n) { mut i = 0; while i < n { i = i + 1 } }
+                [last(5), last(0)]
+                """);
+        assertSameAsInterpreted("""
+                fn first(n) {
+                    mut i = 0
+                    while i < n {
+                        i = i + 1
+                        if i * i > n { break i }
+                    }
+                }
+                [first(50), first(0)]
+                """);
+    }
+
+    @Test
+    void returnAndContinue() {
+        assertSameAsInterpreted("""
+                fn find(n) {
+                    mut i = 0
+                    while true {
+                        i = i + 1
+                        if i % 7 == 0 { return i * 10 }
+                    }
+                    return -1
+                }
+                [find(1), find(2)]
+                """);
+        assertSameAsInterpreted("""
+                fn odd(n) {
+                    mut i = 0
+                    mut s = 0
+                    while i < n {
+                        i = i + 1
+                        continue when i % 2 == 0
+                        s = s + i
+                    }
+                    s
+                }
+                [odd(10), odd(3)]
+                """);
+        assertSameAsInterpreted("""
+                fn early(x) { return "small" when x < 10; "large" }
+                [early(1), early(100)]
+                """);
+    }
+
+    @Test
+    void genericOperandsAndCalls() {
+        assertSameAsInterpreted("""
+                fn concat(a, b) { a + b }
+                [concat(1, 2), concat("a", "b"), concat([1], 2), concat(1.5, 2)]
+                """);
+        assertSameAsInterpreted("""
+                fn fib(n) { if n < 2 { n } else { fib(n - 1) + fib(n - 2) } }
+                fib(15)
+                """);
+    }
+
+    @Test
+    void errorsAreTheSame() {
+        assertSameAsInterpreted("""
+                fn bad(n) { let x = 1; x = n; x }
+                bad(1)
+                """);
+        assertSameAsInterpreted("""
+                fn bad(n) { n / 0 }
+                bad(1)
+                """);
+        assertSameAsInterpreted("""
+                fn bad(n) { mut x = 1; x = undefined_variable; x }
+                bad(1)
+                """);
+        assertSameAsInterpreted("""
+                fn recovers(n) {
+                    mut x = n
+                    try: x = x + undefined_variable catch e: 0
+                    x = x + 1
+                    x
+                }
+                recovers(1)
+                """);
+        // the variable must not stay hibernated when the right-hand side of the compiled assignment throws
+        assertSameAsInterpreted("""
+                mut x = 1
+                fn bad() { x = x + undefined_variable }
+                try: bad() catch e: 0
+                try: bad() catch e: 0
+                x = x + 1
+                x
+                """);
+    }
+
+    private static long steps(String code, int threshold) {
+        BytecodeTier.threshold = threshold;
+        try (final var engine = TuriEngine.create();
+             final var session = engine.newSession()) {
+            session.eval(code);
+            return session.stepsUsed();
+        }
+    }
+
+    @Test
+    void compiledCodeCountsTheSameSteps() {
+        final var code = """
+                fn work(n) {
+                    mut s = 0
+                    mut i = 0
+                    while i < n {
+                        if i % 3 == 0 { s = s + i } else { s = s - 1 }
+                        { let t = i * 2; s = s + t }
+                        i = i + 1
+                    }
+                    return s when s > 0
+                    0 - s
+                }
+                mut k = 0
+                mut total = 0
+                while k < 50 { total = total + work(k); k = k + 1 }
+                total
+                """;
+        assertEquals(steps(code, 0), steps(code, 1));
+    }
+
+    private static String trace(String code, int threshold) {
+        try {
+            run(code, threshold);
+            return "no exception";
+        } catch (ExecutionException e) {
+            return Arrays.toString(e.getStackTrace());
+        } catch (Exception e) {
+            return "exception: " + e;
+        }
+    }
+
+    @Test
+    void errorTraceIsTheSame() {
+        final var code = """
+                fn bad(n) {
+                    mut i = 0
+                    while i < n {
+                        if i == 3 {
+                            i = i + 1 / (i - 3)
+                        }
+                        i = i + 1
+                    }
+                    i
+                }
+                bad(2)
+                bad(2)
+                bad(5)
+                """;
+        final var interpreted = trace(code, 0);
+        assertTrue(interpreted.contains("Operation"), interpreted);
+        assertEquals(interpreted, trace(code, 1));
+        final var undefined = """
+                fn bad(n) { if n > 1 { n + undefined_variable } else { n } }
+                bad(0)
+                bad(2)
+                """;
+        assertEquals(trace(undefined, 0), trace(undefined, 1));
+    }
+}
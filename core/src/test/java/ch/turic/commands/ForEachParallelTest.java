@@ -0,0 +1,75 @@
+package ch.turic.commands;
+
+import ch.turic.Interpreter;
+import ch.turic.embed.SandboxPolicy;
+import ch.turic.embed.TuriEngine;
+import ch.turic.exceptions.ExecutionException;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The iterations of a parallel for-each loop run on several threads, the result keeps the order of the elements, and
+ * the first failure stops the loop.
+ */
+class ForEachParallelTest {
+
+    private static Object run(String code) throws Exception {
+        try (final var interpreter = new Interpreter(ch.turic.Input.fromString(code))) {
+            return interpreter.compileAndExecute();
+        }
+    }
+
+    @Test
+    void parallelLoopKeepsTheOrder() throws Exception {
+        assertEquals("[1, 4, 9, 16, 25, 36, 49, 64, 81, 100]", run("""
+                for each parallel(4) x in 1..11 list { if x % 2 == 1 : sleep(0.01); x * x }
+                """).toString());
+        assertEquals("[0, 7, 22]", run("""
+                for each parallel [a, b] with i in [[1, 2], [3, 4], [5, 6]] list { (a + b) * i }
+                """).toString());
+        // 'parallel' is not a keyword
+        assertEquals("[2, 3]", run("""
+                let parallel = [1, 2]
+                for each parallel in parallel list { parallel + 1 }
+                """).toString());
+    }
+
+    @Test
+    void breakStopsTheLoopAtTheFirstElement() throws Exception {
+        assertEquals("[1, 2, 3, 4]", run("for each parallel(3) x in 1..101 list { if x == 5 : break; x }").toString());
+        assertEquals(7L, run("let c = {for each parallel(8) x in 1..51 { sleep(0.001); x } until x == 7}; c"));
+        assertEquals("r4", run("""
+                fn f { for each parallel x in 1..11 { if x == 4 : return "r" + x; } }
+                f()
+                """));
+    }
+
+    @Test
+    void failureAbortsTheOtherIterations() {
+        final long start = System.nanoTime();
+        final var e = assertThrows(ExecutionException.class, () -> run("""
+                for each parallel(4) x in 1..5 { if x == 3 { die "three" }; sleep(10) }
+                """));
+        assertTrue(e.getMessage().contains("three"));
+        assertTrue(System.nanoTime() - start < 5_000_000_000L);
+        assertThrows(ExecutionException.class, () -> run("for each parallel(0) x in 1..3 { x }"));
+    }
+
+    @Test
+    void parallelLoopDoesNotChangeVariables() {
+        assertThrows(ExecutionException.class, () -> run("""
+                mut q = 0
+                for each parallel x in 1..10 { q = x }
+                """));
+    }
+
+    @Test
+    void parallelLoopStaysWithinTheThreadLimit() {
+        final var policy = SandboxPolicy.trusted().maxThreads(1).build();
+        try (final var engine = TuriEngine.create(policy);
+             final var session = engine.newSession()) {
+            assertEquals("[0, 1, 4, 9]", session.eval("for each parallel(8) x in 0..4 list { x * x }").toString());
+        }
+    }
+}
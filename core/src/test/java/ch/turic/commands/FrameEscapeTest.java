@@ -0,0 +1,120 @@
+package ch.turic.commands;
+
+import ch.turic.Command;
+import ch.turic.Interpreter;
+import ch.turic.Program;
+import ch.turic.analyzer.Input;
+import ch.turic.analyzer.Lexer;
+import ch.turic.analyzer.ProgramAnalyzer;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The loops reuse the context of an iteration only when nothing can keep a reference to it, and the reused context
+ * must behave the same way as a new one.
+ */
+class FrameEscapeTest {
+
+    private static Command loopBody(String code) {
+        final var program = (Program) new ProgramAnalyzer().analyze(Lexer.analyze(ch.turic.Input.fromString(code)));
+        return ((Loop) program.commands()[0]).body();
+    }
+
+    private static Object run(String code) throws Exception {
+        try (final var interpreter = new Interpreter(new Input(new StringBuilder(code), "frames.turi"))) {
+            return interpreter.compileAndExecute();
+        }
+    }
+
+    @Test
+    void bodiesCreatingClosuresCaptureTheFrame() {
+        assertFalse(FrameEscape.captures(loopBody("for each x in [1, 2] { let y = x * 2; println(y) }")));
+        assertFalse(FrameEscape.captures(loopBody("while i < 3 { if i > 1 { i = i + 1 } else { i = i + 2 } }")));
+        assertTrue(FrameEscape.captures(loopBody("for each x in [1, 2] { fs = fs + [{|| x}] }")));
+        assertTrue(FrameEscape.captures(loopBody("for each x in [1, 2] { if x > 1 { fn f() { x } } }")));
+        assertTrue(FrameEscape.captures(loopBody("for each x in [1, 2] { class A {} }")));
+    }
+
+    @Test
+    void bodyDefinitionsAreNewInEachIteration() throws Exception {
+        assertEquals("[2, 4, 6, 8]", run("""
+                mut result = []
+                for each x in [1, 2, 3, 4] {
+                    let y = x * 2
+                    mut z = y
+                    result = result + [z]
+                }
+                result
+                """).toString());
+        assertEquals("[0, 10, 20]", run("""
+                mut result = []
+                for i = 0 ; i < 3 ; i = i + 1 {
+                    let y = i * 10
+                    result = result + [y]
+                }
+                result
+                """).toString());
+        assertEquals("[2, 3, 4]", run("""
+                mut i = 1
+                mut result = []
+                while i < 4 {
+                    let next = i + 1
+                    result = result + [next]
+                    i = next
+                }
+                result
+                """).toString());
+    }
+
+    @Test
+    void listLoopVariablesAndCounter() throws Exception {
+        assertEquals("[a0, b1, c2]", run("""
+                mut result = []
+                for each [k, v] with n in [["a", 0], ["b", 1], ["c", 2]] {
+                    result = result + ["" + k + n]
+                }
+                result
+                """).toString());
+    }
+
+    @Test
+    void capturedFramesAreNotReused() throws Exception {
+        assertEquals("[1, 2, 3]", run("""
+                mut fs = []
+                for each x in [1, 2, 3] {
+                    fs = fs + [{|| x}]
+                }
+                [fs[0](), fs[1](), fs[2]()]
+                """).toString());
+        // the closure is created by a built-in function, which cannot be seen in the body
+        assertEquals("[1, 2]", run("""
+                let rc = reclose
+                fn g() { x }
+                mut fs = []
+                for each x in [1, 2] {
+                    fs = fs + [rc(g)]
+                }
+                [fs[0](), fs[1]()]
+                """).toString());
+        assertEquals("[10, 20, 30]", run("""
+                mut r = []
+                for each i in [1, 2, 3] { let x = i * 10; r = r + [pack()] }
+                [r[0].x, r[1].x, r[2].x]
+                """).toString());
+        assertEquals("[1, 2, 3]", run("""
+                let ps = [1, 2, 3 -> {|x| let y = x; pack()}];
+                [ps[0].y, ps[1].y, ps[2].y]
+                """).toString());
+    }
+
+    @Test
+    void loopVariablesStayFrozen() {
+        assertThrows(Exception.class, () -> run("""
+                for each x in [1, 2] {
+                    let y = x
+                    if y == 2 { x = 3 }
+                }
+                """));
+    }
+}
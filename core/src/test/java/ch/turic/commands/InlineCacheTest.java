@@ -0,0 +1,134 @@
+package ch.turic.commands;
+
+import ch.turic.Interpreter;
+import ch.turic.analyzer.Input;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The cached method and field lookups must find the same thing as the full lookup, also after the classes change.
+ */
+class InlineCacheTest {
+
+    private static Object run(String code) throws Exception {
+        try (final var interpreter = new Interpreter(new Input(new StringBuilder(code), "cache.turi"))) {
+            return interpreter.compileAndExecute();
+        }
+    }
+
+    @Test
+    void polymorphicCallSite() throws Exception {
+        assertEquals("[a, b, a, pb, a, b, a, pb]", run("""
+                class P { fn name() { "pb" } }
+                class A { fn name() { "a" } }
+                class B : P { fn name() { "b" } }
+                class C : P { }
+                mut result = []
+                for each i in [1, 2] {
+                    for each o in [A(), B(), A(), C()] {
+                        result = result + [o.name()]
+                    }
+                }
+                result
+                """).toString());
+    }
+
+    @Test
+    void moreClassesThanTheCacheHolds() throws Exception {
+        assertEquals("[1, 2, 3, 4, 5, 6, 1, 2, 3, 4, 5, 6]", run("""
+                class A1 { fn v() { 1 } }
+                class A2 { fn v() { 2 } }
+                class A3 { fn v() { 3 } }
+                class A4 { fn v() { 4 } }
+                class A5 { fn v() { 5 } }
+                class A6 { fn v() { 6 } }
+                mut result = []
+                for each i in [1, 2] {
+                    for each o in [A1(), A2(), A3(), A4(), A5(), A6()] {
+                        result = result + [o.v()]
+                    }
+                }
+                result
+                """).toString());
+    }
+
+    @Test
+    void objectFieldShadowsTheMethod() throws Exception {
+        assertEquals("[class, object, class]", run("""
+                class A { fn who() { "class" } }
+                let a = A()
+                let b = A()
+                b.who = fn() { "object" }
+                mut result = []
+                for each o in [a, b, a] {
+                    result = result + [o.who()]
+                }
+                result
+                """).toString());
+    }
+
+    @Test
+    void changedClassInvalidatesTheCache() throws Exception {
+        assertEquals("[p, p, c, c2]", run("""
+                class P { fn who() { "p" } }
+                class C : P { }
+                let c = C()
+                fn ask(o) { o.who() }
+                mut result = [ask(c), ask(c)]
+                C.who = fn() { "c" }
+                result = result + [ask(c)]
+                C.who = fn() { "c2" }
+                result + [ask(c)]
+                """).toString());
+    }
+
+    @Test
+    void otherClassesDoNotDisturbTheCache() throws Exception {
+        assertEquals("[p, p, q, p, c, q]", run("""
+                class P { fn who() { "p" } }
+                class C : P { }
+                let c = C()
+                fn ask(o) { o.who() }
+                mut result = [ask(c), ask(c)]
+                class Q { fn who() { "q" } }
+                let q = Q()
+                result = result + [ask(q), ask(c)]
+                C.who = fn() { "c" }
+                result + [ask(c), ask(q)]
+                """).toString());
+    }
+
+    @Test
+    void fieldAccessSeesTheChanges() throws Exception {
+        assertEquals("[1, 1, 2, 3, 3]", run("""
+                class A { cls.x = 1 }
+                let a = A()
+                fn read(o) { o.x }
+                mut result = [read(a), read(a)]
+                A.x = 2
+                result = result + [read(a)]
+                a.x = 3
+                result + [read(a), read(a)]
+                """).toString());
+    }
+
+    @Test
+    void veiledMethodIsNotReachableAfterCaching() throws Exception {
+        assertEquals("[internal, internal, caught]", run("""
+                class A {
+                    fn helper() { "internal" }
+                    fn front() { helper() }
+                    veil helper
+                }
+                let a = A()
+                mut result = [a.front(), a.front()]
+                try {
+                    a.helper()
+                    result + ["not caught"]
+                } catch e {
+                    result + ["caught"]
+                }
+                """).toString());
+    }
+}
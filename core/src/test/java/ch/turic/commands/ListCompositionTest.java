@@ -0,0 +1,125 @@
+package ch.turic.commands;
+
+import ch.turic.Interpreter;
+import ch.turic.embed.SandboxPolicy;
+import ch.turic.embed.TuriEngine;
+import ch.turic.exceptions.ExecutionException;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The modifiers of a list composition are applied element by element, and a composition iterated by a loop is not
+ * created as a list.
+ */
+class ListCompositionTest {
+
+    private static Object run(String code) throws Exception {
+        try (final var interpreter = new Interpreter(ch.turic.Input.fromString(code))) {
+            return interpreter.compileAndExecute();
+        }
+    }
+
+    @Test
+    void modifiersAreAppliedInOrder() throws Exception {
+        assertEquals("[0, 20, 40, 70]", run("[0..6, 6, 7 ? it % 2 == 0 || it > 5 -> it * 10 ? it != 60]").toString());
+        assertEquals("[1, 9, 25]", run("""
+                let odd = {|x| x % 2 == 1}
+                let squares = [..[1, 2, 3, 4, 5] ? odd -> {|x| let y = x * x; y}]
+                squares
+                """).toString());
+        assertEquals("[2, 3, 4]", run("[..[1, 2, 3] -> fn (x) { x + 1 }]").toString());
+    }
+
+    @Test
+    void closuresCreatedInModifiersKeepTheirValues() throws Exception {
+        assertEquals(123L, run("""
+                let fs = [1, 2, 3 -> {|x| {|| x}}]
+                fs[0]() * 100 + fs[1]() * 10 + fs[2]()
+                """));
+    }
+
+    @Test
+    void loopsDoNotCreateTheList() throws Exception {
+        assertEquals(21L, run("for each i in [0..1000000000 ? it % 7 == 0] { break i when i > 20 }"));
+        assertEquals("[0, 1, 4]", run("for each i in [0..1000000000 -> it * it] list { break when i > 4; i }").toString());
+        // the elements are computed while the loop runs
+        assertEquals("[1, 10, 100]", run("""
+                mut factor = 1
+                for each i in [1, 1, 1 -> it * factor] list {
+                    factor = factor * 10
+                    i
+                }
+                """).toString());
+    }
+
+    @Test
+    void parallelCompositionKeepsTheOrder() throws Exception {
+        assertEquals(497500100L, run("""
+                fn heavy(x) { mut s = 0; for each i in 0..200 { s = s + i * x }; s }
+                let r = [0..20000 -> heavy(it) parallel 4]
+                r[19999] + r[5000] + len(r)
+                """));
+        assertEquals("[0, 6, 12, 18]", run("""
+                let k = 3
+                let r = [..rng(0, 8, 1) ? it % 2 == 0 -> {|x| x * k} parallel]
+                r
+                """).toString());
+        // 'parallel' is not a keyword
+        assertEquals("[2, 4, 6]", run("""
+                let parallel = 2
+                let r = [..[1, 2, 3] -> it * parallel parallel parallel]
+                r
+                """).toString());
+    }
+
+    @Test
+    void parallelCompositionInANestedBlock() throws Exception {
+        // the outer 'it' is copied to the chunk contexts, the first chunk still has its own 'it'
+        assertEquals("[2, 4, 6, 8]", run("""
+                let a = [1..4 -> it + 1]
+                { [..[1, 2, 3, 4] -> it * 2 parallel 2] }
+                """).toString());
+        assertEquals("[2, 4, 6, 8]", run("""
+                let a = [1..4 -> it + 1]
+                mut r = none
+                try { r = [..[1, 2, 3, 4] -> it * 2 parallel 2] } catch e : r = e
+                r
+                """).toString());
+    }
+
+    @Test
+    void parallelModifiersDoNotChangeVariables() {
+        assertThrows(ExecutionException.class, () -> run("""
+                mut q = 0
+                let r = [0..10 -> {|x| q = x} parallel 4]
+                """));
+    }
+
+    @Test
+    void parallelCompositionThrowsTheException() {
+        final var e = assertThrows(ExecutionException.class, () -> run("""
+                let r = [0..100 -> {|x| if x == 77 { die "seventy-seven" }; x} parallel 4]
+                """));
+        assertTrue(e.getMessage().contains("seventy-seven"));
+        assertThrows(ExecutionException.class, () -> run("let r = [0..10 -> it parallel 0]"));
+    }
+
+    @Test
+    void parallelCompositionStaysWithinTheThreadLimit() {
+        final var policy = SandboxPolicy.trusted().maxThreads(1).build();
+        try (final var engine = TuriEngine.create(policy);
+             final var session = engine.newSession()) {
+            assertEquals(4950L, session.eval("""
+                    mut sum = 0
+                    for each i in [0..100 -> it parallel 8] { sum = sum + i }
+                    sum
+                    """));
+            // the chunks processed on the current thread cannot change the variables either
+            assertThrows(ExecutionException.class, () -> session.eval("""
+                    mut q = 0
+                    let r = [0..10 -> {|x| q = x} parallel 4]
+                    """));
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package ch.turic.commands.operators;
+
+import ch.turic.Interpreter;
+import ch.turic.analyzer.Input;
+import ch.turic.exceptions.ExecutionException;
+import ch.turic.memory.LocalContext;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The fast path of the numeric operators must give the same results as the generic path.
+ */
+class NumericOperatorTest {
+
+    private static final List<Object> VALUES = List.of(0L, 1L, -1L, 7L, 12L, -12L, Long.MAX_VALUE, Long.MIN_VALUE,
+            0.0, 1.5, -2.25, 7.0, 12.0);
+
+    @Test
+    void fastPathIsTheSameAsTheGenericPath() {
+        final var ctx = new LocalContext();
+        for (final var operator : Operator.OPERATOR_ARRAY) {
+            if (!(operator instanceof NumericOperator numeric)) {
+                continue;
+            }
+            for (final var op1 : VALUES) {
+                for (final var op2 : VALUES) {
+                    final Object generic;
+                    try {
+                        generic = numeric.evaluated(ctx, op1, op2);
+                    } catch (ExecutionException | ArithmeticException e) {
+                        assertThrows(e.getClass(), () -> fast(numeric, op1, op2));
+                        continue;
+                    }
+                    final var fast = fast(numeric, op1, op2);
+                    assertEquals(generic, fast, () -> "%s %s %s".formatted(op1, operator.symbol(), op2));
+                    assertSame(generic.getClass(), fast.getClass(), () -> "%s %s %s".formatted(op1, operator.symbol(), op2));
+                }
+            }
+        }
+    }
+
+    private static Object fast(NumericOperator numeric, Object op1, Object op2) {
+        if (op1 instanceof Long a && op2 instanceof Long b) {
+            return numeric.longOp(a, b);
+        }
+        return numeric.doubleOp(((Number) op1).doubleValue(), ((Number) op2).doubleValue());
+    }
+
+    @Test
+    void operationSwitchesToTheGenericPath() throws Exception {
+        try (final var interpreter = new Interpreter(new Input(new StringBuilder("""
+                fn add(a, b) { a + b }
+                fn less(a, b) { a < b }
+                [add(1, 2), add(1.5, 2), add("a", "b"), add([1], 2), add(3, 4),
+                 less(1, 2), less(2.5, 1), less("a", "b"), less(3, 4)]
+                """), "numeric.turi"))) {
+            assertEquals("[3, 3.5, ab, [1, 2], 7, true, false, true, true]",
+                    interpreter.compileAndExecute().toString());
+        }
+    }
+}
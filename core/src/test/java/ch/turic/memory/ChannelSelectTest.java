@@ -0,0 +1,141 @@
+package ch.turic.memory;
+
+import ch.turic.exceptions.ExecutionException;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The selection waits for the first channel that can proceed, performs only that case, and does not lose values
+ * when many threads select on the same channels.
+ */
+class ChannelSelectTest {
+
+    private static ChannelSelect.Case receive(Channel<Object> channel) {
+        return new ChannelSelect.Case(channel, false, null);
+    }
+
+    private static ChannelSelect.Case send(Channel<Object> channel, Object value) {
+        return new ChannelSelect.Case(channel, true, value);
+    }
+
+    @Test
+    void selectsTheReadyCase() {
+        final var empty = LockFreeChannel.of(2);
+        final var ready = LockFreeChannel.of(2);
+        ready.send(Channel.Message.of("a"));
+        final var selected = ChannelSelect.select(List.of(receive(empty), receive(ready)), 0);
+        assertNotNull(selected);
+        assertEquals(1, selected.index());
+        assertEquals("a", selected.value());
+
+        final var full = LockFreeChannel.of(1);
+        full.send(Channel.Message.of("full"));
+        final var sent = ChannelSelect.select(List.of(send(full, "x"), send(empty, "y")), 0);
+        assertNotNull(sent);
+        assertEquals(1, sent.index());
+        assertEquals("y", empty.receive().get());
+        assertFalse(full.trySend(Channel.Message.of("x")));
+    }
+
+    @Test
+    void timesOut() {
+        final var channel = LockFreeChannel.of(2);
+        final long start = System.nanoTime();
+        assertNull(ChannelSelect.select(List.of(receive(channel)), TimeUnit.MILLISECONDS.toNanos(20)));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(20));
+        assertNull(ChannelSelect.select(List.of(), -1));
+    }
+
+    @Test
+    void wakesUpWhenAValueArrives() throws Exception {
+        final var first = LockFreeChannel.of(2);
+        final var second = LockFreeChannel.of(Integer.MAX_VALUE);
+        final var result = new ArrayList<ChannelSelect.Selected>();
+        final var selector = Thread.ofVirtual().start(() ->
+                result.add(ChannelSelect.select(List.of(receive(first), receive(second)), -1)));
+        Thread.sleep(20);
+        second.send(Channel.Message.of(42L));
+        selector.join(5_000);
+        assertFalse(selector.isAlive());
+        assertEquals(new ChannelSelect.Selected(1, 42L), result.getFirst());
+    }
+
+    @Test
+    void closedChannelsAreNotSelected() throws Exception {
+        final var closed = LockFreeChannel.of(2);
+        closed.close();
+        final var open = LockFreeChannel.of(2);
+        open.send(Channel.Message.of("v"));
+        for (int i = 0; i < 10; i++) {
+            final var selected = ChannelSelect.select(List.of(receive(closed), receive(open)), 0);
+            if (i == 0) {
+                assertEquals(new ChannelSelect.Selected(1, "v"), selected);
+            } else {
+                assertNull(selected);
+            }
+        }
+        final var selector = Thread.ofVirtual().start(() ->
+                assertNull(ChannelSelect.select(List.of(receive(closed), receive(open)), -1)));
+        Thread.sleep(20);
+        open.close();
+        selector.join(5_000);
+        assertFalse(selector.isAlive());
+        assertThrows(ExecutionException.class, () -> ChannelSelect.select(List.of(send(closed, 1L)), 0));
+    }
+
+    @Test
+    void valueReadAheadIsSelected() {
+        final var channel = LockFreeChannel.of(2);
+        final var iterator = new ChannelIterator<>(channel);
+        channel.send(Channel.Message.of("ahead"));
+        assertTrue(iterator.hasNext());
+        assertEquals(new ChannelSelect.Selected(0, "ahead"), ChannelSelect.select(List.of(receive(iterator)), 0));
+        assertNull(ChannelSelect.select(List.of(receive(iterator)), 0));
+    }
+
+    @Test
+    void manySelectorsDoNotLoseValues() throws Exception {
+        final var channels = List.of(LockFreeChannel.of(4), LockFreeChannel.of(1), LockFreeChannel.of(Integer.MAX_VALUE));
+        final int perProducer = 10_000;
+        final var producers = new ArrayList<Thread>();
+        for (int p = 0; p < channels.size(); p++) {
+            final var channel = channels.get(p);
+            final long base = (long) p * perProducer;
+            producers.add(Thread.ofPlatform().start(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    channel.send(Channel.Message.of(base + i));
+                }
+            }));
+        }
+        final var sum = new AtomicLong();
+        final var received = new AtomicLong();
+        final var cases = channels.stream().map(ChannelSelectTest::receive).toList();
+        final var selectors = new ArrayList<Thread>();
+        for (int s = 0; s < 3; s++) {
+            selectors.add(Thread.ofPlatform().start(() -> {
+                ChannelSelect.Selected selected;
+                while ((selected = ChannelSelect.select(cases, -1)) != null) {
+                    sum.addAndGet((Long) selected.value());
+                    received.incrementAndGet();
+                }
+            }));
+        }
+        for (final var producer : producers) {
+            producer.join();
+        }
+        channels.forEach(LockFreeChannel::close);
+        for (final var selector : selectors) {
+            selector.join(10_000);
+            assertFalse(selector.isAlive());
+        }
+        final long n = (long) channels.size() * perProducer;
+        assertEquals(n, received.get());
+        assertEquals(n * (n - 1) / 2, sum.get());
+    }
+}
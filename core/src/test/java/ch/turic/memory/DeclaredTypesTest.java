@@ -0,0 +1,77 @@
+package ch.turic.memory;
+
+import ch.turic.Interpreter;
+import ch.turic.exceptions.ExecutionException;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The declared types are resolved once, and again only when a class name used as a type is bound to something else.
+ */
+class DeclaredTypesTest {
+
+    private static Object run(String code) throws Exception {
+        try (final var interpreter = new Interpreter(ch.turic.Input.fromString(code))) {
+            return interpreter.compileAndExecute();
+        }
+    }
+
+    @Test
+    void builtinTypesAreResolvedOnce() {
+        final var declared = new DeclaredTypes(new String[]{"int", "none"});
+        final var types = declared.resolve(null);
+        assertEquals(Long.class, types[0].javaType());
+        assertEquals(NoneType.class, types[1].javaType());
+        assertSame(types, declared.resolve(new LocalContext()));
+    }
+
+    @Test
+    void classTypesAreResolvedAgainWhenRebound() {
+        final var ctx = new LocalContext();
+        final var first = new LngClass(null, "Point");
+        ctx.let0("Point", first);
+        final var declared = new DeclaredTypes(new String[]{"Point"});
+        final var types = declared.resolve(ctx);
+        assertSame(first, types[0].lngClass());
+        assertSame(types, declared.resolve(ctx));
+
+        final var second = new LngClass(null, "Point");
+        ctx.update("Point", second);
+        assertSame(second, declared.resolve(ctx)[0].lngClass());
+
+        ctx.update("Point", 1L);
+        final var e = assertThrows(ExecutionException.class, () -> declared.resolve(ctx));
+        assertTrue(e.getMessage().contains("Type 'Point' is not a class."));
+    }
+
+    @Test
+    void typedDeclarationsFollowTheRebinding() throws Exception {
+        assertEquals("[1, 2, caught, again]", run("""
+                class A {}
+                class B {}
+                fn f(x: A): A { x }
+                fn g() { let y: A = A(); y }
+                mut result = []
+                for each i in [1, 2] {
+                    f(A())
+                    g()
+                    result = result + [i]
+                }
+                let a = A()
+                A = B
+                try { f(a); result = result + ["not caught"] } catch e { result = result + ["caught"] }
+                try { g(); result = result + ["again"] } catch e { result = result + ["caught"] }
+                result
+                """).toString());
+    }
+
+    @Test
+    void laterReturnTypeIsResolvedOnlyWhenNeeded() throws Exception {
+        assertEquals(3L, run("""
+                fn f(): int|Undefined { 3 }
+                f()
+                f()
+                """));
+    }
+}
@@ -0,0 +1,76 @@
+package ch.turic.memory;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The hash code of a pinned list is cached when nothing reachable from the list can change.
+ */
+class LngListTest {
+
+    private static LngList pinned(Object... elements) {
+        final var list = LngList.of(elements);
+        list.pinned.set(true);
+        return list;
+    }
+
+    @Test
+    void pinnedListsOfValuesAreFrozen() {
+        final var inner = pinned(1L, "a");
+        final var list = pinned(inner, 2.5, true, null);
+        assertTrue(list.isFrozen());
+        assertTrue(inner.isFrozen());
+        assertEquals(LngList.of(LngList.of(1L, "a"), 2.5, true, null).hashCode(), list.hashCode());
+        assertEquals(LngList.of(LngList.of(1L, "a"), 2.5, true, null), list);
+        assertEquals(list, LngList.of(LngList.of(1L, "a"), 2.5, true, null));
+        assertNotEquals(pinned(pinned(1L, "b"), 2.5, true, null), list);
+    }
+
+    @Test
+    void mutableElementsAreNotFrozen() {
+        final var inner = LngList.of(1L);
+        final var list = pinned(inner);
+        assertFalse(list.isFrozen());
+        final var hash = list.hashCode();
+        inner.array.add(2L);
+        assertNotEquals(hash, list.hashCode());
+        assertFalse(LngList.of(1L).isFrozen());
+        assertFalse(pinned(new LngObject(null, new LocalContext())).isFrozen());
+        // pinned later, it becomes frozen
+        inner.pinned.set(true);
+        assertTrue(list.isFrozen());
+        assertEquals(pinned(pinned(1L, 2L)), list);
+    }
+
+    @Test
+    void deeplyNestedListPinnedLaterMakesTheListFrozen() {
+        final var inner = LngList.of(1L);
+        final var middle = pinned(inner);
+        final var list = pinned(2L, middle);
+        assertFalse(list.isFrozen());
+        assertFalse(list.isFrozen());
+        inner.pinned.set(true);
+        assertTrue(list.isFrozen());
+        assertTrue(middle.isFrozen());
+        // an object never lets the list be frozen, and the list still works as a key
+        final var object = new LngObject(null, new LocalContext());
+        final var withObject = pinned(pinned(1L), pinned(object));
+        assertFalse(withObject.isFrozen());
+        assertFalse(withObject.isFrozen());
+        assertEquals(withObject.hashCode(), pinned(pinned(1L), pinned(object)).hashCode());
+        assertEquals(withObject, pinned(pinned(1L), pinned(object)));
+    }
+
+    @Test
+    void cyclicListsAreNotFrozen() {
+        final var list = LngList.of(1L);
+        list.array.add(list);
+        list.pinned.set(true);
+        assertFalse(list.isFrozen());
+        assertEquals(list.hashCode(), list.hashCode());
+        final var other = LngList.of(1L);
+        other.array.add(other);
+        assertEquals(list, other);
+    }
+}
@@ -0,0 +1,182 @@
+package ch.turic.memory;
+
+import ch.turic.exceptions.ExecutionException;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The lock-free channels keep the capacity, the order, and the closing semantics of the blocking channel, and do not
+ * lose or duplicate values when many threads send and receive at the same time.
+ */
+class LockFreeChannelTest {
+
+    private static List<LockFreeChannel<Object>> channels(int capacity) {
+        return List.of(LockFreeChannel.of(capacity), new LockFreeChannel.Linked<>(capacity));
+    }
+
+    @Test
+    void capacityAndOrder() {
+        for (final var channel : channels(3)) {
+            assertTrue(channel.trySend(Channel.Message.of("a")));
+            assertTrue(channel.trySend(Channel.Message.of(null)));
+            channel.send(Channel.Message.of("c"));
+            assertFalse(channel.trySend(Channel.Message.of("d")));
+            assertFalse(channel.trySend(Channel.Message.of("d"), 1, TimeUnit.MILLISECONDS));
+            assertEquals("a", channel.receive().get());
+            final var none = channel.receive();
+            assertTrue(none.isPresent());
+            assertNull(none.get());
+            assertEquals("c", channel.tryReceive().get());
+            assertTrue(channel.tryReceive().isEmpty());
+            assertTrue(channel.tryReceive(1, TimeUnit.MILLISECONDS).isEmpty());
+        }
+    }
+
+    @Test
+    void singleValueChannel() {
+        final var channel = LockFreeChannel.of(1);
+        assertTrue(channel.trySend(Channel.Message.of(1L)));
+        assertFalse(channel.trySend(Channel.Message.of(2L)));
+        assertEquals(1L, channel.receive().get());
+        assertTrue(channel.trySend(Channel.Message.of(2L)));
+    }
+
+    @Test
+    void closedChannelIsDrainedFirst() {
+        for (final var channel : channels(4)) {
+            channel.sendAll(List.of(1L, 2L));
+            channel.close();
+            assertTrue(channel.isClosed());
+            assertThrows(ExecutionException.class, () -> channel.send(Channel.Message.of(3L)));
+            assertThrows(ExecutionException.class, () -> channel.sendAll(List.of(3L)));
+            assertEquals(List.of(1L, 2L), channel.receiveBatch(10));
+            assertTrue(channel.receive().isCloseMessage());
+            assertTrue(channel.tryReceive().isCloseMessage());
+            assertEquals(List.of(), channel.receiveBatch(10));
+        }
+    }
+
+    @Test
+    void closingWakesUpTheWaitingThreads() throws Exception {
+        for (final var channel : channels(2)) {
+            channel.send(Channel.Message.of("full"));
+            channel.send(Channel.Message.of("full"));
+            final var failures = new ConcurrentLinkedQueue<Throwable>();
+            final var sender = Thread.ofVirtual().start(() -> {
+                try {
+                    channel.send(Channel.Message.of("waits"));
+                } catch (ExecutionException e) {
+                    failures.add(e);
+                }
+            });
+            Thread.sleep(20);
+            channel.close();
+            sender.join(5_000);
+            assertFalse(sender.isAlive());
+            assertEquals(1, failures.size());
+            assertEquals(List.of("full", "full"), channel.receiveBatch(3));
+            final var receiver = Thread.ofVirtual().start(() -> assertTrue(channel.receive().isCloseMessage()));
+            receiver.join(5_000);
+            assertFalse(receiver.isAlive());
+        }
+    }
+
+    @Test
+    void exceptionEndsTheBatch() {
+        for (final var channel : channels(10)) {
+            channel.sendAll(List.of(1L, 2L));
+            @SuppressWarnings("unchecked") final var failure = (Channel.Message<Object>) Channel.Message.exception(new RuntimeException("boom"));
+            channel.send(failure);
+            channel.send(Channel.Message.of(3L));
+            assertEquals(List.of(1L, 2L), channel.receiveBatch(10));
+            assertThrows(ExecutionException.class, () -> channel.receiveBatch(10));
+            assertEquals(List.of(3L), channel.receiveBatch(10));
+        }
+    }
+
+    @Test
+    void exceptionLeftByTheBatchIsReceivedInOrder() {
+        for (final var channel : channels(10)) {
+            channel.sendAll(List.of(1L, 2L));
+            @SuppressWarnings("unchecked") final var failure = (Channel.Message<Object>) Channel.Message.exception(new RuntimeException("boom"));
+            channel.send(failure);
+            channel.sendAll(List.of(3L, 4L));
+            assertEquals(List.of(1L, 2L), channel.receiveBatch(10));
+            assertTrue(channel.tryReceive().isException());
+            assertEquals(3L, channel.receive().get());
+            assertEquals(List.of(4L), channel.receiveBatch(10));
+        }
+    }
+
+    @Test
+    void manyProducersAndConsumers() throws Exception {
+        for (final var channel : channels(16)) {
+            final int producers = 4;
+            final int perProducer = 20_000;
+            final var sum = new AtomicLong();
+            final var received = new AtomicLong();
+            final var threads = new ArrayList<Thread>();
+            for (int p = 0; p < producers; p++) {
+                final long base = (long) p * perProducer;
+                threads.add(Thread.ofPlatform().start(() -> {
+                    for (int i = 0; i < perProducer; ) {
+                        if (i % 3 == 0) {
+                            final var batch = new ArrayList<Object>();
+                            for (int j = 0; j < 7 && i < perProducer; j++, i++) {
+                                batch.add(base + i);
+                            }
+                            channel.sendAll(batch);
+                        } else {
+                            channel.send(Channel.Message.of(base + i));
+                            i++;
+                        }
+                    }
+                }));
+            }
+            final var consumers = new ArrayList<Thread>();
+            final var seen = Collections.synchronizedList(new ArrayList<Long>());
+            for (int c = 0; c < 3; c++) {
+                final boolean batches = c % 2 == 0;
+                consumers.add(Thread.ofPlatform().start(() -> {
+                    while (true) {
+                        final List<Object> values;
+                        if (batches) {
+                            values = channel.receiveBatch(5);
+                        } else {
+                            final var message = channel.receive();
+                            values = message.isCloseMessage() ? List.of() : List.of(message.get());
+                        }
+                        if (values.isEmpty()) {
+                            return;
+                        }
+                        for (final var value : values) {
+                            sum.addAndGet((Long) value);
+                            received.incrementAndGet();
+                            seen.add((Long) value);
+                        }
+                    }
+                }));
+            }
+            for (final var thread : threads) {
+                thread.join();
+            }
+            channel.close();
+            for (final var thread : consumers) {
+                thread.join(10_000);
+                assertFalse(thread.isAlive());
+            }
+            final long n = (long) producers * perProducer;
+            assertEquals(n, received.get());
+            assertEquals(n * (n - 1) / 2, sum.get());
+            assertEquals(n, seen.stream().distinct().count());
+        }
+    }
+}
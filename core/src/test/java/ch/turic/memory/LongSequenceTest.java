@@ -0,0 +1,54 @@
+package ch.turic.memory;
+
+import ch.turic.Interpreter;
+import ch.turic.builtins.functions.Rng;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LongSequenceTest {
+
+    private static Object run(String code) throws Exception {
+        try (final var interpreter = new Interpreter(ch.turic.Input.fromString(code))) {
+            return interpreter.compileAndExecute();
+        }
+    }
+
+    @Test
+    void rangesWithIntegerEndsAreSequences() {
+        final var up = LongSequence.of(new Range(2L, 5L));
+        assertEquals(new LongSequence.Counting(2, 5, 1), up);
+        assertTrue(up.includes(4));
+        assertFalse(up.includes(5));
+        final var down = LongSequence.of(new Range(5L, 2L));
+        assertEquals(-1, down.step());
+        assertTrue(down.includes(3));
+        assertFalse(down.includes(2));
+        assertNull(LongSequence.of(new Range(0L, InfiniteValue.INF_POSITIVE)));
+        assertNull(LongSequence.of(new LngList()));
+        assertNull(LongSequence.of(null));
+        final var rng = new Rng.LongRange(0, 10, 3);
+        assertSame(rng, LongSequence.of(rng));
+    }
+
+    @Test
+    void loopsCountOverTheRanges() throws Exception {
+        assertEquals("[0, 1, 2, 3, 2, 1, 0, 3, 6, 9]", run("""
+                mut r = []
+                for each i in 0..3 { r = r + [i] }
+                for each i in 3..0 { r = r + [i] }
+                for each i in rng(0, 10, 3) { r = r + [i] }
+                r
+                """).toString());
+        assertEquals("[0, 1, 4, 9]", run("for each i with n in 0..4 list { i * n }").toString());
+        // the range is not materialized
+        assertEquals(3L, run("for each i in 0..1000000000 { break i when i == 3 }"));
+    }
+
+    @Test
+    void listLiteralsExpandTheRanges() throws Exception {
+        assertEquals("[[0, 1, 2], [3, 2, 1], [], [0, 2, 4], [0, 20, 40]]", run("""
+                [[0..3], [3..0], [1..1], [..rng(0, 6, 2)], [0..6 ? it % 2 == 0 -> it * 10]]
+                """).toString());
+    }
+}
@@ -0,0 +1,105 @@
+package ch.turic.memory;
+
+import ch.turic.Interpreter;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The numeric list storage keeps the numbers in primitive arrays and works the same way as an {@link ArrayList}, also
+ * after it was widened to hold other values.
+ */
+class NumericListTest {
+
+    private static Object run(String code) throws Exception {
+        try (final var interpreter = new Interpreter(ch.turic.Input.fromString(code))) {
+            return interpreter.compileAndExecute();
+        }
+    }
+
+    @Test
+    void behavesAsAnArrayList() {
+        final var random = new Random(19);
+        final var expected = new ArrayList<Object>();
+        final var actual = new NumericList();
+        for (int step = 0; step < 20_000; step++) {
+            final int size = expected.size();
+            final Object value = step == 15_000 ? "widen" : step > 15_000 ? (Object) (double) step : (Object) (long) step;
+            switch (random.nextInt(8)) {
+                case 0 -> {
+                    final int index = random.nextInt(size + 1);
+                    expected.add(index, value);
+                    actual.add(index, value);
+                }
+                case 1 -> {
+                    if (size > 0) {
+                        final int index = random.nextInt(size);
+                        assertEquals(expected.remove(index), actual.remove(index));
+                    }
+                }
+                case 2 -> {
+                    if (size > 0) {
+                        final int index = random.nextInt(size);
+                        assertEquals(expected.set(index, value), actual.set(index, value));
+                    }
+                }
+                default -> {
+                    expected.add(value);
+                    actual.add(value);
+                }
+            }
+            if (step == 14_999) {
+                assertTrue(actual.isPrimitive());
+                assertEquals(expected, actual);
+            }
+        }
+        assertFalse(actual.isPrimitive());
+        assertEquals(expected, actual);
+        assertEquals(expected.subList(100, 2000), actual.slice(100, 2000));
+    }
+
+    @Test
+    void theRepresentationFollowsTheElements() {
+        final var doubles = new NumericList();
+        doubles.add(1.5);
+        doubles.add(2.5);
+        assertTrue(doubles.isPrimitive());
+        doubles.add(3L);
+        assertFalse(doubles.isPrimitive());
+        assertEquals(List.of(1.5, 2.5, 3L), doubles);
+        doubles.clear();
+        doubles.addLong(7);
+        assertTrue(doubles.isPrimitive());
+        doubles.set(0, null);
+        assertFalse(doubles.isPrimitive());
+        assertEquals(java.util.Collections.singletonList(null), doubles);
+
+        final var longs = NumericList.ofLongs(new long[]{1, 2, 3});
+        final var joined = new NumericList();
+        joined.addAll(longs);
+        joined.addAll(longs);
+        assertTrue(joined.isPrimitive());
+        assertEquals(List.of(1L, 2L, 3L, 1L, 2L, 3L), joined);
+    }
+
+    @Test
+    void compositionsCreateNumericLists() throws Exception {
+        final var list = (LngList) run("let r = [..rng(0, 1000)]\nr");
+        assertInstanceOf(NumericList.class, list.array);
+        assertTrue(((NumericList) list.array).isPrimitive());
+        assertEquals(999L, list.array.get(999));
+        assertEquals("[[0, 1, 2, 3, x], [2.0, 4.0], [2, 3], [0, 1, 255]]", run("""
+                mut a = [0..4]
+                a[4] = "x"
+                let b = [1..3 -> {|x| x * 2.0}]
+                let c = a[2..4]
+                let d = "0001ff".from_hex().to_list()
+                let r = [a, b, c, d]
+                r
+                """).toString());
+    }
+}
@@ -0,0 +1,122 @@
+package ch.turic.memory;
+
+import ch.turic.Interpreter;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The persistent list storage works the same way as an {@link ArrayList}, and the lists sharing the structure do not
+ * change each other.
+ */
+class PersistentListTest {
+
+    private static Object run(String code) throws Exception {
+        try (final var interpreter = new Interpreter(ch.turic.Input.fromString(code))) {
+            return interpreter.compileAndExecute();
+        }
+    }
+
+    @Test
+    void behavesAsAnArrayList() {
+        final var random = new Random(17);
+        final var expected = new ArrayList<Object>();
+        final var actual = new PersistentList();
+        for (int step = 0; step < 20_000; step++) {
+            final int size = expected.size();
+            switch (random.nextInt(10)) {
+                case 0 -> {
+                    final int index = random.nextInt(size + 1);
+                    expected.add(index, (long) step);
+                    actual.add(index, (long) step);
+                }
+                case 1 -> {
+                    if (size > 0) {
+                        final int index = random.nextInt(size);
+                        assertEquals(expected.remove(index), actual.remove(index));
+                    }
+                }
+                case 2 -> {
+                    if (size > 0) {
+                        final int index = random.nextInt(size);
+                        assertEquals(expected.set(index, "s" + step), actual.set(index, "s" + step));
+                    }
+                }
+                case 3 -> {
+                    final var added = List.<Object>of(1L, 2L, 3L);
+                    expected.addAll(added);
+                    actual.addAll(added);
+                }
+                default -> {
+                    expected.add((long) step);
+                    actual.add((long) step);
+                }
+            }
+        }
+        assertEquals(expected.size(), actual.size());
+        assertEquals(expected, actual);
+        assertEquals(expected, new ArrayList<>(actual));
+        for (int i = 0; i < expected.size(); i += 97) {
+            assertEquals(expected.get(i), actual.get(i));
+        }
+        assertEquals(expected.subList(100, 2000), actual.slice(100, 2000));
+    }
+
+    @Test
+    void copiesDoNotChangeEachOther() {
+        final var original = PersistentList.of(new ArrayList<>(List.of(1L, 2L, 3L)));
+        final var copy = original.copy();
+        copy.add(4L);
+        copy.set(0, 0L);
+        final var slice = copy.slice(1, 3);
+        slice.set(0, "x");
+        final var joined = PersistentList.of(original);
+        joined.addAll(copy);
+        assertEquals(List.of(1L, 2L, 3L), original);
+        assertEquals(List.of(0L, 2L, 3L, 4L), copy);
+        assertEquals(List.of("x", 3L), slice);
+        assertEquals(List.of(1L, 2L, 3L, 0L, 2L, 3L, 4L), joined);
+    }
+
+    @Test
+    void appendingKeepsTheTreeShallow() {
+        final var list = new PersistentList();
+        var other = PersistentList.of(new ArrayList<>());
+        for (long i = 0; i < 100_000; i++) {
+            list.add(i);
+            other = PersistentList.of(other);
+            other.addAll(List.of(i));
+        }
+        assertEquals(list, other);
+        long sum = 0;
+        for (final var value : list) {
+            sum += (Long) value;
+        }
+        assertEquals(4_999_950_000L, sum);
+    }
+
+    @Test
+    void listsAreJoinedAndSliced() throws Exception {
+        assertEquals("[499500, [3, 4, 5], [0, 1, 2], 1000]", run("""
+                mut acc = []
+                for each x in 0..1000 {
+                    acc = acc + [x]
+                }
+                let first = acc[0..3]
+                mut s = 0
+                for each x in acc { s = s + x }
+                let r = [s, acc[3..6], first, len(acc)]
+                r
+                """).toString());
+        assertEquals("[[1, 2, 3], [1, 2, 3, 4]]", run("""
+                let a = [1, 2] + [3]
+                mut b = a + [4]
+                let r = [a, b]
+                r
+                """).toString());
+    }
+}
@@ -0,0 +1,224 @@
+package ch.turic.memory;
+
+import ch.turic.Interpreter;
+import ch.turic.analyzer.Input;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Local frames store the variables in a {@link SlotTable}, and the identifiers cache the coordinate where they found
+ * the variable last time in their {@link VariableSlot}. The coordinate is only a hint, it must never lead to a wrong
+ * variable.
+ */
+class SlotTableTest {
+
+    @Test
+    void slotsAreStableAndNeverReused() {
+        final var table = new SlotTable();
+        table.set("a", 1L);
+        table.set("b", 2L);
+        assertEquals(0, table.slotOf("a"));
+        assertEquals(1, table.slotOf("b"));
+        table.remove("a");
+        assertEquals(-1, table.slotOf("a"));
+        assertNull(table.slot(0));
+        table.set("a", 3L);
+        assertEquals(2, table.slotOf("a"));
+        assertEquals(3L, table.get("a").get());
+    }
+
+    @Test
+    void truncateForgetsTheLaterVariables() {
+        final var table = new SlotTable();
+        table.set("i", 1L);
+        final int mark = table.size();
+        table.set("a", 2L);
+        table.set("b", 3L);
+        final var slot = new VariableSlot("b");
+        assertEquals(3L, table.lookup(slot, 0).get());
+        table.truncate(mark);
+        assertEquals(1, table.size());
+        assertNull(table.get("a"));
+        assertNull(table.lookup(slot, 0));
+        assertEquals(1L, table.get("i").get());
+        assertEquals(Set.of("i"), table.keySet());
+        // the slot of 'b' is now used by 'c', the cached coordinate must not find it
+        table.set("c", 4L);
+        table.set("b", 5L);
+        assertEquals(5L, table.lookup(slot, 0).get());
+    }
+
+    @Test
+    void staleCoordinateFallsBackToSearch() {
+        final var slot = new VariableSlot("x");
+        final var first = new SlotTable();
+        first.set("y", 1L);
+        first.set("x", 2L);
+        assertEquals(2L, first.lookup(slot, 0).get());
+        final var second = new SlotTable();
+        second.set("x", 3L);
+        assertEquals(3L, second.lookup(slot, 0).get());
+        final var third = new SlotTable();
+        third.set("z", 4L);
+        assertNull(third.lookup(slot, 0));
+    }
+
+    @Test
+    void largeTablesUseTheIndex() {
+        final var table = new SlotTable();
+        for (int i = 0; i < 100; i++) {
+            table.set("v" + i, (long) i);
+        }
+        for (int i = 0; i < 100; i++) {
+            assertEquals((long) i, table.get("v" + i).get());
+            assertEquals((long) i, table.lookup(new VariableSlot("v" + i), 0).get());
+        }
+        table.remove("v50");
+        assertNull(table.get("v50"));
+        assertEquals(99, table.keySet().size());
+    }
+
+    @Test
+    void keyOrderIsTheSameAsTheMapBasedTable() {
+        final var names = new ArrayList<String>();
+        for (int i = 0; i < 40; i++) {
+            names.add("k" + i * 7);
+        }
+        names.addAll(List.of("group", "name", "start", "end", "this", "cls"));
+        final var map = new VarTable();
+        final var slots = new SlotTable();
+        for (int i = 0; i < names.size(); i++) {
+            final var name = names.get(i);
+            if (i % 3 == 0) {
+                map.define(name);
+                slots.define(name);
+            } else {
+                map.set(name, (long) i);
+                slots.set(name, (long) i);
+            }
+            if (i % 5 == 0) {
+                map.remove(names.get(i / 2));
+                slots.remove(names.get(i / 2));
+            }
+        }
+        assertEquals(new ArrayList<>(map.keySet()), new ArrayList<>(slots.keySet()));
+        assertEquals(map.entrySet().stream().map(e -> e.getKey()).toList(),
+                slots.entrySet().stream().map(e -> e.getKey()).toList());
+    }
+
+    @Test
+    void tablesWithTheSameNamesShareTheShape() {
+        final var first = new SlotTable();
+        final var second = new SlotTable();
+        for (final var table : List.of(first, second)) {
+            table.set("x", 1L);
+            table.define("y");
+        }
+        assertNotNull(first.shape());
+        assertSame(first.shape(), second.shape());
+        assertEquals(1, second.slotOf("y"));
+        final var other = new SlotTable();
+        other.define("y");
+        other.set("x", 1L);
+        assertNotSame(first.shape(), other.shape());
+        // truncating goes back to the shape the table had
+        final var mark = first.size();
+        first.set("z", 2L);
+        assertNotSame(second.shape(), first.shape());
+        first.truncate(mark);
+        assertSame(second.shape(), first.shape());
+        // removing a name the table gets its own layout, not changing the shared one
+        second.remove("x");
+        assertNull(second.shape());
+        assertNull(second.get("x"));
+        assertEquals(1L, first.get("x").get());
+        assertEquals(Set.of("y"), second.keySet());
+        second.set("x", 3L);
+        assertEquals(2, second.slotOf("x"));
+    }
+
+    @Test
+    void largeTablesKeepTheirOwnLayout() {
+        final var table = new SlotTable();
+        for (int i = 0; i < Shape.MAX_SIZE; i++) {
+            table.set("s" + i, (long) i);
+        }
+        assertNotNull(table.shape());
+        assertEquals(Shape.MAX_SIZE, table.shape().size());
+        table.set("one-more", 0L);
+        assertNull(table.shape());
+        for (int i = 0; i < Shape.MAX_SIZE; i++) {
+            assertEquals((long) i, table.lookup(new VariableSlot("s" + i), 0).get());
+        }
+        assertEquals(0L, table.get("one-more").get());
+    }
+
+    @Test
+    void unusedShapesDoNotUseUpTheTree() {
+        // more shapes than the tree can hold, none of them used after the table is dropped
+        for (int i = 0; i < Shape.MAX_SHAPES; i++) {
+            final var table = new SlotTable();
+            table.define("dropped" + i % 1000);
+            table.define("dropped-" + i);
+        }
+        final var name = "fresh" + System.nanoTime();
+        SlotTable table = null;
+        for (int i = 0; i < 100 && (table == null || table.shape() == null); i++) {
+            System.gc();
+            table = new SlotTable();
+            table.define(name);
+        }
+        assertNotNull(table.shape());
+    }
+
+    @Test
+    void objectsOfAClassShareTheShape() throws Exception {
+        try (final var interpreter = new Interpreter(new Input(new StringBuilder("""
+                class P {
+                  fn init(x, y) { this.x = x; this.y = y }
+                }
+                mut s = 0
+                let ps = [..rng(0, 10) -> {|i| P(i, 2 * i)}]
+                for each p in ps { s = s + p.x + p.y }
+                let q = P(1, 2)
+                q.z = 3
+                s = s + q.z + q.x + ps[9].x
+                let r = [ps[0], ps[1], q, s]
+                r
+                """), "shapes.turi"))) {
+            final var result = (LngList) interpreter.compileAndExecute();
+            final var p0 = (LngObject) result.array.get(0);
+            final var p1 = (LngObject) result.array.get(1);
+            final var q = (LngObject) result.array.get(2);
+            assertNotNull(p0.shape());
+            assertSame(p0.shape(), p1.shape());
+            assertNotSame(p0.shape(), q.shape());
+            assertEquals(135L + 3 + 1 + 9, result.array.get(3));
+        }
+    }
+
+    @Test
+    void sameIdentifierResolvesInDifferentFrames() throws Exception {
+        try (final var interpreter = new Interpreter(new Input(new StringBuilder("""
+                fn f(n) {
+                  if n == 0 : return 0
+                  let a = n
+                  let b = n * 2
+                  return a + b + f(n - 1)
+                }
+                mut s = 0
+                for each i in [1, 2, 3] {
+                  let x = i
+                  s = s + f(x)
+                }
+                s
+                """), "slots.turi"))) {
+            assertEquals(3L * (1 + 3 + 6), interpreter.compileAndExecute());
+        }
+    }
+}
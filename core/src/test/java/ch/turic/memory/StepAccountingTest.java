@@ -0,0 +1,94 @@
+package ch.turic.memory;
+
+import ch.turic.exceptions.StepLimitReached;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The threads claim the steps from the {@link GlobalContext} in batches. The counts must still be exact between
+ * evaluations, and the limit must never be exceeded.
+ */
+class StepAccountingTest {
+
+    private static final int THREADS = 4;
+
+    @Test
+    void unlimitedStepsAreCountedExactly() throws InterruptedException {
+        final var gc = new GlobalContext(-1);
+        final var main = new ThreadContext(Thread.currentThread());
+        gc.registerContext(main);
+        for (int i = 0; i < 10; i++) {
+            gc.step(main);
+        }
+        assertEquals(10, gc.stepsUsed());
+
+        final var threads = new ArrayList<Thread>();
+        for (int t = 0; t < THREADS; t++) {
+            threads.add(Thread.ofVirtual().start(() -> {
+                final var tc = new ThreadContext(Thread.currentThread());
+                gc.registerContext(tc);
+                for (int i = 0; i < 10_000; i++) {
+                    gc.step(tc);
+                }
+                gc.removeContext(tc);
+            }));
+        }
+        for (final var thread : threads) {
+            thread.join();
+        }
+        assertEquals(10 + THREADS * 10_000, gc.stepsUsed());
+        assertEquals(10 + THREADS * 10_000, gc.resetSteps());
+        assertEquals(0, gc.stepsUsed());
+        gc.step(main);
+        assertEquals(1, gc.stepsUsed());
+    }
+
+    @Test
+    void theLimitIsNeverExceeded() throws InterruptedException {
+        final int limit = 50_000;
+        final var gc = new GlobalContext(limit);
+        final var executed = new AtomicLong();
+        final var threads = new ArrayList<Thread>();
+        for (int t = 0; t < THREADS; t++) {
+            threads.add(Thread.ofVirtual().start(() -> {
+                final var tc = new ThreadContext(Thread.currentThread());
+                gc.registerContext(tc);
+                try {
+                    while (true) {
+                        gc.step(tc);
+                        executed.incrementAndGet();
+                    }
+                } catch (StepLimitReached e) {
+                    // expected, every thread stops here
+                } finally {
+                    gc.removeContext(tc);
+                }
+            }));
+        }
+        for (final var thread : threads) {
+            thread.join();
+        }
+        assertTrue(executed.get() < limit);
+        // the unused claimed steps were given back, the refused steps are counted
+        assertEquals(executed.get() + THREADS, gc.stepsUsed());
+    }
+
+    @Test
+    void singleThreadStopsExactlyAtTheLimit() {
+        final var gc = new GlobalContext(100);
+        final var tc = new ThreadContext(Thread.currentThread());
+        gc.registerContext(tc);
+        for (int i = 1; i < 100; i++) {
+            gc.step(tc);
+        }
+        assertThrows(StepLimitReached.class, () -> gc.step(tc));
+        assertEquals(100, gc.stepsUsed());
+        assertEquals(100, gc.resetSteps());
+        gc.step(tc);
+        assertEquals(1, gc.stepsUsed());
+    }
+}
@@ -0,0 +1,40 @@
+package ch.turic.memory;
+
+import ch.turic.commands.AbstractCommand;
+import ch.turic.commands.IntegerConstant;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The thread context keeps the executing commands in an array, and creates the {@link LngStackFrame} objects only
+ * when the trace is requested.
+ */
+class ThreadContextTraceTest {
+
+    @Test
+    void traceGrowsAndShrinks() {
+        final var tc = new ThreadContext();
+        final var commands = new ArrayList<AbstractCommand>();
+        for (int i = 0; i < 200; i++) {
+            final var command = new IntegerConstant((long) i);
+            commands.add(command);
+            tc.push(command);
+        }
+        assertEquals(200, tc.traceSize());
+        final var trace = tc.getStackTrace();
+        for (int i = 0; i < 200; i++) {
+            assertSame(commands.get(i), trace.get(i).command());
+        }
+        tc.pop();
+        assertEquals(199, tc.traceSize());
+        tc.resetTrace(10);
+        assertEquals(10, tc.traceSize());
+        assertSame(commands.get(9), tc.getStackTrace().getLast().command());
+        // resetting to a deeper level than the current one does not resurrect stale entries
+        tc.resetTrace(20);
+        assertEquals(10, tc.traceSize());
+    }
+}
@@ -0,0 +1,87 @@
+package ch.turic.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JavaMethodTest {
+
+    public static class Target {
+        public String join(String a, String b) {
+            return a + b;
+        }
+
+        public static long twice(long x) {
+            return 2 * x;
+        }
+
+        public static int count(int first, String... rest) {
+            return first + rest.length;
+        }
+
+        public static int primitive(int x) {
+            return x;
+        }
+
+        public void fail() {
+            throw new IllegalStateException("failed");
+        }
+    }
+
+    private final TuricumClassLoader classLoader = new TuricumClassLoader(getClass().getClassLoader());
+
+    @Test
+    void resolvedMethodsAreCached() {
+        final var target = new Target();
+        final var method = classLoader.javaMethod(target, "join", new Object[]{"a", "b"});
+        assertNotNull(method);
+        assertSame(method, classLoader.javaMethod(new Target(), "join", new Object[]{"c", "d"}));
+        assertTrue(method.matches(Target.class, "join", new Object[]{"x", "y"}, false));
+        assertFalse(method.matches(Target.class, "join", new Object[]{"x", 1}, false));
+        assertFalse(method.matches(Target.class, "join", new Object[]{"x", "y"}, true));
+    }
+
+    @Test
+    void invokesInstanceAndStaticMethods() throws Exception {
+        assertEquals("ab", classLoader.javaMethod(new Target(), "join", new Object[]{"a", "b"})
+                .invoke(new Target(), new Object[]{"a", "b"}));
+        // the int argument is widened to long the same way as the reflective call does
+        assertEquals(6L, classLoader.staticJavaMethod(Target.class, "twice", new Object[]{3})
+                .invoke(null, new Object[]{3}));
+        assertEquals(3, classLoader.staticJavaMethod(Target.class, "count", new Object[]{1, "a", "b"})
+                .invoke(null, new Object[]{1, "a", "b"}));
+        assertEquals(1, classLoader.staticJavaMethod(Target.class, "count", new Object[]{1})
+                .invoke(null, new Object[]{1}));
+    }
+
+    @Test
+    void collectionMethodsThroughInterfaces() throws Exception {
+        final List<Object> list = new ArrayList<>();
+        final var add = classLoader.javaMethod(list, "add", new Object[]{"x"});
+        add.invoke(list, new Object[]{"x"});
+        add.invoke(list, new Object[]{"y"});
+        assertEquals(List.of("x", "y"), list);
+        assertEquals(2, classLoader.javaMethod(list, "size", new Object[0]).invoke(list, new Object[0]));
+    }
+
+    @Test
+    void errorsAreTheSameAsReflective() throws Exception {
+        final var target = new Target();
+        final var fail = classLoader.javaMethod(target, "fail", new Object[0]);
+        final var e = assertThrows(InvocationTargetException.class, () -> fail.invoke(target, new Object[0]));
+        assertInstanceOf(IllegalStateException.class, e.getCause());
+        final var method = Target.class.getMethod("primitive", int.class);
+        final var reflective = assertThrows(Exception.class, () -> Reflection.invoke(method, null, new Object[]{null}));
+        final var cached = classLoader.staticJavaMethod(Target.class, "primitive", new Object[]{5});
+        assertEquals(5, cached.invoke(null, new Object[]{5}));
+        final var nullArgument = classLoader.staticJavaMethod(Target.class, "primitive", new Object[]{null});
+        if (nullArgument != null) {
+            assertEquals(reflective.getClass(), assertThrows(Exception.class,
+                    () -> nullArgument.invoke(null, new Object[]{null})).getClass());
+        }
+    }
+}